@@ -0,0 +1,167 @@
+package com.ainovel.server.common.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 预编译的提示词模板
+ *
+ * 模板只解析一次，得到不可变的片段序列（字面量/占位符），渲染时一次遍历写入预估容量的 StringBuilder。
+ * 占位符语法与 {@link PromptUtil#formatPromptTemplate} 一致：支持 {变量} 与 {{变量}}，
+ * 找不到变量的占位符原样保留；模板中没有任何占位符时，将非空变量以 "名称: 值" 的形式追加到末尾。
+ */
+public final class CompiledPromptTemplate {
+
+    private static final Logger log = LoggerFactory.getLogger(CompiledPromptTemplate.class);
+
+    private final String source;
+    private final String[] literals;
+    private final String[] placeholders;
+    private final String[] placeholderTexts;
+    private final int literalLength;
+
+    private CompiledPromptTemplate(String source, List<String> literals, List<String> placeholders,
+                                   List<String> placeholderTexts) {
+        this.source = source;
+        this.literals = literals.toArray(new String[0]);
+        this.placeholders = placeholders.toArray(new String[0]);
+        this.placeholderTexts = placeholderTexts.toArray(new String[0]);
+        int length = 0;
+        for (String literal : this.literals) {
+            length += literal.length();
+        }
+        this.literalLength = length;
+    }
+
+    /**
+     * 编译纯文本模板
+     *
+     * @param template 模板文本
+     * @return 编译结果
+     */
+    public static CompiledPromptTemplate compile(String template) {
+        String text = template != null ? template : "";
+        // literals 比 placeholders 多一个：literal[0] ph[0] literal[1] ph[1] ... literal[n]
+        List<String> literals = new ArrayList<>();
+        List<String> placeholders = new ArrayList<>();
+        List<String> placeholderTexts = new ArrayList<>();
+
+        int literalStart = 0;
+        int i = 0;
+        int length = text.length();
+        while (i < length) {
+            if (text.charAt(i) != '{') {
+                i++;
+                continue;
+            }
+            int end = matchPlaceholder(text, i);
+            if (end < 0) {
+                i++;
+                continue;
+            }
+            boolean doubleBraced = text.charAt(i + 1) == '{';
+            int nameStart = doubleBraced ? i + 2 : i + 1;
+            int nameEnd = doubleBraced ? end - 2 : end - 1;
+            literals.add(text.substring(literalStart, i));
+            placeholders.add(text.substring(nameStart, nameEnd));
+            placeholderTexts.add(text.substring(i, end));
+            literalStart = end;
+            i = end;
+        }
+        literals.add(text.substring(literalStart));
+        return new CompiledPromptTemplate(text, literals, placeholders, placeholderTexts);
+    }
+
+    /**
+     * 匹配从 start 开始的占位符
+     *
+     * @return 占位符结束位置（不含）；不是占位符返回-1
+     */
+    private static int matchPlaceholder(String text, int start) {
+        int length = text.length();
+        // {名称}：名称非空且不含花括号
+        int i = start + 1;
+        while (i < length && text.charAt(i) != '{' && text.charAt(i) != '}') {
+            i++;
+        }
+        if (i < length && i > start + 1 && text.charAt(i) == '}') {
+            return i + 1;
+        }
+        // {{名称}}
+        if (start + 1 < length && text.charAt(start + 1) == '{') {
+            int j = start + 2;
+            while (j < length && text.charAt(j) != '{' && text.charAt(j) != '}') {
+                j++;
+            }
+            if (j > start + 2 && j + 1 < length && text.charAt(j) == '}' && text.charAt(j + 1) == '}') {
+                return j + 2;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 渲染模板
+     *
+     * @param variables 变量映射
+     * @return 渲染结果
+     */
+    public String render(Map<String, ?> variables) {
+        if (placeholders.length == 0) {
+            return renderWithoutPlaceholders(variables);
+        }
+
+        int capacity = literalLength;
+        for (int i = 0; i < placeholders.length; i++) {
+            Object value = variables != null ? variables.get(placeholders[i]) : null;
+            capacity += value != null ? value.toString().length() : placeholderTexts[i].length();
+        }
+
+        StringBuilder result = new StringBuilder(capacity);
+        for (int i = 0; i < placeholders.length; i++) {
+            result.append(literals[i]);
+            if (variables != null && variables.containsKey(placeholders[i])) {
+                result.append(variables.get(placeholders[i]));
+            } else {
+                result.append(placeholderTexts[i]);
+                log.warn("找不到占位符对应的变量: {}", placeholders[i]);
+            }
+        }
+        result.append(literals[placeholders.length]);
+        return result.toString();
+    }
+
+    private String renderWithoutPlaceholders(Map<String, ?> variables) {
+        if (variables == null || variables.isEmpty()) {
+            return source;
+        }
+        StringBuilder builder = new StringBuilder(source.length() + 64);
+        builder.append(source).append("\n\n");
+        for (Map.Entry<String, ?> entry : variables.entrySet()) {
+            Object value = entry.getValue();
+            // 避免添加空值
+            if (value != null && !value.toString().isEmpty()) {
+                builder.append(entry.getKey()).append(": ").append(value).append("\n");
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * @return 编译前的模板文本
+     */
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * @return 模板中是否包含占位符
+     */
+    public boolean hasPlaceholders() {
+        return placeholders.length > 0;
+    }
+}
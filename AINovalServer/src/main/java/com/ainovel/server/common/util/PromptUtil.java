@@ -107,58 +107,8 @@ public class PromptUtil {
             return "";
         }
 
-        // 提取纯文本，移除富文本格式
-        String plainTemplate = extractPlainTextFromRichText(template);
-        
-        // 检测是否存在任何占位符
-        if (!containsPlaceholder(plainTemplate)) {
-            // 如果没有占位符但有变量，自动添加变量附加到模板末尾
-            if (variables != null && !variables.isEmpty()) {
-                StringBuilder builder = new StringBuilder(plainTemplate);
-                builder.append("\n\n");
-                
-                for (Map.Entry<String, String> entry : variables.entrySet()) {
-                    // 避免添加空值
-                    if (entry.getValue() != null && !entry.getValue().isEmpty()) {
-                        builder.append(entry.getKey()).append(": ").append(entry.getValue()).append("\n");
-                    }
-                }
-                
-                return builder.toString();
-            }
-            return plainTemplate;
-        }
-        
-        // 替换所有占位符
-        StringBuilder result = new StringBuilder();
-        Matcher matcher = PLACEHOLDER_PATTERN.matcher(plainTemplate);
-        
-        int lastEnd = 0;
-        while (matcher.find()) {
-            // 添加匹配前的文本
-            result.append(plainTemplate, lastEnd, matcher.start());
-            
-            // 获取占位符名称（支持两种格式）
-            String placeholder = matcher.group(1) != null ? matcher.group(1) : matcher.group(2);
-            
-            // 替换占位符
-            if (variables != null && variables.containsKey(placeholder)) {
-                result.append(variables.get(placeholder));
-            } else {
-                // 保留未匹配的占位符
-                result.append(matcher.group());
-                log.warn("找不到占位符对应的变量: {}", placeholder);
-            }
-            
-            lastEnd = matcher.end();
-        }
-        
-        // 添加剩余文本
-        if (lastEnd < plainTemplate.length()) {
-            result.append(plainTemplate.substring(lastEnd));
-        }
-        
-        return result.toString();
+        // 提取纯文本，移除富文本格式后按占位符编译并渲染
+        return CompiledPromptTemplate.compile(extractPlainTextFromRichText(template)).render(variables);
     }
     
     /**
@@ -0,0 +1,34 @@
+package com.ainovel.server.common.util;
+
+/**
+ * 令牌数粗略估算工具
+ * 中日韩字符按每字一个令牌计，其余字符按每4个字符一个令牌计，用于预算控制而非计费
+ */
+public final class TokenEstimator {
+
+    private TokenEstimator() {
+    }
+
+    /**
+     * 估算文本的令牌数
+     *
+     * @param text 文本
+     * @return 估算的令牌数
+     */
+    public static int estimate(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        int cjk = 0;
+        int other = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isIdeographic(c) || (c >= '\u3040' && c <= '\u30FF') || (c >= '\uAC00' && c <= '\uD7AF')) {
+                cjk++;
+            } else {
+                other++;
+            }
+        }
+        return cjk + (other + 3) / 4;
+    }
+}
@@ -0,0 +1,45 @@
+package com.ainovel.server.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import lombok.Data;
+
+/**
+ * 聊天会话记忆配置：滚动摘要 + 令牌预算内的最近原始消息，从application.yml读取
+ */
+@Configuration
+@ConfigurationProperties(prefix = "ai.chat.memory")
+@Data
+public class ChatMemoryConfiguration {
+
+    /**
+     * 是否启用滚动摘要；关闭时每轮只携带最近原始消息
+     */
+    private boolean enabled = true;
+
+    /**
+     * 每轮最多读取的最近原始消息数；读取的消息全部未摘要时也会触发摘要，一次并入摘要的消息数同样以此为上限
+     */
+    private int maxHistoryMessages = 20;
+
+    /**
+     * 每轮携带的最近原始消息令牌预算
+     */
+    private int recentTokenBudget = 3000;
+
+    /**
+     * 最近未摘要的原始消息令牌数超过该阈值时，后台更新滚动摘要
+     */
+    private int summarizeThresholdTokens = 4000;
+
+    /**
+     * 更新摘要后仍保留为原始消息的最近消息数
+     */
+    private int keepRecentMessages = 4;
+
+    /**
+     * 摘要的最大生成令牌数
+     */
+    private int summaryMaxTokens = 800;
+}
@@ -0,0 +1,30 @@
+package com.ainovel.server.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import lombok.Data;
+
+/**
+ * 解密凭证缓存配置，从application.yml读取
+ */
+@Configuration
+@ConfigurationProperties(prefix = "ai.credential-cache")
+@Data
+public class CredentialCacheConfiguration {
+
+    /**
+     * 是否启用缓存；关闭时每次都执行解密
+     */
+    private boolean enabled = true;
+
+    /**
+     * 解密结果的保留时间(秒)，从写入时开始计算
+     */
+    private long ttlSeconds = 300;
+
+    /**
+     * 最大缓存条目数
+     */
+    private long maxEntries = 10000;
+}
@@ -0,0 +1,35 @@
+package com.ainovel.server.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import lombok.Data;
+
+/**
+ * 任务事件去重配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "task.event-dedupe")
+@Data
+public class EventDedupeConfiguration {
+
+    /**
+     * 已处理事件ID的最短保留时间(秒)，在此时间内重复投递的事件会被丢弃
+     */
+    private long retentionSeconds = 900;
+
+    /**
+     * 本地时间窗口的分段数，按段轮换淘汰最旧的事件ID
+     */
+    private int segments = 4;
+
+    /**
+     * 每段最多保存的事件ID数，超出时提前轮换，保证内存占用有上限
+     */
+    private int maxEntriesPerSegment = 50000;
+
+    /**
+     * 是否同时在MongoDB中记录已处理事件，用于跨节点去重
+     */
+    private boolean persistentEnabled = false;
+}
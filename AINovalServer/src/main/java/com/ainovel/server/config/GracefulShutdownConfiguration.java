@@ -9,6 +9,8 @@ import org.springframework.context.ApplicationListener;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.event.ContextClosedEvent;
 
+import com.ainovel.server.task.service.impl.TaskProgressWriteBuffer;
+
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
@@ -23,6 +25,9 @@ public class GracefulShutdownConfiguration implements ApplicationListener<Contex
     @Autowired
     private RabbitListenerEndpointRegistry rabbitListenerEndpointRegistry;
     
+    @Autowired
+    private TaskProgressWriteBuffer progressWriteBuffer;
+    
     @Value("${task.shutdown.awaitTerminationTimeout:PT30S}")
     private String shutdownTimeoutString;
     
@@ -66,6 +71,17 @@ public class GracefulShutdownConfiguration implements ApplicationListener<Contex
             logger.error("停止RabbitMQ监听器时发生异常", e);
         }
         
+        // 监听器停止后不再有新的进度上报，写入缓冲中剩余的任务进度
+        try {
+            int pendingProgress = progressWriteBuffer.pendingCount();
+            if (pendingProgress > 0) {
+                logger.info("写入 {} 个待写任务进度...", pendingProgress);
+                progressWriteBuffer.flushAll().block(java.time.Duration.ofSeconds(timeoutSeconds));
+            }
+        } catch (Exception e) {
+            logger.error("写入待写任务进度时发生异常", e);
+        }
+        
         logger.info("优雅停机完成，应用程序即将关闭");
     }
     
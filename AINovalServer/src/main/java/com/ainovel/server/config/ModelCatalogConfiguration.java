@@ -0,0 +1,45 @@
+package com.ainovel.server.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import lombok.Data;
+
+/**
+ * 模型目录缓存配置，从application.yml读取
+ */
+@Configuration
+@ConfigurationProperties(prefix = "ai.model-catalog")
+@Data
+public class ModelCatalogConfiguration {
+
+    /**
+     * 是否启用缓存；关闭时每次请求都访问上游
+     */
+    private boolean enabled = true;
+
+    /**
+     * 目录的新鲜期(秒)，过期后先返回旧值并在后台刷新
+     */
+    private long freshSeconds = 600;
+
+    /**
+     * 旧值的最长可用时间(秒)，超过后需同步重新获取
+     */
+    private long maxStaleSeconds = 604800;
+
+    /**
+     * 内存中缓存的最大目录数
+     */
+    private long maxEntries = 1000;
+
+    /**
+     * 冷启动时等待上游的最长时间(毫秒)，超时返回默认模型列表
+     */
+    private long coldStartTimeoutMillis = 5000;
+
+    /**
+     * 是否将目录快照持久化到Mongo
+     */
+    private boolean snapshotEnabled = true;
+}
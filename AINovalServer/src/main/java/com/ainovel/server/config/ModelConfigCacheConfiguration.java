@@ -0,0 +1,30 @@
+package com.ainovel.server.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import lombok.Data;
+
+/**
+ * 用户模型配置缓存配置，从application.yml读取
+ */
+@Configuration
+@ConfigurationProperties(prefix = "ai.model-config-cache")
+@Data
+public class ModelConfigCacheConfiguration {
+
+    /**
+     * 是否启用缓存；关闭时每次读取都访问数据库
+     */
+    private boolean enabled = true;
+
+    /**
+     * 最多缓存的用户数
+     */
+    private long maxUsers = 10000;
+
+    /**
+     * 兜底过期时间(分钟)，用于弥补丢失的失效事件
+     */
+    private long ttlMinutes = 30;
+}
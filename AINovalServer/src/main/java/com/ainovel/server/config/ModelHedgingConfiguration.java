@@ -0,0 +1,62 @@
+package com.ainovel.server.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import lombok.Data;
+
+/**
+ * 对冲生成配置，从application.yml读取
+ *
+ * 主模型在按其历史耗时分位数推算的延迟内未返回时，向用户配置的另一个模型发起备用请求，取先完成者。
+ */
+@Configuration
+@ConfigurationProperties(prefix = "ai.hedging")
+@Data
+public class ModelHedgingConfiguration {
+
+    /**
+     * 是否启用对冲（默认关闭）
+     */
+    private boolean enabled = false;
+
+    /**
+     * 触发对冲的耗时分位数
+     */
+    private double percentile = 0.95;
+
+    /**
+     * 计算分位数所需的最少样本数，不足时使用默认延迟
+     */
+    private int minSamples = 20;
+
+    /**
+     * 每个模型保留的最近耗时样本数
+     */
+    private int sampleWindowSize = 200;
+
+    /**
+     * 样本不足时的对冲延迟(毫秒)
+     */
+    private long defaultDelayMillis = 8000;
+
+    /**
+     * 对冲延迟下限(毫秒)
+     */
+    private long minDelayMillis = 1000;
+
+    /**
+     * 对冲延迟上限(毫秒)
+     */
+    private long maxDelayMillis = 60000;
+
+    /**
+     * 额外请求预算：每个主请求可累积的备用请求份额，0.1 表示额外上游调用最多约为主请求的10%
+     */
+    private double budgetRatio = 0.1;
+
+    /**
+     * 预算可累积的最大备用请求数
+     */
+    private int budgetBurst = 10;
+}
@@ -0,0 +1,35 @@
+package com.ainovel.server.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import lombok.Data;
+
+/**
+ * 剧情大纲生成引擎配置，从application.yml读取
+ */
+@Configuration
+@ConfigurationProperties(prefix = "ai.outline")
+@Data
+public class OutlineGenerationConfiguration {
+
+    /**
+     * 每个用户同时生成的大纲选项数上限（跨请求）
+     */
+    private int maxConcurrentOptionsPerUser = 3;
+
+    /**
+     * 每个选项向下游预取的分块数
+     */
+    private int optionBufferSize = 8;
+
+    /**
+     * 选项上下文缓存的最大条目数
+     */
+    private long contextCacheMaxSize = 10000;
+
+    /**
+     * 选项上下文缓存的过期时间(分钟)
+     */
+    private long contextCacheTtlMinutes = 30;
+}
@@ -0,0 +1,63 @@
+package com.ainovel.server.config;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import lombok.Data;
+
+/**
+ * AI提供商熔断配置，按 (提供商, 端点, 模型) 维度熔断，从application.yml读取
+ */
+@Configuration
+@ConfigurationProperties(prefix = "ai.provider.circuit-breaker")
+@Data
+public class ProviderCircuitBreakerConfiguration {
+
+    /**
+     * 是否启用熔断
+     */
+    private boolean enabled = true;
+
+    /**
+     * 滑动窗口大小（按调用次数）
+     */
+    private int slidingWindowSize = 20;
+
+    /**
+     * 计算失败率前的最少调用次数
+     */
+    private int minimumNumberOfCalls = 10;
+
+    /**
+     * 失败率阈值(%)，超过即打开熔断
+     */
+    private float failureRateThreshold = 50;
+
+    /**
+     * 慢调用率阈值(%)，超过即打开熔断
+     */
+    private float slowCallRateThreshold = 80;
+
+    /**
+     * 慢调用判定阈值(毫秒)；流式调用以首个响应到达的耗时计
+     */
+    private long slowCallDurationThresholdMillis = 60000;
+
+    /**
+     * 熔断打开后进入半开状态前的等待时间(毫秒)
+     */
+    private long waitDurationInOpenStateMillis = 30000;
+
+    /**
+     * 半开状态下允许的探测调用数
+     */
+    private int permittedCallsInHalfOpenState = 3;
+
+    /**
+     * 熔断时的备用模型：键为模型名称，值为用户已配置的备用模型名称
+     */
+    private Map<String, String> fallbackModels = new HashMap<>();
+}
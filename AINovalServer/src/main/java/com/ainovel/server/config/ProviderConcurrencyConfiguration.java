@@ -0,0 +1,89 @@
+package com.ainovel.server.config;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import lombok.Data;
+
+/**
+ * AI提供商自适应并发限制配置（AIMD），从application.yml读取
+ */
+@Configuration
+@ConfigurationProperties(prefix = "ai.provider.concurrency")
+@Data
+public class ProviderConcurrencyConfiguration {
+
+    /**
+     * 是否启用自适应并发限制
+     */
+    private boolean enabled = true;
+
+    /**
+     * 默认限制配置
+     */
+    private LimitConfig default_ = new LimitConfig();
+
+    /**
+     * 各AI提供商的特定限制配置
+     */
+    private Map<String, LimitConfig> providers = new HashMap<>();
+
+    /**
+     * 获取特定提供商的限制配置，如果未配置则返回默认值
+     *
+     * @param providerName 提供商名称
+     * @return 限制配置
+     */
+    public LimitConfig getConfigFor(String providerName) {
+        return providers.getOrDefault(providerName, default_);
+    }
+
+    /**
+     * 单个限制配置项的数据结构
+     */
+    @Data
+    public static class LimitConfig {
+        /**
+         * 初始允许的并发请求数
+         */
+        private int initialLimit = 4;
+
+        /**
+         * 最小并发数（乘性回退的下限）
+         */
+        private int minLimit = 1;
+
+        /**
+         * 最大并发数（加性增长的上限）
+         */
+        private int maxLimit = 64;
+
+        /**
+         * 每个健康窗口（约 limit 个成功请求）增加的并发数
+         */
+        private double additiveIncrease = 1.0;
+
+        /**
+         * 遇到429/5xx/超时时的乘性回退系数
+         */
+        private double backoffRatio = 0.5;
+
+        /**
+         * 延迟容忍倍数：样本延迟超过平滑基线的该倍数时视为不健康，不再增长
+         */
+        private double latencyTolerance = 2.0;
+
+        /**
+         * 等待并发许可的最长时间(毫秒)
+         */
+        private long acquireTimeoutMillis = 60000;
+
+        /**
+         * Retry-After 的最大采纳时长(毫秒)，防止异常值长时间阻塞
+         */
+        private long maxRetryAfterMillis = 300000;
+    }
+}
@@ -3,6 +3,7 @@ package com.ainovel.server.config;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.amqp.core.AcknowledgeMode;
+import org.springframework.amqp.core.AnonymousQueue;
 import org.springframework.amqp.core.Binding;
 import org.springframework.amqp.core.BindingBuilder;
 import org.springframework.amqp.core.DirectExchange;
@@ -43,18 +44,13 @@ public class RabbitMQConfig {
     public static final String TASKS_REQUEUE_EXCHANGE = "tasks.requeue.exchange";
     public static final String TASKS_DLX_EXCHANGE = "tasks.dlx.exchange";
     public static final String TASKS_EVENTS_EXCHANGE = "tasks.events.exchange";
+    public static final String MODEL_CONFIG_EVENTS_EXCHANGE = "model-config.events.exchange";
     
     // 队列名称
     public static final String TASKS_QUEUE = "tasks.queue";
     public static final String TASKS_DLQ_QUEUE = "tasks.dlq.queue";
     public static final String TASKS_EVENTS_QUEUE = "tasks.events.queue";
     
-    // 等待队列（用于延迟重试）
-    public static final String TASKS_WAIT_15S_QUEUE = "tasks.wait_15s.queue";
-    public static final String TASKS_WAIT_1M_QUEUE = "tasks.wait_1m.queue";
-    public static final String TASKS_WAIT_5M_QUEUE = "tasks.wait_5m.queue";
-    public static final String TASKS_WAIT_30M_QUEUE = "tasks.wait_30m.queue";
-    
     // 路由键前缀
     public static final String TASK_TYPE_PREFIX = "task.";
     
@@ -158,7 +154,9 @@ public class RabbitMQConfig {
      */
     @Bean
     public SimpleRabbitListenerContainerFactory rabbitListenerContainerFactory(
-            ConnectionFactory connectionFactory) {
+            ConnectionFactory connectionFactory,
+            TaskConsumerConfiguration taskConsumerConfiguration,
+            TaskTransportConfiguration taskTransportConfiguration) {
         SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
         factory.setConnectionFactory(connectionFactory);
         factory.setMessageConverter(jackson2JsonMessageConverter());
@@ -170,12 +168,16 @@ public class RabbitMQConfig {
         factory.setConcurrentConsumers(concurrentConsumers);
         factory.setMaxConcurrentConsumers(maxConcurrentConsumers);
         
-        // 配置预取数量
-        factory.setPrefetchCount(prefetchCount);
+        // 配置预取数量，分道消费时使用更大的预取窗口，并发由各分道限制
+        factory.setPrefetchCount(taskConsumerConfiguration.isLaneMode()
+                ? taskConsumerConfiguration.getPrefetch() : prefetchCount);
         
         // 使用虚拟线程
         factory.setTaskExecutor(Executors.newVirtualThreadPerTaskExecutor());
         
+        // 进程内传输模式不连接RabbitMQ，监听容器不自动启动
+        factory.setAutoStartup(!taskTransportConfiguration.isLocalMode());
+        
         return factory;
     }
     
@@ -192,6 +194,7 @@ public class RabbitMQConfig {
     
     /**
      * 任务重试交换机（扇形）
+     * 任务主队列的死信交换机，被拒绝的任务消息经此进入死信队列；延迟重试由任务重试调度负责，不再经过TTL等待队列
      */
     @Bean
     public FanoutExchange tasksRetryExchange() {
@@ -252,110 +255,84 @@ public class RabbitMQConfig {
                 .build();
     }
     
-    /**
-     * 任务15秒延迟队列
-     */
-    @Bean
-    public Queue tasksWait15sQueue() {
-        return QueueBuilder.durable(TASKS_WAIT_15S_QUEUE)
-                .withArgument("x-dead-letter-exchange", TASKS_REQUEUE_EXCHANGE)
-                .withArgument("x-message-ttl", 15000) // 15秒
-                .build();
-    }
-    
-    /**
-     * 任务1分钟延迟队列
-     */
-    @Bean
-    public Queue tasksWait1mQueue() {
-        return QueueBuilder.durable(TASKS_WAIT_1M_QUEUE)
-                .withArgument("x-dead-letter-exchange", TASKS_REQUEUE_EXCHANGE)
-                .withArgument("x-message-ttl", 60000) // 1分钟
-                .build();
-    }
+    // 绑定定义
     
     /**
-     * 任务5分钟延迟队列
+     * 任务重新入队交换机 -> 任务主队列绑定
      */
     @Bean
-    public Queue tasksWait5mQueue() {
-        return QueueBuilder.durable(TASKS_WAIT_5M_QUEUE)
-                .withArgument("x-dead-letter-exchange", TASKS_REQUEUE_EXCHANGE)
-                .withArgument("x-message-ttl", 300000) // 5分钟
-                .build();
+    public Binding tasksRequeueToTasksBinding() {
+        return BindingBuilder.bind(tasksQueue())
+                .to(tasksRequeueExchange())
+                .with("#"); // 匹配所有路由键
     }
     
     /**
-     * 任务30分钟延迟队列
+     * 任务重试交换机 -> 死信队列绑定
      */
     @Bean
-    public Queue tasksWait30mQueue() {
-        return QueueBuilder.durable(TASKS_WAIT_30M_QUEUE)
-                .withArgument("x-dead-letter-exchange", TASKS_REQUEUE_EXCHANGE)
-                .withArgument("x-message-ttl", 1800000) // 30分钟
-                .build();
+    public Binding tasksRetryToDlqBinding() {
+        return BindingBuilder.bind(tasksDlqQueue()).to(tasksRetryExchange());
     }
     
-    // 绑定定义
-    
     /**
-     * 任务重试交换机 -> 等待队列绑定
+     * 任务死信交换机 -> 死信队列绑定
      */
     @Bean
-    public Binding tasksRetryToWait15sBinding() {
-        return BindingBuilder.bind(tasksWait15sQueue()).to(tasksRetryExchange());
+    public Binding tasksDlxToDlqBinding() {
+        return BindingBuilder.bind(tasksDlqQueue()).to(tasksDlxExchange());
     }
     
     /**
-     * 任务重试交换机 -> 等待队列绑定
+     * 任务事件交换机 -> 事件队列绑定
      */
     @Bean
-    public Binding tasksRetryToWait1mBinding() {
-        return BindingBuilder.bind(tasksWait1mQueue()).to(tasksRetryExchange());
+    public Binding tasksEventsToQueueBinding() {
+        return BindingBuilder.bind(tasksEventsQueue())
+                .to(tasksEventsExchange())
+                .with("task.event.#"); // 使用通配符匹配所有task.event开头的路由键
     }
-    
+
     /**
-     * 任务重试交换机 -> 等待队列绑定
+     * 任务事件广播队列：每个节点一个匿名队列（非持久、独占、自动删除），用于向本节点的SSE订阅者推送其他节点的任务事件
      */
     @Bean
-    public Binding tasksRetryToWait5mBinding() {
-        return BindingBuilder.bind(tasksWait5mQueue()).to(tasksRetryExchange());
+    public AnonymousQueue taskEventsBroadcastQueue() {
+        return new AnonymousQueue();
     }
-    
+
     /**
-     * 任务重试交换机 -> 等待队列绑定
+     * 任务事件交换机 -> 本节点广播队列绑定
      */
     @Bean
-    public Binding tasksRetryToWait30mBinding() {
-        return BindingBuilder.bind(tasksWait30mQueue()).to(tasksRetryExchange());
+    public Binding taskEventsBroadcastBinding() {
+        return BindingBuilder.bind(taskEventsBroadcastQueue())
+                .to(tasksEventsExchange())
+                .with("task.event.#");
     }
-    
+
     /**
-     * 任务重新入队交换机 -> 任务主队列绑定
+     * 模型配置变更事件交换机（扇形），广播到所有节点以失效本地缓存
      */
     @Bean
-    public Binding tasksRequeueToTasksBinding() {
-        return BindingBuilder.bind(tasksQueue())
-                .to(tasksRequeueExchange())
-                .with("#"); // 匹配所有路由键
+    public FanoutExchange modelConfigEventsExchange() {
+        return new FanoutExchange(MODEL_CONFIG_EVENTS_EXCHANGE, true, false);
     }
-    
+
     /**
-     * 任务死信交换机 -> 死信队列绑定
+     * 模型配置变更事件队列：每个节点一个匿名队列（非持久、独占、自动删除）
      */
     @Bean
-    public Binding tasksDlxToDlqBinding() {
-        return BindingBuilder.bind(tasksDlqQueue()).to(tasksDlxExchange());
+    public AnonymousQueue modelConfigEventsQueue() {
+        return new AnonymousQueue();
     }
-    
+
     /**
-     * 任务事件交换机 -> 事件队列绑定
+     * 模型配置变更事件交换机 -> 本节点匿名队列绑定
      */
     @Bean
-    public Binding tasksEventsToQueueBinding() {
-        return BindingBuilder.bind(tasksEventsQueue())
-                .to(tasksEventsExchange())
-                .with("task.event.#"); // 使用通配符匹配所有task.event开头的路由键
+    public Binding modelConfigEventsBinding() {
+        return BindingBuilder.bind(modelConfigEventsQueue()).to(modelConfigEventsExchange());
     }
     
     // /**
@@ -20,6 +20,26 @@ public class RateLimiterConfiguration {
      */
     private String type = "memory";
     
+    /**
+     * 分布式限流在Redis中的键前缀
+     */
+    private String redisKeyPrefix = "ainovel:ratelimiter:";
+    
+    /**
+     * 访问Redis的超时时间(毫秒)，超时即回退到本地限流
+     */
+    private long storeTimeoutMillis = 200;
+    
+    /**
+     * Redis不可用后，再次尝试访问Redis前的冷却时间(毫秒)
+     */
+    private long storeRetryIntervalMillis = 5000;
+    
+    /**
+     * 集群预期节点数，Redis不可用时本地回退限流按 rate/expectedNodes 计算
+     */
+    private int expectedNodes = 1;
+    
     /**
      * 默认限流配置
      */
@@ -59,5 +79,15 @@ public class RateLimiterConfiguration {
          * 获取许可的默认超时时间(毫秒)
          */
         private long defaultTimeoutMillis = 5000;
+        
+        /**
+         * 每次从Redis预取的令牌数，预取的令牌在本地消费，减少热路径上的网络往返
+         */
+        private int leaseBatchSize = 5;
+        
+        /**
+         * 预取令牌的本地有效期(毫秒)，过期未用的令牌被丢弃以免突破全局速率
+         */
+        private long leaseTtlMillis = 1000;
     }
 } 
\ No newline at end of file
@@ -0,0 +1,75 @@
+package com.ainovel.server.config;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import lombok.Data;
+
+/**
+ * 流式输出配置：合帧参数与共享心跳，从application.yml读取
+ */
+@Configuration
+@ConfigurationProperties(prefix = "ai.stream.output")
+@Data
+public class StreamOutputConfiguration {
+
+    /**
+     * 默认合帧窗口(毫秒)，为0时不合帧
+     */
+    private long windowMillis = 20;
+
+    /**
+     * 默认帧大小上限(字节)，缓冲达到该大小立即写出
+     */
+    private int maxBytes = 256;
+
+    /**
+     * 流空闲超过该时间(秒)时发送心跳
+     */
+    private long heartbeatIntervalSeconds = 15;
+
+    /**
+     * 心跳时间轮每格的时长(毫秒)
+     */
+    private long heartbeatTickMillis = 1000;
+
+    /**
+     * 按端点覆盖的合帧参数
+     */
+    private Map<String, Frame> endpoints = new HashMap<>();
+
+    /**
+     * 获取端点的合帧参数，未配置时使用默认值
+     *
+     * @param endpoint 端点名称
+     * @return 合帧参数
+     */
+    public Frame frameFor(String endpoint) {
+        Frame frame = endpoints.get(endpoint);
+        if (frame == null) {
+            frame = new Frame();
+        }
+        return new Frame(frame.getWindowMillis() != null ? frame.getWindowMillis() : windowMillis,
+                frame.getMaxBytes() != null ? frame.getMaxBytes() : maxBytes);
+    }
+
+    /**
+     * 合帧参数
+     */
+    @Data
+    public static class Frame {
+        private Long windowMillis;
+        private Integer maxBytes;
+
+        public Frame() {
+        }
+
+        public Frame(Long windowMillis, Integer maxBytes) {
+            this.windowMillis = windowMillis;
+            this.maxBytes = maxBytes;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.ainovel.server.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import lombok.Data;
+
+/**
+ * 可续传流式生成配置，从application.yml读取
+ */
+@Configuration
+@ConfigurationProperties(prefix = "ai.stream.resume")
+@Data
+public class StreamResumeConfiguration {
+
+    /**
+     * 是否启用续传；关闭时每个请求直接发起新的生成
+     */
+    private boolean enabled = true;
+
+    /**
+     * 每个生成在内存中保留的最近事件数
+     */
+    private int ringCapacity = 512;
+
+    /**
+     * 每个客户端连接未消费事件的上限，最慢的连接达到上限时暂停从上游拉取
+     */
+    private int observerBufferSize = 256;
+
+    /**
+     * 检查点写入间隔(毫秒)
+     */
+    private long checkpointIntervalMillis = 2000;
+
+    /**
+     * 生成结束后在内存中保留的时间(秒)
+     */
+    private long retentionSeconds = 300;
+
+    /**
+     * 检查点文档的保留时间(小时)
+     */
+    private long checkpointTtlHours = 24;
+
+    /**
+     * 所有客户端断开超过该时间(秒)后取消上游生成
+     */
+    private long detachedTimeoutSeconds = 600;
+}
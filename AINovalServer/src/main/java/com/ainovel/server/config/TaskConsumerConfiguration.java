@@ -0,0 +1,66 @@
+package com.ainovel.server.config;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import lombok.Data;
+
+/**
+ * 任务消费者配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "task.consumer")
+@Data
+public class TaskConsumerConfiguration {
+
+    /**
+     * 是否启用分道消费：以较大的预取窗口拉取消息，按任务类型分道并在每道内限制并发
+     */
+    private boolean laneMode = false;
+
+    /**
+     * 分道消费时每个消费者的预取数，应不小于各道并发之和
+     */
+    private int prefetch = 64;
+
+    /**
+     * 累计多少条连续完成的消息后批量确认一次
+     */
+    private int ackBatchSize = 16;
+
+    /**
+     * 未满一批的已完成消息最长等待确认的时间(毫秒)
+     */
+    private long ackFlushMillis = 200;
+
+    /**
+     * 未归入任何分道的任务类型使用的默认道并发数
+     */
+    private int defaultLaneConcurrency = 8;
+
+    /**
+     * 分道配置，键为道名称
+     */
+    private Map<String, LaneConfig> lanes = new LinkedHashMap<>();
+
+    /**
+     * 单个分道的配置
+     */
+    @Data
+    public static class LaneConfig {
+        /**
+         * 道内同时处理的任务数上限
+         */
+        private int concurrency = 4;
+
+        /**
+         * 归入该道的任务类型
+         */
+        private List<String> taskTypes = new ArrayList<>();
+    }
+}
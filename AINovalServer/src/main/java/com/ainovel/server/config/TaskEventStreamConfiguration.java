@@ -0,0 +1,26 @@
+package com.ainovel.server.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import lombok.Data;
+
+/**
+ * 任务事件推送配置
+ * 任务生命周期事件经进程内事件总线推送给SSE订阅者，其他节点的事件经事件交换机广播到本节点
+ */
+@Configuration
+@ConfigurationProperties(prefix = "task.event-stream")
+@Data
+public class TaskEventStreamConfiguration {
+
+    /**
+     * 每个订阅者的事件缓冲上限，订阅者消费过慢时丢弃最旧的事件
+     */
+    private int subscriberBufferSize = 256;
+
+    /**
+     * 用户任务订阅建立时，快照中最多包含的进行中任务数
+     */
+    private int snapshotLimit = 100;
+}
@@ -0,0 +1,21 @@
+package com.ainovel.server.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import lombok.Data;
+
+/**
+ * 任务进度写入配置
+ * 执行器上报的进度先写入内存缓冲，每个任务只保留最新一次，按固定间隔批量写入数据库
+ */
+@Configuration
+@ConfigurationProperties(prefix = "task.progress")
+@Data
+public class TaskProgressConfiguration {
+
+    /**
+     * 进度批量写入间隔(毫秒)，同一任务在一个间隔内最多写入一次；0表示每次上报直接写入
+     */
+    private long flushIntervalMillis = 1000;
+}
@@ -0,0 +1,67 @@
+package com.ainovel.server.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import lombok.Data;
+
+/**
+ * 任务重试配置
+ * 重试延迟按指数退避计算并加随机抖动，上游给出Retry-After提示时不早于提示时间；
+ * 待重试任务持久化在background_tasks中，到期前由时间轮安排重新投递
+ */
+@Configuration
+@ConfigurationProperties(prefix = "task.retry")
+@Data
+public class TaskRetryConfiguration {
+
+    /**
+     * 最大重试次数
+     */
+    private int maxAttempts = 3;
+
+    /**
+     * 第一次重试的退避基数(毫秒)
+     */
+    private long initialDelayMillis = 5000;
+
+    /**
+     * 退避上限(毫秒)
+     */
+    private long maxDelayMillis = 3600000;
+
+    /**
+     * 每次重试退避基数的增长倍数
+     */
+    private double backoffFactor = 2.0;
+
+    /**
+     * 退避中随机抖动的比例，1.0为完全抖动（在0到退避值之间均匀取值），0为不抖动
+     */
+    private double jitterFactor = 1.0;
+
+    /**
+     * 采纳上游Retry-After提示的上限(毫秒)
+     */
+    private long maxRetryAfterMillis = 1800000;
+
+    /**
+     * 扫描到期重试的间隔(毫秒)，扫描把即将到期的待重试任务装入时间轮，接管其他节点或重启前遗留的重试
+     */
+    private long sweepIntervalMillis = 30000;
+
+    /**
+     * 重试时间轮第0层每格时长(毫秒)
+     */
+    private long timerTickMillis = 100;
+
+    /**
+     * 重试时间轮每层格数
+     */
+    private int timerWheelSize = 64;
+
+    /**
+     * 重试时间轮层数，默认3层可覆盖 tickMillis * wheelSize^3 的延迟
+     */
+    private int timerLevels = 3;
+}
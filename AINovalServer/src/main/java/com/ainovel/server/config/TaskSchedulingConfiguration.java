@@ -0,0 +1,69 @@
+package com.ainovel.server.config;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import lombok.Data;
+
+/**
+ * 任务公平调度配置
+ * 发件箱中继按此配置决定每批发送哪些用户的哪些任务：高优先级类别先发，同一类别内按用户加权轮转，
+ * 每个用户在每个类别中已发送未结束的任务数不超过并发上限
+ */
+@Configuration
+@ConfigurationProperties(prefix = "task.scheduling")
+@Data
+public class TaskSchedulingConfiguration {
+
+    /**
+     * 是否启用公平调度，关闭时中继按提交顺序发送
+     */
+    private boolean enabled = true;
+
+    /**
+     * 未归入任何类别的任务类型，每个用户的并发上限
+     */
+    private int defaultPerUserConcurrency = 8;
+
+    /**
+     * 调度类别，键为类别名称
+     */
+    private Map<String, ClassConfig> classes = new LinkedHashMap<>();
+
+    /**
+     * 用户权重，未配置的用户权重为1；权重越大，同一类别内每轮可发送的任务越多
+     */
+    private Map<String, Integer> userWeights = new HashMap<>();
+
+    /**
+     * 单个调度类别的配置
+     */
+    @Data
+    public static class ClassConfig {
+        /**
+         * 优先级，数值大的类别先于数值小的类别发送
+         */
+        private int priority = 0;
+
+        /**
+         * 类别内每个用户每轮可发送的任务数
+         */
+        private int weight = 1;
+
+        /**
+         * 每个用户在该类别中已发送未结束的任务数上限
+         */
+        private int perUserConcurrency = 8;
+
+        /**
+         * 归入该类别的任务类型
+         */
+        private List<String> taskTypes = new ArrayList<>();
+    }
+}
@@ -0,0 +1,40 @@
+package com.ainovel.server.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import lombok.Data;
+
+/**
+ * 任务提交配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "task.submission")
+@Data
+public class TaskSubmissionConfiguration {
+
+    /**
+     * 发件箱中继每批发送的任务消息数，每批发送完后等待发布确认
+     */
+    private int publishBatchSize = 200;
+
+    /**
+     * 等待一批消息发布确认的超时时间(毫秒)
+     */
+    private long confirmTimeoutMillis = 10000;
+
+    /**
+     * 发件箱中继的轮询间隔(毫秒)，本节点提交任务后会立即触发一次发送，轮询用于兜底和接管其他节点遗留的消息
+     */
+    private long relayPollIntervalMillis = 1000;
+
+    /**
+     * 中继认领一批消息的租约时间(秒)，租约内其他中继不会重复发送；发送失败的消息在租约到期后重试
+     */
+    private long relayClaimLeaseSeconds = 30;
+
+    /**
+     * 已发送消息在发件箱中的保留时间(小时)
+     */
+    private long sentRetentionHours = 24;
+}
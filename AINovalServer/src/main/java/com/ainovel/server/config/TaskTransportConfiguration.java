@@ -0,0 +1,37 @@
+package com.ainovel.server.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import lombok.Data;
+
+/**
+ * 任务传输配置
+ * rabbit：任务消息经RabbitMQ分发，适用于多节点部署；
+ * local：任务在本进程内分发执行，不依赖RabbitMQ，仅适用于单节点部署和测试
+ */
+@Configuration
+@ConfigurationProperties(prefix = "task.transport")
+@Data
+public class TaskTransportConfiguration {
+
+    public static final String MODE_RABBIT = "rabbit";
+    public static final String MODE_LOCAL = "local";
+
+    /**
+     * 传输方式：rabbit 或 local
+     */
+    private String mode = MODE_RABBIT;
+
+    /**
+     * 本地模式下同时执行的任务数上限
+     */
+    private int localConcurrency = 16;
+
+    /**
+     * 是否为本地传输模式
+     */
+    public boolean isLocalMode() {
+        return MODE_LOCAL.equalsIgnoreCase(mode);
+    }
+}
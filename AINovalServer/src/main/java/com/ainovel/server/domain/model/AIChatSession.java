@@ -60,4 +60,10 @@ public class AIChatSession {
 
     // 消息总数
     private int messageCount;
+
+    // 较早消息的滚动摘要
+    private String memorySummary;
+
+    // 已并入摘要的最后一条消息的时间，此后的消息以原始形式携带
+    private LocalDateTime memorySummarizedUntil;
 }
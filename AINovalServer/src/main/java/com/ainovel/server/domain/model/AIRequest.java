@@ -14,7 +14,7 @@ import lombok.NoArgsConstructor;
  * AI请求模型
  */
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class AIRequest {
@@ -106,6 +106,31 @@ public class AIRequest {
          */
         private String content;
 
+        /**
+         * 是否属于可缓存的稳定前缀（系统提示、小说设定、前文摘要等跨请求不变的内容）
+         */
+        private Boolean cacheable;
+
+        public Message(String role, String content) {
+            this.role = role;
+            this.content = content;
+        }
+
+        /**
+         * 创建属于稳定前缀的消息
+         *
+         * @param role 角色
+         * @param content 内容
+         * @return 消息
+         */
+        public static Message cacheable(String role, String content) {
+            return new Message(role, content, true);
+        }
+
+        public boolean isCacheable() {
+            return Boolean.TRUE.equals(cacheable);
+        }
+
         // 手动添加getter和setter方法，以防Lombok注解未正确处理
         public String getRole() {
             return role;
@@ -124,6 +149,68 @@ public class AIRequest {
         }
     }
 
+    /**
+     * 是否声明了可缓存的稳定前缀
+     *
+     * @return 存在标记为可缓存的消息时返回true
+     */
+    public boolean hasCacheablePrefix() {
+        if (messages == null) {
+            return false;
+        }
+        for (Message message : messages) {
+            if (message.isCacheable()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 按前缀缓存布局排列消息
+     *
+     * 可缓存消息保持相对顺序排在最前，构成跨请求一致的稳定前缀；其余消息按原顺序排在其后作为易变后缀。
+     * 后缀中的系统消息（如检索到的上下文）降级为用户消息，避免插入到前缀中间导致缓存失效。
+     * 未声明可缓存前缀时原样返回。
+     *
+     * @return 排列后的消息列表
+     */
+    public List<Message> prefixCacheLayout() {
+        if (!hasCacheablePrefix()) {
+            return messages;
+        }
+        List<Message> prefix = new ArrayList<>(messages.size());
+        List<Message> suffix = new ArrayList<>();
+        for (Message message : messages) {
+            if (message.isCacheable()) {
+                prefix.add(message);
+            } else if ("system".equalsIgnoreCase(message.getRole())) {
+                suffix.add(new Message("user", message.getContent()));
+            } else {
+                suffix.add(message);
+            }
+        }
+        prefix.addAll(suffix);
+        return prefix;
+    }
+
+    /**
+     * 稳定前缀的消息数（基于 {@link #prefixCacheLayout()} 的排列）
+     *
+     * @return 前缀消息数
+     */
+    public int cacheablePrefixSize() {
+        int size = 0;
+        if (messages != null) {
+            for (Message message : messages) {
+                if (message.isCacheable()) {
+                    size++;
+                }
+            }
+        }
+        return size;
+    }
+
     // 手动添加getter和setter方法，以防Lombok注解未正确处理
     public String getUserId() {
         return userId;
@@ -95,6 +95,25 @@ public class AIResponse {
         @Builder.Default
         private Integer completionTokens = 0;
 
+        /**
+         * 命中提供商提示缓存的提示令牌数（已包含在提示令牌数中）
+         */
+        @Builder.Default
+        private Integer cachedPromptTokens = 0;
+
+        /**
+         * 写入提供商提示缓存的提示令牌数
+         */
+        @Builder.Default
+        private Integer cacheCreationTokens = 0;
+
+        public TokenUsage(Integer promptTokens, Integer completionTokens) {
+            this.promptTokens = promptTokens;
+            this.completionTokens = completionTokens;
+            this.cachedPromptTokens = 0;
+            this.cacheCreationTokens = 0;
+        }
+
         /**
          * 总令牌数
          */
@@ -0,0 +1,54 @@
+package com.ainovel.server.domain.model;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 流式生成检查点
+ * 按顺序保存已生成的事件（JSON），第 n 个元素对应序号 n+1 的事件，用于客户端断线后续传
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "generation_checkpoints")
+public class GenerationCheckpoint {
+
+    public static final String STATUS_RUNNING = "RUNNING";
+    public static final String STATUS_COMPLETED = "COMPLETED";
+    public static final String STATUS_FAILED = "FAILED";
+
+    // 生成ID
+    @Id
+    private String id;
+
+    // 生成所属范围（如用户+会话），续传时必须一致
+    private String scope;
+
+    private String status;
+
+    // 已持久化的最后一个事件序号
+    private long lastSeq;
+
+    // 已生成的事件（JSON）
+    private List<String> chunks;
+
+    private String error;
+
+    private LocalDateTime createdAt;
+
+    private LocalDateTime updatedAt;
+
+    // 过期时间，由TTL索引清理
+    @Indexed(expireAfter = "0s")
+    private LocalDateTime expireAt;
+}
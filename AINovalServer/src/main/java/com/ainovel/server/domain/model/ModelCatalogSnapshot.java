@@ -0,0 +1,40 @@
+package com.ainovel.server.domain.model;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 模型目录快照
+ * 按(提供商, 端点, API密钥指纹)保存上游返回的模型列表，不保存密钥本身
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "model_catalog_snapshots")
+public class ModelCatalogSnapshot {
+
+    // 缓存键：提供商|端点|密钥指纹
+    @Id
+    private String id;
+
+    private String provider;
+
+    private String apiEndpoint;
+
+    // API密钥的SHA-256指纹（截断）
+    private String keyFingerprint;
+
+    private List<ModelInfo> models;
+
+    // 从上游获取的时间
+    private LocalDateTime fetchedAt;
+}
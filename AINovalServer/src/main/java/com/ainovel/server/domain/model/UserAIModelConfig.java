@@ -18,7 +18,7 @@ import lombok.NoArgsConstructor;
  * 用户自定义的AI模型配置
  */
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 @Document(collection = "user_ai_model_configs")
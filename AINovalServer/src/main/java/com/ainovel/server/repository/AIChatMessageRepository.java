@@ -1,5 +1,7 @@
 package com.ainovel.server.repository;
 
+import java.time.LocalDateTime;
+
 import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
 
 import com.ainovel.server.domain.model.AIChatMessage;
@@ -11,6 +13,17 @@ public interface AIChatMessageRepository extends ReactiveMongoRepository<AIChatM
 
     Flux<AIChatMessage> findBySessionIdOrderByCreatedAtDesc(String sessionId, int limit);
 
+    /**
+     * 按时间升序读取会话中早于指定时间的消息
+     */
+    Flux<AIChatMessage> findBySessionIdAndCreatedAtBeforeOrderByCreatedAtAsc(String sessionId, LocalDateTime before);
+
+    /**
+     * 按时间升序读取会话中介于两个时间之间（不含两端）的消息
+     */
+    Flux<AIChatMessage> findBySessionIdAndCreatedAtBetweenOrderByCreatedAtAsc(String sessionId, LocalDateTime after,
+            LocalDateTime before);
+
     Mono<AIChatMessage> findByIdAndUserId(String id, String userId);
 
     Mono<Void> deleteByIdAndUserId(String id, String userId);
@@ -4,11 +4,12 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
 
 import com.ainovel.server.domain.model.AIChatSession;
+import com.ainovel.server.repository.custom.CustomAIChatSessionRepository;
 
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-public interface AIChatSessionRepository extends ReactiveMongoRepository<AIChatSession, String> {
+public interface AIChatSessionRepository extends ReactiveMongoRepository<AIChatSession, String>, CustomAIChatSessionRepository {
 
     Mono<AIChatSession> findByUserIdAndSessionId(String userId, String sessionId);
 
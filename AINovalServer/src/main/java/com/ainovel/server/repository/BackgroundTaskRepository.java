@@ -1,5 +1,7 @@
 package com.ainovel.server.repository;
 
+import java.util.Collection;
+
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
 import org.springframework.stereotype.Repository;
@@ -48,6 +50,15 @@ public interface BackgroundTaskRepository extends ReactiveMongoRepository<Backgr
      */
     Flux<BackgroundTask> findByUserIdAndStatus(String userId, TaskStatus status, Pageable pageable);
     
+    /**
+     * 查找指定用户处于任一指定状态的任务，支持分页
+     * @param userId 用户ID
+     * @param statuses 任务状态集合
+     * @param pageable 分页参数
+     * @return 符合条件的任务流
+     */
+    Flux<BackgroundTask> findByUserIdAndStatusIn(String userId, Collection<TaskStatus> statuses, Pageable pageable);
+    
     /**
      * 查找指定类型的任务，支持分页
      * @param taskType 任务类型
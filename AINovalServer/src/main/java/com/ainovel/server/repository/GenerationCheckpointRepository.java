@@ -0,0 +1,10 @@
+package com.ainovel.server.repository;
+
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+
+import com.ainovel.server.domain.model.GenerationCheckpoint;
+import com.ainovel.server.repository.custom.CustomGenerationCheckpointRepository;
+
+public interface GenerationCheckpointRepository extends ReactiveMongoRepository<GenerationCheckpoint, String>,
+        CustomGenerationCheckpointRepository {
+}
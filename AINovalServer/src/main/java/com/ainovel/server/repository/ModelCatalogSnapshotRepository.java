@@ -0,0 +1,8 @@
+package com.ainovel.server.repository;
+
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+
+import com.ainovel.server.domain.model.ModelCatalogSnapshot;
+
+public interface ModelCatalogSnapshotRepository extends ReactiveMongoRepository<ModelCatalogSnapshot, String> {
+}
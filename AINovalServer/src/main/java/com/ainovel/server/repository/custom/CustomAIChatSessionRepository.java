@@ -0,0 +1,31 @@
+package com.ainovel.server.repository.custom;
+
+import java.time.LocalDateTime;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * 自定义AI聊天会话仓库接口
+ * 定义基于原子更新操作的方法，避免读取-修改-整体保存造成的并发覆盖
+ */
+public interface CustomAIChatSessionRepository {
+
+    /**
+     * 原子地记录新增消息：$inc messageCount，$set lastMessageAt/updatedAt
+     * @param sessionId 会话ID
+     * @param messageCount 新增消息数
+     * @param messageAt 最后一条消息的时间
+     * @return 是否更新到会话
+     */
+    Mono<Boolean> recordMessages(String sessionId, int messageCount, LocalDateTime messageAt);
+
+    /**
+     * 更新滚动摘要，仅当摘要水位仍为 expectedUntil 时生效，避免并发的摘要任务相互覆盖
+     * @param sessionId 会话ID
+     * @param expectedUntil 读取时的摘要水位，可为null
+     * @param summary 新摘要
+     * @param summarizedUntil 新的摘要水位
+     * @return 是否更新成功
+     */
+    Mono<Boolean> updateMemorySummary(String sessionId, LocalDateTime expectedUntil, String summary, LocalDateTime summarizedUntil);
+}
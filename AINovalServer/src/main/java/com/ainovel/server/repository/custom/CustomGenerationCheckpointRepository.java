@@ -0,0 +1,27 @@
+package com.ainovel.server.repository.custom;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * 流式生成检查点的自定义仓库接口
+ */
+public interface CustomGenerationCheckpointRepository {
+
+    /**
+     * 追加一批事件；只有已持久化的最后序号等于 expectedLastSeq 时才会写入，避免重复追加
+     *
+     * @param generationId 生成ID
+     * @param scope 生成所属范围，仅在首次写入时设置
+     * @param expectedLastSeq 期望的已持久化最后序号
+     * @param chunks 按序号排列的事件JSON
+     * @param status 写入后的状态
+     * @param error 失败原因，可为null
+     * @param expireAt 过期时间
+     * @return 是否写入成功
+     */
+    Mono<Boolean> appendChunks(String generationId, String scope, long expectedLastSeq, List<String> chunks,
+            String status, String error, LocalDateTime expireAt);
+}
@@ -0,0 +1,53 @@
+package com.ainovel.server.repository.impl;
+
+import java.time.LocalDateTime;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import com.ainovel.server.domain.model.AIChatSession;
+import com.ainovel.server.repository.custom.CustomAIChatSessionRepository;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * AIChatSessionRepository接口的自定义实现
+ * 会话计数与时间戳通过原子更新维护
+ */
+@Component
+public class AIChatSessionRepositoryImpl implements CustomAIChatSessionRepository {
+
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    @Autowired
+    public AIChatSessionRepositoryImpl(ReactiveMongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public Mono<Boolean> recordMessages(String sessionId, int messageCount, LocalDateTime messageAt) {
+        Query query = new Query(Criteria.where("sessionId").is(sessionId));
+        Update update = new Update()
+                .inc("messageCount", messageCount)
+                .set("lastMessageAt", messageAt)
+                .set("updatedAt", messageAt);
+        return mongoTemplate.updateFirst(query, update, AIChatSession.class)
+                .map(result -> result.getMatchedCount() > 0);
+    }
+
+    @Override
+    public Mono<Boolean> updateMemorySummary(String sessionId, LocalDateTime expectedUntil, String summary,
+            LocalDateTime summarizedUntil) {
+        Query query = new Query(Criteria.where("sessionId").is(sessionId)
+                .and("memorySummarizedUntil").is(expectedUntil));
+        Update update = new Update()
+                .set("memorySummary", summary)
+                .set("memorySummarizedUntil", summarizedUntil);
+        return mongoTemplate.updateFirst(query, update, AIChatSession.class)
+                .map(result -> result.getModifiedCount() > 0);
+    }
+}
@@ -0,0 +1,54 @@
+package com.ainovel.server.repository.impl;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import com.ainovel.server.domain.model.GenerationCheckpoint;
+import com.ainovel.server.repository.custom.CustomGenerationCheckpointRepository;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * GenerationCheckpointRepository接口的自定义实现
+ * 事件以 $push 追加，并以已持久化的最后序号作为条件保证只追加一次
+ */
+@Component
+public class GenerationCheckpointRepositoryImpl implements CustomGenerationCheckpointRepository {
+
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    @Autowired
+    public GenerationCheckpointRepositoryImpl(ReactiveMongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public Mono<Boolean> appendChunks(String generationId, String scope, long expectedLastSeq, List<String> chunks,
+            String status, String error, LocalDateTime expireAt) {
+        LocalDateTime now = LocalDateTime.now();
+        Query query = new Query(Criteria.where("_id").is(generationId).and("lastSeq").is(expectedLastSeq));
+        Update update = new Update()
+                .push("chunks").each(chunks.toArray())
+                .set("lastSeq", expectedLastSeq + chunks.size())
+                .set("status", status)
+                .set("updatedAt", now)
+                .set("expireAt", expireAt)
+                .setOnInsert("scope", scope)
+                .setOnInsert("createdAt", now);
+        if (error != null) {
+            update.set("error", error);
+        }
+        // 首次写入时文档不存在，按条件upsert创建；已存在但序号不符时upsert会因主键冲突失败，视为未写入
+        return mongoTemplate.upsert(query, update, GenerationCheckpoint.class)
+                .map(result -> result.getModifiedCount() > 0 || result.getUpsertedId() != null)
+                .onErrorReturn(DuplicateKeyException.class, false);
+    }
+}
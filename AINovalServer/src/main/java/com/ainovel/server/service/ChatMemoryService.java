@@ -0,0 +1,45 @@
+package com.ainovel.server.service;
+
+import java.util.List;
+
+import com.ainovel.server.domain.model.AIChatMessage;
+import com.ainovel.server.domain.model.AIChatSession;
+import com.ainovel.server.domain.model.AIRequest;
+import com.ainovel.server.domain.model.UserAIModelConfig;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * 聊天会话记忆服务
+ * 较早的对话折叠为会话上的滚动摘要，每轮只携带摘要与令牌预算内的最近原始消息
+ */
+public interface ChatMemoryService {
+
+    /**
+     * 每轮读取的最近原始消息数上限
+     *
+     * @return 消息数
+     */
+    int getHistoryFetchLimit();
+
+    /**
+     * 构建本轮对话的上下文消息：滚动摘要（系统消息）+ 预算内的最近原始消息，均作为可缓存的稳定前缀
+     *
+     * @param session 会话
+     * @param recentMessages 按时间升序排列的最近原始消息
+     * @return 上下文消息
+     */
+    List<AIRequest.Message> buildContext(AIChatSession session, List<AIChatMessage> recentMessages);
+
+    /**
+     * 未摘要的原始消息超过令牌阈值或占满读取范围时，将水位之后除最近几条外的全部消息并入滚动摘要
+     *
+     * @param session 会话
+     * @param recentMessages 按时间升序排列的最近原始消息
+     * @param config 用于生成摘要的模型配置
+     * @param apiKey 解密后的API Key
+     * @return 是否更新了摘要
+     */
+    Mono<Boolean> updateSummaryIfNeeded(AIChatSession session, List<AIChatMessage> recentMessages,
+            UserAIModelConfig config, String apiKey);
+}
@@ -61,6 +61,15 @@ public interface UserAIModelConfigService {
      */
     Flux<UserAIModelConfig> listConfigurations(String userId);
 
+    /**
+     * 按模型名称查找用户的配置（不要求已验证）
+     *
+     * @param userId 用户ID
+     * @param modelName 模型名称
+     * @return 第一个匹配的配置，不存在时返回 empty Mono
+     */
+    Mono<UserAIModelConfig> findConfigurationByModelName(String userId, String modelName);
+
     /**
      * 列出用户所有已验证的模型配置
      *
@@ -3,6 +3,9 @@ package com.ainovel.server.service.ai;
 import com.ainovel.server.domain.model.AIRequest;
 import com.ainovel.server.domain.model.AIResponse;
 import com.ainovel.server.domain.model.ModelInfo;
+import com.ainovel.server.service.ai.metrics.PromptCacheMetrics;
+import com.ainovel.server.service.ai.resilience.UpstreamCallGuard;
+import com.ainovel.server.service.ai.stream.StreamHeartbeatScheduler;
 
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -69,6 +72,36 @@ public interface AIModelProvider {
      */
     boolean isProxyEnabled();
 
+    /**
+     * 设置上游调用保护（熔断与自适应并发限制），由工厂在创建实例时注入
+     * 未实现保护的提供商可忽略
+     *
+     * @param upstreamGuard 上游调用保护
+     */
+    default void setUpstreamGuard(UpstreamCallGuard upstreamGuard) {
+        // 默认不做保护
+    }
+
+    /**
+     * 设置提示缓存指标记录器，由工厂在创建实例时注入
+     * 请求通过 {@link AIRequest.Message#isCacheable()} 声明稳定前缀，支持显式缓存标记的提供商
+     * 会在前缀末尾设置缓存断点，其余提供商依赖上游的自动前缀缓存，仅保证前缀排列稳定
+     *
+     * @param promptCacheMetrics 提示缓存指标
+     */
+    default void setPromptCacheMetrics(PromptCacheMetrics promptCacheMetrics) {
+        // 默认不记录
+    }
+
+    /**
+     * 设置流式心跳调度器，由工厂在创建实例时注入，所有流共用一个心跳时间轮
+     *
+     * @param heartbeatScheduler 心跳调度器
+     */
+    default void setStreamHeartbeatScheduler(StreamHeartbeatScheduler heartbeatScheduler) {
+        // 默认不发送心跳
+    }
+
     /**
      * 获取提供商支持的模型列表
      * 不需要API密钥的提供商应该实现此方法以返回可用模型列表
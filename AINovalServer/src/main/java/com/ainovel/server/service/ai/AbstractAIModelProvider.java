@@ -6,8 +6,12 @@ import java.util.UUID;
 import com.ainovel.server.domain.model.AIRequest;
 import com.ainovel.server.domain.model.AIResponse;
 import com.ainovel.server.domain.model.AIResponse.TokenUsage;
+import com.ainovel.server.service.ai.metrics.PromptCacheMetrics;
+import com.ainovel.server.service.ai.stream.StreamHeartbeatScheduler;
+import com.ainovel.server.service.ai.resilience.UpstreamCallGuard;
 
 import lombok.Getter;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 /**
@@ -35,6 +39,15 @@ public abstract class AbstractAIModelProvider implements AIModelProvider {
     @Getter
     protected boolean proxyEnabled;
     
+    // 上游调用保护（熔断与自适应并发限制）
+    protected UpstreamCallGuard upstreamGuard = UpstreamCallGuard.NONE;
+    
+    // 提示缓存指标
+    protected PromptCacheMetrics promptCacheMetrics = PromptCacheMetrics.NONE;
+
+    // 流式心跳（所有流共用一个时间轮）
+    protected StreamHeartbeatScheduler heartbeatScheduler = StreamHeartbeatScheduler.NONE;
+    
     /**
      * 构造函数
      * @param providerName 提供商名称
@@ -77,6 +90,39 @@ public abstract class AbstractAIModelProvider implements AIModelProvider {
         return proxyEnabled;
     }
     
+    @Override
+    public void setUpstreamGuard(UpstreamCallGuard upstreamGuard) {
+        this.upstreamGuard = upstreamGuard != null ? upstreamGuard : UpstreamCallGuard.NONE;
+    }
+    
+    @Override
+    public void setPromptCacheMetrics(PromptCacheMetrics promptCacheMetrics) {
+        this.promptCacheMetrics = promptCacheMetrics != null ? promptCacheMetrics : PromptCacheMetrics.NONE;
+    }
+
+    @Override
+    public void setStreamHeartbeatScheduler(StreamHeartbeatScheduler heartbeatScheduler) {
+        this.heartbeatScheduler = heartbeatScheduler != null ? heartbeatScheduler : StreamHeartbeatScheduler.NONE;
+    }
+    
+    /**
+     * 在熔断与并发限制保护下执行上游调用，调用需在错误被转换为响应之前包裹，以便感知429/5xx/超时
+     * @param call 上游调用
+     * @return 调用结果
+     */
+    protected <T> Mono<T> withUpstreamGuard(Mono<T> call) {
+        return upstreamGuard.guard(call);
+    }
+    
+    /**
+     * 在熔断与并发限制保护下执行上游流式调用
+     * @param call 上游流式调用
+     * @return 流式结果
+     */
+    protected <T> Flux<T> withUpstreamGuard(Flux<T> call) {
+        return upstreamGuard.guardStream(call);
+    }
+    
     /**
      * 创建基础AI响应
      * @param content 内容
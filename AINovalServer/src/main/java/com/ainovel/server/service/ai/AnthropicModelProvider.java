@@ -7,6 +7,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.http.MediaType;
 import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.reactive.function.client.WebClient;
@@ -14,6 +15,7 @@ import org.springframework.web.reactive.function.client.WebClient;
 import com.ainovel.server.domain.model.AIRequest;
 import com.ainovel.server.domain.model.AIResponse;
 import com.ainovel.server.domain.model.AIResponse.TokenUsage;
+import com.ainovel.server.service.ai.stream.SseDeltaDecoder;
 
 import io.netty.handler.ssl.SslContext;
 import io.netty.handler.ssl.SslContextBuilder;
@@ -122,11 +124,11 @@ public class AnthropicModelProvider extends AbstractAIModelProvider {
         
         Map<String, Object> requestBody = createRequestBody(request, false);
         
-        return webClient.post()
+        return withUpstreamGuard(webClient.post()
                 .uri("/messages")
                 .bodyValue(requestBody)
                 .retrieve()
-                .bodyToMono(Map.class)
+                .bodyToMono(Map.class))
                 .map(response -> {
                     String content = extractContentFromResponse(response);
                     AIResponse aiResponse = createBaseResponse(content, request);
@@ -134,10 +136,16 @@ public class AnthropicModelProvider extends AbstractAIModelProvider {
                     // 设置令牌使用情况
                     Map<String, Object> usage = (Map<String, Object>) response.get("usage");
                     if (usage != null) {
+                        // input_tokens不含缓存部分，提示令牌数统一为包含缓存命中与写入的总数
+                        int cacheRead = intValue(usage.get("cache_read_input_tokens"));
+                        int cacheWrite = intValue(usage.get("cache_creation_input_tokens"));
                         TokenUsage tokenUsage = new TokenUsage();
-                        tokenUsage.setPromptTokens(((Number) usage.get("input_tokens")).intValue());
-                        tokenUsage.setCompletionTokens(((Number) usage.get("output_tokens")).intValue());
+                        tokenUsage.setPromptTokens(intValue(usage.get("input_tokens")) + cacheRead + cacheWrite);
+                        tokenUsage.setCompletionTokens(intValue(usage.get("output_tokens")));
+                        tokenUsage.setCachedPromptTokens(cacheRead);
+                        tokenUsage.setCacheCreationTokens(cacheWrite);
                         aiResponse.setTokenUsage(tokenUsage);
+                        promptCacheMetrics.record(providerName, modelName, tokenUsage);
                     }
                     
                     // 设置完成原因
@@ -158,13 +166,13 @@ public class AnthropicModelProvider extends AbstractAIModelProvider {
         
         Map<String, Object> requestBody = createRequestBody(request, true);
         
-        return webClient.post()
+        return withUpstreamGuard(webClient.post()
                 .uri("/messages")
                 .bodyValue(requestBody)
                 .accept(MediaType.TEXT_EVENT_STREAM)
                 .retrieve()
-                .bodyToFlux(Map.class)
-                .map(this::extractContentFromStreamResponse)
+                .bodyToFlux(DataBuffer.class)
+                .transform(SseDeltaDecoder.ANTHROPIC_MESSAGES::decode))
                 .onErrorResume(e -> Flux.just("API调用失败: " + e.getMessage()))
                 .retryWhen(Retry.backoff(3, Duration.ofSeconds(1))
                         .filter(e -> !(e instanceof IllegalArgumentException)));
@@ -245,27 +253,68 @@ public class AnthropicModelProvider extends AbstractAIModelProvider {
             requestBody.put("max_tokens", request.getMaxTokens());
         }
         
+        List<AIRequest.Message> history = request.prefixCacheLayout();
+        int prefixSize = request.cacheablePrefixSize();
+        int start = 0;
+        
         // 设置系统提示
-        if (request.getPrompt() != null && !request.getPrompt().isEmpty()) {
+        if (prefixSize > 0) {
+            // 系统提示与前缀中的系统消息合并为一个带缓存断点的块
+            StringBuilder system = new StringBuilder();
+            if (request.getPrompt() != null && !request.getPrompt().isEmpty()) {
+                system.append(request.getPrompt());
+            }
+            while (start < prefixSize && "system".equalsIgnoreCase(history.get(start).getRole())) {
+                if (system.length() > 0) {
+                    system.append("\n\n");
+                }
+                system.append(history.get(start++).getContent());
+            }
+            if (system.length() > 0) {
+                requestBody.put("system", List.of(cachedTextBlock(system.toString())));
+            }
+        } else if (request.getPrompt() != null && !request.getPrompt().isEmpty()) {
             requestBody.put("system", request.getPrompt());
         }
         
         // 设置消息
-        List<Map<String, String>> messages = new ArrayList<>();
+        List<Map<String, Object>> messages = new ArrayList<>();
         
-        // 添加用户消息
-        request.getMessages().forEach(message -> {
-            Map<String, String> messageMap = new HashMap<>();
+        // 添加用户消息，前缀中的最后一条消息设置缓存断点
+        for (int i = start; i < history.size(); i++) {
+            AIRequest.Message message = history.get(i);
+            Map<String, Object> messageMap = new HashMap<>();
             messageMap.put("role", convertRole(message.getRole()));
-            messageMap.put("content", message.getContent());
+            if (i == prefixSize - 1) {
+                messageMap.put("content", List.of(cachedTextBlock(message.getContent())));
+            } else {
+                messageMap.put("content", message.getContent());
+            }
             messages.add(messageMap);
-        });
+        }
         
         requestBody.put("messages", messages);
         
         return requestBody;
     }
     
+    /**
+     * 创建带临时缓存断点的文本块，缓存该块及其之前的全部内容
+     * @param text 文本
+     * @return 内容块
+     */
+    private Map<String, Object> cachedTextBlock(String text) {
+        Map<String, Object> block = new HashMap<>();
+        block.put("type", "text");
+        block.put("text", text);
+        block.put("cache_control", Map.of("type", "ephemeral"));
+        return block;
+    }
+    
+    private static int intValue(Object value) {
+        return value instanceof Number number ? number.intValue() : 0;
+    }
+    
     /**
      * 转换角色名称（OpenAI格式转Anthropic格式）
      * @param role OpenAI角色名称
@@ -291,18 +340,6 @@ public class AnthropicModelProvider extends AbstractAIModelProvider {
         return "";
     }
     
-    /**
-     * 从流式响应中提取内容
-     * @param response 响应
-     * @return 内容
-     */
-    private String extractContentFromStreamResponse(Map<String, Object> response) {
-        if (response.containsKey("delta") && ((Map<String, Object>) response.get("delta")).containsKey("text")) {
-            return (String) ((Map<String, Object>) response.get("delta")).get("text");
-        }
-        return "";
-    }
-    
     /**
      * 估算文本的令牌数
      * @param text 文本
@@ -6,6 +6,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.http.MediaType;
 import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.reactive.function.client.WebClient;
@@ -13,6 +14,7 @@ import org.springframework.web.reactive.function.client.WebClient;
 import com.ainovel.server.domain.model.AIRequest;
 import com.ainovel.server.domain.model.AIRequest.Message;
 import com.ainovel.server.domain.model.AIResponse;
+import com.ainovel.server.service.ai.stream.SseDeltaDecoder;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
@@ -171,35 +173,12 @@ public class GeminiModelProvider extends AbstractAIModelProvider {
             
             // 调用流式API
             return webClient.post()
-                    .uri("/{model}:streamGenerateContent?key={apiKey}", modelName, apiKey)
+                    .uri("/{model}:streamGenerateContent?alt=sse&key={apiKey}", modelName, apiKey)
                     .contentType(MediaType.APPLICATION_JSON)
                     .bodyValue(requestBody)
                     .retrieve()
-                    .bodyToFlux(String.class)
-                    .map(chunk -> {
-                        try {
-                            // 解析流式响应
-                            if (chunk.startsWith("data: ")) {
-                                chunk = chunk.substring(6);
-                            }
-                            if (chunk.equals("[DONE]")) {
-                                return "";
-                            }
-                            
-                            GeminiResponse geminiResponse = objectMapper.readValue(chunk, GeminiResponse.class);
-                            if (geminiResponse.getCandidates() != null && !geminiResponse.getCandidates().isEmpty()) {
-                                GeminiResponse.GeminiCandidate candidate = geminiResponse.getCandidates().get(0);
-                                if (candidate.getContent() != null && candidate.getContent().getParts() != null && 
-                                    !candidate.getContent().getParts().isEmpty()) {
-                                    return candidate.getContent().getParts().get(0).getText();
-                                }
-                            }
-                            return "";
-                        } catch (Exception e) {
-                            log.error("解析Gemini流式响应失败", e);
-                            return "错误：" + e.getMessage();
-                        }
-                    })
+                    .bodyToFlux(DataBuffer.class)
+                    .transform(SseDeltaDecoder.GEMINI::decode)
                     .onErrorResume(e -> {
                         log.error("Gemini流式API调用失败", e);
                         return Flux.just("错误：" + e.getMessage());
@@ -360,8 +339,8 @@ public class GeminiModelProvider extends AbstractAIModelProvider {
             contents.add(emptyAssistantMessage);
         }
         
-        // 添加对话历史
-        for (Message message : request.getMessages()) {
+        // 添加对话历史（声明了稳定前缀时按前缀缓存布局排列，便于上游隐式缓存命中）
+        for (Message message : request.prefixCacheLayout()) {
             Map<String, Object> geminiMessage = new HashMap<>();
             List<Map<String, Object>> parts = new ArrayList<>();
             Map<String, Object> part = new HashMap<>();
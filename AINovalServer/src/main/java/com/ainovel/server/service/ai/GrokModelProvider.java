@@ -9,6 +9,7 @@ import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 
+import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.http.MediaType;
 import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.reactive.function.client.WebClient;
@@ -36,6 +37,7 @@ import reactor.netty.transport.ProxyProvider;
 import reactor.util.retry.Retry;
 
 import com.ainovel.server.config.ProxyConfig;
+import com.ainovel.server.service.ai.stream.SseDeltaDecoder;
 
 /**
  * X.AI的Grok模型提供商
@@ -192,13 +194,13 @@ public class GrokModelProvider extends AbstractAIModelProvider {
             log.info("开始X.AI非流式请求, 模型: {}, 请求体: {}", modelName, requestBody);
             
             // 调用API
-            return webClient.post()
+            return withUpstreamGuard(webClient.post()
                     .uri("/chat/completions")
                     .contentType(MediaType.APPLICATION_JSON)
                     .header("Authorization", "Bearer " + apiKey)
                     .bodyValue(requestBody)
                     .retrieve()
-                    .bodyToMono(String.class)
+                    .bodyToMono(String.class))
                     .map(responseJson -> {
                         try {
                             log.debug("X.AI API响应: {}", responseJson);
@@ -243,58 +245,25 @@ public class GrokModelProvider extends AbstractAIModelProvider {
             log.info("开始X.AI流式请求, 模型: {}, 请求体: {}", modelName, requestBody);
             
             // 调用流式API
-            webClient.post()
+            withUpstreamGuard(webClient.post()
                     .uri("/chat/completions")
                     .contentType(MediaType.APPLICATION_JSON)
                     .header("Authorization", "Bearer " + apiKey)
                     .bodyValue(requestBody)
                     .accept(MediaType.TEXT_EVENT_STREAM)
                     .retrieve()
-                    .bodyToFlux(String.class)
+                    .bodyToFlux(DataBuffer.class)
+                    .transform(SseDeltaDecoder.OPENAI_CHAT::decode))
                     .subscribe(
-                        chunk -> {
-                            try {
-                                // 记录首个响应到达时间
-                                if (firstChunkTime.get() == 0) {
-                                    firstChunkTime.set(System.currentTimeMillis());
-                                    hasReceivedContent.set(true);
-                                    log.info("Grok: 收到首个响应, 耗时: {}ms, 模型: {}, 内容: {}",
-                                            firstChunkTime.get() - requestStartTime, modelName, chunk);
-                                } else {
-                                    //log.debug("Grok: 收到流式响应块: {}", chunk);
-                                }
-                                
-                                // 解析流式响应
-                                if (chunk.startsWith("data: ")) {
-                                    chunk = chunk.substring(6);
-                                }
-                                
-                                if ("[DONE]".equals(chunk) || chunk.isEmpty()) {
-                                    log.debug("收到流式结束标志 [DONE] 或空内容");
-                                    return;
-                                }
-                                
-                                GrokResponse grokResponse = objectMapper.readValue(chunk, GrokResponse.class);
-                                if (grokResponse.getChoices() != null && !grokResponse.getChoices().isEmpty()) {
-                                    GrokResponse.Choice choice = grokResponse.getChoices().get(0);
-                                    if (choice.getDelta() != null) {
-                                        String content = choice.getDelta().getContent();
-                                        if (content != null) {
-                                            //log.debug("解析到内容片段: {}", content);
-                                            sink.tryEmitNext(content);
-                                        } else {
-                                            //log.debug("解析到空内容片段, delta: {}", choice.getDelta());
-                                        }
-                                    } else {
-                                        log.debug("选择项没有delta字段: {}", choice);
-                                    }
-                                } else {
-                                    log.debug("响应没有choices字段或为空: {}", grokResponse);
-                                }
-                            } catch (Exception e) {
-                                log.error("解析Grok流式响应失败: {}", e.getMessage(), e);
-                                sink.tryEmitNext("错误：" + e.getMessage());
+                        content -> {
+                            // 记录首个响应到达时间
+                            if (firstChunkTime.get() == 0) {
+                                firstChunkTime.set(System.currentTimeMillis());
+                                hasReceivedContent.set(true);
+                                log.info("Grok: 收到首个响应, 耗时: {}ms, 模型: {}, 内容: {}",
+                                        firstChunkTime.get() - requestStartTime, modelName, content);
                             }
+                            sink.tryEmitNext(content);
                         },
                         error -> {
                             log.error("Grok流式API调用失败: {}", getErrorDetails(error));
@@ -307,9 +276,6 @@ public class GrokModelProvider extends AbstractAIModelProvider {
                         }
                     );
             
-            // 创建一个完成信号 - 用于控制心跳流的结束
-            final Sinks.One<Boolean> completionSignal = Sinks.one();
-            
             // 主内容流
             Flux<String> mainStream = sink.asFlux()
                     // 添加延迟重试，避免网络抖动导致请求失败
@@ -326,38 +292,16 @@ public class GrokModelProvider extends AbstractAIModelProvider {
                             })
                     )
                     .timeout(Duration.ofSeconds(300)) // 增加超时时间到300秒，避免大模型生成时间过长导致中断
-                    .doOnComplete(() -> {
-                        // 发出完成信号，通知心跳流停止
-                        completionSignal.tryEmitValue(true);
-                        log.debug("Grok主流完成，已发送停止心跳信号");
-                    })
                     .doOnCancel(() -> {
                         // 取消时如果已经收到内容，不要关闭sink
-                        if (!hasReceivedContent.get()) {
-                            // 只有在没有收到任何内容时才完成sink
-                            log.debug("Grok主流取消，但未收到任何响应，发送停止心跳信号");
-                            completionSignal.tryEmitValue(true);
-                        } else {
+                        if (hasReceivedContent.get()) {
                             log.debug("Grok主流取消，但已收到内容，保持sink开放以接收后续内容");
                         }
                     })
-                    .doOnError(error -> {
-                        // 错误时也发出完成信号
-                        completionSignal.tryEmitValue(true);
-                        log.debug("Grok主流出错，已发送停止心跳信号: {}", error.getMessage());
-                    });
-
-            // 心跳流，当completionSignal发出时停止
-            Flux<String> heartbeatStream = Flux.interval(Duration.ofSeconds(15))
-                    .map(tick -> {
-                        log.debug("发送Grok心跳信号 #{}", tick);
-                        return "heartbeat";
-                    })
-                    // 使用takeUntil操作符，当completionSignal发出值时停止心跳
-                    .takeUntilOther(completionSignal.asMono());
+                    .doOnError(error -> log.debug("Grok主流出错: {}", error.getMessage()));
 
-            // 合并主流和心跳流
-            return Flux.merge(mainStream, heartbeatStream)
+            // 空闲时由共享心跳时间轮插入心跳，主流结束时自动注销
+            return heartbeatScheduler.withHeartbeat(mainStream, () -> "heartbeat")
                     .onErrorResume(e -> {
                         log.error("Grok流式生成内容时出错: {}", e.getMessage(), e);
                         return Flux.just("错误：" + e.getMessage());
@@ -779,9 +723,9 @@ public class GrokModelProvider extends AbstractAIModelProvider {
             messages.add(systemMessage);
         }
         
-        // 添加消息历史
+        // 添加消息历史（声明了稳定前缀时按前缀缓存布局排列，便于上游自动缓存命中）
         if (request.getMessages() != null) {
-            for (AIRequest.Message message : request.getMessages()) {
+            for (AIRequest.Message message : request.prefixCacheLayout()) {
                 Map<String, Object> messageMap = new HashMap<>();
                 messageMap.put("role", message.getRole());
                 messageMap.put("content", message.getContent());
@@ -7,6 +7,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.http.MediaType;
 import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.reactive.function.client.WebClient;
@@ -14,6 +15,7 @@ import org.springframework.web.reactive.function.client.WebClient;
 import com.ainovel.server.domain.model.AIRequest;
 import com.ainovel.server.domain.model.AIResponse;
 import com.ainovel.server.domain.model.AIResponse.TokenUsage;
+import com.ainovel.server.service.ai.stream.SseDeltaDecoder;
 
 import io.netty.handler.ssl.SslContext;
 import io.netty.handler.ssl.SslContextBuilder;
@@ -129,7 +131,13 @@ public class OpenAIModelProvider extends AbstractAIModelProvider {
                                 ((Number) usage.get("prompt_tokens")).intValue(),
                                 ((Number) usage.get("completion_tokens")).intValue()
                         );
+                        // 自动前缀缓存命中的令牌数
+                        Map<String, Object> promptDetails = (Map<String, Object>) usage.get("prompt_tokens_details");
+                        if (promptDetails != null && promptDetails.get("cached_tokens") instanceof Number cached) {
+                            tokenUsage.setCachedPromptTokens(cached.intValue());
+                        }
                         aiResponse.setTokenUsage(tokenUsage);
+                        promptCacheMetrics.record(providerName, modelName, tokenUsage);
                     }
                     
                     // 设置完成原因
@@ -158,8 +166,8 @@ public class OpenAIModelProvider extends AbstractAIModelProvider {
                 .bodyValue(requestBody)
                 .accept(MediaType.TEXT_EVENT_STREAM)
                 .retrieve()
-                .bodyToFlux(Map.class)
-                .map(this::extractContentFromStreamResponse)
+                .bodyToFlux(DataBuffer.class)
+                .transform(SseDeltaDecoder.OPENAI_CHAT::decode)
                 .onErrorResume(e -> Flux.just("API调用失败: " + e.getMessage()))
                 .retryWhen(Retry.backoff(3, Duration.ofSeconds(1))
                         .filter(e -> !(e instanceof IllegalArgumentException)));
@@ -244,8 +252,8 @@ public class OpenAIModelProvider extends AbstractAIModelProvider {
             messages.add(systemMessage);
         }
         
-        // 添加用户消息
-        request.getMessages().forEach(message -> {
+        // 添加用户消息（声明了稳定前缀时按前缀缓存布局排列，便于上游自动缓存命中）
+        request.prefixCacheLayout().forEach(message -> {
             Map<String, String> messageMap = new HashMap<>();
             messageMap.put("role", message.getRole());
             messageMap.put("content", message.getContent());
@@ -273,22 +281,6 @@ public class OpenAIModelProvider extends AbstractAIModelProvider {
         return "";
     }
     
-    /**
-     * 从流式响应中提取内容
-     * @param response 响应
-     * @return 内容
-     */
-    private String extractContentFromStreamResponse(Map<String, Object> response) {
-        List<Map<String, Object>> choices = (List<Map<String, Object>>) response.get("choices");
-        if (choices != null && !choices.isEmpty()) {
-            Map<String, Object> delta = (Map<String, Object>) choices.get(0).get("delta");
-            if (delta != null && delta.containsKey("content")) {
-                return (String) delta.get("content");
-            }
-        }
-        return "";
-    }
-    
     /**
      * 估算文本的令牌数
      * @param text 文本
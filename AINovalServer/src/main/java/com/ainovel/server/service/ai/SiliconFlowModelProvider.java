@@ -6,6 +6,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.http.MediaType;
 import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.reactive.function.client.WebClient;
@@ -13,6 +14,7 @@ import org.springframework.web.reactive.function.client.WebClient;
 import com.ainovel.server.domain.model.AIRequest;
 import com.ainovel.server.domain.model.AIRequest.Message;
 import com.ainovel.server.domain.model.AIResponse;
+import com.ainovel.server.service.ai.stream.SseDeltaDecoder;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -173,30 +175,8 @@ public class SiliconFlowModelProvider extends AbstractAIModelProvider {
                     .header("Authorization", "Bearer " + apiKey)
                     .bodyValue(requestBody)
                     .retrieve()
-                    .bodyToFlux(String.class)
-                    .map(chunk -> {
-                        try {
-                            // 解析流式响应
-                            if (chunk.startsWith("data: ")) {
-                                chunk = chunk.substring(6);
-                            }
-                            if (chunk.equals("[DONE]")) {
-                                return "";
-                            }
-                            
-                            SiliconFlowStreamResponse streamResponse = objectMapper.readValue(chunk, SiliconFlowStreamResponse.class);
-                            if (streamResponse.getChoices() != null && !streamResponse.getChoices().isEmpty()) {
-                                SiliconFlowStreamResponse.Choice choice = streamResponse.getChoices().get(0);
-                                if (choice.getDelta() != null && choice.getDelta().getContent() != null) {
-                                    return choice.getDelta().getContent();
-                                }
-                            }
-                            return "";
-                        } catch (Exception e) {
-                            log.error("解析SiliconFlow流式响应失败", e);
-                            return "错误：" + e.getMessage();
-                        }
-                    })
+                    .bodyToFlux(DataBuffer.class)
+                    .transform(SseDeltaDecoder.OPENAI_CHAT::decode)
                     .onErrorResume(e -> {
                         log.error("SiliconFlow流式API调用失败", e);
                         return Flux.just("错误：" + e.getMessage());
@@ -345,8 +325,8 @@ public class SiliconFlowModelProvider extends AbstractAIModelProvider {
             messages.add(systemMessage);
         }
         
-        // 添加对话历史
-        for (Message message : request.getMessages()) {
+        // 添加对话历史（声明了稳定前缀时按前缀缓存布局排列，便于上游自动缓存命中）
+        for (Message message : request.prefixCacheLayout()) {
             Map<String, Object> siliconFlowMessage = new HashMap<>();
             siliconFlowMessage.put("content", message.getContent());
             
@@ -496,35 +476,4 @@ public class SiliconFlowModelProvider extends AbstractAIModelProvider {
             private int totalTokens;
         }
     }
-    
-    /**
-     * SiliconFlow 流式响应模型
-     */
-    @Data
-    @JsonIgnoreProperties(ignoreUnknown = true)
-    private static class SiliconFlowStreamResponse {
-        private String id;
-        private List<Choice> choices;
-        private long created;
-        private String model;
-        private String object;
-        @JsonProperty("system_fingerprint")
-        private String systemFingerprint;
-        
-        @Data
-        @JsonIgnoreProperties(ignoreUnknown = true)
-        public static class Choice {
-            private Delta delta;
-            @JsonProperty("finish_reason")
-            private String finishReason;
-            private int index;
-        }
-        
-        @Data
-        @JsonIgnoreProperties(ignoreUnknown = true)
-        public static class Delta {
-            private String role;
-            private String content;
-        }
-    }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,258 @@
+package com.ainovel.server.service.ai.catalog;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.ainovel.server.config.ModelCatalogConfiguration;
+import com.ainovel.server.domain.model.ModelCatalogSnapshot;
+import com.ainovel.server.domain.model.ModelInfo;
+import com.ainovel.server.repository.ModelCatalogSnapshotRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+/**
+ * 模型目录缓存
+ *
+ * 按(提供商, 端点, API密钥指纹)缓存上游返回的模型列表：
+ * 新鲜期内直接返回；过期但未超过最长可用时间时先返回旧值，同时在后台刷新；
+ * 同一目录的并发加载合并为一次上游调用。目录同时以快照形式持久化，重启后无需访问上游即可返回。
+ * 完全没有缓存时等待上游，超过冷启动超时则先返回默认模型列表，加载在后台继续完成。
+ */
+@Slf4j
+@Component
+public class ModelCatalogCache {
+
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+
+    private final ModelCatalogConfiguration configuration;
+    private final ModelCatalogSnapshotRepository snapshotRepository;
+    private final MeterRegistry meterRegistry;
+    private final Clock clock;
+    private final Cache<String, Entry> entries;
+    private final Map<String, Sinks.One<List<ModelInfo>>> inflight = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ModelCatalogCache(ModelCatalogConfiguration configuration, ModelCatalogSnapshotRepository snapshotRepository,
+            MeterRegistry meterRegistry) {
+        this(configuration, snapshotRepository, meterRegistry, Clock.systemUTC());
+    }
+
+    ModelCatalogCache(ModelCatalogConfiguration configuration, ModelCatalogSnapshotRepository snapshotRepository,
+            MeterRegistry meterRegistry, Clock clock) {
+        this.configuration = configuration;
+        this.snapshotRepository = snapshotRepository;
+        this.meterRegistry = meterRegistry;
+        this.clock = clock;
+        this.entries = Caffeine.newBuilder()
+                .maximumSize(configuration.getMaxEntries())
+                .build();
+    }
+
+    /**
+     * 获取模型目录
+     *
+     * @param provider 提供商名称
+     * @param apiEndpoint API端点，为空表示默认端点
+     * @param apiKey API密钥，为空表示无密钥列出
+     * @param loader 从上游加载目录，出错时不应回退到默认列表（否则默认列表会被缓存）
+     * @param coldStartFallback 冷启动超时时返回的默认列表，为null时一直等待上游
+     * @return 模型列表；上游出错且没有缓存时返回该错误
+     */
+    public Flux<ModelInfo> get(String provider, String apiEndpoint, String apiKey,
+            Supplier<Flux<ModelInfo>> loader, Supplier<Flux<ModelInfo>> coldStartFallback) {
+        if (!configuration.isEnabled()) {
+            return Flux.defer(loader);
+        }
+        CatalogKey key = new CatalogKey(provider, StringUtils.trimToNull(apiEndpoint), fingerprint(apiKey));
+        return Mono.defer(() -> {
+                    Entry entry = entries.getIfPresent(key.id());
+                    if (entry != null && isUsable(entry)) {
+                        return Mono.just(serve(key, entry, loader, "memory"));
+                    }
+                    return findSnapshot(key)
+                            .map(snapshot -> {
+                                Entry restored = new Entry(snapshot.getModels(), snapshot.getFetchedAt().atZone(ZONE).toInstant());
+                                entries.put(key.id(), restored);
+                                return serve(key, restored, loader, "snapshot");
+                            })
+                            .switchIfEmpty(Mono.defer(() -> coldLoad(key, loader, coldStartFallback)));
+                })
+                .flatMapIterable(models -> models);
+    }
+
+    /**
+     * 使目录失效（如密钥更换后）
+     */
+    public void invalidate(String provider, String apiEndpoint, String apiKey) {
+        CatalogKey key = new CatalogKey(provider, StringUtils.trimToNull(apiEndpoint), fingerprint(apiKey));
+        entries.invalidate(key.id());
+        if (configuration.isSnapshotEnabled()) {
+            snapshotRepository.deleteById(key.id())
+                    .subscribe(null, e -> log.warn("删除模型目录快照 {} 失败: {}", key.id(), e.getMessage()));
+        }
+    }
+
+    private List<ModelInfo> serve(CatalogKey key, Entry entry, Supplier<Flux<ModelInfo>> loader, String source) {
+        if (isFresh(entry)) {
+            count(source, "fresh");
+        } else {
+            count(source, "stale");
+            log.debug("模型目录 {} 已过期，先返回旧值并在后台刷新", key.describe());
+            load(key, loader);
+        }
+        return entry.models();
+    }
+
+    private Mono<List<ModelInfo>> coldLoad(CatalogKey key, Supplier<Flux<ModelInfo>> loader,
+            Supplier<Flux<ModelInfo>> coldStartFallback) {
+        count("upstream", "miss");
+        Mono<List<ModelInfo>> loading = load(key, loader);
+        if (coldStartFallback == null) {
+            return loading;
+        }
+        return loading.timeout(Duration.ofMillis(configuration.getColdStartTimeoutMillis()),
+                Mono.defer(() -> {
+                    log.info("模型目录 {} 加载超时，先返回默认模型列表", key.describe());
+                    count("fallback", "miss");
+                    return Flux.defer(coldStartFallback).collectList();
+                }));
+    }
+
+    /**
+     * 从上游加载目录，同一目录的并发加载只调用一次上游；加载独立于调用方订阅，调用方取消不会中断加载
+     */
+    private Mono<List<ModelInfo>> load(CatalogKey key, Supplier<Flux<ModelInfo>> loader) {
+        Sinks.One<List<ModelInfo>> sink = Sinks.one();
+        Sinks.One<List<ModelInfo>> existing = inflight.putIfAbsent(key.id(), sink);
+        if (existing != null) {
+            return existing.asMono();
+        }
+        Flux.defer(loader)
+                .collectList()
+                .subscribe(models -> {
+                    store(key, models);
+                    inflight.remove(key.id(), sink);
+                    refreshCounter("success").increment();
+                    sink.tryEmitValue(models);
+                }, error -> {
+                    inflight.remove(key.id(), sink);
+                    refreshCounter("failure").increment();
+                    log.warn("刷新模型目录 {} 失败: {}", key.describe(), error.getMessage());
+                    sink.tryEmitError(error);
+                });
+        return sink.asMono();
+    }
+
+    private void store(CatalogKey key, List<ModelInfo> models) {
+        if (models.isEmpty()) {
+            // 空目录通常意味着上游异常，不覆盖已有的缓存
+            return;
+        }
+        Instant now = clock.instant();
+        entries.put(key.id(), new Entry(List.copyOf(models), now));
+        if (configuration.isSnapshotEnabled()) {
+            ModelCatalogSnapshot snapshot = ModelCatalogSnapshot.builder()
+                    .id(key.id())
+                    .provider(key.provider())
+                    .apiEndpoint(key.apiEndpoint())
+                    .keyFingerprint(key.keyFingerprint())
+                    .models(models)
+                    .fetchedAt(LocalDateTime.ofInstant(now, ZONE))
+                    .build();
+            snapshotRepository.save(snapshot)
+                    .subscribe(null, e -> log.warn("保存模型目录快照 {} 失败: {}", key.describe(), e.getMessage()));
+        }
+    }
+
+    private Mono<ModelCatalogSnapshot> findSnapshot(CatalogKey key) {
+        if (!configuration.isSnapshotEnabled()) {
+            return Mono.empty();
+        }
+        return snapshotRepository.findById(key.id())
+                .filter(snapshot -> snapshot.getFetchedAt() != null && snapshot.getModels() != null
+                        && !snapshot.getModels().isEmpty()
+                        && isUsable(new Entry(snapshot.getModels(), snapshot.getFetchedAt().atZone(ZONE).toInstant())))
+                .onErrorResume(e -> {
+                    log.warn("读取模型目录快照 {} 失败: {}", key.describe(), e.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    private boolean isFresh(Entry entry) {
+        return !entry.fetchedAt().plusSeconds(configuration.getFreshSeconds()).isBefore(clock.instant());
+    }
+
+    private boolean isUsable(Entry entry) {
+        return !entry.fetchedAt().plusSeconds(configuration.getMaxStaleSeconds()).isBefore(clock.instant());
+    }
+
+    private void count(String source, String result) {
+        Counter.builder("ai.model_catalog.lookups")
+                .description("模型目录查询次数")
+                .tag("source", source)
+                .tag("result", result)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private Counter refreshCounter(String outcome) {
+        return Counter.builder("ai.model_catalog.refreshes")
+                .description("从上游加载模型目录的次数")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 计算API密钥指纹，缓存键与快照中只保存指纹
+     *
+     * @param apiKey API密钥
+     * @return SHA-256前16位十六进制；无密钥时返回"none"
+     */
+    static String fingerprint(String apiKey) {
+        if (StringUtils.isBlank(apiKey)) {
+            return "none";
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(apiKey.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256不可用", e);
+        }
+    }
+
+    private record Entry(List<ModelInfo> models, Instant fetchedAt) {
+    }
+
+    private record CatalogKey(String provider, String apiEndpoint, String keyFingerprint) {
+
+        String id() {
+            return provider + "|" + (apiEndpoint != null ? apiEndpoint : "default") + "|" + keyFingerprint;
+        }
+
+        String describe() {
+            return provider + "@" + (apiEndpoint != null ? apiEndpoint : "default");
+        }
+    }
+}
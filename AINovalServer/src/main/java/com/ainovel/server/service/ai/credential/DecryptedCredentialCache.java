@@ -0,0 +1,111 @@
+package com.ainovel.server.service.ai.credential;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+
+import org.jasypt.encryption.StringEncryptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.ainovel.server.config.CredentialCacheConfiguration;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * 解密后的API密钥缓存
+ *
+ * Jasypt PBE 解密每次都要执行上千轮密钥派生，按(配置ID, 密文哈希)缓存解密结果，
+ * 在较短的TTL和条目数上限内复用。密文变化（更换密钥）时哈希随之变化，自然不会命中旧值；
+ * 配置更新或删除时显式失效，使明文尽早离开内存。本类不记录任何密钥内容。
+ */
+@Component
+public class DecryptedCredentialCache {
+
+    private final StringEncryptor encryptor;
+    private final CredentialCacheConfiguration configuration;
+    private final Cache<CredentialKey, String> credentials;
+    private final Counter hits;
+    private final Counter misses;
+
+    @Autowired
+    public DecryptedCredentialCache(StringEncryptor encryptor, CredentialCacheConfiguration configuration,
+            MeterRegistry meterRegistry) {
+        this.encryptor = encryptor;
+        this.configuration = configuration;
+        this.credentials = Caffeine.newBuilder()
+                .maximumSize(configuration.getMaxEntries())
+                .expireAfterWrite(Duration.ofSeconds(configuration.getTtlSeconds()))
+                .executor(Runnable::run)
+                .build();
+        this.hits = Counter.builder("ai.credential.decrypt")
+                .description("API密钥解密请求数")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.misses = Counter.builder("ai.credential.decrypt")
+                .description("API密钥解密请求数")
+                .tag("result", "miss")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 解密配置的API密钥
+     *
+     * @param configId 模型配置ID，为空时不缓存
+     * @param ciphertext 加密后的API密钥
+     * @return 明文API密钥；密文为空时返回null
+     * @throws org.jasypt.exceptions.EncryptionOperationNotPossibleException 解密失败时抛出，失败结果不缓存
+     */
+    public String decrypt(String configId, String ciphertext) {
+        if (ciphertext == null || ciphertext.isEmpty()) {
+            return null;
+        }
+        if (!configuration.isEnabled() || configId == null) {
+            return encryptor.decrypt(ciphertext);
+        }
+        CredentialKey key = new CredentialKey(configId, hash(ciphertext));
+        String cached = credentials.getIfPresent(key);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+        return credentials.get(key, k -> encryptor.decrypt(ciphertext));
+    }
+
+    /**
+     * 使配置的所有缓存凭证失效
+     *
+     * @param configId 模型配置ID
+     */
+    public void invalidate(String configId) {
+        if (configId == null) {
+            return;
+        }
+        credentials.asMap().keySet().removeIf(key -> key.configId().equals(configId));
+    }
+
+    /**
+     * 当前缓存的条目数
+     */
+    long size() {
+        return credentials.estimatedSize();
+    }
+
+    private static String hash(String ciphertext) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(ciphertext.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256不可用", e);
+        }
+    }
+
+    private record CredentialKey(String configId, String ciphertextHash) {
+    }
+}
@@ -11,6 +11,11 @@ import com.ainovel.server.service.ai.langchain4j.OpenAILangChain4jModelProvider;
 import com.ainovel.server.service.ai.langchain4j.OpenRouterLangChain4jModelProvider;
 import com.ainovel.server.service.ai.langchain4j.SiliconFlowLangChain4jModelProvider;
 import com.ainovel.server.service.ai.langchain4j.TogetherAILangChain4jModelProvider;
+import com.ainovel.server.service.ai.metrics.PromptCacheMetrics;
+import com.ainovel.server.service.ai.resilience.AdaptiveConcurrencyLimiterRegistry;
+import com.ainovel.server.service.ai.resilience.ProviderCircuitBreakerRegistry;
+import com.ainovel.server.service.ai.resilience.UpstreamCallGuard;
+import com.ainovel.server.service.ai.stream.StreamHeartbeatScheduler;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
@@ -24,10 +29,22 @@ import org.springframework.stereotype.Component;
 public class AIModelProviderFactory {
 
     private final ProxyConfig proxyConfig;
+    private final AdaptiveConcurrencyLimiterRegistry concurrencyLimiterRegistry;
+    private final ProviderCircuitBreakerRegistry circuitBreakerRegistry;
+    private final PromptCacheMetrics promptCacheMetrics;
+    private final StreamHeartbeatScheduler heartbeatScheduler;
 
     @Autowired
-    public AIModelProviderFactory(ProxyConfig proxyConfig) {
+    public AIModelProviderFactory(ProxyConfig proxyConfig,
+                                  AdaptiveConcurrencyLimiterRegistry concurrencyLimiterRegistry,
+                                  ProviderCircuitBreakerRegistry circuitBreakerRegistry,
+                                  PromptCacheMetrics promptCacheMetrics,
+                                  StreamHeartbeatScheduler heartbeatScheduler) {
         this.proxyConfig = proxyConfig;
+        this.concurrencyLimiterRegistry = concurrencyLimiterRegistry;
+        this.circuitBreakerRegistry = circuitBreakerRegistry;
+        this.promptCacheMetrics = promptCacheMetrics;
+        this.heartbeatScheduler = heartbeatScheduler;
     }
 
     /**
@@ -42,7 +59,7 @@ public class AIModelProviderFactory {
     public AIModelProvider createProvider(String providerName, String modelName, String apiKey, String apiEndpoint) {
         log.info("创建AI模型提供商: {}, 模型: {}", providerName, modelName);
         
-        return switch (providerName.toLowerCase()) {
+        AIModelProvider provider = switch (providerName.toLowerCase()) {
             case "openai" -> new OpenAILangChain4jModelProvider(modelName, apiKey, apiEndpoint, proxyConfig);
             case "anthropic" -> new AnthropicLangChain4jModelProvider(modelName, apiKey, apiEndpoint);
             case "gemini" -> new GeminiLangChain4jModelProvider(modelName, apiKey, apiEndpoint, proxyConfig);
@@ -53,6 +70,14 @@ public class AIModelProviderFactory {
             case "anthropic-native" -> new AnthropicModelProvider(modelName, apiKey, apiEndpoint);
             default -> throw new IllegalArgumentException("不支持的AI提供商: " + providerName);
         };
+
+        // 同一提供商的所有实例共享一个自适应并发限制器，同一(提供商, 端点, 模型)共享一个熔断器
+        provider.setUpstreamGuard(new UpstreamCallGuard(
+                concurrencyLimiterRegistry.getLimiter(providerName),
+                circuitBreakerRegistry.getCircuitBreaker(providerName, apiEndpoint, modelName)));
+        provider.setPromptCacheMetrics(promptCacheMetrics);
+        provider.setStreamHeartbeatScheduler(heartbeatScheduler);
+        return provider;
     }
 
     /**
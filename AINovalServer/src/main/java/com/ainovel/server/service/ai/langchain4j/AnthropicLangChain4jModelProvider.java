@@ -15,6 +15,8 @@ import com.ainovel.server.domain.model.ModelInfo;
 
 import dev.langchain4j.model.anthropic.AnthropicChatModel;
 import dev.langchain4j.model.anthropic.AnthropicStreamingChatModel;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.chat.StreamingChatLanguageModel;
 import lombok.extern.slf4j.Slf4j;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -39,6 +41,10 @@ public class AnthropicLangChain4jModelProvider extends LangChain4jModelProvider
         TOKEN_PRICES = Collections.unmodifiableMap(prices);
     }
 
+    // 为系统消息设置缓存断点的模型，仅用于声明了稳定前缀的请求（缓存写入按更高单价计费，不默认开启）
+    private ChatLanguageModel cachingChatModel;
+    private StreamingChatLanguageModel cachingStreamingChatModel;
+
     /**
      * 构造函数
      *
@@ -75,14 +81,44 @@ public class AnthropicLangChain4jModelProvider extends LangChain4jModelProvider
                     .timeout(Duration.ofSeconds(300))
                     .build();
 
+            // 创建带系统消息缓存标记的模型，稳定前缀以系统消息的形式发送
+            this.cachingChatModel = AnthropicChatModel.builder()
+                    .apiKey(apiKey)
+                    .modelName(modelName)
+                    .baseUrl(baseUrl)
+                    .timeout(Duration.ofSeconds(300))
+                    .cacheSystemMessages(true)
+                    .build();
+
+            this.cachingStreamingChatModel = AnthropicStreamingChatModel.builder()
+                    .apiKey(apiKey)
+                    .modelName(modelName)
+                    .baseUrl(baseUrl)
+                    .timeout(Duration.ofSeconds(300))
+                    .cacheSystemMessages(true)
+                    .build();
+
             log.info("Anthropic模型初始化成功: {}", modelName);
         } catch (Exception e) {
             log.error("初始化Anthropic模型时出错", e);
             this.chatModel = null;
             this.streamingChatModel = null;
+            this.cachingChatModel = null;
+            this.cachingStreamingChatModel = null;
         }
     }
 
+    @Override
+    protected ChatLanguageModel chatModelFor(AIRequest request) {
+        return request.hasCacheablePrefix() && cachingChatModel != null ? cachingChatModel : chatModel;
+    }
+
+    @Override
+    protected StreamingChatLanguageModel streamingChatModelFor(AIRequest request) {
+        return request.hasCacheablePrefix() && cachingStreamingChatModel != null
+                ? cachingStreamingChatModel : streamingChatModel;
+    }
+
     @Override
     public Mono<Double> estimateCost(AIRequest request) {
         // 获取模型价格（每1000个令牌的美元价格）
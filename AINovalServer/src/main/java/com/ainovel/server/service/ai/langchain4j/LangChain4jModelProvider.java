@@ -22,20 +22,27 @@ import com.ainovel.server.domain.model.AIRequest;
 import com.ainovel.server.domain.model.AIResponse;
 import com.ainovel.server.domain.model.ModelInfo;
 import com.ainovel.server.service.ai.AIModelProvider;
+import com.ainovel.server.service.ai.metrics.PromptCacheMetrics;
+import com.ainovel.server.service.ai.stream.StreamHeartbeatScheduler;
+import com.ainovel.server.service.ai.resilience.UpstreamCallGuard;
 
 import dev.langchain4j.data.message.AiMessage;
 import dev.langchain4j.data.message.ChatMessage;
 import dev.langchain4j.data.message.SystemMessage;
 import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.anthropic.AnthropicTokenUsage;
 import dev.langchain4j.model.chat.ChatLanguageModel;
 import dev.langchain4j.model.chat.StreamingChatLanguageModel;
 import dev.langchain4j.model.chat.response.ChatResponse;
 import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import dev.langchain4j.model.openai.OpenAiTokenUsage;
+import dev.langchain4j.model.output.TokenUsage;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
 import reactor.util.retry.Retry;
 
 /**
@@ -66,6 +73,15 @@ public abstract class LangChain4jModelProvider implements AIModelProvider {
 
     private ProxyConfig proxyConfig;
 
+    // 上游调用保护（熔断与自适应并发限制）
+    protected UpstreamCallGuard upstreamGuard = UpstreamCallGuard.NONE;
+
+    // 提示缓存指标
+    protected PromptCacheMetrics promptCacheMetrics = PromptCacheMetrics.NONE;
+
+    // 流式心跳（所有流共用一个时间轮）
+    protected StreamHeartbeatScheduler heartbeatScheduler = StreamHeartbeatScheduler.NONE;
+
     // LangChain4j模型实例
     protected ChatLanguageModel chatModel;
     protected StreamingChatLanguageModel streamingChatModel;
@@ -135,6 +151,21 @@ public abstract class LangChain4jModelProvider implements AIModelProvider {
         initModels();
     }
 
+    @Override
+    public void setUpstreamGuard(UpstreamCallGuard upstreamGuard) {
+        this.upstreamGuard = upstreamGuard != null ? upstreamGuard : UpstreamCallGuard.NONE;
+    }
+
+    @Override
+    public void setPromptCacheMetrics(PromptCacheMetrics promptCacheMetrics) {
+        this.promptCacheMetrics = promptCacheMetrics != null ? promptCacheMetrics : PromptCacheMetrics.NONE;
+    }
+
+    @Override
+    public void setStreamHeartbeatScheduler(StreamHeartbeatScheduler heartbeatScheduler) {
+        this.heartbeatScheduler = heartbeatScheduler != null ? heartbeatScheduler : StreamHeartbeatScheduler.NONE;
+    }
+
     /**
      * 配置系统代理
      */
@@ -194,7 +225,7 @@ public abstract class LangChain4jModelProvider implements AIModelProvider {
         }
 
         // 使用defer延迟执行
-        return Mono.defer(() -> {
+        Mono<AIResponse> call = Mono.defer(() -> {
             // 创建一个临时对象作为锁
             final Object syncLock = new Object();
             final AIResponse[] responseHolder = new AIResponse[1];
@@ -212,10 +243,11 @@ public abstract class LangChain4jModelProvider implements AIModelProvider {
                     List<ChatMessage> messages = convertToLangChain4jMessages(request);
 
                     // 调用LangChain4j模型 - 这是阻塞调用
-                    ChatResponse response = chatModel.chat(messages);
+                    ChatResponse response = chatModelFor(request).chat(messages);
 
                     // 转换响应并保存到holder
                     responseHolder[0] = convertToAIResponse(response, request);
+                    promptCacheMetrics.record(providerName, modelName, responseHolder[0].getTokenUsage());
                 }
 
                 // 记录完成时间
@@ -234,13 +266,19 @@ public abstract class LangChain4jModelProvider implements AIModelProvider {
                 return Mono.error(new RuntimeException("生成内容时出错: " + e.getMessage(), e));
             }
         })
+        // 阻塞调用放到弹性线程池，许可可能在其他线程上被放行
+        .subscribeOn(Schedulers.boundedElastic())
         .doOnCancel(() -> {
             // 请求被取消时的处理
             log.warn("AI内容生成请求被取消, 模型: {}, userId: {}, 但模型可能仍在后台继续生成",
                     modelName, request.getUserId());
         })
-        .timeout(Duration.ofSeconds(120)) // 添加2分钟超时
+        .timeout(Duration.ofSeconds(120)); // 添加2分钟超时
+
+        // 保护包裹在重试之内，每次尝试都会重新获取许可并上报结果；熔断打开时快速失败且不再重试
+        return upstreamGuard.guard(call)
         .retryWhen(Retry.backoff(2, Duration.ofSeconds(1))
+                .filter(throwable -> !UpstreamCallGuard.isRejection(throwable))
                 .filter(throwable -> !(throwable instanceof RuntimeException &&
                         throwable.getMessage() != null &&
                         throwable.getMessage().contains("API密钥未配置"))))
@@ -248,6 +286,7 @@ public abstract class LangChain4jModelProvider implements AIModelProvider {
             // 处理所有剩余错误，返回包含错误信息的响应
             AIResponse errorResponse = new AIResponse();
             errorResponse.setContent("生成内容时出错: " + e.getMessage());
+            errorResponse.setFinishReason("error");
             // 通过反射设置status属性，因为AIResponse可能没有直接的setStatus方法
             try {
                 errorResponse.getClass().getMethod("setStatus", String.class)
@@ -269,6 +308,23 @@ public abstract class LangChain4jModelProvider implements AIModelProvider {
             return Flux.just("错误：流式模型未初始化");
         }
 
+        // 熔断打开时快速失败，不再等待上游超时
+        return upstreamGuard.begin()
+                .flatMapMany(guardedCall -> doGenerateContentStream(request, guardedCall))
+                .onErrorResume(UpstreamCallGuard::isRejection, e -> {
+                    log.warn("流式生成被上游保护拒绝, 模型: {}, 原因: {}", modelName, e.getMessage());
+                    return Flux.just("错误：" + e.getMessage());
+                });
+    }
+
+    /**
+     * 执行流式生成
+     *
+     * @param request AI请求
+     * @param guardedCall 上游调用保护句柄
+     * @return 流式响应
+     */
+    private Flux<String> doGenerateContentStream(AIRequest request, UpstreamCallGuard.GuardedCall guardedCall) {
         try {
             // 转换请求为LangChain4j格式
             List<ChatMessage> messages = convertToLangChain4jMessages(request);
@@ -292,6 +348,7 @@ public abstract class LangChain4jModelProvider implements AIModelProvider {
                         hasReceivedContent.set(true);
                         log.info("收到首个LLM响应, 耗时: {}ms, 模型: {}",
                                 firstChunkTime.get() - requestStartTime, modelName);
+                        guardedCall.onFirstResponse();
                     }
 
                     if (sink.currentSubscriberCount() > 0) {
@@ -303,6 +360,8 @@ public abstract class LangChain4jModelProvider implements AIModelProvider {
                 public void onCompleteResponse(ChatResponse response) {
                     log.info("LLM响应完成，总耗时: {}ms, 模型: {}",
                             System.currentTimeMillis() - requestStartTime, modelName);
+                    guardedCall.onComplete();
+                    promptCacheMetrics.record(providerName, modelName, convertTokenUsage(response.tokenUsage()));
                     if (sink.currentSubscriberCount() > 0) {
                         sink.tryEmitComplete();
                     }
@@ -312,6 +371,7 @@ public abstract class LangChain4jModelProvider implements AIModelProvider {
                 public void onError(Throwable error) {
                     log.error("LLM流式生成内容时出错，总耗时: {}ms, 模型: {}",
                             System.currentTimeMillis() - requestStartTime, modelName, error);
+                    guardedCall.onError(error);
                     if (sink.currentSubscriberCount() > 0) {
                         sink.tryEmitNext("错误：" + error.getMessage());
                         sink.tryEmitComplete();
@@ -321,12 +381,9 @@ public abstract class LangChain4jModelProvider implements AIModelProvider {
 
             // 调用流式模型并添加日志
             log.info("开始调用LLM流式模型 {}, 消息数量: {}", modelName, messages.size());
-            streamingChatModel.chat(messages, handler);
+            streamingChatModelFor(request).chat(messages, handler);
             log.info("LLM流式模型调用已发出，等待响应...");
 
-            // 创建一个完成信号 - 用于控制心跳流的结束
-            final Sinks.One<Boolean> completionSignal = Sinks.one();
-
             // 主内容流
             Flux<String> mainStream = sink.asFlux()
                     // 添加延迟重试，避免网络抖动导致请求失败
@@ -343,39 +400,20 @@ public abstract class LangChain4jModelProvider implements AIModelProvider {
                             })
                     )
                     .timeout(Duration.ofSeconds(300)) // 增加超时时间到300秒，避免大模型生成时间过长导致中断
-                    .doOnComplete(() -> {
-                        // 发出完成信号，通知心跳流停止
-                        completionSignal.tryEmitValue(true);
-                        log.debug("主流完成，已发送停止心跳信号");
-                    })
                     .doOnCancel(() -> {
                         // 取消时如果已经收到内容，不要关闭sink
-                        if (!hasReceivedContent.get()) {
-                            // 只有在没有收到任何内容时才完成sink
-                            log.debug("主流取消，但未收到任何响应，发送停止心跳信号");
-                            completionSignal.tryEmitValue(true);
-                        } else {
+                        if (hasReceivedContent.get()) {
                             log.debug("主流取消，但已收到内容，保持sink开放以接收后续内容");
                         }
                     })
                     .doOnError(error -> {
-                        // 错误时也发出完成信号
-                        completionSignal.tryEmitValue(true);
-                        log.debug("主流出错，已发送停止心跳信号: {}", error.getMessage());
+                        log.debug("主流出错: {}", error.getMessage());
+                        // 超时等情况下上游回调可能不再到达，归还并发许可避免泄漏
+                        guardedCall.onError(error);
                     });
 
-            // 心跳流，当completionSignal发出时停止
-            Flux<String> heartbeatStream = Flux.interval(Duration.ofSeconds(15))
-                    .map(tick -> {
-                        log.debug("发送LLM心跳信号 #{}", tick);
-                        return "heartbeat";
-                    })
-                    .filter(signal -> sink.currentSubscriberCount() > 0)
-                    // 使用takeUntil操作符，当completionSignal发出值时停止心跳
-                    .takeUntilOther(completionSignal.asMono());
-
-            // 合并主流和心跳流
-            return Flux.merge(mainStream, heartbeatStream)
+            // 空闲时由共享心跳时间轮插入心跳，主流结束时自动注销
+            return heartbeatScheduler.withHeartbeat(mainStream, () -> "heartbeat")
                     .onErrorResume(e -> {
                         log.error("流式生成内容时出错: {}，总耗时: {}ms", e.getMessage(),
                                 System.currentTimeMillis() - requestStartTime, e);
@@ -396,8 +434,6 @@ public abstract class LangChain4jModelProvider implements AIModelProvider {
                                 if (sink.currentSubscriberCount() > 0) {
                                     sink.tryEmitComplete();
                                 }
-                                // 确保心跳流也停止
-                                completionSignal.tryEmitValue(true);
                             } catch (Exception ex) {
                                 log.warn("取消流生成时完成sink出错，可以忽略", ex);
                             }
@@ -405,6 +441,7 @@ public abstract class LangChain4jModelProvider implements AIModelProvider {
                     });
         } catch (Exception e) {
             log.error("准备流式生成内容时出错", e);
+            guardedCall.onError(e);
             return Flux.just("错误：" + e.getMessage());
         }
     }
@@ -523,14 +560,32 @@ public abstract class LangChain4jModelProvider implements AIModelProvider {
      */
     protected List<ChatMessage> convertToLangChain4jMessages(AIRequest request) {
         List<ChatMessage> messages = new ArrayList<>();
-
-        // 添加系统提示（如果有）
-        if (request.getPrompt() != null && !request.getPrompt().isEmpty()) {
+        List<AIRequest.Message> history = request.prefixCacheLayout();
+        int start = 0;
+
+        if (request.hasCacheablePrefix()) {
+            // 系统提示与前缀中的系统消息合并为一条，只产生一个缓存断点
+            StringBuilder system = new StringBuilder();
+            if (request.getPrompt() != null && !request.getPrompt().isEmpty()) {
+                system.append(request.getPrompt());
+            }
+            while (start < history.size() && history.get(start).isCacheable()
+                    && "system".equalsIgnoreCase(history.get(start).getRole())) {
+                if (system.length() > 0) {
+                    system.append("\n\n");
+                }
+                system.append(history.get(start++).getContent());
+            }
+            if (system.length() > 0) {
+                messages.add(new SystemMessage(system.toString()));
+            }
+        } else if (request.getPrompt() != null && !request.getPrompt().isEmpty()) {
+            // 添加系统提示（如果有）
             messages.add(new SystemMessage(request.getPrompt()));
         }
 
-        // 添加对话历史
-        for (AIRequest.Message message : request.getMessages()) {
+        // 添加对话历史（声明了稳定前缀时按前缀缓存布局排列）
+        for (AIRequest.Message message : history.subList(start, history.size())) {
             switch (message.getRole().toLowerCase()) {
                 case "user":
                     messages.add(new UserMessage(message.getContent()));
@@ -564,10 +619,8 @@ public abstract class LangChain4jModelProvider implements AIModelProvider {
         AiMessage aiMessage = chatResponse.aiMessage();
         aiResponse.setContent(aiMessage.text());
 
-        // 设置令牌使用情况（注意：ChatResponse可能没有直接提供令牌使用情况）
-        AIResponse.TokenUsage usage = new AIResponse.TokenUsage();
-        // 这里可能需要从其他地方获取令牌使用情况
-        aiResponse.setTokenUsage(usage);
+        // 设置令牌使用情况
+        aiResponse.setTokenUsage(convertTokenUsage(chatResponse.tokenUsage()));
 
         // 设置完成原因
         aiResponse.setFinishReason("stop"); // LangChain4j可能没有直接提供完成原因
@@ -575,6 +628,58 @@ public abstract class LangChain4jModelProvider implements AIModelProvider {
         return aiResponse;
     }
 
+    /**
+     * 将LangChain4j令牌使用情况转换为AIResponse格式，包含提供商返回的提示缓存命中/写入令牌数
+     *
+     * @param tokenUsage LangChain4j令牌使用情况，可能为null
+     * @return 令牌使用情况
+     */
+    protected AIResponse.TokenUsage convertTokenUsage(TokenUsage tokenUsage) {
+        AIResponse.TokenUsage usage = new AIResponse.TokenUsage();
+        if (tokenUsage == null) {
+            return usage;
+        }
+        if (tokenUsage.inputTokenCount() != null) {
+            usage.setPromptTokens(tokenUsage.inputTokenCount());
+        }
+        if (tokenUsage.outputTokenCount() != null) {
+            usage.setCompletionTokens(tokenUsage.outputTokenCount());
+        }
+        if (tokenUsage instanceof AnthropicTokenUsage anthropicUsage) {
+            // Anthropic的input_tokens不含缓存部分，这里统一为包含缓存的提示令牌总数
+            int cacheRead = anthropicUsage.cacheReadInputTokens() != null ? anthropicUsage.cacheReadInputTokens() : 0;
+            int cacheWrite = anthropicUsage.cacheCreationInputTokens() != null ? anthropicUsage.cacheCreationInputTokens() : 0;
+            usage.setPromptTokens(usage.getPromptTokens() + cacheRead + cacheWrite);
+            usage.setCachedPromptTokens(cacheRead);
+            usage.setCacheCreationTokens(cacheWrite);
+        } else if (tokenUsage instanceof OpenAiTokenUsage openAiUsage
+                && openAiUsage.inputTokensDetails() != null
+                && openAiUsage.inputTokensDetails().cachedTokens() != null) {
+            usage.setCachedPromptTokens(openAiUsage.inputTokensDetails().cachedTokens());
+        }
+        return usage;
+    }
+
+    /**
+     * 选择处理该请求的非流式模型，子类可为声明了稳定前缀的请求返回启用缓存标记的模型
+     *
+     * @param request AI请求
+     * @return 非流式模型
+     */
+    protected ChatLanguageModel chatModelFor(AIRequest request) {
+        return chatModel;
+    }
+
+    /**
+     * 选择处理该请求的流式模型，子类可为声明了稳定前缀的请求返回启用缓存标记的模型
+     *
+     * @param request AI请求
+     * @return 流式模型
+     */
+    protected StreamingChatLanguageModel streamingChatModelFor(AIRequest request) {
+        return streamingChatModel;
+    }
+
     /**
      * 创建基础AI响应
      *
@@ -0,0 +1,61 @@
+package com.ainovel.server.service.ai.metrics;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.ainovel.server.domain.model.AIResponse;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * 提供商提示缓存指标
+ *
+ * 按 (提供商, 模型) 统计提示令牌总数、命中缓存的令牌数与写入缓存的令牌数，
+ * 命中率 = ai.prompt.tokens.cache_read / ai.prompt.tokens.input。
+ */
+@Component
+public class PromptCacheMetrics {
+
+    /**
+     * 不记录任何指标的实例
+     */
+    public static final PromptCacheMetrics NONE = new PromptCacheMetrics(null);
+
+    private final MeterRegistry meterRegistry;
+
+    @Autowired
+    public PromptCacheMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * 记录一次调用的提示令牌使用情况
+     *
+     * @param providerName 提供商名称
+     * @param modelName 模型名称
+     * @param usage 令牌使用情况，为null时忽略
+     */
+    public void record(String providerName, String modelName, AIResponse.TokenUsage usage) {
+        if (meterRegistry == null || usage == null) {
+            return;
+        }
+        increment("ai.prompt.tokens.input", "提示令牌数", providerName, modelName, usage.getPromptTokens());
+        increment("ai.prompt.tokens.cache_read", "命中提示缓存的令牌数", providerName, modelName,
+                usage.getCachedPromptTokens());
+        increment("ai.prompt.tokens.cache_write", "写入提示缓存的令牌数", providerName, modelName,
+                usage.getCacheCreationTokens());
+    }
+
+    private void increment(String name, String description, String providerName, String modelName, Integer amount) {
+        if (amount == null || amount <= 0) {
+            return;
+        }
+        Counter.builder(name)
+                .description(description)
+                .tag("provider", providerName != null ? providerName : "unknown")
+                .tag("model", modelName != null ? modelName : "unknown")
+                .register(meterRegistry)
+                .increment(amount);
+    }
+}
@@ -0,0 +1,258 @@
+package com.ainovel.server.service.ai.resilience;
+
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.ainovel.server.config.ProviderConcurrencyConfiguration.LimitConfig;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * 基于AIMD（加性增、乘性减）的自适应并发限制器
+ *
+ * 延迟健康时每完成约 limit 个请求，允许的在途请求数增加 additiveIncrease；
+ * 遇到429/5xx/超时立即按 backoffRatio 乘性回退，并在存在 Retry-After 时暂停放行直至到期。
+ * 等待许可的调用方以非阻塞方式排队，不占用任何线程。
+ */
+@Slf4j
+public class AdaptiveConcurrencyLimiter {
+
+    /**
+     * 平滑延迟基线的EWMA系数
+     */
+    private static final double LATENCY_SMOOTHING = 0.1;
+
+    @Getter
+    private final String name;
+
+    private final LimitConfig config;
+
+    private final Queue<Waiter> waiters = new ConcurrentLinkedQueue<>();
+
+    private double limit;
+    private int inFlight;
+    private double baselineLatencyMillis;
+    private long blockedUntilNanos;
+    private boolean drainScheduled;
+
+    public AdaptiveConcurrencyLimiter(String name, LimitConfig config) {
+        this.name = name;
+        this.config = config;
+        this.limit = Math.max(config.getMinLimit(), Math.min(config.getInitialLimit(), config.getMaxLimit()));
+    }
+
+    /**
+     * 获取一个并发许可，达到上限时排队等待
+     *
+     * @return 许可
+     */
+    public Mono<Permit> acquire() {
+        return Mono.<Permit>create(sink -> {
+            Waiter waiter = new Waiter(sink);
+            waiters.offer(waiter);
+            // 取消（如等待超时）时移出队列，不再计入排队数
+            sink.onCancel(() -> {
+                waiters.remove(waiter);
+                waiter.cancel();
+            });
+            drain();
+        }).timeout(Duration.ofMillis(config.getAcquireTimeoutMillis()),
+                Mono.error(() -> new ConcurrencyLimitExceededException(
+                        "等待AI提供商并发许可超时: " + name + ", 当前限制: " + getLimit())));
+    }
+
+    /**
+     * 在并发许可保护下执行非流式调用
+     *
+     * @param call 上游调用
+     * @return 调用结果
+     */
+    public <T> Mono<T> execute(Mono<T> call) {
+        return acquire().flatMap(permit -> call
+                .doOnSuccess(v -> permit.recordSuccess())
+                .doOnError(permit::recordFailure)
+                .doFinally(signal -> permit.release()));
+    }
+
+    /**
+     * 在并发许可保护下执行流式调用，以首个元素到达的延迟作为健康样本
+     *
+     * @param call 上游流式调用
+     * @return 流式结果
+     */
+    public <T> Flux<T> executeStream(Flux<T> call) {
+        return acquire().flatMapMany(permit -> call
+                .doOnNext(v -> permit.recordSuccess())
+                .doOnComplete(permit::recordSuccess)
+                .doOnError(permit::recordFailure)
+                .doFinally(signal -> permit.release()));
+    }
+
+    /**
+     * 当前允许的并发数
+     */
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    /**
+     * 当前在途请求数
+     */
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * 当前排队等待的请求数
+     */
+    public int getQueued() {
+        return waiters.size();
+    }
+
+    private void onSample(long latencyMillis) {
+        synchronized (this) {
+            boolean healthy = baselineLatencyMillis == 0
+                    || latencyMillis <= baselineLatencyMillis * config.getLatencyTolerance();
+            baselineLatencyMillis = baselineLatencyMillis == 0
+                    ? latencyMillis
+                    : baselineLatencyMillis + LATENCY_SMOOTHING * (latencyMillis - baselineLatencyMillis);
+            // 只有在并发确实接近上限时才增长，避免空闲期虚增
+            if (healthy && inFlight + waiters.size() >= (int) limit) {
+                limit = Math.min(config.getMaxLimit(), limit + config.getAdditiveIncrease() / Math.max(1.0, limit));
+            }
+        }
+        drain();
+    }
+
+    private void onOverload(Throwable error) {
+        Duration retryAfter = UpstreamErrorClassifier.retryAfter(error).orElse(null);
+        synchronized (this) {
+            double previous = limit;
+            limit = Math.max(config.getMinLimit(), limit * config.getBackoffRatio());
+            if (retryAfter != null) {
+                long delayNanos = TimeUnit.MILLISECONDS.toNanos(
+                        Math.min(retryAfter.toMillis(), config.getMaxRetryAfterMillis()));
+                blockedUntilNanos = Math.max(blockedUntilNanos, System.nanoTime() + delayNanos);
+            }
+            log.warn("AI提供商 {} 出现过载信号，并发限制 {} -> {}，Retry-After: {}，错误: {}",
+                    name, (int) previous, (int) limit, retryAfter, error.getMessage());
+        }
+        drain();
+    }
+
+    private void drain() {
+        while (true) {
+            Waiter next;
+            synchronized (this) {
+                long now = System.nanoTime();
+                if (blockedUntilNanos > now) {
+                    scheduleDrain(blockedUntilNanos - now);
+                    return;
+                }
+                if (inFlight >= (int) limit) {
+                    return;
+                }
+                next = waiters.poll();
+                if (next == null) {
+                    return;
+                }
+                if (!next.claim(new Permit())) {
+                    continue;
+                }
+                inFlight++;
+            }
+            next.sink.success(next.permit);
+        }
+    }
+
+    private synchronized void scheduleDrain(long delayNanos) {
+        if (drainScheduled) {
+            return;
+        }
+        drainScheduled = true;
+        Schedulers.parallel().schedule(() -> {
+            synchronized (this) {
+                drainScheduled = false;
+            }
+            drain();
+        }, delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void releaseSlot() {
+        synchronized (this) {
+            inFlight--;
+        }
+        drain();
+    }
+
+    private static final class Waiter {
+        private final MonoSink<Permit> sink;
+        private final AtomicBoolean done = new AtomicBoolean(false);
+        private volatile Permit permit;
+
+        private Waiter(MonoSink<Permit> sink) {
+            this.sink = sink;
+        }
+
+        private boolean claim(Permit granted) {
+            permit = granted;
+            return done.compareAndSet(false, true);
+        }
+
+        private void cancel() {
+            // 已分配许可但调用方在交付前取消（如等待超时），需归还名额
+            if (!done.compareAndSet(false, true) && permit != null) {
+                permit.release();
+            }
+        }
+    }
+
+    /**
+     * 并发许可。调用方需在结束时调用 {@link #release()}，并至多上报一次结果样本
+     */
+    public final class Permit {
+        private final long startNanos = System.nanoTime();
+        private final AtomicBoolean sampled = new AtomicBoolean(false);
+        private final AtomicBoolean released = new AtomicBoolean(false);
+
+        private Permit() {
+        }
+
+        /**
+         * 上报成功样本（流式调用在首个响应到达时上报即可）
+         */
+        public void recordSuccess() {
+            if (sampled.compareAndSet(false, true)) {
+                onSample(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+            }
+        }
+
+        /**
+         * 上报失败样本，仅过载类错误会触发回退
+         *
+         * @param error 错误
+         */
+        public void recordFailure(Throwable error) {
+            if (sampled.compareAndSet(false, true) && UpstreamErrorClassifier.isOverload(error)) {
+                onOverload(error);
+            }
+        }
+
+        /**
+         * 释放许可，重复调用无副作用
+         */
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                releaseSlot();
+            }
+        }
+    }
+}
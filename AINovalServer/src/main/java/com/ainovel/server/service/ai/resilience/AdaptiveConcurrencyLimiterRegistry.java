@@ -0,0 +1,67 @@
+package com.ainovel.server.service.ai.resilience;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.ainovel.server.config.ProviderConcurrencyConfiguration;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 按AI提供商维护自适应并发限制器，并将当前限制、在途数与排队数发布为指标
+ */
+@Slf4j
+@Component
+public class AdaptiveConcurrencyLimiterRegistry {
+
+    private final ProviderConcurrencyConfiguration configuration;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, AdaptiveConcurrencyLimiter> limiters = new ConcurrentHashMap<>();
+
+    @Autowired
+    public AdaptiveConcurrencyLimiterRegistry(ProviderConcurrencyConfiguration configuration,
+                                              MeterRegistry meterRegistry) {
+        this.configuration = configuration;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * 获取提供商对应的限制器
+     *
+     * @param providerName 提供商名称
+     * @return 限制器；未启用时返回null
+     */
+    public AdaptiveConcurrencyLimiter getLimiter(String providerName) {
+        if (!configuration.isEnabled() || providerName == null) {
+            return null;
+        }
+        return limiters.computeIfAbsent(providerName.toLowerCase(), this::createLimiter);
+    }
+
+    private AdaptiveConcurrencyLimiter createLimiter(String providerName) {
+        AdaptiveConcurrencyLimiter limiter =
+                new AdaptiveConcurrencyLimiter(providerName, configuration.getConfigFor(providerName));
+
+        Gauge.builder("ai.provider.concurrency.limit", limiter, AdaptiveConcurrencyLimiter::getLimit)
+                .tag("provider", providerName)
+                .description("AI提供商当前允许的并发请求数")
+                .register(meterRegistry);
+        Gauge.builder("ai.provider.concurrency.inflight", limiter, AdaptiveConcurrencyLimiter::getInFlight)
+                .tag("provider", providerName)
+                .description("AI提供商当前在途请求数")
+                .register(meterRegistry);
+        Gauge.builder("ai.provider.concurrency.queued", limiter, AdaptiveConcurrencyLimiter::getQueued)
+                .tag("provider", providerName)
+                .description("等待AI提供商并发许可的请求数")
+                .register(meterRegistry);
+
+        log.info("创建AI提供商自适应并发限制器: {}, 初始限制: {}", providerName, limiter.getLimit());
+        return limiter;
+    }
+}
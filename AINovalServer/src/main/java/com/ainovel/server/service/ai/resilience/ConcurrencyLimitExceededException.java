@@ -0,0 +1,11 @@
+package com.ainovel.server.service.ai.resilience;
+
+/**
+ * 等待AI提供商并发许可超时时抛出的异常
+ */
+public class ConcurrencyLimitExceededException extends RuntimeException {
+
+    public ConcurrencyLimitExceededException(String message) {
+        super(message);
+    }
+}
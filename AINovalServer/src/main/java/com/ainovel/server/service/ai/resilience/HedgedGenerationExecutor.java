@@ -0,0 +1,258 @@
+package com.ainovel.server.service.ai.resilience;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.ainovel.server.config.ModelHedgingConfiguration;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+/**
+ * 对冲生成执行器
+ *
+ * 主请求在按该模型历史耗时分位数推算的延迟内未返回（或提前失败）时，向备用模型发起第二个请求，
+ * 取先成功的结果并取消另一个。备用请求受令牌预算限制：每个主请求累积 budgetRatio 份额，
+ * 每次对冲消耗一份，从而将额外的上游调用量控制在主请求量的固定比例内；预算从空开始累积，启动时的突发请求不会成倍放大上游调用。
+ *
+ * 提供商把失败包装为正常返回的错误响应时，调用方通过 failed 判定，这类结果视同失败：触发切换、不计入耗时样本，
+ * 两个请求都失败时返回主请求的结果。
+ */
+@Slf4j
+@Component
+public class HedgedGenerationExecutor {
+
+    private final ModelHedgingConfiguration configuration;
+    private final Map<String, LatencyWindow> latencies = new ConcurrentHashMap<>();
+    private final HedgeBudget budget;
+
+    private final Counter hedgesFired;
+    private final Counter hedgesWon;
+    private final Counter budgetExhausted;
+
+    @Autowired
+    public HedgedGenerationExecutor(ModelHedgingConfiguration configuration, MeterRegistry meterRegistry) {
+        this.configuration = configuration;
+        this.budget = new HedgeBudget(configuration.getBudgetRatio(), configuration.getBudgetBurst());
+        this.hedgesFired = Counter.builder("ai.hedging.fired")
+                .description("发起的对冲请求数")
+                .register(meterRegistry);
+        this.hedgesWon = Counter.builder("ai.hedging.won")
+                .description("备用请求先于主请求返回的次数")
+                .register(meterRegistry);
+        this.budgetExhausted = Counter.builder("ai.hedging.budget_exhausted")
+                .description("因预算耗尽未发起的对冲请求数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 是否启用对冲
+     */
+    public boolean isEnabled() {
+        return configuration.isEnabled();
+    }
+
+    /**
+     * 执行对冲调用
+     *
+     * @param primaryModel 主模型名称
+     * @param primary 主请求
+     * @param secondaryModel 备用模型名称
+     * @param secondary 备用请求，为null时只执行主请求
+     * @return 先成功返回的结果；两者都失败时返回主请求的错误
+     */
+    public <T> Mono<T> hedge(String primaryModel, Mono<T> primary, String secondaryModel, Mono<T> secondary) {
+        return hedge(primaryModel, primary, secondaryModel, secondary, value -> false);
+    }
+
+    /**
+     * 执行对冲调用，按 failed 识别以正常值返回的失败结果
+     *
+     * @param primaryModel 主模型名称
+     * @param primary 主请求
+     * @param secondaryModel 备用模型名称
+     * @param secondary 备用请求，为null时只执行主请求
+     * @param failed 判定返回值是否为失败结果
+     * @return 先成功返回的结果；两者都失败时返回主请求的错误或失败结果
+     */
+    public <T> Mono<T> hedge(String primaryModel, Mono<T> primary, String secondaryModel, Mono<T> secondary,
+                             Predicate<? super T> failed) {
+        Mono<T> primaryCall = recordLatency(primaryModel, primary, failed);
+        if (!configuration.isEnabled() || secondary == null) {
+            return primaryCall;
+        }
+        return Mono.defer(() -> {
+            budget.deposit();
+            Duration delay = hedgeDelay(primaryModel);
+            Sinks.Empty<Void> primaryFailed = Sinks.empty();
+
+            Mono<T> backupCall = Mono.firstWithSignal(Mono.delay(delay).then(), primaryFailed.asMono())
+                    .then(Mono.defer(() -> {
+                        if (!budget.tryAcquire()) {
+                            budgetExhausted.increment();
+                            log.debug("对冲预算耗尽，不向备用模型 {} 发起请求", secondaryModel);
+                            return Mono.<T>empty();
+                        }
+                        hedgesFired.increment();
+                        log.info("主模型 {} 在 {}ms 内未返回，向备用模型 {} 发起对冲请求",
+                                primaryModel, delay.toMillis(), secondaryModel);
+                        return recordLatency(secondaryModel, secondary, failed)
+                                .flatMap(value -> failed.test(value)
+                                        ? Mono.<T>error(new FailedResult(value))
+                                        : Mono.just(value))
+                                .doOnNext(v -> hedgesWon.increment());
+                    }));
+
+            Mono<T> primaryAttempt = primaryCall
+                    .flatMap(value -> failed.test(value)
+                            ? Mono.<T>error(new FailedResult(value))
+                            : Mono.just(value))
+                    .doOnError(e -> primaryFailed.tryEmitEmpty());
+            return Mono.firstWithValue(primaryAttempt, backupCall)
+                    .onErrorResume(NoSuchElementException.class, HedgedGenerationExecutor::unwrapFailure)
+                    .onErrorResume(FailedResult.class, e -> Mono.just(e.<T>value()));
+        });
+    }
+
+    /**
+     * 计算模型的对冲延迟：样本充足时取配置的分位数并限制在上下限之间，否则使用默认延迟
+     *
+     * @param modelName 模型名称
+     * @return 对冲延迟
+     */
+    public Duration hedgeDelay(String modelName) {
+        LatencyWindow window = latencies.get(modelName);
+        long millis = window != null
+                ? window.percentile(configuration.getPercentile(), configuration.getMinSamples())
+                : -1;
+        if (millis < 0) {
+            millis = configuration.getDefaultDelayMillis();
+        }
+        millis = Math.max(configuration.getMinDelayMillis(), Math.min(configuration.getMaxDelayMillis(), millis));
+        return Duration.ofMillis(millis);
+    }
+
+    private <T> Mono<T> recordLatency(String modelName, Mono<T> call, Predicate<? super T> failed) {
+        if (modelName == null) {
+            return call;
+        }
+        return call.elapsed()
+                .doOnNext(timed -> {
+                    // 失败结果通常很快返回，计入样本会拉低分位数
+                    if (!failed.test(timed.getT2())) {
+                        latencies.computeIfAbsent(modelName, k -> new LatencyWindow(configuration.getSampleWindowSize()))
+                                .record(timed.getT1());
+                    }
+                })
+                .map(timed -> timed.getT2());
+    }
+
+    /**
+     * 两个请求都没有结果时，还原主请求的错误；都只是正常完成但无值时保持为空
+     */
+    private static <T> Mono<T> unwrapFailure(NoSuchElementException e) {
+        Throwable cause = e.getCause();
+        if (cause != null) {
+            List<Throwable> errors = Exceptions.unwrapMultiple(cause);
+            for (Throwable error : errors) {
+                if (error != null) {
+                    return Mono.error(error);
+                }
+            }
+        }
+        if (e.getSuppressed().length > 0) {
+            return Mono.error(e.getSuppressed()[0]);
+        }
+        return Mono.empty();
+    }
+
+    /**
+     * 以正常值返回的失败结果，在对冲竞争中按错误处理
+     */
+    private static final class FailedResult extends RuntimeException {
+        private final transient Object value;
+
+        private FailedResult(Object value) {
+            super(null, null, false, false);
+            this.value = value;
+        }
+
+        @SuppressWarnings("unchecked")
+        private <T> T value() {
+            return (T) value;
+        }
+    }
+
+    /**
+     * 单个模型最近的成功耗时样本（环形缓冲）
+     */
+    static final class LatencyWindow {
+        private final long[] samples;
+        private int next;
+        private int size;
+
+        LatencyWindow(int capacity) {
+            this.samples = new long[Math.max(1, capacity)];
+        }
+
+        synchronized void record(long millis) {
+            samples[next] = millis;
+            next = (next + 1) % samples.length;
+            if (size < samples.length) {
+                size++;
+            }
+        }
+
+        /**
+         * @return 分位数耗时(毫秒)；样本不足时返回-1
+         */
+        synchronized long percentile(double percentile, int minSamples) {
+            if (size == 0 || size < minSamples) {
+                return -1;
+            }
+            long[] sorted = Arrays.copyOf(samples, size);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile * size) - 1;
+            return sorted[Math.max(0, Math.min(size - 1, index))];
+        }
+    }
+
+    /**
+     * 对冲预算：主请求按比例存入份额，对冲请求消耗整份；初始为空
+     */
+    static final class HedgeBudget {
+        private final double ratio;
+        private final double capacity;
+        private double balance;
+
+        HedgeBudget(double ratio, int burst) {
+            this.ratio = Math.max(0, ratio);
+            this.capacity = Math.max(0, burst);
+            this.balance = 0;
+        }
+
+        synchronized void deposit() {
+            balance = Math.min(capacity, balance + ratio);
+        }
+
+        synchronized boolean tryAcquire() {
+            if (balance < 1) {
+                return false;
+            }
+            balance -= 1;
+            return true;
+        }
+    }
+}
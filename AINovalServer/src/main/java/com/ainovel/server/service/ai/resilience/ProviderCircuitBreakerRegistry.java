@@ -0,0 +1,135 @@
+package com.ainovel.server.service.ai.resilience;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.ainovel.server.config.ProviderCircuitBreakerConfiguration;
+import com.ainovel.server.domain.model.UserAIModelConfig;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.micrometer.tagged.TaggedCircuitBreakerMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * 按 (提供商, 端点, 模型) 维护熔断器
+ *
+ * 失败仅统计上游故障（429/5xx/超时/网络错误），用户自身的密钥或参数错误不会影响其他用户。
+ * 状态、失败率、慢调用率等指标通过 resilience4j.circuitbreaker.* 发布。
+ */
+@Slf4j
+@Component
+public class ProviderCircuitBreakerRegistry {
+
+    private static final String DEFAULT_ENDPOINT = "default";
+
+    private final ProviderCircuitBreakerConfiguration configuration;
+    private final CircuitBreakerRegistry circuitBreakerRegistry;
+
+    @Autowired
+    public ProviderCircuitBreakerRegistry(ProviderCircuitBreakerConfiguration configuration,
+                                          MeterRegistry meterRegistry) {
+        this.configuration = configuration;
+
+        CircuitBreakerConfig circuitBreakerConfig = CircuitBreakerConfig.custom()
+                .slidingWindowType(CircuitBreakerConfig.SlidingWindowType.COUNT_BASED)
+                .slidingWindowSize(configuration.getSlidingWindowSize())
+                .minimumNumberOfCalls(configuration.getMinimumNumberOfCalls())
+                .failureRateThreshold(configuration.getFailureRateThreshold())
+                .slowCallRateThreshold(configuration.getSlowCallRateThreshold())
+                .slowCallDurationThreshold(Duration.ofMillis(configuration.getSlowCallDurationThresholdMillis()))
+                .waitDurationInOpenState(Duration.ofMillis(configuration.getWaitDurationInOpenStateMillis()))
+                .permittedNumberOfCallsInHalfOpenState(configuration.getPermittedCallsInHalfOpenState())
+                .automaticTransitionFromOpenToHalfOpenEnabled(true)
+                .recordException(UpstreamErrorClassifier::isUpstreamFailure)
+                .build();
+
+        this.circuitBreakerRegistry = CircuitBreakerRegistry.of(circuitBreakerConfig);
+        TaggedCircuitBreakerMetrics.ofCircuitBreakerRegistry(circuitBreakerRegistry).bindTo(meterRegistry);
+    }
+
+    /**
+     * 获取熔断器
+     *
+     * @param providerName 提供商名称
+     * @param apiEndpoint API端点，为空表示默认端点
+     * @param modelName 模型名称
+     * @return 熔断器；未启用时返回null
+     */
+    public CircuitBreaker getCircuitBreaker(String providerName, String apiEndpoint, String modelName) {
+        if (!configuration.isEnabled() || providerName == null || modelName == null) {
+            return null;
+        }
+        String name = circuitBreakerName(providerName, apiEndpoint, modelName);
+        return circuitBreakerRegistry.find(name).orElseGet(() -> {
+            CircuitBreaker circuitBreaker = circuitBreakerRegistry.circuitBreaker(name);
+            circuitBreaker.getEventPublisher().onStateTransition(event ->
+                    log.warn("AI提供商熔断器状态变化: {}, {}", event.getCircuitBreakerName(),
+                            event.getStateTransition()));
+            return circuitBreaker;
+        });
+    }
+
+    /**
+     * 判断当前是否允许调用（熔断打开时返回false）
+     *
+     * @param providerName 提供商名称
+     * @param apiEndpoint API端点
+     * @param modelName 模型名称
+     * @return 是否允许调用
+     */
+    public boolean isCallPermitted(String providerName, String apiEndpoint, String modelName) {
+        if (!configuration.isEnabled() || providerName == null || modelName == null) {
+            return true;
+        }
+        return circuitBreakerRegistry.find(circuitBreakerName(providerName, apiEndpoint, modelName))
+                .map(UpstreamCallGuard::isCallPermitted)
+                .orElse(true);
+    }
+
+    /**
+     * 获取模型熔断时的备用模型名称
+     *
+     * @param modelName 模型名称
+     * @return 备用模型名称，未配置返回null
+     */
+    public String getFallbackModel(String modelName) {
+        return modelName != null ? configuration.getFallbackModels().get(modelName) : null;
+    }
+
+    /**
+     * 模型熔断打开时，从候选配置中选出配置的备用模型（且其熔断未打开），否则保持原配置由提供商快速失败
+     *
+     * @param config 原模型配置
+     * @param candidates 用户的候选模型配置，仅在需要切换时订阅
+     * @return 实际使用的模型配置
+     */
+    public Mono<UserAIModelConfig> routeAroundOpenCircuit(UserAIModelConfig config, Flux<UserAIModelConfig> candidates) {
+        if (isCallPermitted(config.getProvider(), config.getApiEndpoint(), config.getModelName())) {
+            return Mono.just(config);
+        }
+        String fallbackModel = getFallbackModel(config.getModelName());
+        if (fallbackModel == null) {
+            log.warn("模型 {} 熔断中且未配置备用模型，请求将快速失败", config.getModelName());
+            return Mono.just(config);
+        }
+        return candidates
+                .filter(candidate -> fallbackModel.equals(candidate.getModelName()))
+                .filter(candidate -> isCallPermitted(candidate.getProvider(), candidate.getApiEndpoint(), candidate.getModelName()))
+                .next()
+                .doOnNext(candidate -> log.warn("模型 {} 熔断中，请求切换到备用模型 {}",
+                        config.getModelName(), candidate.getModelName()))
+                .defaultIfEmpty(config);
+    }
+
+    private String circuitBreakerName(String providerName, String apiEndpoint, String modelName) {
+        String endpoint = apiEndpoint == null || apiEndpoint.isBlank() ? DEFAULT_ENDPOINT : apiEndpoint.trim();
+        return providerName.toLowerCase() + "|" + endpoint + "|" + modelName;
+    }
+}
@@ -0,0 +1,187 @@
+package com.ainovel.server.service.ai.resilience;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * 上游AI调用保护：熔断快速失败 + 自适应并发限制
+ *
+ * 熔断打开时不排队直接失败；否则先获取并发许可，再向熔断器申请调用权限。
+ * 熔断器只统计真正发往上游的调用耗时，不包含在并发限制队列中的等待时间。
+ */
+public final class UpstreamCallGuard {
+
+    /**
+     * 不做任何保护的实例
+     */
+    public static final UpstreamCallGuard NONE = new UpstreamCallGuard(null, null);
+
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private final CircuitBreaker circuitBreaker;
+
+    public UpstreamCallGuard(AdaptiveConcurrencyLimiter concurrencyLimiter, CircuitBreaker circuitBreaker) {
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    /**
+     * 判断熔断器当前是否允许调用
+     *
+     * @param circuitBreaker 熔断器
+     * @return 非打开状态时返回true
+     */
+    public static boolean isCallPermitted(CircuitBreaker circuitBreaker) {
+        CircuitBreaker.State state = circuitBreaker.getState();
+        return state != CircuitBreaker.State.OPEN && state != CircuitBreaker.State.FORCED_OPEN;
+    }
+
+    /**
+     * 判断错误是否由保护机制本身产生（熔断快速失败或等待并发许可超时），这类错误不应重试
+     *
+     * @param error 错误
+     * @return 是否为保护性拒绝
+     */
+    public static boolean isRejection(Throwable error) {
+        return error instanceof CallNotPermittedException || error instanceof ConcurrencyLimitExceededException;
+    }
+
+    /**
+     * 开始一次受保护的调用
+     *
+     * @return 调用句柄，调用方需上报结果并在结束时释放
+     */
+    public Mono<GuardedCall> begin() {
+        return Mono.defer(() -> {
+            if (circuitBreaker != null && !isCallPermitted(circuitBreaker)) {
+                return Mono.error(CallNotPermittedException.createCallNotPermittedException(circuitBreaker));
+            }
+            Mono<GuardedCall> admitted = concurrencyLimiter != null
+                    ? concurrencyLimiter.acquire().map(GuardedCall::new)
+                    : Mono.fromSupplier(() -> new GuardedCall(null));
+            return admitted.flatMap(call -> {
+                if (call.acquireCircuitBreaker()) {
+                    return Mono.just(call);
+                }
+                call.release();
+                return Mono.error(CallNotPermittedException.createCallNotPermittedException(circuitBreaker));
+            });
+        });
+    }
+
+    /**
+     * 保护非流式调用，以完成耗时作为样本
+     *
+     * @param call 上游调用
+     * @return 调用结果
+     */
+    public <T> Mono<T> guard(Mono<T> call) {
+        if (this == NONE) {
+            return call;
+        }
+        return begin().flatMap(guarded -> call
+                .doOnSuccess(v -> guarded.onComplete())
+                .doOnError(guarded::onError)
+                .doFinally(signal -> guarded.release()));
+    }
+
+    /**
+     * 保护流式调用，以首个元素到达的耗时作为样本
+     *
+     * @param call 上游流式调用
+     * @return 流式结果
+     */
+    public <T> Flux<T> guardStream(Flux<T> call) {
+        if (this == NONE) {
+            return call;
+        }
+        return begin().flatMapMany(guarded -> call
+                .doOnNext(v -> guarded.onFirstResponse())
+                .doOnComplete(guarded::onComplete)
+                .doOnError(guarded::onError)
+                .doFinally(signal -> guarded.release()));
+    }
+
+    /**
+     * 一次受保护调用的句柄。结果样本只上报一次，release 可重复调用
+     */
+    public final class GuardedCall {
+        private final AdaptiveConcurrencyLimiter.Permit permit;
+        private final AtomicBoolean sampled = new AtomicBoolean(false);
+        private final AtomicBoolean released = new AtomicBoolean(false);
+        private long startNanos;
+        private boolean circuitBreakerAcquired;
+
+        private GuardedCall(AdaptiveConcurrencyLimiter.Permit permit) {
+            this.permit = permit;
+        }
+
+        private boolean acquireCircuitBreaker() {
+            startNanos = System.nanoTime();
+            if (circuitBreaker == null) {
+                return true;
+            }
+            circuitBreakerAcquired = circuitBreaker.tryAcquirePermission();
+            return circuitBreakerAcquired;
+        }
+
+        /**
+         * 收到首个响应（流式调用）
+         */
+        public void onFirstResponse() {
+            if (!sampled.compareAndSet(false, true)) {
+                return;
+            }
+            if (permit != null) {
+                permit.recordSuccess();
+            }
+            if (circuitBreakerAcquired) {
+                circuitBreaker.onSuccess(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        /**
+         * 调用成功完成
+         */
+        public void onComplete() {
+            onFirstResponse();
+            release();
+        }
+
+        /**
+         * 调用失败
+         *
+         * @param error 错误
+         */
+        public void onError(Throwable error) {
+            if (sampled.compareAndSet(false, true)) {
+                if (permit != null) {
+                    permit.recordFailure(error);
+                }
+                if (circuitBreakerAcquired) {
+                    circuitBreaker.onError(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS, error);
+                }
+            }
+            release();
+        }
+
+        /**
+         * 释放占用的并发许可与熔断器调用权限（未上报结果时视为放弃）
+         */
+        public void release() {
+            if (!released.compareAndSet(false, true)) {
+                return;
+            }
+            if (circuitBreakerAcquired && sampled.compareAndSet(false, true)) {
+                circuitBreaker.releasePermission();
+            }
+            if (permit != null) {
+                permit.release();
+            }
+        }
+    }
+}
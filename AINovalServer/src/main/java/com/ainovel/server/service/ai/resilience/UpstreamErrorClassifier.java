@@ -0,0 +1,136 @@
+package com.ainovel.server.service.ai.resilience;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Optional;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import dev.langchain4j.exception.HttpException;
+import dev.langchain4j.exception.InternalServerException;
+import dev.langchain4j.exception.RateLimitException;
+
+/**
+ * 上游AI服务错误分类工具
+ * 统一识别WebClient与LangChain4j抛出的过载类错误（429/5xx/超时）并提取Retry-After提示
+ */
+public final class UpstreamErrorClassifier {
+
+    private static final Pattern RETRY_AFTER_PATTERN =
+            Pattern.compile("retry[-_ ]?after\"?[:=\\s]*\"?(\\d+(?:\\.\\d+)?)\\s*(ms|s)?", Pattern.CASE_INSENSITIVE);
+
+    private static final Pattern STATUS_CODE_PATTERN =
+            Pattern.compile("\\b(?:status(?:\\s*code)?|HTTP)[:=\\s]*(429|5\\d\\d)\\b", Pattern.CASE_INSENSITIVE);
+
+    private UpstreamErrorClassifier() {
+    }
+
+    /**
+     * 判断错误是否表示上游过载（需要降低并发）
+     *
+     * @param error 错误
+     * @return 是否为429/5xx/超时
+     */
+    public static boolean isOverload(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause() == t ? null : t.getCause()) {
+            if (t instanceof TimeoutException
+                    || t instanceof java.net.SocketTimeoutException
+                    || t instanceof java.net.http.HttpTimeoutException
+                    || t instanceof dev.langchain4j.exception.TimeoutException
+                    || t instanceof RateLimitException
+                    || t instanceof InternalServerException) {
+                return true;
+            }
+            if (t instanceof WebClientResponseException wcre) {
+                return isOverloadStatus(wcre.getStatusCode().value());
+            }
+            if (t instanceof HttpException httpException) {
+                return isOverloadStatus(httpException.statusCode());
+            }
+            if (t.getMessage() != null && STATUS_CODE_PATTERN.matcher(t.getMessage()).find()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 判断错误是否属于上游故障（过载或网络层错误），用于熔断统计
+     * 认证失败、参数错误等调用方自身的问题不计入
+     *
+     * @param error 错误
+     * @return 是否为上游故障
+     */
+    public static boolean isUpstreamFailure(Throwable error) {
+        if (isOverload(error)) {
+            return true;
+        }
+        for (Throwable t = error; t != null; t = t.getCause() == t ? null : t.getCause()) {
+            if (t instanceof java.io.IOException || t instanceof WebClientRequestException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 提取上游返回的 Retry-After 提示
+     * 优先读取 WebClient 响应头，其次从错误信息中解析（LangChain4j 不暴露响应头）
+     *
+     * @param error 错误
+     * @return 建议的等待时长
+     */
+    public static Optional<Duration> retryAfter(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause() == t ? null : t.getCause()) {
+            if (t instanceof WebClientResponseException wcre && wcre.getHeaders() != null) {
+                Optional<Duration> fromHeader = parseRetryAfterHeader(wcre.getHeaders().getFirst("Retry-After"));
+                if (fromHeader.isPresent()) {
+                    return fromHeader;
+                }
+            }
+            if (t.getMessage() != null) {
+                Matcher matcher = RETRY_AFTER_PATTERN.matcher(t.getMessage());
+                if (matcher.find()) {
+                    double value = Double.parseDouble(matcher.group(1));
+                    boolean millis = "ms".equalsIgnoreCase(matcher.group(2));
+                    return Optional.of(Duration.ofMillis((long) (millis ? value : value * 1000)));
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * 解析 Retry-After 头，支持秒数与 HTTP 日期两种格式
+     *
+     * @param header 头的值
+     * @return 等待时长
+     */
+    public static Optional<Duration> parseRetryAfterHeader(String header) {
+        if (header == null || header.isBlank()) {
+            return Optional.empty();
+        }
+        String value = header.trim();
+        try {
+            return Optional.of(Duration.ofMillis((long) (Double.parseDouble(value) * 1000)));
+        } catch (NumberFormatException ignored) {
+            // 非数字，尝试按HTTP日期解析
+        }
+        try {
+            ZonedDateTime at = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME);
+            Duration delay = Duration.between(ZonedDateTime.now(at.getZone()), at);
+            return Optional.of(delay.isNegative() ? Duration.ZERO : delay);
+        } catch (Exception ignored) {
+            return Optional.empty();
+        }
+    }
+
+    private static boolean isOverloadStatus(int status) {
+        return status == 429 || status >= 500;
+    }
+}
@@ -0,0 +1,483 @@
+package com.ainovel.server.service.ai.stream;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.reactivestreams.Subscription;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.ainovel.server.config.StreamResumeConfiguration;
+import com.ainovel.server.domain.model.GenerationCheckpoint;
+import com.ainovel.server.repository.GenerationCheckpointRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+/**
+ * 可续传流式生成注册表
+ *
+ * 每个生成独立订阅上游，客户端连接只是它的观察者：连接断开不会取消生成，已生成的事件保存在
+ * 有界环形缓冲中，并按固定间隔追加写入Mongo检查点。客户端携带 Last-Event-ID 重连时，
+ * 先补发缺失的部分（内存不足时从检查点读取），再继续接收实时事件，不会重复调用上游模型。
+ * 向上游的请求量以最慢的已连接客户端为准：其未消费的事件达到上限时暂停拉取；没有客户端连接时不受限制。
+ *
+ * 生成只在发起它的节点上实时续传；其他节点或重启后只能从检查点补发已持久化的部分。
+ */
+@Slf4j
+@Component
+public class GenerationStreamRegistry {
+
+    private final StreamResumeConfiguration configuration;
+    private final GenerationCheckpointRepository checkpointRepository;
+    private final ObjectMapper objectMapper;
+    private final Map<String, GenerationSession<?>> sessions = new ConcurrentHashMap<>();
+
+    @Autowired
+    public GenerationStreamRegistry(StreamResumeConfiguration configuration,
+            GenerationCheckpointRepository checkpointRepository, ObjectMapper objectMapper) {
+        this.configuration = configuration;
+        this.checkpointRepository = checkpointRepository;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * 续传 Last-Event-ID 指向的生成，找不到时发起新的生成
+     *
+     * @param lastEventId 客户端带回的事件ID，可为null
+     * @param scope 生成所属范围（如用户+会话），续传时必须与发起时一致
+     * @param type 事件数据类型，用于检查点的反序列化
+     * @param source 上游生成，只在发起新生成时调用
+     * @return 带序号的事件流
+     */
+    public <T> Flux<StreamEvent<T>> startOrResume(String lastEventId, String scope, Class<T> type,
+            Supplier<Flux<T>> source) {
+        if (!configuration.isEnabled()) {
+            return Flux.defer(() -> {
+                String generationId = UUID.randomUUID().toString();
+                AtomicLong seq = new AtomicLong();
+                return source.get().map(data -> new StreamEvent<>(generationId, seq.incrementAndGet(), data));
+            });
+        }
+        StreamEvent.Position position = StreamEvent.parse(lastEventId);
+        if (position == null) {
+            return start(scope, type, source);
+        }
+        return resume(position, scope, type)
+                .switchIfEmpty(Mono.fromSupplier(() -> {
+                    log.info("未找到可续传的生成 {}，发起新的生成", position.generationId());
+                    return start(scope, type, source);
+                }))
+                .flatMapMany(events -> events);
+    }
+
+    /**
+     * 当前在内存中的生成数量
+     */
+    public int activeCount() {
+        return sessions.size();
+    }
+
+    private <T> Flux<StreamEvent<T>> start(String scope, Class<T> type, Supplier<Flux<T>> source) {
+        return Flux.defer(() -> {
+            GenerationSession<T> session = new GenerationSession<>(UUID.randomUUID().toString(), scope, type);
+            sessions.put(session.id, session);
+            Flux<StreamEvent<T>> events = session.attach(0, List.of());
+            session.subscribeUpstream(source);
+            log.debug("发起可续传生成: generationId={}, scope={}", session.id, scope);
+            return events;
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> Mono<Flux<StreamEvent<T>>> resume(StreamEvent.Position position, String scope, Class<T> type) {
+        GenerationSession<?> found = sessions.get(position.generationId());
+        if (found != null) {
+            if (!found.scope.equals(scope) || !found.type.equals(type)) {
+                log.warn("生成 {} 的范围与续传请求不一致，拒绝续传", position.generationId());
+                return Mono.empty();
+            }
+            GenerationSession<T> session = (GenerationSession<T>) found;
+            log.info("续传生成 {}，客户端已收到序号 {}", session.id, position.seq());
+            return Mono.just(session.resume(position.seq()));
+        }
+        return checkpointRepository.findById(position.generationId())
+                .filter(checkpoint -> scope.equals(checkpoint.getScope()))
+                .map(checkpoint -> {
+                    log.info("从检查点续传生成 {}，客户端已收到序号 {}，检查点状态 {}",
+                            checkpoint.getId(), position.seq(), checkpoint.getStatus());
+                    List<StreamEvent<T>> persisted = decode(checkpoint, type);
+                    return Flux.fromIterable(persisted).filter(event -> event.seq() > position.seq());
+                });
+    }
+
+    private <T> List<StreamEvent<T>> decode(GenerationCheckpoint checkpoint, Class<T> type) {
+        List<String> chunks = checkpoint.getChunks();
+        if (chunks == null || chunks.isEmpty()) {
+            return List.of();
+        }
+        List<StreamEvent<T>> events = new ArrayList<>(chunks.size());
+        for (int i = 0; i < chunks.size(); i++) {
+            try {
+                events.add(new StreamEvent<>(checkpoint.getId(), i + 1, objectMapper.readValue(chunks.get(i), type)));
+            } catch (JsonProcessingException e) {
+                log.warn("无法解析生成 {} 的检查点事件 #{}，跳过", checkpoint.getId(), i + 1, e);
+            }
+        }
+        return events;
+    }
+
+    /**
+     * 单个生成的状态：环形缓冲、未持久化事件与当前观察者。所有状态变更都在实例锁内完成，
+     * 因此补发与实时事件之间不会遗漏或重复。
+     */
+    private final class GenerationSession<T> {
+
+        private final String id;
+        private final String scope;
+        private final Class<T> type;
+
+        private final ArrayDeque<StreamEvent<T>> ring = new ArrayDeque<>();
+        // 尚未确认写入检查点的事件，写入成功后移除
+        private final ArrayDeque<StreamEvent<T>> pending = new ArrayDeque<>();
+        // 观察者在收到事件时可能同步取消并移除自身，因此使用写时复制列表
+        private final List<Observer> observers = new CopyOnWriteArrayList<>();
+        private final Sinks.Many<CheckpointRequest> checkpointQueue = Sinks.many().unicast().onBackpressureBuffer();
+
+        private long lastSeq;
+        private long persistedSeq;
+        private long lastCheckpointAt = System.currentTimeMillis();
+        private boolean checkpointBroken;
+        private boolean terminated;
+        private Throwable failure;
+        private UpstreamSubscriber upstream;
+        // 已向上游请求但尚未到达的事件数
+        private long requested;
+        private Disposable detachTimer;
+
+        GenerationSession(String id, String scope, Class<T> type) {
+            this.id = id;
+            this.scope = scope;
+            this.type = type;
+            checkpointQueue.asFlux()
+                    .concatMap(this::writeCheckpoint)
+                    .subscribe();
+        }
+
+        void subscribeUpstream(Supplier<Flux<T>> source) {
+            UpstreamSubscriber subscriber = new UpstreamSubscriber();
+            synchronized (this) {
+                upstream = subscriber;
+            }
+            Flux.defer(source).subscribe(subscriber);
+        }
+
+        /**
+         * 续传：已收到序号之前的事件若已不在内存中，先从检查点读取
+         */
+        Flux<StreamEvent<T>> resume(long afterSeq) {
+            synchronized (this) {
+                if (afterSeq + 1 >= earliestInMemory()) {
+                    return attach(afterSeq, List.of());
+                }
+            }
+            return checkpointRepository.findById(id)
+                    .map(checkpoint -> decode(checkpoint, type))
+                    .defaultIfEmpty(List.of())
+                    .flatMapMany(persisted -> attach(afterSeq, persisted));
+        }
+
+        /**
+         * 注册观察者并补发 afterSeq 之后的事件，依次取自检查点、未持久化事件与环形缓冲
+         */
+        synchronized Flux<StreamEvent<T>> attach(long afterSeq, List<StreamEvent<T>> persisted) {
+            Sinks.Many<StreamEvent<T>> sink = Sinks.many().unicast().onBackpressureBuffer();
+            Observer observer = new Observer(sink);
+            long cursor = afterSeq;
+            for (List<StreamEvent<T>> source : List.of(persisted, List.copyOf(pending), List.copyOf(ring))) {
+                for (StreamEvent<T> event : source) {
+                    if (event.seq() > cursor) {
+                        if (event.seq() > cursor + 1) {
+                            log.warn("生成 {} 的事件 {}-{} 已不可用，续传将跳过", id, cursor + 1, event.seq() - 1);
+                        }
+                        observer.emit(event);
+                        cursor = event.seq();
+                    }
+                }
+            }
+            if (terminated) {
+                if (failure != null) {
+                    sink.tryEmitError(failure);
+                } else {
+                    sink.tryEmitComplete();
+                }
+                return sink.asFlux();
+            }
+            observers.add(observer);
+            if (detachTimer != null) {
+                detachTimer.dispose();
+                detachTimer = null;
+            }
+            return sink.asFlux()
+                    .doOnNext(event -> onDelivered(observer))
+                    .doFinally(signal -> detach(observer));
+        }
+
+        private long earliestInMemory() {
+            long earliest = lastSeq + 1;
+            if (!pending.isEmpty()) {
+                earliest = Math.min(earliest, pending.peekFirst().seq());
+            }
+            if (!ring.isEmpty()) {
+                earliest = Math.min(earliest, ring.peekFirst().seq());
+            }
+            return earliest;
+        }
+
+        private void detach(Observer observer) {
+            synchronized (this) {
+                if (!observers.remove(observer) || !observers.isEmpty() || terminated) {
+                    return;
+                }
+                log.info("生成 {} 的所有客户端已断开，继续在后台生成", id);
+                detachTimer = Mono.delay(Duration.ofSeconds(configuration.getDetachedTimeoutSeconds()))
+                        .subscribe(tick -> abandonIfDetached());
+            }
+            refill();
+        }
+
+        private void onDelivered(Observer observer) {
+            synchronized (this) {
+                observer.delivered++;
+            }
+            refill();
+        }
+
+        /**
+         * 按最慢的观察者补充上游请求量；与limitRate相同，缺口达到一半时才批量补充
+         */
+        private void refill() {
+            UpstreamSubscriber subscriber;
+            long toRequest;
+            synchronized (this) {
+                if (terminated || upstream == null) {
+                    return;
+                }
+                long window = Math.max(1, configuration.getObserverBufferSize());
+                long lag = 0;
+                for (Observer observer : observers) {
+                    lag = Math.max(lag, observer.enqueued - observer.delivered);
+                }
+                toRequest = window - lag - requested;
+                if (toRequest <= 0 || (requested > 0 && toRequest < (window + 1) / 2)) {
+                    return;
+                }
+                requested += toRequest;
+                subscriber = upstream;
+            }
+            subscriber.request(toRequest);
+        }
+
+        private void abandonIfDetached() {
+            UpstreamSubscriber toCancel;
+            synchronized (this) {
+                if (!observers.isEmpty() || terminated) {
+                    return;
+                }
+                toCancel = upstream;
+            }
+            log.warn("生成 {} 长时间无客户端连接，取消上游生成", id);
+            if (toCancel != null) {
+                toCancel.dispose();
+            }
+            terminate(new IllegalStateException("生成已因长时间无客户端连接而取消"));
+        }
+
+        private synchronized void onNext(T data) {
+            if (terminated) {
+                return;
+            }
+            requested = Math.max(0, requested - 1);
+            StreamEvent<T> event = new StreamEvent<>(id, ++lastSeq, data);
+            ring.addLast(event);
+            if (ring.size() > configuration.getRingCapacity()) {
+                ring.removeFirst();
+            }
+            if (!checkpointBroken) {
+                pending.addLast(event);
+                // 检查点持续写入失败时不无限堆积，放弃该生成的检查点
+                if (pending.size() > configuration.getRingCapacity() * 4) {
+                    log.warn("生成 {} 的检查点积压过多，停止写入检查点", id);
+                    checkpointBroken = true;
+                    pending.clear();
+                }
+            }
+            for (Observer observer : observers) {
+                observer.emit(event);
+            }
+            long now = System.currentTimeMillis();
+            if (now - lastCheckpointAt >= configuration.getCheckpointIntervalMillis()) {
+                lastCheckpointAt = now;
+                enqueueCheckpoint(GenerationCheckpoint.STATUS_RUNNING, null);
+            }
+        }
+
+        private void onError(Throwable error) {
+            log.warn("可续传生成 {} 失败: {}", id, error.getMessage());
+            terminate(error);
+        }
+
+        private void onComplete() {
+            terminate(null);
+        }
+
+        private void terminate(Throwable error) {
+            synchronized (this) {
+                if (terminated) {
+                    return;
+                }
+                terminated = true;
+                failure = error;
+                if (detachTimer != null) {
+                    detachTimer.dispose();
+                }
+                for (Observer observer : observers) {
+                    if (error != null) {
+                        observer.sink.tryEmitError(error);
+                    } else {
+                        observer.sink.tryEmitComplete();
+                    }
+                }
+                observers.clear();
+                enqueueCheckpoint(error != null ? GenerationCheckpoint.STATUS_FAILED : GenerationCheckpoint.STATUS_COMPLETED,
+                        error != null ? error.getMessage() : null);
+                checkpointQueue.tryEmitComplete();
+            }
+            Mono.delay(Duration.ofSeconds(configuration.getRetentionSeconds()))
+                    .subscribe(tick -> sessions.remove(id, this));
+        }
+
+        /**
+         * 请求写入检查点；写入按顺序串行执行，每次写入时才打包尚未持久化的事件，失败的部分由下一次写入补上
+         */
+        private void enqueueCheckpoint(String status, String error) {
+            if (!checkpointBroken) {
+                checkpointQueue.tryEmitNext(new CheckpointRequest(status, error));
+            }
+        }
+
+        private Mono<Boolean> writeCheckpoint(CheckpointRequest request) {
+            long fromSeq;
+            long toSeq;
+            List<String> chunks = new ArrayList<>();
+            synchronized (this) {
+                if (checkpointBroken) {
+                    return Mono.just(false);
+                }
+                fromSeq = persistedSeq;
+                toSeq = persistedSeq;
+                for (StreamEvent<T> event : pending) {
+                    try {
+                        chunks.add(objectMapper.writeValueAsString(event.data()));
+                    } catch (JsonProcessingException e) {
+                        log.warn("无法序列化生成 {} 的事件 #{}，停止写入检查点", id, event.seq(), e);
+                        checkpointBroken = true;
+                        pending.clear();
+                        return Mono.just(false);
+                    }
+                    toSeq = event.seq();
+                }
+            }
+            if (chunks.isEmpty() && GenerationCheckpoint.STATUS_RUNNING.equals(request.status())) {
+                return Mono.just(false);
+            }
+            long writtenSeq = toSeq;
+            LocalDateTime expireAt = LocalDateTime.now().plusHours(configuration.getCheckpointTtlHours());
+            return checkpointRepository.appendChunks(id, scope, fromSeq, chunks, request.status(), request.error(),
+                            expireAt)
+                    .onErrorResume(e -> {
+                        log.warn("写入生成 {} 的检查点失败: {}", id, e.getMessage());
+                        return Mono.just(false);
+                    })
+                    .doOnNext(written -> {
+                        if (written) {
+                            onCheckpointWritten(writtenSeq);
+                        }
+                    });
+        }
+
+        private synchronized void onCheckpointWritten(long writtenSeq) {
+            persistedSeq = writtenSeq;
+            while (!pending.isEmpty() && pending.peekFirst().seq() <= writtenSeq) {
+                pending.removeFirst();
+            }
+        }
+
+        /**
+         * 一个客户端连接：已放入其缓冲与已被其消费的事件数，均在会话锁内更新
+         */
+        private final class Observer {
+            private final Sinks.Many<StreamEvent<T>> sink;
+            private long enqueued;
+            private long delivered;
+
+            private Observer(Sinks.Many<StreamEvent<T>> sink) {
+                this.sink = sink;
+            }
+
+            private void emit(StreamEvent<T> event) {
+                if (sink.tryEmitNext(event).isSuccess()) {
+                    enqueued++;
+                }
+            }
+        }
+
+        /**
+         * 上游订阅：请求量由 refill 按观察者的消费进度补充
+         */
+        private final class UpstreamSubscriber extends BaseSubscriber<T> {
+
+            @Override
+            protected void hookOnSubscribe(Subscription subscription) {
+                refill();
+            }
+
+            @Override
+            protected void hookOnNext(T value) {
+                GenerationSession.this.onNext(value);
+                refill();
+            }
+
+            @Override
+            protected void hookOnError(Throwable throwable) {
+                GenerationSession.this.onError(throwable);
+            }
+
+            @Override
+            protected void hookOnComplete() {
+                GenerationSession.this.onComplete();
+            }
+        }
+    }
+
+    /**
+     * 检查点写入请求：写入后的状态与失败原因
+     */
+    private record CheckpointRequest(String status, String error) {
+    }
+}
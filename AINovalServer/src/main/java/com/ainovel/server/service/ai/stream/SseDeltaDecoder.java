@@ -0,0 +1,372 @@
+package com.ainovel.server.service.ai.stream;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+
+/**
+ * SSE 流式增量解码器
+ *
+ * 直接在上游返回的 DataBuffer 上按行切分事件，data 行的 JSON 负载交给每个流复用的非阻塞 JsonParser，
+ * 沿给定路径（如 choices[0].delta.content）提取增量文本，不再为每个分块创建字符串、对象树和新的解析器。
+ * 堆内缓冲区按偏移直接喂给解析器；直接内存缓冲区及跨缓冲区的半行先复制到按流复用的暂存数组。
+ *
+ * 每个 data 行视为一个完整的 JSON 值（OpenAI 兼容接口、Anthropic、Gemini alt=sse 均如此），
+ * 无法解析的事件记录日志后跳过，不影响后续事件。
+ */
+@Slf4j
+public final class SseDeltaDecoder {
+
+    /**
+     * OpenAI 兼容的 chat/completions 流：choices[0].delta.content
+     */
+    public static final SseDeltaDecoder OPENAI_CHAT = new SseDeltaDecoder("choices", 0, "delta", "content");
+
+    /**
+     * Anthropic messages 流：content_block_delta 事件的 delta.text
+     */
+    public static final SseDeltaDecoder ANTHROPIC_MESSAGES = new SseDeltaDecoder("delta", "text");
+
+    /**
+     * Gemini streamGenerateContent?alt=sse 流：candidates[0].content.parts[0].text
+     */
+    public static final SseDeltaDecoder GEMINI = new SseDeltaDecoder("candidates", 0, "content", "parts", 0, "text");
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private static final byte[] DATA_FIELD = {'d', 'a', 't', 'a', ':'};
+    private static final byte[] DONE = {'[', 'D', 'O', 'N', 'E', ']'};
+
+    /**
+     * 路径上每一级的字段名；为null表示该级是数组下标
+     */
+    private final String[] fieldNames;
+    private final int[] indexes;
+
+    /**
+     * @param path 增量文本所在路径，String 表示对象字段，Integer 表示数组下标
+     */
+    public SseDeltaDecoder(Object... path) {
+        this.fieldNames = new String[path.length];
+        this.indexes = new int[path.length];
+        for (int i = 0; i < path.length; i++) {
+            if (path[i] instanceof Integer index) {
+                indexes[i] = index;
+            } else if (path[i] instanceof String name) {
+                // 与解析器规范化后的字段名同为常量池字符串，比较时可直接命中引用相等
+                fieldNames[i] = name.intern();
+            } else {
+                throw new IllegalArgumentException("路径只能由字段名或数组下标组成: " + path[i]);
+            }
+        }
+    }
+
+    /**
+     * 解码上游 SSE 响应体
+     *
+     * @param body 上游响应体（bodyToFlux(DataBuffer.class)）
+     * @return 增量文本流，已过滤空文本与 [DONE]
+     */
+    public Flux<String> decode(Flux<DataBuffer> body) {
+        return Flux.using(this::newSession,
+                        session -> body
+                                .concatMapIterable(buffer -> collect(session, buffer))
+                                .concatWith(Flux.defer(() -> Flux.fromIterable(finish(session)))),
+                        Session::close)
+                .doOnDiscard(DataBuffer.class, DataBufferUtils::release);
+    }
+
+    /**
+     * 创建一个解码会话（每个上游流一个，非线程安全）
+     */
+    public Session newSession() {
+        return new Session();
+    }
+
+    private static List<String> collect(Session session, DataBuffer buffer) {
+        DeltaCollector collector = new DeltaCollector();
+        session.decode(buffer, collector);
+        return collector.result();
+    }
+
+    private static List<String> finish(Session session) {
+        DeltaCollector collector = new DeltaCollector();
+        session.finish(collector);
+        return collector.result();
+    }
+
+    /**
+     * 收集一个数据块中解出的增量文本，没有内容时不分配列表
+     */
+    private static final class DeltaCollector implements Consumer<String> {
+        private List<String> deltas;
+
+        @Override
+        public void accept(String delta) {
+            if (deltas == null) {
+                deltas = new ArrayList<>(2);
+            }
+            deltas.add(delta);
+        }
+
+        List<String> result() {
+            return deltas != null ? deltas : Collections.emptyList();
+        }
+    }
+
+    /**
+     * 单个上游流的解码状态：未结束的半行与复用的解析器
+     */
+    public final class Session implements AutoCloseable {
+
+        private JsonParser parser;
+        private byte[] pending = new byte[512];
+        private int pendingLength;
+
+        private Session() {
+        }
+
+        /**
+         * 解码一个数据块并释放它
+         *
+         * @param buffer 上游数据块
+         * @param downstream 增量文本接收者
+         */
+        public void decode(DataBuffer buffer, Consumer<String> downstream) {
+            try (DataBuffer.ByteBufferIterator iterator = buffer.readableByteBuffers()) {
+                while (iterator.hasNext()) {
+                    ByteBuffer byteBuffer = iterator.next();
+                    if (byteBuffer.hasArray()) {
+                        decode(byteBuffer.array(), byteBuffer.arrayOffset() + byteBuffer.position(),
+                                byteBuffer.remaining(), downstream);
+                    } else {
+                        decodeDirect(byteBuffer, downstream);
+                    }
+                }
+            } finally {
+                DataBufferUtils.release(buffer);
+            }
+        }
+
+        /**
+         * 解码一段字节
+         *
+         * @param bytes 字节数组
+         * @param offset 起始偏移
+         * @param length 长度
+         * @param downstream 增量文本接收者
+         */
+        public void decode(byte[] bytes, int offset, int length, Consumer<String> downstream) {
+            int end = offset + length;
+            int lineStart = offset;
+            for (int i = offset; i < end; i++) {
+                if (bytes[i] != '\n') {
+                    continue;
+                }
+                if (pendingLength > 0) {
+                    appendPending(bytes, lineStart, i);
+                    onLine(pending, 0, pendingLength, downstream);
+                    pendingLength = 0;
+                } else {
+                    onLine(bytes, lineStart, i, downstream);
+                }
+                lineStart = i + 1;
+            }
+            if (lineStart < end) {
+                appendPending(bytes, lineStart, end);
+            }
+        }
+
+        /**
+         * 上游结束时处理最后一个未以换行结尾的行
+         */
+        public void finish(Consumer<String> downstream) {
+            if (pendingLength > 0) {
+                onLine(pending, 0, pendingLength, downstream);
+                pendingLength = 0;
+            }
+        }
+
+        @Override
+        public void close() {
+            if (parser != null) {
+                try {
+                    parser.close();
+                } catch (IOException ignored) {
+                    // 非阻塞解析器不持有外部资源
+                }
+                parser = null;
+            }
+        }
+
+        private void decodeDirect(ByteBuffer byteBuffer, Consumer<String> downstream) {
+            int limit = byteBuffer.limit();
+            int lineStart = byteBuffer.position();
+            for (int i = lineStart; i < limit; i++) {
+                if (byteBuffer.get(i) == '\n') {
+                    appendPending(byteBuffer, lineStart, i);
+                    onLine(pending, 0, pendingLength, downstream);
+                    pendingLength = 0;
+                    lineStart = i + 1;
+                }
+            }
+            if (lineStart < limit) {
+                appendPending(byteBuffer, lineStart, limit);
+            }
+        }
+
+        private void appendPending(byte[] bytes, int start, int end) {
+            int length = end - start;
+            ensurePendingCapacity(length);
+            System.arraycopy(bytes, start, pending, pendingLength, length);
+            pendingLength += length;
+        }
+
+        private void appendPending(ByteBuffer byteBuffer, int start, int end) {
+            int length = end - start;
+            ensurePendingCapacity(length);
+            byteBuffer.get(start, pending, pendingLength, length);
+            pendingLength += length;
+        }
+
+        private void ensurePendingCapacity(int extra) {
+            if (pendingLength + extra > pending.length) {
+                byte[] grown = new byte[Math.max(pending.length * 2, pendingLength + extra)];
+                System.arraycopy(pending, 0, grown, 0, pendingLength);
+                pending = grown;
+            }
+        }
+
+        private void onLine(byte[] bytes, int start, int end, Consumer<String> downstream) {
+            if (end > start && bytes[end - 1] == '\r') {
+                end--;
+            }
+            // 空行是事件分隔符；event:/id:/注释行与增量文本无关
+            if (!startsWith(bytes, start, end, DATA_FIELD)) {
+                return;
+            }
+            start += DATA_FIELD.length;
+            if (start < end && bytes[start] == ' ') {
+                start++;
+            }
+            if (start == end || startsWith(bytes, start, end, DONE)) {
+                return;
+            }
+            String delta = extract(bytes, start, end);
+            if (delta != null && !delta.isEmpty()) {
+                downstream.accept(delta);
+            }
+        }
+
+        private String extract(byte[] bytes, int start, int end) {
+            try {
+                JsonParser jsonParser = parser();
+                ((ByteArrayFeeder) jsonParser.getNonBlockingInputFeeder()).feedInput(bytes, start, end);
+                String delta = match(jsonParser, next(jsonParser), 0);
+                // 确认负载已完整消费，解析器回到等待下一个值的状态
+                if (jsonParser.nextToken() != JsonToken.NOT_AVAILABLE) {
+                    throw new JsonParseException(jsonParser, "SSE事件包含多余内容");
+                }
+                return delta;
+            } catch (IOException e) {
+                log.warn("跳过无法解析的SSE事件: {}", e.getMessage());
+                close();
+                return null;
+            }
+        }
+
+        private JsonParser parser() throws IOException {
+            if (parser == null) {
+                parser = JSON_FACTORY.createNonBlockingByteArrayParser();
+            }
+            return parser;
+        }
+    }
+
+    private String match(JsonParser parser, JsonToken token, int depth) throws IOException {
+        if (depth == fieldNames.length) {
+            if (token == JsonToken.VALUE_STRING) {
+                return parser.getText();
+            }
+            skip(parser, token);
+            return null;
+        }
+        String result = null;
+        String fieldName = fieldNames[depth];
+        if (fieldName != null && token == JsonToken.START_OBJECT) {
+            while (next(parser) == JsonToken.FIELD_NAME) {
+                boolean hit = result == null && fieldName.equals(parser.currentName());
+                JsonToken value = next(parser);
+                if (hit) {
+                    result = match(parser, value, depth + 1);
+                } else {
+                    skip(parser, value);
+                }
+            }
+            return result;
+        }
+        if (fieldName == null && token == JsonToken.START_ARRAY) {
+            int index = 0;
+            for (JsonToken element = next(parser); element != JsonToken.END_ARRAY; element = next(parser), index++) {
+                if (result == null && index == indexes[depth]) {
+                    result = match(parser, element, depth + 1);
+                } else {
+                    skip(parser, element);
+                }
+            }
+            return result;
+        }
+        skip(parser, token);
+        return null;
+    }
+
+    private static void skip(JsonParser parser, JsonToken token) throws IOException {
+        if (token != JsonToken.START_OBJECT && token != JsonToken.START_ARRAY) {
+            return;
+        }
+        int depth = 1;
+        while (depth > 0) {
+            JsonToken next = next(parser);
+            if (next == JsonToken.START_OBJECT || next == JsonToken.START_ARRAY) {
+                depth++;
+            } else if (next == JsonToken.END_OBJECT || next == JsonToken.END_ARRAY) {
+                depth--;
+            }
+        }
+    }
+
+    private static JsonToken next(JsonParser parser) throws IOException {
+        JsonToken token = parser.nextToken();
+        if (token == null || token == JsonToken.NOT_AVAILABLE) {
+            throw new JsonParseException(parser, "SSE事件JSON不完整");
+        }
+        return token;
+    }
+
+    private static boolean startsWith(byte[] bytes, int start, int end, byte[] prefix) {
+        if (end - start < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (bytes[start + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,47 @@
+package com.ainovel.server.service.ai.stream;
+
+/**
+ * 带序号的流式生成事件
+ * SSE 事件ID为 "生成ID:序号"，客户端重连时通过 Last-Event-ID 原样带回
+ *
+ * @param generationId 生成ID
+ * @param seq 序号，从1开始连续递增
+ * @param data 事件数据
+ */
+public record StreamEvent<T>(String generationId, long seq, T data) {
+
+    /**
+     * @return SSE 事件ID
+     */
+    public String eventId() {
+        return generationId + ":" + seq;
+    }
+
+    /**
+     * 解析 Last-Event-ID
+     *
+     * @param lastEventId 客户端带回的事件ID
+     * @return 续传位置；为空或格式不符时返回null
+     */
+    public static Position parse(String lastEventId) {
+        if (lastEventId == null) {
+            return null;
+        }
+        int sep = lastEventId.lastIndexOf(':');
+        if (sep <= 0 || sep == lastEventId.length() - 1) {
+            return null;
+        }
+        try {
+            long seq = Long.parseLong(lastEventId.substring(sep + 1).trim());
+            return seq < 0 ? null : new Position(lastEventId.substring(0, sep).trim(), seq);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 续传位置：客户端已收到的最后一个事件
+     */
+    public record Position(String generationId, long seq) {
+    }
+}
@@ -0,0 +1,177 @@
+package com.ainovel.server.service.ai.stream;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.ainovel.server.config.StreamOutputConfiguration;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * 流式心跳调度器
+ *
+ * 所有活跃流共用一个时间轮：轮子每格 tickMillis，转一圈为心跳间隔，每个流注册在一个固定的格子上。
+ * 指针经过该格时，若流在一个心跳间隔内没有输出，则发送一次心跳。整个进程只有一个定时器，
+ * 不再为每个流创建 Flux.interval。
+ */
+@Slf4j
+@Component
+public class StreamHeartbeatScheduler {
+
+    /**
+     * 不发送心跳的实例
+     */
+    public static final StreamHeartbeatScheduler NONE = new StreamHeartbeatScheduler();
+
+    private final List<Set<Registration>> wheel;
+    private final long intervalMillis;
+    private final long tickMillis;
+    private final AtomicInteger active = new AtomicInteger();
+    private final Counter heartbeats;
+    private final Disposable ticker;
+    private int cursor;
+
+    @Autowired
+    public StreamHeartbeatScheduler(StreamOutputConfiguration configuration, MeterRegistry meterRegistry) {
+        this.intervalMillis = Math.max(1, configuration.getHeartbeatIntervalSeconds()) * 1000;
+        this.tickMillis = Math.max(1, Math.min(configuration.getHeartbeatTickMillis(), intervalMillis));
+        int slots = (int) Math.max(1, intervalMillis / tickMillis);
+        this.wheel = new ArrayList<>(slots);
+        for (int i = 0; i < slots; i++) {
+            wheel.add(ConcurrentHashMap.newKeySet());
+        }
+        Gauge.builder("ai.stream.heartbeat.registered", active, AtomicInteger::get)
+                .description("注册在心跳时间轮上的活跃流数")
+                .register(meterRegistry);
+        this.heartbeats = Counter.builder("ai.stream.heartbeats")
+                .description("发送的流式心跳数")
+                .register(meterRegistry);
+        this.ticker = Flux.interval(Duration.ofMillis(tickMillis), Schedulers.parallel())
+                .subscribe(tick -> advance());
+    }
+
+    private StreamHeartbeatScheduler() {
+        this.wheel = List.of();
+        this.intervalMillis = 0;
+        this.tickMillis = 0;
+        this.heartbeats = null;
+        this.ticker = null;
+    }
+
+    /**
+     * 为流添加心跳：流空闲超过心跳间隔时插入心跳值，流结束时自动注销
+     *
+     * @param source 源流
+     * @param heartbeat 心跳值
+     * @return 带心跳的流
+     */
+    public <T> Flux<T> withHeartbeat(Flux<T> source, Supplier<T> heartbeat) {
+        if (ticker == null) {
+            return source;
+        }
+        return Flux.defer(() -> {
+            Sinks.Many<T> beats = Sinks.many().unicast().onBackpressureBuffer();
+            Registration registration = register(() -> beats.tryEmitNext(heartbeat.get()));
+            Flux<T> content = source
+                    .doOnNext(value -> registration.touch())
+                    .doFinally(signal -> {
+                        registration.cancel();
+                        beats.tryEmitComplete();
+                    });
+            return Flux.merge(content, beats.asFlux())
+                    .doFinally(signal -> registration.cancel());
+        });
+    }
+
+    /**
+     * 当前注册的流数
+     */
+    public int activeCount() {
+        return active.get();
+    }
+
+    private Registration register(Runnable onHeartbeat) {
+        Registration registration = new Registration(onHeartbeat);
+        synchronized (this) {
+            // 放在指针刚经过的格子上，约一个心跳间隔后首次检查
+            registration.slot = cursor;
+        }
+        wheel.get(registration.slot).add(registration);
+        active.incrementAndGet();
+        return registration;
+    }
+
+    private void advance() {
+        Set<Registration> slot;
+        synchronized (this) {
+            cursor = (cursor + 1) % wheel.size();
+            slot = wheel.get(cursor);
+        }
+        long now = System.currentTimeMillis();
+        for (Registration registration : slot) {
+            if (registration.cancelled) {
+                slot.remove(registration);
+                continue;
+            }
+            // 允许一格的误差，避免刚好错过而延迟到下一圈
+            if (now - registration.lastActivity >= intervalMillis - tickMillis) {
+                registration.lastActivity = now;
+                heartbeats.increment();
+                try {
+                    registration.onHeartbeat.run();
+                } catch (Exception e) {
+                    log.warn("发送流式心跳失败: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (ticker != null) {
+            ticker.dispose();
+        }
+    }
+
+    /**
+     * 时间轮上的一个流
+     */
+    private final class Registration {
+        private final Runnable onHeartbeat;
+        private volatile long lastActivity = System.currentTimeMillis();
+        private volatile boolean cancelled;
+        private int slot;
+
+        Registration(Runnable onHeartbeat) {
+            this.onHeartbeat = onHeartbeat;
+        }
+
+        void touch() {
+            lastActivity = System.currentTimeMillis();
+        }
+
+        synchronized void cancel() {
+            if (!cancelled) {
+                cancelled = true;
+                wheel.get(slot).remove(this);
+                active.decrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.ainovel.server.service.ai.stream;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.ainovel.server.config.StreamOutputConfiguration;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * 流式输出阶段
+ *
+ * 将上游逐个令牌的文本块按时间窗口与字节数合并为帧后再交给SSE写出，减少小写入与flush次数；
+ * 心跳、完成标记与错误文本作为控制块原样透传，透传前先写出已缓冲的内容以保持顺序。
+ * 心跳由共享的 {@link StreamHeartbeatScheduler} 驱动。
+ *
+ * 指标：ai.stream.active（活跃流数）、ai.stream.chunks（输入块数）、ai.stream.frames（写出帧数，
+ * 其速率即flush速率），均按端点打标签。
+ */
+@Component
+public class StreamOutputStage {
+
+    /**
+     * 默认的控制块：心跳、完成标记与错误文本
+     */
+    public static final Predicate<String> CONTROL_CHUNK = chunk -> "heartbeat".equals(chunk)
+            || "[DONE]".equals(chunk)
+            || chunk.startsWith("错误：");
+
+    private final StreamOutputConfiguration configuration;
+    private final StreamHeartbeatScheduler heartbeatScheduler;
+    private final MeterRegistry meterRegistry;
+    private final Scheduler timer = Schedulers.parallel();
+    private final Map<String, EndpointMeters> meters = new ConcurrentHashMap<>();
+
+    @Autowired
+    public StreamOutputStage(StreamOutputConfiguration configuration, StreamHeartbeatScheduler heartbeatScheduler,
+            MeterRegistry meterRegistry) {
+        this.configuration = configuration;
+        this.heartbeatScheduler = heartbeatScheduler;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * 按端点配置合帧
+     *
+     * @param endpoint 端点名称（chat / scene / outline）
+     * @param chunks 上游文本块
+     * @return 合并后的帧
+     */
+    public Flux<String> frame(String endpoint, Flux<String> chunks) {
+        StreamOutputConfiguration.Frame frame = configuration.frameFor(endpoint);
+        EndpointMeters endpointMeters = meters.computeIfAbsent(endpoint, this::createMeters);
+        Flux<String> framed = coalesce(chunks.doOnNext(chunk -> endpointMeters.chunks.increment()),
+                Duration.ofMillis(frame.getWindowMillis()), frame.getMaxBytes(), CONTROL_CHUNK, timer);
+        return framed
+                .doOnNext(value -> endpointMeters.frames.increment())
+                .doOnSubscribe(subscription -> endpointMeters.active.incrementAndGet())
+                .doFinally(signal -> endpointMeters.active.decrementAndGet());
+    }
+
+    /**
+     * 为流添加共享心跳
+     *
+     * @param source 源流
+     * @param heartbeat 心跳值
+     * @return 带心跳的流
+     */
+    public <T> Flux<T> withHeartbeat(Flux<T> source, Supplier<T> heartbeat) {
+        return heartbeatScheduler.withHeartbeat(source, heartbeat);
+    }
+
+    /**
+     * 合并文本块：缓冲从第一个块起经过 window 或累计达到 maxBytes 时写出一帧，控制块立即透传
+     *
+     * @param chunks 上游文本块
+     * @param window 合帧窗口，为0时不合帧
+     * @param maxBytes 帧大小上限(UTF-8字节)
+     * @param control 判断控制块的条件
+     * @param timer 窗口定时使用的调度器
+     * @return 合并后的帧
+     */
+    public static Flux<String> coalesce(Flux<String> chunks, Duration window, int maxBytes,
+            Predicate<String> control, Scheduler timer) {
+        if (window.isZero() || window.isNegative() || maxBytes <= 0) {
+            return chunks;
+        }
+        return Flux.create(sink -> {
+            Coalescer coalescer = new Coalescer(sink, window.toMillis(), maxBytes, control, timer);
+            Disposable upstream = chunks.subscribe(coalescer::onNext, coalescer::onError, coalescer::onComplete);
+            sink.onDispose(() -> {
+                upstream.dispose();
+                coalescer.cancelTimer();
+            });
+        });
+    }
+
+    private EndpointMeters createMeters(String endpoint) {
+        AtomicInteger active = new AtomicInteger();
+        Gauge.builder("ai.stream.active", active, AtomicInteger::get)
+                .description("活跃的流式输出数")
+                .tag("endpoint", endpoint)
+                .register(meterRegistry);
+        Counter chunks = Counter.builder("ai.stream.chunks")
+                .description("流式输出收到的上游文本块数")
+                .tag("endpoint", endpoint)
+                .register(meterRegistry);
+        Counter frames = Counter.builder("ai.stream.frames")
+                .description("流式输出写出的帧数")
+                .tag("endpoint", endpoint)
+                .register(meterRegistry);
+        return new EndpointMeters(active, chunks, frames);
+    }
+
+    private record EndpointMeters(AtomicInteger active, Counter chunks, Counter frames) {
+    }
+
+    /**
+     * 单个流的合帧状态，上游信号与窗口定时器可能来自不同线程，统一在实例锁内处理
+     */
+    private static final class Coalescer {
+        private final FluxSink<String> sink;
+        private final long windowMillis;
+        private final int maxBytes;
+        private final Predicate<String> control;
+        private final Scheduler timer;
+        private final StringBuilder buffer = new StringBuilder();
+        private int bufferedBytes;
+        private Disposable pendingFlush;
+
+        Coalescer(FluxSink<String> sink, long windowMillis, int maxBytes, Predicate<String> control, Scheduler timer) {
+            this.sink = sink;
+            this.windowMillis = windowMillis;
+            this.maxBytes = maxBytes;
+            this.control = control;
+            this.timer = timer;
+        }
+
+        synchronized void onNext(String chunk) {
+            if (chunk == null || chunk.isEmpty()) {
+                return;
+            }
+            if (control.test(chunk)) {
+                flush();
+                sink.next(chunk);
+                return;
+            }
+            buffer.append(chunk);
+            bufferedBytes += utf8Length(chunk);
+            if (bufferedBytes >= maxBytes) {
+                flush();
+            } else if (pendingFlush == null) {
+                pendingFlush = timer.schedule(this::onWindowElapsed, windowMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        synchronized void onError(Throwable error) {
+            flush();
+            sink.error(error);
+        }
+
+        synchronized void onComplete() {
+            flush();
+            sink.complete();
+        }
+
+        synchronized void cancelTimer() {
+            if (pendingFlush != null) {
+                pendingFlush.dispose();
+                pendingFlush = null;
+            }
+        }
+
+        private synchronized void onWindowElapsed() {
+            pendingFlush = null;
+            flush();
+        }
+
+        private void flush() {
+            cancelTimer();
+            if (buffer.length() > 0) {
+                String frame = buffer.toString();
+                buffer.setLength(0);
+                bufferedBytes = 0;
+                sink.next(frame);
+            }
+        }
+
+        private static int utf8Length(String text) {
+            int bytes = 0;
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (c < 0x80) {
+                    bytes += 1;
+                } else if (c < 0x800) {
+                    bytes += 2;
+                } else if (Character.isHighSurrogate(c)) {
+                    bytes += 4;
+                    i++;
+                } else {
+                    bytes += 3;
+                }
+            }
+            return bytes;
+        }
+    }
+}
@@ -6,7 +6,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
-import org.jasypt.encryption.StringEncryptor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.PageRequest;
@@ -22,11 +21,16 @@ import com.ainovel.server.repository.AIChatMessageRepository;
 import com.ainovel.server.repository.AIChatSessionRepository;
 import com.ainovel.server.service.AIChatService;
 import com.ainovel.server.service.AIService;
+import com.ainovel.server.service.ChatMemoryService;
 import com.ainovel.server.service.UserAIModelConfigService;
+import com.ainovel.server.service.ai.credential.DecryptedCredentialCache;
+import com.ainovel.server.service.ai.stream.StreamOutputStage;
 
 import lombok.extern.slf4j.Slf4j;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple3;
+import reactor.util.function.Tuples;
 
 @Slf4j
 @Service
@@ -36,7 +40,9 @@ public class AIChatServiceImpl implements AIChatService {
     private final AIChatMessageRepository messageRepository;
     private final UserAIModelConfigService userAIModelConfigService;
     private final AIService aiService;
-    private final StringEncryptor encryptor;
+    private final DecryptedCredentialCache credentialCache;
+    private final ChatMemoryService chatMemoryService;
+    private final StreamOutputStage streamOutputStage;
 
     @Value("${ainovel.ai.default-system-model:gpt-3.5-turbo}")
     private String defaultSystemModelName;
@@ -46,12 +52,16 @@ public class AIChatServiceImpl implements AIChatService {
             AIChatMessageRepository messageRepository,
             UserAIModelConfigService userAIModelConfigService,
             AIService aiService,
-            StringEncryptor encryptor) {
+            DecryptedCredentialCache credentialCache,
+            ChatMemoryService chatMemoryService,
+            StreamOutputStage streamOutputStage) {
         this.sessionRepository = sessionRepository;
         this.messageRepository = messageRepository;
         this.userAIModelConfigService = userAIModelConfigService;
         this.aiService = aiService;
-        this.encryptor = encryptor;
+        this.credentialCache = credentialCache;
+        this.chatMemoryService = chatMemoryService;
+        this.streamOutputStage = streamOutputStage;
     }
 
     @Override
@@ -187,214 +197,203 @@ public class AIChatServiceImpl implements AIChatService {
 
     @Override
     public Mono<AIChatMessage> sendMessage(String userId, String sessionId, String content, Map<String, Object> metadata) {
-        return getSession(userId, sessionId)
-                .switchIfEmpty(Mono.error(new RuntimeException("会话不存在或无权访问: " + sessionId)))
-                .flatMap(session -> {
-                    return userAIModelConfigService.getConfigurationById(userId, session.getSelectedModelConfigId())
-                            .switchIfEmpty(Mono.error(new RuntimeException("无法找到或访问会话关联的模型配置: " + session.getSelectedModelConfigId())))
-                            .flatMap(config -> {
-                                if (!config.getIsValidated()) {
-                                    log.error("发送消息失败，会话 {} 使用的模型配置 {} 未验证", sessionId, config.getId());
-                                    return Mono.error(new RuntimeException("当前会话使用的模型配置无效或未验证。"));
-                                }
-
-                                String actualModelName = config.getModelName();
-                                log.debug("会话 {} 使用模型配置 ID: {}, 实际模型名称: {}", sessionId, config.getId(), actualModelName);
-
-                                AIChatMessage userMessage = AIChatMessage.builder()
-                                        .sessionId(sessionId)
-                                        .userId(userId)
-                                        .role("user")
-                                        .content(content)
-                                        .modelName(actualModelName)
-                                        .metadata(metadata)
-                                        .status("SENT")
-                                        .messageType("TEXT")
-                                        .createdAt(LocalDateTime.now())
-                                        .build();
-
-                                return messageRepository.save(userMessage)
-                                        .flatMap(savedUserMessage -> {
-                                            session.setMessageCount(session.getMessageCount() + 1);
-
-                                            String decryptedApiKey;
-                                            try {
-                                                decryptedApiKey = encryptor.decrypt(config.getApiKey());
-                                            } catch (Exception e) {
-                                                log.error("发送消息前解密 API Key 失败: userId={}, sessionId={}, configId={}", userId, sessionId, config.getId(), e);
-                                                return Mono.error(new RuntimeException("处理请求失败，无法访问模型凭证。"));
-                                            }
-
-                                            AIRequest aiRequest = buildAIRequest(session, actualModelName, content, savedUserMessage.getId(), 20);
-
-                                            log.debug("准备调用AI服务: userId={}, sessionId={}, model={}, provider={}, configId={}",
-                                                    userId, sessionId, actualModelName, config.getProvider(), config.getId());
-
-                                            return aiService.generateContent(aiRequest, decryptedApiKey, config.getApiEndpoint())
-                                                    .flatMap(aiResponse -> {
-                                                        AIChatMessage aiMessage = AIChatMessage.builder()
-                                                                .sessionId(sessionId)
-                                                                .userId(userId)
-                                                                .role("assistant")
-                                                                .content(aiResponse.getContent())
-                                                                .modelName(actualModelName)
-                                                                .metadata(aiResponse.getMetadata() != null ? aiResponse.getMetadata() : Map.of())
-                                                                .status("DELIVERED")
-                                                                .messageType("TEXT")
-                                                                .parentMessageId(savedUserMessage.getId())
-                                                                .tokenCount(aiResponse.getMetadata() != null ? (Integer) aiResponse.getMetadata().getOrDefault("tokenCount", 0) : 0)
-                                                                .createdAt(LocalDateTime.now())
-                                                                .build();
-
-                                                        return messageRepository.save(aiMessage)
-                                                                .flatMap(savedAiMessage -> {
-                                                                    session.setLastMessageAt(LocalDateTime.now());
-                                                                    session.setMessageCount(session.getMessageCount() + 1);
-                                                                    return sessionRepository.save(session)
-                                                                            .thenReturn(savedAiMessage);
-                                                                });
-                                                    });
+        return loadTurnContext(userId, sessionId)
+                .flatMap(turn -> {
+                    String actualModelName = turn.config().getModelName();
+                    return messageRepository.save(buildUserMessage(userId, sessionId, content, actualModelName, metadata))
+                            .flatMap(savedUserMessage -> {
+                                AIRequest aiRequest = buildAIRequest(turn, content);
+
+                                log.debug("准备调用AI服务: userId={}, sessionId={}, model={}, provider={}, configId={}",
+                                        userId, sessionId, actualModelName, turn.config().getProvider(), turn.config().getId());
+
+                                return aiService.generateContent(aiRequest, turn.apiKey(), turn.config().getApiEndpoint())
+                                        .flatMap(aiResponse -> {
+                                            AIChatMessage aiMessage = AIChatMessage.builder()
+                                                    .sessionId(sessionId)
+                                                    .userId(userId)
+                                                    .role("assistant")
+                                                    .content(aiResponse.getContent())
+                                                    .modelName(actualModelName)
+                                                    .metadata(aiResponse.getMetadata() != null ? aiResponse.getMetadata() : Map.of())
+                                                    .status("DELIVERED")
+                                                    .messageType("TEXT")
+                                                    .parentMessageId(savedUserMessage.getId())
+                                                    .tokenCount(aiResponse.getMetadata() != null ? (Integer) aiResponse.getMetadata().getOrDefault("tokenCount", 0) : 0)
+                                                    .createdAt(LocalDateTime.now())
+                                                    .build();
+
+                                            // 用户消息与AI回复一起计入会话
+                                            return messageRepository.save(aiMessage)
+                                                    .flatMap(savedAiMessage -> sessionRepository
+                                                            .recordMessages(sessionId, 2, savedAiMessage.getCreatedAt())
+                                                            .doOnSuccess(v -> refreshMemory(turn, savedUserMessage, savedAiMessage))
+                                                            .thenReturn(savedAiMessage));
                                         });
-                            })
-                            .onErrorResume(e -> {
-                                log.error("处理消息时出错 (获取配置/解密/调用AI): userId={}, sessionId={}, error={}", userId, sessionId, e.getMessage(), e);
-                                return Mono.error(new RuntimeException("获取AI响应失败: " + e.getMessage(), e));
                             });
+                })
+                .onErrorResume(e -> {
+                    log.error("处理消息时出错 (获取配置/解密/调用AI): userId={}, sessionId={}, error={}", userId, sessionId, e.getMessage(), e);
+                    return Mono.error(new RuntimeException("获取AI响应失败: " + e.getMessage(), e));
                 });
     }
 
     @Override
     public Flux<AIChatMessage> streamMessage(String userId, String sessionId, String content, Map<String, Object> metadata) {
-        return getSession(userId, sessionId)
-                .switchIfEmpty(Mono.error(new RuntimeException("会话不存在或无权访问: " + sessionId)))
-                .flatMapMany(session -> {
-                    return userAIModelConfigService.getConfigurationById(userId, session.getSelectedModelConfigId())
-                            .switchIfEmpty(Mono.error(new RuntimeException("无法找到或访问会话关联的模型配置: " + session.getSelectedModelConfigId())))
-                            .flatMapMany(config -> {
-                                if (!config.getIsValidated()) {
-                                    log.error("流式消息失败，会话 {} 使用的模型配置 {} 未验证", sessionId, config.getId());
-                                    return Flux.error(new RuntimeException("当前会话使用的模型配置无效或未验证。"));
-                                }
-
-                                String actualModelName = config.getModelName();
-                                log.debug("流式处理: 会话 {} 使用模型配置 ID: {}, 实际模型名称: {}", sessionId, config.getId(), actualModelName);
-
-                                AIChatMessage userMessage = AIChatMessage.builder()
+        return loadTurnContext(userId, sessionId)
+                .flatMapMany(turn -> {
+                    String actualModelName = turn.config().getModelName();
+                    return messageRepository.save(buildUserMessage(userId, sessionId, content, actualModelName, metadata))
+                            .flatMapMany(savedUserMessage -> {
+                                AIRequest aiRequest = buildAIRequest(turn, content);
+
+                                log.debug("准备调用流式AI服务: userId={}, sessionId={}, model={}, provider={}, configId={}",
+                                        userId, sessionId, actualModelName, turn.config().getProvider(), turn.config().getId());
+
+                                // 令牌块合并为帧后再下发，减少SSE小写入
+                                Flux<String> stream = streamOutputStage.frame("chat",
+                                        aiService.generateContentStream(aiRequest, turn.apiKey(), turn.config().getApiEndpoint()));
+
+                                StringBuilder responseBuilder = new StringBuilder();
+                                Mono<AIChatMessage> saveFullMessageMono = Mono.defer(() -> {
+                                    String fullContent = responseBuilder.toString();
+                                    if (StringUtils.hasText(fullContent)) {
+                                        AIChatMessage aiMessage = AIChatMessage.builder()
+                                                .sessionId(sessionId)
+                                                .userId(userId)
+                                                .role("assistant")
+                                                .content(fullContent)
+                                                .modelName(actualModelName)
+                                                .metadata(Map.of("streamed", true))
+                                                .status("DELIVERED")
+                                                .messageType("TEXT")
+                                                .parentMessageId(savedUserMessage.getId())
+                                                .tokenCount(0)
+                                                .createdAt(LocalDateTime.now())
+                                                .build();
+                                        log.debug("流式传输完成，保存完整AI消息: sessionId={}, length={}", sessionId, fullContent.length());
+                                        return messageRepository.save(aiMessage)
+                                                .flatMap(savedMsg -> sessionRepository
+                                                        .recordMessages(sessionId, 2, savedMsg.getCreatedAt())
+                                                        .doOnSuccess(v -> refreshMemory(turn, savedUserMessage, savedMsg))
+                                                        .thenReturn(savedMsg));
+                                    } else {
+                                        log.warn("流式响应为空，不保存AI消息: sessionId={}", sessionId);
+                                        return sessionRepository.recordMessages(sessionId, 1, LocalDateTime.now())
+                                                .then(Mono.empty());
+                                    }
+                                });
+
+                                return stream
+                                        .doOnNext(responseBuilder::append)
+                                        .map(chunk -> AIChatMessage.builder()
                                         .sessionId(sessionId)
-                                        .userId(userId)
-                                        .role("user")
-                                        .content(content)
+                                        .role("assistant")
+                                        .content(chunk)
                                         .modelName(actualModelName)
-                                        .metadata(metadata)
-                                        .status("SENT")
-                                        .messageType("TEXT")
+                                        .messageType("STREAM_CHUNK")
+                                        .status("STREAMING")
                                         .createdAt(LocalDateTime.now())
-                                        .build();
-
-                                return messageRepository.save(userMessage)
-                                        .flatMapMany(savedUserMessage -> {
-                                            session.setMessageCount(session.getMessageCount() + 1);
-
-                                            String decryptedApiKey;
-                                            try {
-                                                decryptedApiKey = encryptor.decrypt(config.getApiKey());
-                                            } catch (Exception e) {
-                                                log.error("流式消息前解密 API Key 失败: userId={}, sessionId={}, configId={}", userId, sessionId, config.getId(), e);
-                                                return Flux.error(new RuntimeException("处理请求失败，无法访问模型凭证。"));
-                                            }
-
-                                            AIRequest aiRequest = buildAIRequest(session, actualModelName, content, savedUserMessage.getId(), 20);
-
-                                            log.debug("准备调用流式AI服务: userId={}, sessionId={}, model={}, provider={}, configId={}",
-                                                    userId, sessionId, actualModelName, config.getProvider(), config.getId());
-
-                                            Flux<String> stream = aiService.generateContentStream(aiRequest, decryptedApiKey, config.getApiEndpoint());
-
-                                            StringBuilder responseBuilder = new StringBuilder();
-                                            Mono<AIChatMessage> saveFullMessageMono = Mono.defer(() -> {
-                                                String fullContent = responseBuilder.toString();
-                                                if (StringUtils.hasText(fullContent)) {
-                                                    AIChatMessage aiMessage = AIChatMessage.builder()
-                                                            .sessionId(sessionId)
-                                                            .userId(userId)
-                                                            .role("assistant")
-                                                            .content(fullContent)
-                                                            .modelName(actualModelName)
-                                                            .metadata(Map.of("streamed", true))
-                                                            .status("DELIVERED")
-                                                            .messageType("TEXT")
-                                                            .parentMessageId(savedUserMessage.getId())
-                                                            .tokenCount(0)
-                                                            .createdAt(LocalDateTime.now())
-                                                            .build();
-                                                    log.debug("流式传输完成，保存完整AI消息: sessionId={}, length={}", sessionId, fullContent.length());
-                                                    return messageRepository.save(aiMessage)
-                                                            .flatMap(savedMsg -> {
-                                                                session.setLastMessageAt(LocalDateTime.now());
-                                                                session.setMessageCount(session.getMessageCount() + 1);
-                                                                return sessionRepository.save(session).thenReturn(savedMsg);
-                                                            });
-                                                } else {
-                                                    log.warn("流式响应为空，不保存AI消息: sessionId={}", sessionId);
-                                                    session.setLastMessageAt(LocalDateTime.now());
-                                                    return sessionRepository.save(session).then(Mono.empty());
-                                                }
-                                            });
-
-                                            return stream
-                                                    .doOnNext(responseBuilder::append)
-                                                    .map(chunk -> AIChatMessage.builder()
-                                                    .sessionId(sessionId)
-                                                    .role("assistant")
-                                                    .content(chunk)
-                                                    .modelName(actualModelName)
-                                                    .messageType("STREAM_CHUNK")
-                                                    .status("STREAMING")
-                                                    .createdAt(LocalDateTime.now())
-                                                    .build())
-                                                    .doOnComplete(() -> log.info("流式传输完成: sessionId={}", sessionId))
-                                                    .doOnError(e -> log.error("流式传输过程中出错: sessionId={}, error={}", sessionId, e.getMessage()))
-                                                    .concatWith(saveFullMessageMono.onErrorResume(e -> {
-                                                        log.error("保存完整流式消息时出错: sessionId={}", sessionId, e);
-                                                        return Mono.empty();
-                                                    }).flux());
-                                        });
+                                        .build())
+                                        .doOnComplete(() -> log.info("流式传输完成: sessionId={}", sessionId))
+                                        .doOnError(e -> log.error("流式传输过程中出错: sessionId={}, error={}", sessionId, e.getMessage()))
+                                        .concatWith(saveFullMessageMono.onErrorResume(e -> {
+                                            log.error("保存完整流式消息时出错: sessionId={}", sessionId, e);
+                                            return Mono.empty();
+                                        }).flux());
                             });
                 });
     }
 
-    private AIRequest buildAIRequest(AIChatSession session, String modelName, String newContent, String userMessageId, int historyLimit) {
-        return getRecentMessages(session.getSessionId(), userMessageId, historyLimit)
-                .collectList()
-                .map(history -> {
-                    List<AIRequest.Message> messages = new ArrayList<>();
-                    if (history != null) {
-                        history.stream()
-                                .map(msg -> new AIRequest.Message(msg.getRole(), msg.getContent()))
-                                .forEach(messages::add);
-                    }
-                    messages.add(new AIRequest.Message("user", newContent));
-
-                    AIRequest request = new AIRequest();
-                    request.setUserId(session.getUserId());
-                    request.setModel(modelName);
-                    request.setMessages(messages);
-                    Map<String, Object> params = session.getMetadata() != null ? session.getMetadata() : Map.of();
-                    request.setTemperature((Double) params.getOrDefault("temperature", 0.7));
-                    request.setMaxTokens((Integer) params.getOrDefault("maxTokens", 1024));
-                    request.setParameters(params);
-
-                    log.debug("Built AIRequest for model: {}, messages count: {}", modelName, messages.size());
-                    return request;
-                }).block();
+    /**
+     * 并发加载一轮对话所需的上下文：会话及其已验证的模型配置（含解密后的API Key）与最近的历史消息
+     *
+     * 历史消息在保存本轮用户消息之前读取，因此无需再排除本轮消息。
+     */
+    private Mono<ChatTurnContext> loadTurnContext(String userId, String sessionId) {
+        Mono<Tuple3<AIChatSession, UserAIModelConfig, String>> sessionAndConfig = getSession(userId, sessionId)
+                .switchIfEmpty(Mono.error(new RuntimeException("会话不存在或无权访问: " + sessionId)))
+                .flatMap(session -> userAIModelConfigService.getConfigurationById(userId, session.getSelectedModelConfigId())
+                        .switchIfEmpty(Mono.error(new RuntimeException("无法找到或访问会话关联的模型配置: " + session.getSelectedModelConfigId())))
+                        .flatMap(config -> {
+                            if (!config.getIsValidated()) {
+                                log.error("会话 {} 使用的模型配置 {} 未验证", sessionId, config.getId());
+                                return Mono.error(new RuntimeException("当前会话使用的模型配置无效或未验证。"));
+                            }
+                            log.debug("会话 {} 使用模型配置 ID: {}, 实际模型名称: {}", sessionId, config.getId(), config.getModelName());
+                            try {
+                                return Mono.just(Tuples.of(session, config, credentialCache.decrypt(config.getId(), config.getApiKey())));
+                            } catch (Exception e) {
+                                log.error("解密 API Key 失败: userId={}, sessionId={}, configId={}", userId, sessionId, config.getId(), e);
+                                return Mono.error(new RuntimeException("处理请求失败，无法访问模型凭证。"));
+                            }
+                        }));
+
+        return Mono.zip(sessionAndConfig, getRecentMessages(sessionId, chatMemoryService.getHistoryFetchLimit()).collectList())
+                .map(tuple -> new ChatTurnContext(tuple.getT1().getT1(), tuple.getT1().getT2(),
+                        tuple.getT1().getT3(), tuple.getT2()));
     }
 
-    private Flux<AIChatMessage> getRecentMessages(String sessionId, String excludeMessageId, int limit) {
-        return messageRepository.findBySessionIdOrderByCreatedAtDesc(sessionId, limit + 1)
-                .filter(msg -> !msg.getId().equals(excludeMessageId))
+    private AIChatMessage buildUserMessage(String userId, String sessionId, String content, String modelName, Map<String, Object> metadata) {
+        return AIChatMessage.builder()
+                .sessionId(sessionId)
+                .userId(userId)
+                .role("user")
+                .content(content)
+                .modelName(modelName)
+                .metadata(metadata)
+                .status("SENT")
+                .messageType("TEXT")
+                .createdAt(LocalDateTime.now())
+                .build();
+    }
+
+    private AIRequest buildAIRequest(ChatTurnContext turn, String newContent) {
+        // 滚动摘要与预算内的最近历史作为可缓存的稳定前缀，新一轮用户消息作为易变后缀
+        List<AIRequest.Message> messages = new ArrayList<>(chatMemoryService.buildContext(turn.session(), turn.history()));
+        messages.add(new AIRequest.Message("user", newContent));
+
+        AIRequest request = new AIRequest();
+        request.setUserId(turn.session().getUserId());
+        request.setModel(turn.config().getModelName());
+        request.setMessages(messages);
+        Map<String, Object> params = turn.session().getMetadata() != null ? turn.session().getMetadata() : Map.of();
+        request.setTemperature((Double) params.getOrDefault("temperature", 0.7));
+        request.setMaxTokens((Integer) params.getOrDefault("maxTokens", 1024));
+        request.setParameters(params);
+
+        log.debug("Built AIRequest for model: {}, messages count: {}", turn.config().getModelName(), messages.size());
+        return request;
+    }
+
+    /**
+     * 在后台按需将较早的对话并入会话的滚动摘要，不阻塞本轮响应
+     */
+    private void refreshMemory(ChatTurnContext turn, AIChatMessage userMessage, AIChatMessage aiMessage) {
+        List<AIChatMessage> window = new ArrayList<>(turn.history().size() + 2);
+        window.addAll(turn.history());
+        window.add(userMessage);
+        window.add(aiMessage);
+        chatMemoryService.updateSummaryIfNeeded(turn.session(), window, turn.config(), turn.apiKey())
+                .onErrorResume(e -> {
+                    log.error("更新会话滚动摘要失败: sessionId={}", turn.session().getSessionId(), e);
+                    return Mono.just(false);
+                })
+                .subscribe();
+    }
+
+    private Flux<AIChatMessage> getRecentMessages(String sessionId, int limit) {
+        return messageRepository.findBySessionIdOrderByCreatedAtDesc(sessionId, limit)
                 .take(limit)
-                .collectList()
-                .flatMapMany(list -> Flux.fromIterable(list).sort((m1, m2) -> m1.getCreatedAt().compareTo(m2.getCreatedAt())));
+                .collectSortedList((m1, m2) -> m1.getCreatedAt().compareTo(m2.getCreatedAt()))
+                .flatMapMany(Flux::fromIterable);
+    }
+
+    /**
+     * 一轮对话的上下文
+     */
+    private record ChatTurnContext(AIChatSession session, UserAIModelConfig config, String apiKey,
+                                   List<AIChatMessage> history) {
     }
 
     @Override
@@ -21,6 +21,7 @@ import com.ainovel.server.service.ai.AIModelProvider;
 
 import com.ainovel.server.service.ai.factory.AIModelProviderFactory;
 import com.ainovel.server.service.ai.capability.ProviderCapabilityService;
+import com.ainovel.server.service.ai.catalog.ModelCatalogCache;
 
 import lombok.extern.slf4j.Slf4j;
 import reactor.core.publisher.Flux;
@@ -45,17 +46,20 @@ public class AIServiceImpl implements AIService {
 
     private final AIModelProviderFactory providerFactory;
     private final ProviderCapabilityService capabilityService;
+    private final ModelCatalogCache modelCatalogCache;
 
     @Autowired
     public AIServiceImpl(
             NovelService novelService,
             AIProviderRegistryService providerRegistryService,
             AIModelProviderFactory providerFactory,
-            ProviderCapabilityService capabilityService) {
+            ProviderCapabilityService capabilityService,
+            ModelCatalogCache modelCatalogCache) {
         this.novelService = novelService;
         this.providerRegistryService = providerRegistryService;
         this.providerFactory = providerFactory;
         this.capabilityService = capabilityService;
+        this.modelCatalogCache = modelCatalogCache;
         initializeModelGroups();
     }
 
@@ -269,39 +273,12 @@ public class AIServiceImpl implements AIService {
                     log.info("提供商 '{}' 的能力是: {}", lowerCaseProvider, capability);
                     // 2. 根据能力决定行为
                     if (capability == ModelListingCapability.LISTING_WITHOUT_KEY /* || capability == ModelListingCapability.LISTING_WITH_OR_WITHOUT_KEY */ ) {
-                        log.info("提供商 '{}' 支持无密钥列出模型，尝试调用实际 provider", lowerCaseProvider);
-                        // 尝试获取实际的 Provider 实例并调用 listModels()
-                        // 注意：createAIModelProvider 可能需要 modelName 和 apiKey，这里需要调整
-                        // 简化处理：假设 createAIModelProvider 能处理 dummy key，或者有其他方式获取实例
-                        try {
-                            String defaultEndpoint = capabilityService.getDefaultApiEndpoint(lowerCaseProvider);
-                            
-                            // 获取默认模型ID用于创建临时提供商实例
-                            return capabilityService.getDefaultModels(lowerCaseProvider)
-                                .switchIfEmpty(Mono.error(new RuntimeException("未找到提供商 " + lowerCaseProvider + " 的默认模型")))
-                                .take(1)  // 只取第一个模型，用于创建临时实例
-                                .flatMap(firstModel -> {
-                                    // 创建临时提供商实例用于获取模型列表
-                                    AIModelProvider providerInstance = providerFactory.createProvider(
-                                            lowerCaseProvider,
-                                            firstModel.getId(),
-                                            "dummy-key-for-listing",
-                                            null // 使用默认端点
-                                    );
-                                    
-                                    if (providerInstance != null) {
-                                        return providerInstance.listModels()
-                                                .doOnError(e -> log.error("调用提供商 '{}' 的 listModels 失败，将回退到默认列表", lowerCaseProvider, e))
-                                                .onErrorResume(e -> getDefaultModelInfos(lowerCaseProvider)); // 出错时回退
-                                    } else {
-                                        log.warn("无法创建提供商 '{}' 的实例，将回退到默认列表", lowerCaseProvider);
-                                        return getDefaultModelInfos(lowerCaseProvider);
-                                    }
-                                });
-                        } catch (Exception e) {
-                            log.error("尝试为提供商 '{}' 获取实际模型列表时出错，将回退到默认列表", lowerCaseProvider, e);
-                            return getDefaultModelInfos(lowerCaseProvider);
-                        }
+                        log.info("提供商 '{}' 支持无密钥列出模型，从模型目录缓存获取", lowerCaseProvider);
+                        return modelCatalogCache.get(lowerCaseProvider, null, null,
+                                        () -> listModelsWithoutKey(lowerCaseProvider),
+                                        () -> getColdStartModelInfos(lowerCaseProvider))
+                                .doOnError(e -> log.error("调用提供商 '{}' 的 listModels 失败，将回退到默认列表", lowerCaseProvider, e))
+                                .onErrorResume(e -> getDefaultModelInfos(lowerCaseProvider)); // 出错时回退
                     } else {
                         // 能力为 NO_LISTING 或 LISTING_WITH_KEY，返回默认模型信息
                         log.info("提供商 '{}' 能力为 {}，返回默认模型列表", lowerCaseProvider, capability);
@@ -315,6 +292,38 @@ public class AIServiceImpl implements AIService {
                 }));
     }
 
+    /**
+     * 创建临时提供商实例并从上游列出模型（无密钥），出错时不回退，由调用方决定
+     */
+    private Flux<ModelInfo> listModelsWithoutKey(String lowerCaseProvider) {
+        // 获取默认模型ID用于创建临时提供商实例
+        return capabilityService.getDefaultModels(lowerCaseProvider)
+            .switchIfEmpty(Mono.error(new RuntimeException("未找到提供商 " + lowerCaseProvider + " 的默认模型")))
+            .take(1)  // 只取第一个模型，用于创建临时实例
+            .flatMap(firstModel -> {
+                // 创建临时提供商实例用于获取模型列表
+                AIModelProvider providerInstance = providerFactory.createProvider(
+                        lowerCaseProvider,
+                        firstModel.getId(),
+                        "dummy-key-for-listing",
+                        null // 使用默认端点
+                );
+                if (providerInstance == null) {
+                    return Flux.error(new RuntimeException("无法创建提供商实例: " + lowerCaseProvider));
+                }
+                return providerInstance.listModels();
+            });
+    }
+
+    /**
+     * 冷启动时的模型列表：优先使用能力服务中的默认模型，其次使用内置分组
+     */
+    private Flux<ModelInfo> getColdStartModelInfos(String lowerCaseProvider) {
+        return capabilityService.getDefaultModels(lowerCaseProvider)
+            .onErrorResume(e -> Flux.empty())
+            .switchIfEmpty(Flux.defer(() -> getDefaultModelInfos(lowerCaseProvider)));
+    }
+
     // 辅助方法：获取默认模型信息
     private Flux<ModelInfo> getDefaultModelInfos(String lowerCaseProvider) {
         List<String> modelNames = modelGroups.get(lowerCaseProvider);
@@ -353,6 +362,16 @@ public class AIServiceImpl implements AIService {
             return Flux.error(new IllegalArgumentException("未知的提供商: " + provider));
         }
 
+        // 同一(提供商, 端点, 密钥)的模型列表从缓存获取，过期后在后台刷新
+        return modelCatalogCache.get(lowerCaseProvider, apiEndpoint, apiKey,
+                () -> listModelsWithApiKey(lowerCaseProvider, apiKey, apiEndpoint),
+                () -> getColdStartModelInfos(lowerCaseProvider));
+    }
+
+    /**
+     * 创建Provider实例并使用API密钥从上游列出模型
+     */
+    private Flux<ModelInfo> listModelsWithApiKey(String lowerCaseProvider, String apiKey, String apiEndpoint) {
         // 尝试获取该提供商的默认模型ID，用于创建Provider实例
         return capabilityService.getDefaultModels(lowerCaseProvider)
             .take(1) // 只取第一个默认模型
@@ -0,0 +1,233 @@
+package com.ainovel.server.service.impl;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import com.ainovel.server.common.util.TokenEstimator;
+import com.ainovel.server.config.ChatMemoryConfiguration;
+import com.ainovel.server.domain.model.AIChatMessage;
+import com.ainovel.server.domain.model.AIChatSession;
+import com.ainovel.server.domain.model.AIRequest;
+import com.ainovel.server.domain.model.UserAIModelConfig;
+import com.ainovel.server.repository.AIChatMessageRepository;
+import com.ainovel.server.repository.AIChatSessionRepository;
+import com.ainovel.server.service.AIService;
+import com.ainovel.server.service.ChatMemoryService;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * 聊天会话记忆服务实现
+ *
+ * 会话上保存滚动摘要与摘要水位（已并入摘要的最后一条消息的时间）。水位之后的原始消息令牌数
+ * 超过阈值，或每轮读取的最近消息已全部未摘要（更早的未摘要消息即将移出读取范围）时，
+ * 从水位处起按时间顺序读取除最近几条外的全部未摘要消息，分批并入摘要，水位只连续前移，不会越过未并入的消息；
+ * 每轮请求携带摘要与预算内的最近原始消息，因此提示长度不随会话长度增长。
+ */
+@Slf4j
+@Service
+public class ChatMemoryServiceImpl implements ChatMemoryService {
+
+    private static final String SUMMARY_PREFIX = "以下是本次对话较早内容的摘要，请在回答时参考：\n";
+
+    private static final String SUMMARY_INSTRUCTION = "你负责维护一段小说创作对话的记忆摘要。"
+            + "请将已有摘要与新增的对话内容合并为一份新的摘要，保留人物、设定、情节决定、用户的偏好与要求以及尚未解决的问题，"
+            + "省略寒暄与重复内容。只输出摘要本身。";
+
+    private final ChatMemoryConfiguration configuration;
+    private final AIService aiService;
+    private final AIChatSessionRepository sessionRepository;
+    private final AIChatMessageRepository messageRepository;
+
+    // 本节点正在更新摘要的会话，避免同一会话的连续多轮重复触发
+    private final Set<String> summarizing = ConcurrentHashMap.newKeySet();
+
+    @Autowired
+    public ChatMemoryServiceImpl(ChatMemoryConfiguration configuration, AIService aiService,
+            AIChatSessionRepository sessionRepository, AIChatMessageRepository messageRepository) {
+        this.configuration = configuration;
+        this.aiService = aiService;
+        this.sessionRepository = sessionRepository;
+        this.messageRepository = messageRepository;
+    }
+
+    @Override
+    public int getHistoryFetchLimit() {
+        return configuration.getMaxHistoryMessages();
+    }
+
+    @Override
+    public List<AIRequest.Message> buildContext(AIChatSession session, List<AIChatMessage> recentMessages) {
+        if (!configuration.isEnabled()) {
+            List<AIRequest.Message> messages = new ArrayList<>(recentMessages.size());
+            recentMessages.forEach(msg -> messages.add(AIRequest.Message.cacheable(msg.getRole(), msg.getContent())));
+            return messages;
+        }
+
+        List<AIChatMessage> unsummarized = unsummarized(session, recentMessages);
+
+        // 从最新的消息往前，在令牌预算内尽量多地保留原始消息（至少保留最新一条）
+        int from = unsummarized.size();
+        int used = 0;
+        while (from > 0) {
+            int tokens = TokenEstimator.estimate(unsummarized.get(from - 1).getContent());
+            if (from < unsummarized.size() && used + tokens > configuration.getRecentTokenBudget()) {
+                break;
+            }
+            used += tokens;
+            from--;
+        }
+
+        List<AIRequest.Message> messages = new ArrayList<>(unsummarized.size() - from + 1);
+        if (StringUtils.hasText(session.getMemorySummary())) {
+            messages.add(AIRequest.Message.cacheable("system", SUMMARY_PREFIX + session.getMemorySummary()));
+        }
+        for (AIChatMessage msg : unsummarized.subList(from, unsummarized.size())) {
+            messages.add(AIRequest.Message.cacheable(msg.getRole(), msg.getContent()));
+        }
+        if (from > 0) {
+            log.debug("会话 {} 有 {} 条未摘要消息超出令牌预算未携带，等待并入摘要", session.getSessionId(), from);
+        }
+        return messages;
+    }
+
+    @Override
+    public Mono<Boolean> updateSummaryIfNeeded(AIChatSession session, List<AIChatMessage> recentMessages,
+            UserAIModelConfig config, String apiKey) {
+        if (!configuration.isEnabled()) {
+            return Mono.just(false);
+        }
+        List<AIChatMessage> unsummarized = unsummarized(session, recentMessages);
+        int keep = Math.max(0, configuration.getKeepRecentMessages());
+        boolean windowFull = unsummarized.size() >= configuration.getMaxHistoryMessages();
+        if (unsummarized.size() <= keep
+                || (!windowFull && totalTokens(unsummarized) <= configuration.getSummarizeThresholdTokens())) {
+            return Mono.just(false);
+        }
+        // 最近keep条保留为原始消息，其余早于它们的未摘要消息都要并入摘要
+        LocalDateTime foldBefore = keep > 0
+                ? unsummarized.get(unsummarized.size() - keep).getCreatedAt()
+                : unsummarized.get(unsummarized.size() - 1).getCreatedAt();
+        if (foldBefore == null) {
+            return Mono.just(false);
+        }
+        if (keep == 0) {
+            foldBefore = foldBefore.plusNanos(1);
+        }
+
+        String sessionId = session.getSessionId();
+        if (!summarizing.add(sessionId)) {
+            return Mono.just(false);
+        }
+        log.info("会话 {} 未摘要消息超过阈值，开始将较早的消息并入滚动摘要", sessionId);
+
+        return fold(session, session.getMemorySummary(), session.getMemorySummarizedUntil(), foldBefore, config, apiKey)
+                .doOnNext(updated -> {
+                    if (!updated) {
+                        log.warn("会话 {} 滚动摘要未更新（生成失败或已被其他任务更新）", sessionId);
+                    }
+                })
+                .doFinally(signal -> summarizing.remove(sessionId));
+    }
+
+    /**
+     * 从水位处起读取一批未摘要消息并入摘要；一批读满说明还有更早的消息未并入，继续下一批
+     */
+    private Mono<Boolean> fold(AIChatSession session, String summary, LocalDateTime summarizedUntil,
+            LocalDateTime foldBefore, UserAIModelConfig config, String apiKey) {
+        String sessionId = session.getSessionId();
+        int batch = Math.max(1, configuration.getMaxHistoryMessages());
+        return loadUnsummarized(sessionId, summarizedUntil, foldBefore)
+                .take(batch)
+                .collectList()
+                .flatMap(toFold -> {
+                    if (toFold.isEmpty()) {
+                        return Mono.just(false);
+                    }
+                    LocalDateTime until = toFold.get(toFold.size() - 1).getCreatedAt();
+                    return aiService.generateContent(buildSummaryRequest(session, summary, toFold, config), apiKey,
+                                    config.getApiEndpoint())
+                            .filter(response -> !"error".equals(response.getFinishReason())
+                                    && StringUtils.hasText(response.getContent()))
+                            .map(response -> response.getContent().trim())
+                            .flatMap(newSummary -> sessionRepository.updateMemorySummary(sessionId, summarizedUntil,
+                                            newSummary, until)
+                                    .flatMap(updated -> {
+                                        if (!updated) {
+                                            return Mono.just(false);
+                                        }
+                                        log.info("会话 {} 已将 {} 条消息并入滚动摘要，水位: {}", sessionId, toFold.size(), until);
+                                        if (toFold.size() < batch) {
+                                            return Mono.just(true);
+                                        }
+                                        return fold(session, newSummary, until, foldBefore, config, apiKey).thenReturn(true);
+                                    }))
+                            .defaultIfEmpty(false);
+                });
+    }
+
+    private Flux<AIChatMessage> loadUnsummarized(String sessionId, LocalDateTime summarizedUntil, LocalDateTime before) {
+        return summarizedUntil == null
+                ? messageRepository.findBySessionIdAndCreatedAtBeforeOrderByCreatedAtAsc(sessionId, before)
+                : messageRepository.findBySessionIdAndCreatedAtBetweenOrderByCreatedAtAsc(sessionId, summarizedUntil, before);
+    }
+
+    private AIRequest buildSummaryRequest(AIChatSession session, String summary, List<AIChatMessage> toFold,
+            UserAIModelConfig config) {
+        StringBuilder content = new StringBuilder();
+        if (StringUtils.hasText(summary)) {
+            content.append("已有摘要：\n").append(summary).append("\n\n");
+        }
+        content.append("新增对话：\n");
+        for (AIChatMessage msg : toFold) {
+            content.append("assistant".equals(msg.getRole()) ? "助手" : "用户").append("：")
+                    .append(msg.getContent()).append('\n');
+        }
+
+        List<AIRequest.Message> messages = new ArrayList<>(2);
+        messages.add(AIRequest.Message.cacheable("system", SUMMARY_INSTRUCTION));
+        messages.add(new AIRequest.Message("user", content.toString()));
+
+        AIRequest request = new AIRequest();
+        request.setUserId(session.getUserId());
+        request.setSessionId(session.getSessionId());
+        request.setModel(config.getModelName());
+        request.setMessages(messages);
+        request.setTemperature(0.3);
+        request.setMaxTokens(configuration.getSummaryMaxTokens());
+        return request;
+    }
+
+    /**
+     * 过滤出摘要水位之后的消息
+     */
+    private List<AIChatMessage> unsummarized(AIChatSession session, List<AIChatMessage> recentMessages) {
+        if (session.getMemorySummarizedUntil() == null) {
+            return recentMessages;
+        }
+        List<AIChatMessage> result = new ArrayList<>(recentMessages.size());
+        for (AIChatMessage msg : recentMessages) {
+            if (msg.getCreatedAt() == null || msg.getCreatedAt().isAfter(session.getMemorySummarizedUntil())) {
+                result.add(msg);
+            }
+        }
+        return result;
+    }
+
+    private static int totalTokens(List<AIChatMessage> messages) {
+        int total = 0;
+        for (AIChatMessage msg : messages) {
+            total += TokenEstimator.estimate(msg.getContent());
+        }
+        return total;
+    }
+}
@@ -11,6 +11,8 @@ import com.ainovel.server.service.NovelService;
 import com.ainovel.server.service.SceneService;
 import com.ainovel.server.service.UserAIModelConfigService;
 import com.ainovel.server.service.UserService;
+import com.ainovel.server.service.outline.OutlineGenerationEngine;
+import com.ainovel.server.service.outline.OutlineOptionContext;
 import com.ainovel.server.web.dto.NextOutlineDTO;
 import com.ainovel.server.web.dto.OutlineGenerationChunk;
 import com.fasterxml.jackson.core.JsonProcessingException;
@@ -24,14 +26,12 @@ import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -47,9 +47,6 @@ public class NextOutlineServiceImpl implements NextOutlineService {
     private final NextOutlineRepository nextOutlineRepository;
     private final ObjectMapper objectMapper;
 
-    // 添加用于缓存原始上下文的Map，提高单项刷新的一致性
-    private final Map<String, Map<String, Object>> optionContextCache = new ConcurrentHashMap<>();
-    
     // 设置上下文最大长度限制
     private static final int MAX_CONTEXT_LENGTH = 10000;
 
@@ -62,6 +59,9 @@ public class NextOutlineServiceImpl implements NextOutlineService {
     @Autowired
     private UserAIModelConfigService userAIModelConfigService;
 
+    @Autowired
+    private OutlineGenerationEngine outlineGenerationEngine;
+
     /**
      * 设置NovelService（用于测试）
      *
@@ -80,6 +80,15 @@ public class NextOutlineServiceImpl implements NextOutlineService {
         this.sceneService = sceneService;
     }
 
+    /**
+     * 设置OutlineGenerationEngine（用于测试）
+     *
+     * @param outlineGenerationEngine OutlineGenerationEngine
+     */
+    public void setOutlineGenerationEngine(OutlineGenerationEngine outlineGenerationEngine) {
+        this.outlineGenerationEngine = outlineGenerationEngine;
+    }
+
     @Autowired
     public NextOutlineServiceImpl(NovelAIService novelAIService, NextOutlineRepository nextOutlineRepository, ObjectMapper objectMapper) {
         this.novelAIService = novelAIService;
@@ -182,73 +191,30 @@ public class NextOutlineServiceImpl implements NextOutlineService {
             );
         }
 
-        Map<String, NextOutline> pendingOutlines = new ConcurrentHashMap<>();
-
-        return getCurrentUserId().flatMapMany(userId -> 
-            generationStream
-                .doOnNext(chunk -> {
-                    if (!pendingOutlines.containsKey(chunk.getOptionId())) {
-                        NextOutline outline = NextOutline.builder()
-                            .id(chunk.getOptionId())
-                            .novelId(novelId)
-                            .title(chunk.getOptionTitle())
-                            .content("")
-                            .createdAt(LocalDateTime.now())
-                            .selected(false)
-                            .originalStartChapterId(startChapterId)
-                            .originalEndChapterId(endChapterId)
-                            .originalAuthorGuidance(authorGuidance)
-                            .build();
-                        pendingOutlines.put(chunk.getOptionId(), outline);
-                        
-                        // 缓存该选项的上下文信息
-                        Map<String, Object> contextMap = new ConcurrentHashMap<>();
-                        contextMap.put("novelId", novelId);
-                        contextMap.put("userId", userId);
-                        contextMap.put("startChapterId", startChapterId);
-                        contextMap.put("endChapterId", endChapterId);
-                        contextMap.put("authorGuidance", authorGuidance);
-                        contextMap.put("timestamp", System.currentTimeMillis());
-                        optionContextCache.put(chunk.getOptionId(), contextMap);
-                        
-                        // 设置缓存超时清理
-                        scheduleContextCacheCleaning(chunk.getOptionId());
-                    } else {
-                        NextOutline existing = pendingOutlines.get(chunk.getOptionId());
-                        if (chunk.getOptionTitle() != null && !chunk.getOptionTitle().equals(existing.getTitle())) {
-                            existing.setTitle(chunk.getOptionTitle());
+        return getCurrentUserId().flatMapMany(userId -> {
+            OutlineOptionContext context = new OutlineOptionContext(novelId, userId, startChapterId, endChapterId, authorGuidance);
+            // 各选项内容在引擎的缓冲区中累积，选项完成时保存一次
+            return outlineGenerationEngine.collect(
+                    generationStream.doOnNext(chunk -> outlineGenerationEngine.rememberContext(chunk.getOptionId(), context)),
+                    result -> {
+                        if (result.completed() && !result.succeeded()) {
+                            return Mono.empty();
                         }
-                        existing.setContent(existing.getContent() + chunk.getTextChunk());
-                    }
-
-                    if (chunk.isFinalChunk() && chunk.getError() == null) {
-                        NextOutline finalOutline = pendingOutlines.remove(chunk.getOptionId());
-                        if (finalOutline != null) {
-                            nextOutlineRepository.save(finalOutline)
-                                .subscribe(
-                                    saved -> log.debug("流式生成的大纲选项 {} 已保存", saved.getId()),
-                                    error -> log.error("保存流式生成的大纲选项 {} 失败: {}", finalOutline.getId(), error.getMessage())
-                                );
-                        }
-                    }
-                })
-                .doOnError(error -> {
-                    log.error("流式生成剧情大纲时出错: {}", error.getMessage(), error);
-                    pendingOutlines.clear();
-                })
-                .doOnComplete(() -> {
-                    if (!pendingOutlines.isEmpty()) {
-                        log.warn("流处理完成时仍有 {} 个未保存的暂存大纲，将尝试保存...", pendingOutlines.size());
-                        Flux.fromIterable(pendingOutlines.values())
-                            .flatMap(nextOutlineRepository::save)
-                            .subscribe(
-                                saved -> log.debug("清理保存暂存大纲 {} 成功", saved.getId()),
-                                error -> log.error("清理保存暂存大纲失败: {}", error.getMessage())
-                            );
-                        pendingOutlines.clear();
-                    }
-                })
-        );
+                        NextOutline outline = NextOutline.builder()
+                                .id(result.optionId())
+                                .novelId(novelId)
+                                .title(result.title())
+                                .content(result.content())
+                                .createdAt(LocalDateTime.now())
+                                .selected(false)
+                                .originalStartChapterId(startChapterId)
+                                .originalEndChapterId(endChapterId)
+                                .originalAuthorGuidance(authorGuidance)
+                                .build();
+                        return nextOutlineRepository.save(outline);
+                    })
+                    .doOnError(error -> log.error("流式生成剧情大纲时出错: {}", error.getMessage(), error));
+        });
     }
 
     @Override
@@ -295,61 +261,26 @@ public class NextOutlineServiceImpl implements NextOutlineService {
                     .switchIfEmpty(Mono.error(new RuntimeException("未找到指定的模型配置")))
                     .flatMapMany(config -> {
                         // 首先尝试从缓存获取上下文信息
-                        Map<String, Object> cachedContext = optionContextCache.get(optionId);
+                        OutlineOptionContext cachedContext = outlineGenerationEngine.findContext(optionId);
                         if (cachedContext != null) {
                             log.info("使用缓存的上下文信息重新生成大纲 {}", optionId);
-                            String cachedStartChapterId = (String) cachedContext.get("startChapterId");
-                            String cachedEndChapterId = (String) cachedContext.get("endChapterId");
-                            String cachedAuthorGuidance = (String) cachedContext.get("authorGuidance");
-                            
-                            return novelAIService.regenerateSingleOutlineStream(
-                                novelId,
-                                optionId,
-                                userId,
-                                request.getSelectedConfigId(),
-                                request.getRegenerateHint(),
-                                cachedStartChapterId,
-                                cachedEndChapterId,
-                                cachedAuthorGuidance
-                            )
-                            .doOnNext(chunk -> handleRegenerationChunk(chunk, optionId, request));
+                            return regenerate(novelId, optionId, userId, request, cachedContext);
                         }
                         
                         // 缓存未命中，回退到数据库查询
                         return nextOutlineRepository.findById(optionId)
                             .switchIfEmpty(Mono.error(new RuntimeException("未找到指定的大纲选项: " + optionId)))
                             .flatMapMany(outline -> {
-                                String originalStartChapterId = outline.getOriginalStartChapterId();
-                                String originalEndChapterId = outline.getOriginalEndChapterId();
-                                String originalAuthorGuidance = outline.getOriginalAuthorGuidance();
-
                                 log.info("使用数据库中的原始参数重新生成大纲 {}: start={}, end={}, guidance='{}'",
-                                    optionId, originalStartChapterId, originalEndChapterId, originalAuthorGuidance);
+                                    optionId, outline.getOriginalStartChapterId(), outline.getOriginalEndChapterId(),
+                                    outline.getOriginalAuthorGuidance());
 
                                 // 更新缓存，以便后续请求使用
-                                Map<String, Object> newContextMap = new ConcurrentHashMap<>();
-                                newContextMap.put("novelId", novelId);
-                                newContextMap.put("userId", userId);
-                                newContextMap.put("startChapterId", originalStartChapterId);
-                                newContextMap.put("endChapterId", originalEndChapterId);
-                                newContextMap.put("authorGuidance", originalAuthorGuidance);
-                                newContextMap.put("timestamp", System.currentTimeMillis());
-                                optionContextCache.put(optionId, newContextMap);
-
-                                // 设置缓存超时清理
-                                scheduleContextCacheCleaning(optionId);
-
-                                return novelAIService.regenerateSingleOutlineStream(
-                                    novelId,
-                                    optionId,
-                                    userId,
-                                    request.getSelectedConfigId(),
-                                    request.getRegenerateHint(),
-                                    originalStartChapterId,
-                                    originalEndChapterId,
-                                    originalAuthorGuidance
-                                )
-                                .doOnNext(chunk -> handleRegenerationChunk(chunk, optionId, request));
+                                OutlineOptionContext context = new OutlineOptionContext(novelId, userId,
+                                    outline.getOriginalStartChapterId(), outline.getOriginalEndChapterId(),
+                                    outline.getOriginalAuthorGuidance());
+                                outlineGenerationEngine.rememberContext(optionId, context);
+                                return regenerate(novelId, optionId, userId, request, context);
                             });
                     })
                     .onErrorResume(e -> {
@@ -368,34 +299,34 @@ public class NextOutlineServiceImpl implements NextOutlineService {
     }
     
     /**
-     * 处理重新生成的chunk
+     * 按上下文重新生成单个选项，完成时将新内容写回该选项
      */
-    private void handleRegenerationChunk(OutlineGenerationChunk chunk, String optionId, NextOutlineDTO.RegenerateOptionRequest request) {
-        if (chunk.isFinalChunk() && chunk.getError() == null) {
-            nextOutlineRepository.findById(optionId)
+    private Flux<OutlineGenerationChunk> regenerate(String novelId, String optionId, String userId,
+            NextOutlineDTO.RegenerateOptionRequest request, OutlineOptionContext context) {
+        Flux<OutlineGenerationChunk> stream = novelAIService.regenerateSingleOutlineStream(
+                novelId,
+                optionId,
+                userId,
+                request.getSelectedConfigId(),
+                request.getRegenerateHint(),
+                context.startChapterId(),
+                context.endChapterId(),
+                context.authorGuidance()
+        );
+        return outlineGenerationEngine.collect(stream, result -> {
+            if (!result.succeeded()) {
+                return Mono.empty();
+            }
+            return nextOutlineRepository.findById(optionId)
                 .flatMap(outline -> {
                     outline.setConfigId(request.getSelectedConfigId());
-                    if (chunk.getOptionTitle() != null) {
-                        outline.setTitle(chunk.getOptionTitle());
+                    if (result.title() != null) {
+                        outline.setTitle(result.title());
                     }
+                    outline.setContent(result.content());
                     return nextOutlineRepository.save(outline);
-                })
-                .subscribe(
-                    saved -> log.debug("重新生成后的大纲选项 {} 已更新并保存", optionId),
-                    error -> log.error("更新重新生成的大纲选项 {} 失败: {}", optionId, error.getMessage())
-                );
-        }
-    }
-    
-    /**
-     * 设置上下文缓存的超时清理 (30分钟)
-     */
-    private void scheduleContextCacheCleaning(String optionId) {
-        Mono.delay(Duration.ofMinutes(30))
-            .subscribe(v -> {
-                optionContextCache.remove(optionId);
-                log.debug("已清理过期的上下文缓存: optionId={}", optionId);
-            });
+                });
+        });
     }
 
     /**
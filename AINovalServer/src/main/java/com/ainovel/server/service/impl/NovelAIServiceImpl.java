@@ -2,10 +2,13 @@ package com.ainovel.server.service.impl;
 
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
@@ -19,7 +22,6 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.ReactiveSecurityContextHolder;
 import org.springframework.security.core.context.SecurityContext;
 
-import org.jasypt.encryption.StringEncryptor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.security.access.AccessDeniedException;
@@ -40,6 +42,12 @@ import com.ainovel.server.service.UserAIModelConfigService;
 import com.ainovel.server.service.UserPromptService;
 import com.ainovel.server.service.UserService;
 import com.ainovel.server.service.ai.AIModelProvider;
+import com.ainovel.server.service.ai.credential.DecryptedCredentialCache;
+import com.ainovel.server.service.ai.resilience.HedgedGenerationExecutor;
+import com.ainovel.server.service.ai.resilience.ProviderCircuitBreakerRegistry;
+import com.ainovel.server.service.ai.stream.StreamOutputStage;
+import com.ainovel.server.service.outline.OutlineGenerationEngine;
+import com.ainovel.server.service.prompt.PromptTemplateEngine;
 import com.ainovel.server.service.rag.RagService;
 import com.ainovel.server.web.dto.GenerateSceneFromSummaryRequest;
 import com.ainovel.server.web.dto.GenerateSceneFromSummaryResponse;
@@ -72,7 +80,7 @@ public class NovelAIServiceImpl implements NovelAIService {
     private final PromptService promptService;
     private final UserService userService;
     private final SceneService sceneService;
-    private final StringEncryptor encryptor;
+    private final DecryptedCredentialCache credentialCache;
 
     // 缓存用户的AI模型提供商
     private final Map<String, Map<String, AIModelProvider>> userProviders = new ConcurrentHashMap<>();
@@ -92,6 +100,21 @@ public class NovelAIServiceImpl implements NovelAIService {
     @Autowired
     private UserAIModelConfigService userAIModelConfigService;
 
+    @Autowired
+    private ProviderCircuitBreakerRegistry circuitBreakerRegistry;
+
+    @Autowired
+    private HedgedGenerationExecutor hedgedGenerationExecutor;
+
+    @Autowired
+    private PromptTemplateEngine promptTemplateEngine;
+
+    @Autowired
+    private StreamOutputStage streamOutputStage;
+
+    @Autowired
+    private OutlineGenerationEngine outlineGenerationEngine;
+
     @Autowired
     public NovelAIServiceImpl(
             @Qualifier("AIServiceImpl") AIService aiService,
@@ -100,14 +123,14 @@ public class NovelAIServiceImpl implements NovelAIService {
             PromptService promptService,
             UserService userService,
             SceneService sceneService,
-            StringEncryptor encryptor) {
+            DecryptedCredentialCache credentialCache) {
         this.aiService = aiService;
         this.knowledgeService = knowledgeService;
         this.novelService = novelService;
         this.promptService = promptService;
         this.userService = userService;
         this.sceneService = sceneService;
-        this.encryptor = encryptor;
+        this.credentialCache = credentialCache;
     }
 
     @Override
@@ -297,12 +320,9 @@ public class NovelAIServiceImpl implements NovelAIService {
         return createNextOutlinesGenerationRequest(novelId, currentContext, optionsCount, guidance)
                 .flatMap(this::enrichRequestWithContext)
                 .flatMap(enrichedRequest -> {
-                    // 获取AI模型提供商并直接调用
+                    // 获取AI模型提供商，主模型响应过慢时对冲到用户的其他模型
                     return getAIModelProvider(enrichedRequest.getUserId(), enrichedRequest.getModel())
-                            .flatMap(provider -> {
-                                // 直接使用业务请求调用提供商
-                                return provider.generateContent(enrichedRequest);
-                            });
+                            .flatMap(provider -> generateContentHedged(enrichedRequest.getUserId(), provider, enrichedRequest));
                 });
     }
 
@@ -349,14 +369,12 @@ public class NovelAIServiceImpl implements NovelAIService {
 
         return getCurrentUserId()
             .flatMapMany(userId ->
-                Flux.range(0, optionsCount)
-                    .flatMap(index -> {
-                        // 选择对应索引的配置ID，如果索引超出列表长度则循环使用
-                        String configId = configIds.get(index % configIds.size());
-                        // 对于基于上下文的版本，start/end chapterId 为 null
-                        return generateSingleOutlineOptionStream(userId, novelId, contextDescription, guidance, index, null, null, configId);
-                    })
-                    .subscribeOn(Schedulers.parallel())
+                outlineGenerationEngine.runOptions(userId, optionsCount, index -> {
+                    // 选择对应索引的配置ID，如果索引超出列表长度则循环使用
+                    String configId = configIds.get(index % configIds.size());
+                    // 对于基于上下文的版本，start/end chapterId 为 null
+                    return generateSingleOutlineOptionStream(userId, novelId, contextDescription, guidance, index, null, null, configId);
+                })
             );
     }
 
@@ -375,14 +393,13 @@ public class NovelAIServiceImpl implements NovelAIService {
             .flatMapMany(contextDescription -> // 使用 flatMapMany 处理异步上下文
                 getCurrentUserId()
                     .flatMapMany(userId ->
-                        Flux.range(0, optionsCount)
-                            .flatMap(index -> {
-                                // 选择对应索引的配置ID，如果索引超出列表长度则循环使用
-                                String configId = configIds.get(index % configIds.size());
-                                // 将获取到的 contextDescription 传递给单选项生成流
-                                return generateSingleOutlineOptionStream(userId, novelId, contextDescription, guidance, index, startChapterId, endChapterId, configId);
-                            })
-                            .subscribeOn(Schedulers.parallel()) // 注意：subscribeOn 放在内层 Flux 上可能更合适
+                        // 各选项在I/O调度器上并发生成，受用户并发上限约束，输出公平交织
+                        outlineGenerationEngine.runOptions(userId, optionsCount, index -> {
+                            // 选择对应索引的配置ID，如果索引超出列表长度则循环使用
+                            String configId = configIds.get(index % configIds.size());
+                            // 将获取到的 contextDescription 传递给单选项生成流
+                            return generateSingleOutlineOptionStream(userId, novelId, contextDescription, guidance, index, startChapterId, endChapterId, configId);
+                        })
                     )
             )
              // 将 subscribeOn 移到外层，确保上下文构建也在合适的线程上执行
@@ -413,8 +430,9 @@ public class NovelAIServiceImpl implements NovelAIService {
             String finalGuidance = contextAndGuidance.getValue();
             int regenerateIndex = 0; // 重新生成总是对应一个选项，索引为0
 
-            // 调用单选项生成逻辑
-            return generateSingleOutlineOptionStream(userId, novelId, contextDescription, finalGuidance, regenerateIndex, originalStartChapterId, originalEndChapterId, modelConfigId)
+            // 调用单选项生成逻辑，与批量生成共享用户并发上限
+            return outlineGenerationEngine.runOption(userId,
+                    generateSingleOutlineOptionStream(userId, novelId, contextDescription, finalGuidance, regenerateIndex, originalStartChapterId, originalEndChapterId, modelConfigId))
                 // 确保使用传入的 optionId 而不是生成新的
                 .map(chunk -> {
                     // 替换 UUID 生成的 optionId 为前端传入的 optionId
@@ -593,7 +611,8 @@ public class NovelAIServiceImpl implements NovelAIService {
         final String titlePrefix = "TITLE:";
         final String contentPrefix = "CONTENT:";
 
-        return provider.generateContentStream(request)
+        // 令牌块先合并为帧，减少下游的分块数量
+        return streamOutputStage.frame("outline", provider.generateContentStream(request))
             .map(String::trim) // 去除首尾空格
             .filter(chunk -> !chunk.isEmpty() && !"heartbeat".equalsIgnoreCase(chunk)) // 过滤空或心跳
             .concatMap(chunk -> { // 使用 concatMap 保证顺序处理，处理标题提取
@@ -665,9 +684,14 @@ public class NovelAIServiceImpl implements NovelAIService {
     private Mono<AIRequest> createSingleOutlineGenerationRequest(String novelId, String context, String authorGuidance, String startChapterId, String endChapterId) {
         return promptService.getSingleOutlineGenerationPrompt()
                  .map(promptTemplate -> {
-                     String prompt = promptTemplate
-                             .replace("{{context}}", context)
-                             .replace("{{authorGuidance}}", authorGuidance.isEmpty() ? "" : "作者引导：" + authorGuidance);
+                     // 上下文（小说设定与前文摘要）在同一小说的多次生成间保持不变，放入可缓存的稳定前缀，
+                     // 提示词中只保留引用，作者引导等易变内容留在后缀
+                     boolean prefixContext = context != null && !context.isBlank();
+                     Map<String, Object> variables = new LinkedHashMap<>();
+                     variables.put("context", prefixContext ? "（见前文提供的当前上下文）" : context);
+                     variables.put("authorGuidance", authorGuidance.isEmpty() ? "" : "作者引导：" + authorGuidance);
+                     String prompt = promptTemplateEngine.render(
+                             PromptTemplateEngine.systemSource("single_outline_generation"), promptTemplate, variables);
 
                      AIRequest request = new AIRequest();
                      request.setNovelId(novelId);
@@ -691,14 +715,15 @@ public class NovelAIServiceImpl implements NovelAIService {
                      request.setTemperature(0.75);
                      request.setMaxTokens(200000); // 单个选项的 token 可以适当减少
 
-                     // 创建系统消息
-                     AIRequest.Message systemMessage = new AIRequest.Message();
-                     systemMessage.setRole("system");
-                     systemMessage.setContent("你是一位专业的小说创作顾问。请根据提供的上下文和引导，生成一个后续剧情大纲选项。"
+                     // 创建系统消息（稳定前缀）
+                     request.getMessages().add(AIRequest.Message.cacheable("system",
+                             "你是一位专业的小说创作顾问。请根据提供的上下文和引导，生成一个后续剧情大纲选项。"
                              + "请严格按照以下格式输出，先输出标题，再输出内容："
                              + "\nTITLE: [这里是剧情选项的简洁标题]"
-                             + "\nCONTENT: [这里是剧情选项的详细内容描述]");
-                     request.getMessages().add(systemMessage);
+                             + "\nCONTENT: [这里是剧情选项的详细内容描述]"));
+                     if (prefixContext) {
+                         request.getMessages().add(AIRequest.Message.cacheable("system", "当前上下文：\n" + context));
+                     }
 
                      // 创建用户消息
                      AIRequest.Message userMessage = new AIRequest.Message();
@@ -983,9 +1008,11 @@ public class NovelAIServiceImpl implements NovelAIService {
     private Mono<AIRequest> createRevisionRequest(String novelId, String sceneId, String content, String instruction) {
         return promptService.getRevisionPrompt()
                 .map(promptTemplate -> {
-                    String prompt = promptTemplate
-                            .replace("{{content}}", content)
-                            .replace("{{instruction}}", instruction);
+                    Map<String, Object> variables = new LinkedHashMap<>();
+                    variables.put("content", content);
+                    variables.put("instruction", instruction);
+                    String prompt = promptTemplateEngine.render(
+                            PromptTemplateEngine.systemSource("revision"), promptTemplate, variables);
 
                     AIRequest request = new AIRequest();
                     request.setNovelId(novelId);
@@ -1012,7 +1039,8 @@ public class NovelAIServiceImpl implements NovelAIService {
     private Mono<AIRequest> createCharacterGenerationRequest(String novelId, String description) {
         return promptService.getCharacterGenerationPrompt()
                 .map(promptTemplate -> {
-                    String prompt = promptTemplate.replace("{{description}}", description);
+                    String prompt = promptTemplateEngine.render(PromptTemplateEngine.systemSource("character_generation"),
+                            promptTemplate, Collections.singletonMap("description", description));
 
                     AIRequest request = new AIRequest();
                     request.setNovelId(novelId);
@@ -1038,7 +1066,8 @@ public class NovelAIServiceImpl implements NovelAIService {
     private Mono<AIRequest> createPlotGenerationRequest(String novelId, String description) {
         return promptService.getPlotGenerationPrompt()
                 .map(promptTemplate -> {
-                    String prompt = promptTemplate.replace("{{description}}", description);
+                    String prompt = promptTemplateEngine.render(PromptTemplateEngine.systemSource("plot_generation"),
+                            promptTemplate, Collections.singletonMap("description", description));
 
                     AIRequest request = new AIRequest();
                     request.setNovelId(novelId);
@@ -1064,7 +1093,8 @@ public class NovelAIServiceImpl implements NovelAIService {
     private Mono<AIRequest> createSettingGenerationRequest(String novelId, String description) {
         return promptService.getSettingGenerationPrompt()
                 .map(promptTemplate -> {
-                    String prompt = promptTemplate.replace("{{description}}", description);
+                    String prompt = promptTemplateEngine.render(PromptTemplateEngine.systemSource("setting_generation"),
+                            promptTemplate, Collections.singletonMap("description", description));
 
                     AIRequest request = new AIRequest();
                     request.setNovelId(novelId);
@@ -1093,10 +1123,12 @@ public class NovelAIServiceImpl implements NovelAIService {
         return promptService.getNextOutlinesGenerationPrompt()
                 .map(promptTemplate -> {
                     // 根据提示词模板替换变量
-                    String prompt = promptTemplate
-                            .replace("{{context}}", currentContext)
-                            .replace("{{numberOfOptions}}", String.valueOf(numberOfOptions))
-                            .replace("{{authorGuidance}}", authorGuidance.isEmpty() ? "" : "作者引导：" + authorGuidance);
+                    Map<String, Object> variables = new LinkedHashMap<>();
+                    variables.put("context", currentContext);
+                    variables.put("numberOfOptions", numberOfOptions);
+                    variables.put("authorGuidance", authorGuidance.isEmpty() ? "" : "作者引导：" + authorGuidance);
+                    String prompt = promptTemplateEngine.render(
+                            PromptTemplateEngine.systemSource("next_outlines_generation"), promptTemplate, variables);
 
                     AIRequest request = new AIRequest();
                     request.setNovelId(novelId);
@@ -1142,7 +1174,8 @@ public class NovelAIServiceImpl implements NovelAIService {
                             log.warn("用户 {} 没有配置有效的默认AI模型", userId);
                             return Mono.error(new IllegalArgumentException("用户没有配置默认AI模型"));
                         }
-                        return getOrCreateAIModelProvider(userId, config);
+                        return routeAroundOpenCircuit(userId, config)
+                                .flatMap(routed -> getOrCreateAIModelProvider(userId, routed));
                     })
                     .switchIfEmpty(Mono.defer(() -> { // 使用 defer 避免 switchIfEmpty 预先执行
                         log.warn("无法找到用户 {} 的默认AI模型配置", userId);
@@ -1151,10 +1184,9 @@ public class NovelAIServiceImpl implements NovelAIService {
         }
 
         // 如果指定了模型名称，则查找对应的配置
-        return userAIModelConfigService.listConfigurations(userId)
-                .filter(config -> modelName.equals(config.getModelName()))
-                .next() // 获取第一个匹配的配置
+        return userAIModelConfigService.findConfigurationByModelName(userId, modelName) // 按模型名称索引查找
                 .doOnNext(config -> log.info("找到用户 {} 指定的模型配置: Provider={}, Model={}", userId, config.getProvider(), config.getModelName()))
+                .flatMap(config -> routeAroundOpenCircuit(userId, config))
                 .flatMap(config -> getOrCreateAIModelProvider(userId, config))
                 .switchIfEmpty(Mono.defer(() -> { // 使用 defer 避免 switchIfEmpty 预先执行
                     log.warn("找不到用户 {} 指定的AI模型配置: {}", userId, modelName);
@@ -1162,6 +1194,59 @@ public class NovelAIServiceImpl implements NovelAIService {
                 }));
     }
 
+    /**
+     * 对时延敏感的非流式调用执行对冲：主模型在其耗时分位数内未返回时，
+     * 向用户另一个已验证且未熔断的模型发起备用请求，取先完成者
+     *
+     * @param userId 用户ID
+     * @param primary 主模型提供商
+     * @param request AI请求
+     * @return AI响应
+     */
+    private Mono<AIResponse> generateContentHedged(String userId, AIModelProvider primary, AIRequest request) {
+        Mono<AIResponse> primaryCall = Mono.defer(() -> primary.generateContent(request));
+        if (!hedgedGenerationExecutor.isEnabled() || userId == null) {
+            return primaryCall;
+        }
+        return userAIModelConfigService.listConfigurations(userId)
+                .filter(UserAIModelConfig::getIsValidated)
+                .filter(config -> !(Objects.equals(config.getProvider(), primary.getProviderName())
+                        && Objects.equals(config.getModelName(), primary.getModelName())))
+                .filter(config -> circuitBreakerRegistry.isCallPermitted(
+                        config.getProvider(), config.getApiEndpoint(), config.getModelName()))
+                .next()
+                .flatMap(config -> getOrCreateAIModelProvider(userId, config))
+                .map(Optional::of)
+                .onErrorResume(e -> {
+                    log.warn("获取用户 {} 的对冲备用模型失败，仅使用主模型: {}", userId, e.getMessage());
+                    return Mono.just(Optional.empty());
+                })
+                .defaultIfEmpty(Optional.empty())
+                .flatMap(secondary -> hedgedGenerationExecutor.hedge(
+                        primary.getModelName(),
+                        primaryCall,
+                        secondary.map(AIModelProvider::getModelName).orElse(null),
+                        secondary.map(provider -> Mono.defer(() -> provider.generateContent(request.toBuilder()
+                                        .model(provider.getModelName())
+                                        .messages(new ArrayList<>(request.getMessages()))
+                                        .build())))
+                                .orElse(null),
+                        // LangChain4j 提供商把调用失败包装为 finishReason=error 的响应返回，按失败参与对冲
+                        response -> "error".equals(response.getFinishReason())));
+    }
+
+    /**
+     * 模型熔断打开时切换到用户已配置的备用模型，否则保持原配置并由提供商快速失败
+     *
+     * @param userId 用户ID
+     * @param config 原模型配置
+     * @return 实际使用的模型配置
+     */
+    private Mono<UserAIModelConfig> routeAroundOpenCircuit(String userId, UserAIModelConfig config) {
+        return circuitBreakerRegistry.routeAroundOpenCircuit(config,
+                Flux.defer(() -> userAIModelConfigService.listConfigurations(userId)));
+    }
+
     /**
      * 获取或创建AI模型提供商
      *
@@ -1200,7 +1285,7 @@ public class NovelAIServiceImpl implements NovelAIService {
         String decryptedApiKey = null;
         if (encryptedApiKey != null && !encryptedApiKey.isBlank()) {
             try {
-                decryptedApiKey = encryptor.decrypt(encryptedApiKey);
+                decryptedApiKey = credentialCache.decrypt(config.getId(), encryptedApiKey);
                 log.debug("用户 {} 的模型 Provider={}, Model={} API Key 解密成功", userId, config.getProvider(), config.getModelName());
             } catch (Exception e) {
                 log.error("为用户 {} 的模型 Provider={}, Model={} 解密 API Key 时失败", userId, config.getProvider(), config.getModelName(), e);
@@ -1309,7 +1394,9 @@ public class NovelAIServiceImpl implements NovelAIService {
                     String context = tuple.getT3();
                     String promptTemplate = tuple.getT4();
 
-                    String finalPrompt = buildFinalPrompt(promptTemplate, context, sceneContent);
+                    String finalPrompt = buildFinalPrompt(
+                            PromptTemplateEngine.userSource(userId, AIFeatureType.SCENE_TO_SUMMARY),
+                            promptTemplate, context, sceneContent);
 
                     // Get AI config and call LLM
                     return userAIModelConfigService.getValidatedDefaultConfiguration(userId)
@@ -1336,7 +1423,7 @@ public class NovelAIServiceImpl implements NovelAIService {
                                 return getAIModelProvider(userId, aiConfig.getModelName())
                                         .flatMap(provider -> {
                                             log.info("开始向AI模型发送摘要生成请求，用户ID: {}, 模型: {}", userId, aiConfig.getModelName());
-                                            return provider.generateContent(aiRequest)
+                                            return generateContentHedged(userId, provider, aiRequest)
                                                 .doOnCancel(() -> log.info("客户端取消了连接，但AI生成会在后台继续完成, 用户: {}, 模型: {}", userId, aiConfig.getModelName()))
                                                 .timeout(Duration.ofSeconds(600))
                                                 .doOnSuccess(resp -> log.info("AI摘要生成成功完成，用户ID: {}, 模型: {}", userId, aiConfig.getModelName()))
@@ -1366,9 +1453,9 @@ public class NovelAIServiceImpl implements NovelAIService {
     /**
      * 构建最终提示词
      */
-    private String buildFinalPrompt(String template, String context, String input) {
-        // 使用PromptUtil工具类处理富文本和占位符替换
-        Map<String, String> variables = new HashMap<>();
+    private String buildFinalPrompt(String templateSource, String template, String context, String input) {
+        // 使用PromptUtil工具类处理富文本，模板按来源编译缓存后替换占位符
+        Map<String, String> variables = new LinkedHashMap<>();
 
         // 1. 将输入的富文本转换为纯文本
         String plainTextInput = com.ainovel.server.common.util.PromptUtil.extractPlainTextFromRichText(input);
@@ -1389,9 +1476,9 @@ public class NovelAIServiceImpl implements NovelAIService {
         // variables.put("description", plainTextInput);
         // variables.put("instruction", plainTextInput);
 
-        // 4. 使用 PromptUtil 格式化模板 (formatPromptTemplate 内部会处理 template 的富文本)
+        // 4. 使用已编译的模板渲染 (renderRichText 会在编译时处理 template 的富文本)
         // 假设 template 主要使用 {input} 和 {context}
-        return com.ainovel.server.common.util.PromptUtil.formatPromptTemplate(template, variables);
+        return promptTemplateEngine.renderRichText(templateSource, template, variables);
     }
 
     /**
@@ -1430,7 +1517,9 @@ public class NovelAIServiceImpl implements NovelAIService {
                     // 构建最终Prompt，包含用户风格指令
                     String styleInstructions = request.getAdditionalInstructions() != null ? request.getAdditionalInstructions() : "";
                     String inputWithStyle = request.getSummary() + (styleInstructions.isEmpty() ? "" : "\n\n风格要求: " + styleInstructions);
-                    String finalPrompt = buildFinalPrompt(promptTemplate, context, inputWithStyle);
+                    String finalPrompt = buildFinalPrompt(
+                            PromptTemplateEngine.userSource(userId, AIFeatureType.SUMMARY_TO_SCENE),
+                            promptTemplate, context, inputWithStyle);
 
                     // 获取AI配置并调用LLM (流式)
                     return userAIModelConfigService.getValidatedDefaultConfiguration(userId)
@@ -1440,12 +1529,10 @@ public class NovelAIServiceImpl implements NovelAIService {
                                 aiRequest.setNovelId(novelId);
                                 aiRequest.setModel(aiConfig.getModelName());
 
-                                // 创建系统消息
-                                AIRequest.Message systemMessage = new AIRequest.Message();
-                                systemMessage.setRole("system");
+                                // 创建系统消息（稳定前缀，连续生成多章时保持不变）
                                 // 修改提示词：要求只输出纯场景内容
-                                systemMessage.setContent("你是一位富有创意的小说家。请根据用户提供的摘要、上下文信息和风格要求，生成详细的小说场景内容。你的任务是只输出生成的场景内容本身，不包含任何标题、小标题、格式标记（如Markdown）、或其他解释性文字。");
-                                aiRequest.getMessages().add(systemMessage);
+                                aiRequest.getMessages().add(AIRequest.Message.cacheable("system",
+                                        "你是一位富有创意的小说家。请根据用户提供的摘要、上下文信息和风格要求，生成详细的小说场景内容。你的任务是只输出生成的场景内容本身，不包含任何标题、小标题、格式标记（如Markdown）、或其他解释性文字。"));
 
                                 // 创建用户消息
                                 AIRequest.Message userMessage = new AIRequest.Message();
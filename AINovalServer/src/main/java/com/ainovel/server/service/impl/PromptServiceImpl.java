@@ -1,6 +1,8 @@
 package com.ainovel.server.service.impl;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
@@ -9,6 +11,7 @@ import org.springframework.stereotype.Service;
 
 import com.ainovel.server.domain.model.PromptTemplate;
 import com.ainovel.server.service.PromptService;
+import com.ainovel.server.service.prompt.PromptTemplateEngine;
 
 import lombok.extern.slf4j.Slf4j;
 import reactor.core.publisher.Mono;
@@ -25,10 +28,20 @@ import java.util.Map;
 public class PromptServiceImpl implements PromptService {
 
     private final ReactiveMongoTemplate mongoTemplate;
+    private final PromptTemplateEngine promptTemplateEngine;
 
     // 默认提示词模板
     private static final Map<String, String> DEFAULT_TEMPLATES = new HashMap<>();
 
+    // 单个剧情大纲生成提示词（固定模板，复用同一实例以命中已编译模板）
+    private static final String SINGLE_OUTLINE_GENERATION_PROMPT = "基于以下上下文信息，为小说生成一个有趣而合理的后续剧情大纲选项。"
+            + "请确保生成的剧情与已有内容保持连贯，符合角色性格，推动情节发展。\n\n"
+            + "当前上下文：\n{{context}}\n\n"
+            + "{{authorGuidance}}\n\n"
+            + "请严格按照以下格式返回你的剧情大纲，先输出标题，再输出内容：\n"
+            + "TITLE: [简洁有力的标题，概括这个剧情走向的核心]\n"
+            + "CONTENT: [详细描述这个剧情大纲，包括关键人物动向、重要事件、情节转折等]";
+
     static {
         // 初始化默认提示词模板
         DEFAULT_TEMPLATES.put("plot", "请为我的小说提供情节建议。我正在写一个场景，需要有创意的情节发展。");
@@ -43,11 +56,13 @@ public class PromptServiceImpl implements PromptService {
     }
 
     @Autowired
-    public PromptServiceImpl(ReactiveMongoTemplate mongoTemplate) {
+    public PromptServiceImpl(ReactiveMongoTemplate mongoTemplate, PromptTemplateEngine promptTemplateEngine) {
         this.mongoTemplate = mongoTemplate;
+        this.promptTemplateEngine = promptTemplateEngine;
     }
 
     @Override
+    @Cacheable(value = "systemPrompts", key = "'suggestion:' + #suggestionType")
     public Mono<String> getSuggestionPrompt(String suggestionType) {
         log.info("获取建议提示词，类型: {}", suggestionType);
 
@@ -64,6 +79,7 @@ public class PromptServiceImpl implements PromptService {
     }
 
     @Override
+    @Cacheable(value = "systemPrompts", key = "'revision'")
     public Mono<String> getRevisionPrompt() {
         return getPromptTemplate("revision")
                 .switchIfEmpty(Mono.defer(() -> {
@@ -74,6 +90,7 @@ public class PromptServiceImpl implements PromptService {
     }
 
     @Override
+    @Cacheable(value = "systemPrompts", key = "'character_generation'")
     public Mono<String> getCharacterGenerationPrompt() {
         return getPromptTemplate("character_generation")
                 .switchIfEmpty(Mono.defer(() -> {
@@ -84,6 +101,7 @@ public class PromptServiceImpl implements PromptService {
     }
 
     @Override
+    @Cacheable(value = "systemPrompts", key = "'plot_generation'")
     public Mono<String> getPlotGenerationPrompt() {
         return getPromptTemplate("plot_generation")
                 .switchIfEmpty(Mono.defer(() -> {
@@ -94,6 +112,7 @@ public class PromptServiceImpl implements PromptService {
     }
 
     @Override
+    @Cacheable(value = "systemPrompts", key = "'setting_generation'")
     public Mono<String> getSettingGenerationPrompt() {
         return getPromptTemplate("setting_generation")
                 .switchIfEmpty(Mono.defer(() -> {
@@ -104,6 +123,7 @@ public class PromptServiceImpl implements PromptService {
     }
 
     @Override
+    @Cacheable(value = "systemPrompts", key = "'next_outlines_generation'")
     public Mono<String> getNextOutlinesGenerationPrompt() {
         return getPromptTemplate("next_outlines_generation")
                 .switchIfEmpty(Mono.defer(() -> {
@@ -115,18 +135,11 @@ public class PromptServiceImpl implements PromptService {
 
     @Override
     public Mono<String> getSingleOutlineGenerationPrompt() {
-        String prompt = "基于以下上下文信息，为小说生成一个有趣而合理的后续剧情大纲选项。"
-                + "请确保生成的剧情与已有内容保持连贯，符合角色性格，推动情节发展。\n\n"
-                + "当前上下文：\n{{context}}\n\n"
-                + "{{authorGuidance}}\n\n"
-                + "请严格按照以下格式返回你的剧情大纲，先输出标题，再输出内容：\n"
-                + "TITLE: [简洁有力的标题，概括这个剧情走向的核心]\n"
-                + "CONTENT: [详细描述这个剧情大纲，包括关键人物动向、重要事件、情节转折等]";
-        
-        return Mono.just(prompt);
+        return Mono.just(SINGLE_OUTLINE_GENERATION_PROMPT);
     }
 
     @Override
+    @CacheEvict(value = "systemPrompts", allEntries = true)
     public Mono<Void> savePromptTemplate(String promptType, String template) {
         log.info("保存提示词模板，类型: {}", promptType);
 
@@ -136,6 +149,7 @@ public class PromptServiceImpl implements PromptService {
                 .set("updatedAt", java.time.Instant.now());
 
         return mongoTemplate.upsert(query, update, PromptTemplate.class)
+                .doOnSuccess(result -> promptTemplateEngine.invalidate(PromptTemplateEngine.systemSource(promptType)))
                 .then();
     }
 
@@ -23,6 +23,7 @@ import com.ainovel.server.domain.model.PromptTemplate;
 import com.ainovel.server.repository.PromptTemplateRepository;
 import com.ainovel.server.service.AIService;
 import com.ainovel.server.service.PromptTemplateService;
+import com.ainovel.server.service.prompt.PromptTemplateEngine;
 
 import lombok.extern.slf4j.Slf4j;
 import reactor.core.publisher.Flux;
@@ -39,15 +40,18 @@ public class PromptTemplateServiceImpl implements PromptTemplateService {
     private final PromptTemplateRepository promptTemplateRepository;
     private final ReactiveMongoTemplate mongoTemplate;
     private final AIService aiService;
+    private final PromptTemplateEngine promptTemplateEngine;
 
     @Autowired
     public PromptTemplateServiceImpl(
             PromptTemplateRepository promptTemplateRepository,
             ReactiveMongoTemplate mongoTemplate,
-            AIService aiService) {
+            AIService aiService,
+            PromptTemplateEngine promptTemplateEngine) {
         this.promptTemplateRepository = promptTemplateRepository;
         this.mongoTemplate = mongoTemplate;
         this.aiService = aiService;
+        this.promptTemplateEngine = promptTemplateEngine;
     }
 
     @Override
@@ -157,6 +161,7 @@ public class PromptTemplateServiceImpl implements PromptTemplateService {
                             Query.query(Criteria.where("_id").is(templateId)),
                             update,
                             PromptTemplate.class)
+                            .doOnSuccess(result -> promptTemplateEngine.invalidate(PromptTemplateEngine.templateSource(templateId)))
                             .then(getPromptTemplateById(userId, templateId));
                 });
     }
@@ -170,7 +175,8 @@ public class PromptTemplateServiceImpl implements PromptTemplateService {
                         return Mono.error(new IllegalArgumentException("无权删除此模板"));
                     }
                     
-                    return promptTemplateRepository.delete(template);
+                    return promptTemplateRepository.delete(template)
+                            .doOnSuccess(v -> promptTemplateEngine.invalidate(PromptTemplateEngine.templateSource(templateId)));
                 });
     }
 
@@ -244,6 +250,7 @@ public class PromptTemplateServiceImpl implements PromptTemplateService {
                                 template.setUpdatedAt(LocalDateTime.now());
                                 
                                 return promptTemplateRepository.save(template)
+                                        .doOnSuccess(saved -> promptTemplateEngine.invalidate(PromptTemplateEngine.templateSource(templateId)))
                                         .thenReturn(result);
                             });
                 });
@@ -305,7 +312,9 @@ public class PromptTemplateServiceImpl implements PromptTemplateService {
                                 template.setContent(result.getOptimizedContent());
                                 template.setUpdatedAt(LocalDateTime.now());
                                 
-                                promptTemplateRepository.save(template).subscribe();
+                                promptTemplateRepository.save(template)
+                                        .doOnSuccess(saved -> promptTemplateEngine.invalidate(PromptTemplateEngine.templateSource(templateId)))
+                                        .subscribe();
                             });
                 });
     }
@@ -15,6 +15,9 @@ import com.ainovel.server.domain.model.UserAIModelConfig;
 import com.ainovel.server.repository.UserAIModelConfigRepository;
 import com.ainovel.server.service.AIService;
 import com.ainovel.server.service.UserAIModelConfigService; // Add Jasypt import
+import com.ainovel.server.service.ai.credential.DecryptedCredentialCache;
+import com.ainovel.server.service.modelconfig.ModelConfigChangeNotifier;
+import com.ainovel.server.service.modelconfig.UserModelConfigCache;
 
 import lombok.extern.slf4j.Slf4j;
 import reactor.core.publisher.Flux;
@@ -27,14 +30,23 @@ public class UserAIModelConfigServiceImpl implements UserAIModelConfigService {
     private final UserAIModelConfigRepository configRepository;
     private final AIService aiService;
     private final StringEncryptor encryptor;
+    private final DecryptedCredentialCache credentialCache;
+    private final UserModelConfigCache configCache;
+    private final ModelConfigChangeNotifier changeNotifier;
 
     @Autowired
     public UserAIModelConfigServiceImpl(UserAIModelConfigRepository configRepository,
             @Qualifier("AIServiceImpl") AIService aiService,
-            StringEncryptor encryptor) {
+            StringEncryptor encryptor,
+            DecryptedCredentialCache credentialCache,
+            UserModelConfigCache configCache,
+            ModelConfigChangeNotifier changeNotifier) {
         this.configRepository = configRepository;
         this.aiService = aiService;
         this.encryptor = encryptor;
+        this.credentialCache = credentialCache;
+        this.configCache = configCache;
+        this.changeNotifier = changeNotifier;
     }
 
     @Override
@@ -74,6 +86,7 @@ public class UserAIModelConfigServiceImpl implements UserAIModelConfigService {
 
                     return configRepository.save(newConfig)
                             .flatMap(this::performValidation)
+                            .flatMap(saved -> afterWrite(userId).thenReturn(saved))
                             .onErrorResume(e -> {
                                 log.error("添加配置失败: userId={}, provider={}, modelName={}", userId, lowerCaseProvider, modelName, e);
                                 if (e.getMessage() != null && e.getMessage().contains("duplicate key error")) {
@@ -121,6 +134,7 @@ public class UserAIModelConfigServiceImpl implements UserAIModelConfigService {
                     if (apiKeyUpdated) {
                         try {
                             config.setApiKey(encryptor.encrypt(newApiKey));
+                            credentialCache.invalidate(configId);
                         } catch (Exception e) {
                             log.error("更新配置时加密 API Key 失败: userId={}, configId={}", userId, configId, e);
                             return Mono.error(new RuntimeException("API Key 加密失败"));
@@ -134,39 +148,49 @@ public class UserAIModelConfigServiceImpl implements UserAIModelConfigService {
                     } else {
                         return configRepository.save(config);
                     }
-                });
+                })
+                .flatMap(saved -> afterWrite(userId).thenReturn(saved));
     }
 
     @Override
     public Mono<Void> deleteConfiguration(String userId, String configId) {
-        return configRepository.deleteByUserIdAndId(userId, configId);
+        return configRepository.deleteByUserIdAndId(userId, configId)
+                .doOnSuccess(v -> credentialCache.invalidate(configId))
+                .then(afterWrite(userId));
     }
 
     @Override
     public Mono<UserAIModelConfig> getConfigurationById(String userId, String configId) {
-        return configRepository.findByUserIdAndId(userId, configId);
+        return configCache.snapshot(userId).flatMap(snapshot -> Mono.justOrEmpty(snapshot.findById(configId)));
+    }
+
+    @Override
+    public Mono<UserAIModelConfig> findConfigurationByModelName(String userId, String modelName) {
+        return configCache.snapshot(userId).flatMap(snapshot -> Mono.justOrEmpty(snapshot.findByModelName(modelName)));
     }
 
     @Override
     public Flux<UserAIModelConfig> listConfigurations(String userId) {
-        return configRepository.findByUserId(userId);
+        return configCache.snapshot(userId).flatMapIterable(snapshot -> snapshot.all());
     }
 
     @Override
     public Flux<UserAIModelConfig> listValidatedConfigurations(String userId) {
-        return configRepository.findByUserIdAndIsValidated(userId, true);
+        return configCache.snapshot(userId).flatMapIterable(snapshot -> snapshot.validated());
     }
 
     @Override
     public Mono<UserAIModelConfig> validateConfiguration(String userId, String configId) {
         return configRepository.findByUserIdAndId(userId, configId)
                 .switchIfEmpty(Mono.error(new RuntimeException("配置不存在或无权访问")))
-                .flatMap(this::performValidation);
+                .flatMap(this::performValidation)
+                .flatMap(saved -> afterWrite(userId).thenReturn(saved));
     }
 
     @Override
     public Mono<UserAIModelConfig> getValidatedConfig(String userId, String provider, String modelName) {
-        return configRepository.findByUserIdAndProviderAndModelNameAndIsValidated(userId, provider.toLowerCase(), modelName, true)
+        return configCache.snapshot(userId)
+                .flatMap(snapshot -> Mono.justOrEmpty(snapshot.findValidated(provider.toLowerCase(), modelName)))
                 .switchIfEmpty(Mono.error(new RuntimeException("未找到用户 '" + userId + "' 的模型 '" + provider + "/" + modelName + "' 的已验证配置")));
     }
 
@@ -209,25 +233,37 @@ public class UserAIModelConfigServiceImpl implements UserAIModelConfigService {
                                 return configToSetDefault;
                             }))
                             .flatMap(configRepository::save);
-                });
+                })
+                .flatMap(saved -> afterWrite(userId).thenReturn(saved));
     }
 
     @Override
     public Mono<UserAIModelConfig> getValidatedDefaultConfiguration(String userId) {
-        return configRepository.findByUserIdAndIsDefaultIsTrue(userId)
-                .filter(config -> config.getIsValidated());
+        return configCache.snapshot(userId).flatMap(snapshot -> Mono.justOrEmpty(snapshot.validatedDefault()));
     }
 
     @Override
     public Mono<UserAIModelConfig> getFirstValidatedConfiguration(String userId) {
-        return configRepository.findByUserIdAndIsValidated(userId, true)
-                .next();
+        return listValidatedConfigurations(userId).next();
+    }
+
+    /**
+     * 经服务写入后刷新本节点快照并通知其他节点失效；刷新失败不影响写入结果
+     */
+    private Mono<Void> afterWrite(String userId) {
+        return configCache.refresh(userId)
+                .onErrorResume(e -> {
+                    log.warn("刷新用户 {} 的模型配置快照失败: {}", userId, e.getMessage());
+                    configCache.invalidate(userId);
+                    return Mono.empty();
+                })
+                .then(changeNotifier.publish(userId));
     }
 
     private Mono<UserAIModelConfig> performValidation(UserAIModelConfig config) {
         String decryptedApiKey;
         try {
-            decryptedApiKey = encryptor.decrypt(config.getApiKey());
+            decryptedApiKey = credentialCache.decrypt(config.getId(), config.getApiKey());
         } catch (Exception e) {
             log.error("验证前解密 API Key 失败: userId={}, configId={}, provider={}, model={}", config.getUserId(), config.getId(), config.getProvider(), config.getModelName(), e);
             config.setIsValidated(false);
@@ -263,7 +299,7 @@ public class UserAIModelConfigServiceImpl implements UserAIModelConfigService {
                     String decryptedApiKey = null;
                     // 检查配置中是否有API密钥
                     if (config.getApiKey() != null && !config.getApiKey().isEmpty()) {
-                        decryptedApiKey = encryptor.decrypt(config.getApiKey());
+                        decryptedApiKey = credentialCache.decrypt(config.getId(), config.getApiKey());
                     } else {
                         log.warn("配置没有API密钥: userId={}, configId={}", userId, configId);
                         return Mono.empty();
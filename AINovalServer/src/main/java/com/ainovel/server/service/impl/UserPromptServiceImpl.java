@@ -13,6 +13,7 @@ import com.ainovel.server.domain.model.AIFeatureType;
 import com.ainovel.server.domain.model.UserPromptTemplate;
 import com.ainovel.server.repository.UserPromptTemplateRepository;
 import com.ainovel.server.service.UserPromptService;
+import com.ainovel.server.service.prompt.PromptTemplateEngine;
 
 import lombok.extern.slf4j.Slf4j;
 import reactor.core.publisher.Flux;
@@ -26,6 +27,7 @@ import reactor.core.publisher.Mono;
 public class UserPromptServiceImpl implements UserPromptService {
 
     private final UserPromptTemplateRepository userPromptTemplateRepository;
+    private final PromptTemplateEngine promptTemplateEngine;
 
     // 默认提示词模板
     private static final Map<AIFeatureType, String> DEFAULT_TEMPLATES = new HashMap<>();
@@ -40,8 +42,10 @@ public class UserPromptServiceImpl implements UserPromptService {
     }
 
     @Autowired
-    public UserPromptServiceImpl(UserPromptTemplateRepository userPromptTemplateRepository) {
+    public UserPromptServiceImpl(UserPromptTemplateRepository userPromptTemplateRepository,
+                                 PromptTemplateEngine promptTemplateEngine) {
         this.userPromptTemplateRepository = userPromptTemplateRepository;
+        this.promptTemplateEngine = promptTemplateEngine;
     }
 
     @Override
@@ -81,7 +85,8 @@ public class UserPromptServiceImpl implements UserPromptService {
                             .updatedAt(LocalDateTime.now())
                             .build();
                     return userPromptTemplateRepository.save(newTemplate);
-                }));
+                }))
+                .doOnSuccess(saved -> promptTemplateEngine.invalidate(PromptTemplateEngine.userSource(userId, featureType)));
     }
 
     @Override
@@ -89,7 +94,8 @@ public class UserPromptServiceImpl implements UserPromptService {
     public Mono<Void> deleteUserPrompt(String userId, AIFeatureType featureType) {
         log.info("删除用户提示词, userId: {}, featureType: {}", userId, featureType);
 
-        return userPromptTemplateRepository.deleteByUserIdAndFeatureType(userId, featureType);
+        return userPromptTemplateRepository.deleteByUserIdAndFeatureType(userId, featureType)
+                .doOnSuccess(v -> promptTemplateEngine.invalidate(PromptTemplateEngine.userSource(userId, featureType)));
     }
 
     @Override
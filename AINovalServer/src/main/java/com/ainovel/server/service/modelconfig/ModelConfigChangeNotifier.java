@@ -0,0 +1,86 @@
+package com.ainovel.server.service.modelconfig;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.UUID;
+
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.ainovel.server.config.RabbitMQConfig;
+import com.rabbitmq.client.Channel;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * 模型配置变更通知
+ *
+ * 配置经服务写入后向扇形交换机广播用户ID，各节点收到后失效本地快照；本节点发出的消息忽略（已在写入时刷新）。
+ * 广播失败只记录日志，其他节点的快照最迟在兜底过期时间后更新。
+ */
+@Slf4j
+@Component
+public class ModelConfigChangeNotifier {
+
+    private static final String HEADER_USER_ID = "x-user-id";
+    private static final String HEADER_NODE_ID = "x-node-id";
+
+    private final RabbitTemplate rabbitTemplate;
+    private final UserModelConfigCache configCache;
+    private final String nodeId = UUID.randomUUID().toString();
+
+    @Autowired
+    public ModelConfigChangeNotifier(RabbitTemplate rabbitTemplate, UserModelConfigCache configCache) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.configCache = configCache;
+    }
+
+    /**
+     * 广播用户配置变更
+     *
+     * @param userId 用户ID
+     * @return 发送完成时结束，失败时也正常结束
+     */
+    public Mono<Void> publish(String userId) {
+        return Mono.fromRunnable(() -> rabbitTemplate.convertAndSend(
+                        RabbitMQConfig.MODEL_CONFIG_EVENTS_EXCHANGE,
+                        "",
+                        Map.of("userId", userId),
+                        message -> {
+                            message.getMessageProperties().setContentType(MessageProperties.CONTENT_TYPE_JSON);
+                            message.getMessageProperties().setHeader(HEADER_USER_ID, userId);
+                            message.getMessageProperties().setHeader(HEADER_NODE_ID, nodeId);
+                            return message;
+                        }))
+                .subscribeOn(Schedulers.boundedElastic()) // 发送是阻塞的
+                .doOnError(e -> log.warn("广播用户 {} 的模型配置变更失败: {}", userId, e.getMessage()))
+                .onErrorResume(e -> Mono.empty())
+                .then();
+    }
+
+    /**
+     * 处理其他节点的配置变更
+     *
+     * @param message 消息对象
+     * @param channel RabbitMQ通道
+     * @throws IOException 如果确认消息时发生IO异常
+     */
+    @RabbitListener(queues = "#{modelConfigEventsQueue.name}")
+    public void handleConfigChanged(Message message, Channel channel) throws IOException {
+        long deliveryTag = message.getMessageProperties().getDeliveryTag();
+        Map<String, Object> headers = message.getMessageProperties().getHeaders();
+        Object userId = headers.get(HEADER_USER_ID);
+        if (userId != null && !nodeId.equals(headers.get(HEADER_NODE_ID))) {
+            configCache.invalidate(userId.toString());
+            log.debug("收到用户 {} 的模型配置变更，已失效本地快照", userId);
+        }
+        // 失效是幂等的本地操作，无需重试
+        channel.basicAck(deliveryTag, false);
+    }
+}
@@ -0,0 +1,85 @@
+package com.ainovel.server.service.modelconfig;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.ainovel.server.config.ModelConfigCacheConfiguration;
+import com.ainovel.server.repository.UserAIModelConfigRepository;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+/**
+ * 按用户缓存模型配置快照
+ *
+ * 同一用户的并发加载合并为一次数据库查询，加载失败不缓存。
+ * 失效会同时丢弃正在进行的加载，因此写入后不会再被写入前读到的旧数据覆盖。
+ */
+@Slf4j
+@Component
+public class UserModelConfigCache {
+
+    private final UserAIModelConfigRepository configRepository;
+    private final ModelConfigCacheConfiguration configuration;
+    private final AsyncCache<String, UserModelConfigSnapshot> snapshots;
+
+    @Autowired
+    public UserModelConfigCache(UserAIModelConfigRepository configRepository, ModelConfigCacheConfiguration configuration) {
+        this.configRepository = configRepository;
+        this.configuration = configuration;
+        this.snapshots = Caffeine.newBuilder()
+                .maximumSize(configuration.getMaxUsers())
+                .expireAfterWrite(Duration.ofMinutes(configuration.getTtlMinutes()))
+                .executor(Runnable::run)
+                .buildAsync();
+    }
+
+    /**
+     * 获取用户的配置快照，命中时不访问数据库
+     *
+     * @param userId 用户ID
+     * @return 配置快照
+     */
+    public Mono<UserModelConfigSnapshot> snapshot(String userId) {
+        if (!configuration.isEnabled()) {
+            return load(userId);
+        }
+        // 多个订阅方共享同一次加载，单个订阅取消不影响其他订阅方
+        return Mono.fromFuture(() -> snapshots.get(userId, (id, executor) -> load(id).toFuture()), true);
+    }
+
+    /**
+     * 失效本节点的用户快照
+     *
+     * @param userId 用户ID
+     */
+    public void invalidate(String userId) {
+        if (userId != null) {
+            snapshots.synchronous().invalidate(userId);
+        }
+    }
+
+    /**
+     * 失效并重新加载用户快照
+     *
+     * @param userId 用户ID
+     * @return 重新加载完成时结束
+     */
+    public Mono<Void> refresh(String userId) {
+        return Mono.defer(() -> {
+            invalidate(userId);
+            return snapshot(userId).then();
+        });
+    }
+
+    private Mono<UserModelConfigSnapshot> load(String userId) {
+        return configRepository.findByUserId(userId)
+                .collectList()
+                .map(UserModelConfigSnapshot::of)
+                .doOnNext(snapshot -> log.debug("已加载用户 {} 的模型配置快照", userId));
+    }
+}
@@ -0,0 +1,90 @@
+package com.ainovel.server.service.modelconfig;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import com.ainovel.server.domain.model.UserAIModelConfig;
+
+/**
+ * 某个用户全部模型配置的只读快照，按配置ID与模型名称建立索引
+ *
+ * 快照中的对象不对外暴露，所有查询都返回副本，调用方修改返回值不会影响缓存。
+ */
+public final class UserModelConfigSnapshot {
+
+    private final List<UserAIModelConfig> all;
+    private final Map<String, UserAIModelConfig> byId;
+    private final Map<String, UserAIModelConfig> byModelName;
+    private final UserAIModelConfig defaultConfig;
+
+    private UserModelConfigSnapshot(List<UserAIModelConfig> configs) {
+        this.all = List.copyOf(configs);
+        Map<String, UserAIModelConfig> ids = new LinkedHashMap<>();
+        Map<String, UserAIModelConfig> models = new LinkedHashMap<>();
+        UserAIModelConfig foundDefault = null;
+        for (UserAIModelConfig config : all) {
+            if (config.getId() != null) {
+                ids.put(config.getId(), config);
+            }
+            if (config.getModelName() != null) {
+                // 与原先按列表顺序取第一个匹配的行为一致
+                models.putIfAbsent(config.getModelName(), config);
+            }
+            if (config.isDefault() && foundDefault == null) {
+                foundDefault = config;
+            }
+        }
+        this.byId = Collections.unmodifiableMap(ids);
+        this.byModelName = Collections.unmodifiableMap(models);
+        this.defaultConfig = foundDefault;
+    }
+
+    /**
+     * @param configs 用户的全部配置（按数据库返回顺序）
+     * @return 快照
+     */
+    public static UserModelConfigSnapshot of(List<UserAIModelConfig> configs) {
+        return new UserModelConfigSnapshot(configs);
+    }
+
+    public List<UserAIModelConfig> all() {
+        return all.stream().map(UserModelConfigSnapshot::copy).toList();
+    }
+
+    public List<UserAIModelConfig> validated() {
+        return all.stream().filter(UserAIModelConfig::getIsValidated).map(UserModelConfigSnapshot::copy).toList();
+    }
+
+    public Optional<UserAIModelConfig> findById(String configId) {
+        return Optional.ofNullable(configId != null ? byId.get(configId) : null).map(UserModelConfigSnapshot::copy);
+    }
+
+    public Optional<UserAIModelConfig> findByModelName(String modelName) {
+        return Optional.ofNullable(modelName != null ? byModelName.get(modelName) : null).map(UserModelConfigSnapshot::copy);
+    }
+
+    /**
+     * @return 已验证的默认配置
+     */
+    public Optional<UserAIModelConfig> validatedDefault() {
+        return Optional.ofNullable(defaultConfig).filter(UserAIModelConfig::getIsValidated).map(UserModelConfigSnapshot::copy);
+    }
+
+    /**
+     * @return 指定提供商与模型的已验证配置
+     */
+    public Optional<UserAIModelConfig> findValidated(String provider, String modelName) {
+        return all.stream()
+                .filter(UserAIModelConfig::getIsValidated)
+                .filter(config -> provider.equals(config.getProvider()) && modelName.equals(config.getModelName()))
+                .findFirst()
+                .map(UserModelConfigSnapshot::copy);
+    }
+
+    private static UserAIModelConfig copy(UserAIModelConfig config) {
+        return config.toBuilder().build();
+    }
+}
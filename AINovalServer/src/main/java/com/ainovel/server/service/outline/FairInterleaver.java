@@ -0,0 +1,162 @@
+package com.ainovel.server.service.outline;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.reactivestreams.Subscription;
+
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+
+/**
+ * 公平交织多个流
+ *
+ * 每个源只预取固定数量的元素，按轮询顺序每次从一个源取一个元素交给下游，下游消费后再向该源补充请求。
+ * 生成快的选项不会挤占慢选项的输出机会，客户端消费变慢时每个源都各自受到背压。
+ */
+final class FairInterleaver {
+
+    private FairInterleaver() {
+    }
+
+    /**
+     * @param sources 源流
+     * @param bufferPerSource 每个源的预取数量
+     * @return 交织后的流，任一源出错时以该错误结束
+     */
+    static <T> Flux<T> interleave(List<Flux<T>> sources, int bufferPerSource) {
+        if (sources.isEmpty()) {
+            return Flux.empty();
+        }
+        return Flux.create(sink -> {
+            Drain<T> drain = new Drain<>(sink, sources.size(), Math.max(1, bufferPerSource));
+            sink.onRequest(n -> drain.drain());
+            sink.onDispose(drain::cancel);
+            for (int i = 0; i < sources.size(); i++) {
+                sources.get(i).subscribe(drain.lanes.get(i));
+            }
+            drain.start();
+        });
+    }
+
+    private static final class Drain<T> {
+        private final FluxSink<T> sink;
+        private final List<Lane> lanes;
+        private final int buffer;
+        private final AtomicInteger wip = new AtomicInteger();
+        private int cursor;
+        private volatile boolean started;
+        private volatile boolean finished;
+
+        Drain(FluxSink<T> sink, int size, int buffer) {
+            this.sink = sink;
+            this.buffer = buffer;
+            this.lanes = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                lanes.add(new Lane());
+            }
+        }
+
+        /**
+         * 所有源都已订阅后才开始输出，避免先订阅的源在启动阶段独占下游请求
+         */
+        void start() {
+            started = true;
+            drain();
+        }
+
+        /**
+         * 串行排空：同一时刻只有一个线程执行循环，其他线程的调用只增加计数，由当前线程补做一轮
+         */
+        void drain() {
+            if (!started || wip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            do {
+                if (finished) {
+                    return;
+                }
+                while (sink.requestedFromDownstream() > 0) {
+                    Lane lane = nextReadyLane();
+                    if (lane == null) {
+                        break;
+                    }
+                    sink.next(lane.queue.poll());
+                    lane.request(1);
+                }
+                boolean allDone = true;
+                for (Lane lane : lanes) {
+                    if (lane.error != null && lane.queue.isEmpty()) {
+                        finished = true;
+                        cancel();
+                        sink.error(lane.error);
+                        return;
+                    }
+                    allDone &= lane.done && lane.queue.isEmpty();
+                }
+                if (allDone) {
+                    finished = true;
+                    sink.complete();
+                    return;
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        /**
+         * 从上次位置之后开始轮询，找到下一个有数据的源
+         */
+        private Lane nextReadyLane() {
+            for (int i = 0; i < lanes.size(); i++) {
+                int index = (cursor + i) % lanes.size();
+                Lane lane = lanes.get(index);
+                if (!lane.queue.isEmpty()) {
+                    cursor = (index + 1) % lanes.size();
+                    return lane;
+                }
+            }
+            return null;
+        }
+
+        void cancel() {
+            for (Lane lane : lanes) {
+                lane.dispose();
+            }
+        }
+
+        private final class Lane extends BaseSubscriber<T> {
+            private final Queue<T> queue = new ConcurrentLinkedQueue<>();
+            private volatile boolean done;
+            private volatile Throwable error;
+
+            @Override
+            protected void hookOnSubscribe(Subscription subscription) {
+                subscription.request(buffer);
+            }
+
+            @Override
+            protected void hookOnNext(T value) {
+                queue.offer(value);
+                drain();
+            }
+
+            @Override
+            protected void hookOnComplete() {
+                done = true;
+                drain();
+            }
+
+            @Override
+            protected void hookOnError(Throwable throwable) {
+                error = throwable;
+                done = true;
+                drain();
+            }
+        }
+    }
+}
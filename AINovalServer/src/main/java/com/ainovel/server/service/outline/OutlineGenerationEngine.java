@@ -0,0 +1,175 @@
+package com.ainovel.server.service.outline;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.ainovel.server.config.OutlineGenerationConfiguration;
+import com.ainovel.server.web.dto.OutlineGenerationChunk;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * 剧情大纲生成引擎
+ *
+ * 多个大纲选项在I/O调度器上并发生成，同一用户同时生成的选项数受许可限制（跨请求共享），
+ * 各选项的输出按轮询方式公平交织后交给客户端。选项内容在各自的缓冲区中累积，选项完成时只持久化一次。
+ * 选项的生成上下文保存在有界、按写入时间过期的缓存中，供单项重新生成复用。
+ */
+@Slf4j
+@Component
+public class OutlineGenerationEngine {
+
+    private final OutlineGenerationConfiguration configuration;
+    private final UserConcurrencyLimiter limiter;
+    private final Cache<String, OutlineOptionContext> contexts;
+
+    @Autowired
+    public OutlineGenerationEngine(OutlineGenerationConfiguration configuration) {
+        this.configuration = configuration;
+        this.limiter = new UserConcurrencyLimiter(configuration.getMaxConcurrentOptionsPerUser());
+        this.contexts = Caffeine.newBuilder()
+                .maximumSize(configuration.getContextCacheMaxSize())
+                .expireAfterWrite(Duration.ofMinutes(configuration.getContextCacheTtlMinutes()))
+                // 淘汰开销很小，直接在调用线程执行
+                .executor(Runnable::run)
+                .build();
+    }
+
+    /**
+     * 并发生成多个选项并公平交织输出
+     *
+     * @param userId 用户ID
+     * @param count 选项数量
+     * @param option 按索引创建单个选项的生成流
+     * @return 交织后的数据块流
+     */
+    public Flux<OutlineGenerationChunk> runOptions(String userId, int count, IntFunction<Flux<OutlineGenerationChunk>> option) {
+        List<Flux<OutlineGenerationChunk>> lanes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int index = i;
+            lanes.add(runOption(userId, Flux.defer(() -> option.apply(index))));
+        }
+        return FairInterleaver.interleave(lanes, configuration.getOptionBufferSize());
+    }
+
+    /**
+     * 在用户许可下于I/O调度器上生成单个选项，流结束或取消时归还许可
+     *
+     * @param userId 用户ID
+     * @param option 选项生成流
+     * @return 受限后的生成流
+     */
+    public <T> Flux<T> runOption(String userId, Flux<T> option) {
+        String key = userId != null ? userId : "anonymous";
+        return Flux.usingWhen(
+                limiter.acquire(key),
+                permit -> option.subscribeOn(Schedulers.boundedElastic()),
+                UserConcurrencyLimiter.Permit::release);
+    }
+
+    /**
+     * 按选项累积生成内容，选项的最后一个块到达时调用一次持久化；
+     * 流正常结束时仍未收到最后一个块的选项也各持久化一次，流出错时丢弃未完成的选项。
+     * 数据块原样透传给下游，持久化不阻塞输出。
+     *
+     * @param chunks 数据块流
+     * @param persist 持久化函数
+     * @return 原样透传的数据块流
+     */
+    public Flux<OutlineGenerationChunk> collect(Flux<OutlineGenerationChunk> chunks,
+            Function<OutlineOptionResult, Mono<?>> persist) {
+        return Flux.defer(() -> {
+            Map<String, OptionBuffer> buffers = new LinkedHashMap<>();
+            return chunks
+                    .doOnNext(chunk -> {
+                        OptionBuffer buffer;
+                        synchronized (buffers) {
+                            buffer = buffers.computeIfAbsent(chunk.getOptionId(), k -> new OptionBuffer());
+                        }
+                        buffer.append(chunk);
+                        if (chunk.isFinalChunk()) {
+                            synchronized (buffers) {
+                                buffers.remove(chunk.getOptionId());
+                            }
+                            persist(persist, buffer.toResult(chunk.getOptionId(), true));
+                        }
+                    })
+                    .doOnComplete(() -> {
+                        List<Map.Entry<String, OptionBuffer>> leftovers;
+                        synchronized (buffers) {
+                            leftovers = new ArrayList<>(buffers.entrySet());
+                            buffers.clear();
+                        }
+                        if (!leftovers.isEmpty()) {
+                            log.warn("流处理完成时仍有 {} 个未完成的大纲选项，将按已生成内容保存", leftovers.size());
+                        }
+                        leftovers.forEach(e -> persist(persist, e.getValue().toResult(e.getKey(), false)));
+                    })
+                    .doOnError(e -> {
+                        synchronized (buffers) {
+                            buffers.clear();
+                        }
+                    });
+        });
+    }
+
+    /**
+     * 缓存选项的生成上下文
+     */
+    public void rememberContext(String optionId, OutlineOptionContext context) {
+        if (optionId != null && context != null) {
+            contexts.put(optionId, context);
+        }
+    }
+
+    /**
+     * @return 缓存的选项上下文，未命中或已过期时返回null
+     */
+    public OutlineOptionContext findContext(String optionId) {
+        return optionId != null ? contexts.getIfPresent(optionId) : null;
+    }
+
+    private void persist(Function<OutlineOptionResult, Mono<?>> persist, OutlineOptionResult result) {
+        Mono.defer(() -> persist.apply(result))
+                .subscribe(
+                        saved -> log.debug("大纲选项 {} 已保存", result.optionId()),
+                        error -> log.error("保存大纲选项 {} 失败: {}", result.optionId(), error.getMessage()));
+    }
+
+    /**
+     * 单个选项的内容缓冲区
+     */
+    private static final class OptionBuffer {
+        private final StringBuilder content = new StringBuilder();
+        private String title;
+        private String error;
+
+        synchronized void append(OutlineGenerationChunk chunk) {
+            if (chunk.getOptionTitle() != null) {
+                title = chunk.getOptionTitle();
+            }
+            if (chunk.getError() != null) {
+                error = chunk.getError();
+            } else if (chunk.getTextChunk() != null) {
+                content.append(chunk.getTextChunk());
+            }
+        }
+
+        synchronized OutlineOptionResult toResult(String optionId, boolean completed) {
+            return new OutlineOptionResult(optionId, title, content.toString(), error, completed);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.ainovel.server.service.outline;
+
+/**
+ * 大纲选项的生成上下文，用于单项重新生成时复用原始参数
+ *
+ * @param novelId 小说ID
+ * @param userId 用户ID
+ * @param startChapterId 起始章节ID
+ * @param endChapterId 结束章节ID
+ * @param authorGuidance 作者引导
+ */
+public record OutlineOptionContext(String novelId, String userId, String startChapterId, String endChapterId,
+        String authorGuidance) {
+}
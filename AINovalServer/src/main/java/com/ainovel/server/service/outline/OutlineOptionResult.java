@@ -0,0 +1,20 @@
+package com.ainovel.server.service.outline;
+
+/**
+ * 一个大纲选项的完整生成结果
+ *
+ * @param optionId 选项ID
+ * @param title 标题
+ * @param content 完整内容
+ * @param error 错误信息，成功时为null
+ * @param completed 是否收到了最后一个块；流提前结束时为false
+ */
+public record OutlineOptionResult(String optionId, String title, String content, String error, boolean completed) {
+
+    /**
+     * @return 是否成功完成
+     */
+    public boolean succeeded() {
+        return completed && error == null;
+    }
+}
@@ -0,0 +1,120 @@
+package com.ainovel.server.service.outline;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+/**
+ * 按用户的固定并发限制：每个用户最多持有 limit 个许可，其余请求排队等待
+ * 用户的所有许可都空闲且无人排队时移除其条目，因此占用的内存只与活跃用户数相关
+ */
+final class UserConcurrencyLimiter {
+
+    private final int limit;
+    private final Map<String, Permits> permits = new ConcurrentHashMap<>();
+
+    UserConcurrencyLimiter(int limit) {
+        this.limit = Math.max(1, limit);
+    }
+
+    /**
+     * 获取一个许可；订阅被取消时放弃排队
+     *
+     * @param userId 用户ID
+     * @return 获得许可时完成
+     */
+    Mono<Permit> acquire(String userId) {
+        return Mono.create(sink -> {
+            while (true) {
+                Permits userPermits = permits.computeIfAbsent(userId, k -> new Permits(k));
+                if (userPermits.tryAcquireOrEnqueue(sink)) {
+                    return;
+                }
+            }
+        });
+    }
+
+    /**
+     * 当前持有许可的数量
+     */
+    int inUse(String userId) {
+        Permits userPermits = permits.get(userId);
+        return userPermits != null ? userPermits.inUse() : 0;
+    }
+
+    /**
+     * 已获得的许可，释放多次只生效一次
+     */
+    final class Permit {
+        private final Permits owner;
+        private boolean released;
+
+        private Permit(Permits owner) {
+            this.owner = owner;
+        }
+
+        Mono<Void> release() {
+            return Mono.fromRunnable(() -> {
+                synchronized (owner) {
+                    if (released) {
+                        return;
+                    }
+                    released = true;
+                }
+                owner.release();
+            });
+        }
+    }
+
+    private final class Permits {
+        private final String userId;
+        private final ArrayDeque<MonoSink<Permit>> waiters = new ArrayDeque<>();
+        private int available = limit;
+        private boolean retired;
+
+        Permits(String userId) {
+            this.userId = userId;
+        }
+
+        /**
+         * @return false 表示该条目已被移除，调用方需重新获取条目
+         */
+        synchronized boolean tryAcquireOrEnqueue(MonoSink<Permit> sink) {
+            if (retired) {
+                return false;
+            }
+            if (available > 0) {
+                available--;
+                sink.success(new Permit(this));
+                return true;
+            }
+            waiters.addLast(sink);
+            sink.onCancel(() -> {
+                synchronized (this) {
+                    waiters.remove(sink);
+                }
+            });
+            return true;
+        }
+
+        synchronized void release() {
+            MonoSink<Permit> next = waiters.pollFirst();
+            if (next != null) {
+                next.success(new Permit(this));
+                return;
+            }
+            available++;
+            if (available == limit) {
+                retired = true;
+                permits.remove(userId, this);
+            }
+        }
+
+        synchronized int inUse() {
+            return limit - available;
+        }
+    }
+}
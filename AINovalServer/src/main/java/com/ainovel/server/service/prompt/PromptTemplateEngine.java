@@ -0,0 +1,131 @@
+package com.ainovel.server.service.prompt;
+
+import java.util.Map;
+
+import org.springframework.stereotype.Component;
+
+import com.ainovel.server.common.util.CompiledPromptTemplate;
+import com.ainovel.server.common.util.PromptUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 提示词模板引擎
+ *
+ * 按模板来源（如 system:revision、user:{userId}:{featureType}）缓存编译结果，并以模板文本的版本哈希校验：
+ * 同一来源的模板内容变化时自动重新编译。模板在 PromptService/UserPromptService/PromptTemplateService
+ * 更新或删除时按来源失效。
+ */
+@Slf4j
+@Component
+public class PromptTemplateEngine {
+
+    private static final int MAX_TEMPLATES = 2000;
+
+    private final Cache<String, Entry> compiledTemplates = Caffeine.newBuilder()
+            .maximumSize(MAX_TEMPLATES)
+            .build();
+
+    /**
+     * 系统提示词模板来源
+     */
+    public static String systemSource(String promptType) {
+        return "system:" + promptType;
+    }
+
+    /**
+     * 用户功能提示词模板来源
+     */
+    public static String userSource(String userId, Object featureType) {
+        return "user:" + userId + ":" + featureType;
+    }
+
+    /**
+     * 提示词模板库中的模板来源
+     */
+    public static String templateSource(String templateId) {
+        return "template:" + templateId;
+    }
+
+    /**
+     * 渲染纯文本模板
+     *
+     * @param source 模板来源
+     * @param template 模板文本
+     * @param variables 变量映射
+     * @return 渲染结果
+     */
+    public String render(String source, String template, Map<String, ?> variables) {
+        return compile(source, template, false).render(variables);
+    }
+
+    /**
+     * 渲染可能为富文本（Quill Delta/HTML）的用户模板，编译前先提取纯文本
+     *
+     * @param source 模板来源
+     * @param template 模板文本
+     * @param variables 变量映射
+     * @return 渲染结果
+     */
+    public String renderRichText(String source, String template, Map<String, ?> variables) {
+        if (template == null || template.isEmpty()) {
+            return "";
+        }
+        return compile(source, template, true).render(variables);
+    }
+
+    /**
+     * 获取编译后的模板，缓存中的版本与模板文本不一致时重新编译
+     *
+     * @param source 模板来源
+     * @param template 模板文本
+     * @param richText 是否按富文本处理
+     * @return 编译结果
+     */
+    public CompiledPromptTemplate compile(String source, String template, boolean richText) {
+        String text = template != null ? template : "";
+        String key = richText ? source + "#rich" : source;
+        Entry entry = compiledTemplates.getIfPresent(key);
+        if (entry == null || !entry.matches(text)) {
+            CompiledPromptTemplate compiled = CompiledPromptTemplate.compile(
+                    richText ? PromptUtil.extractPlainTextFromRichText(text) : text);
+            entry = new Entry(text, compiled);
+            compiledTemplates.put(key, entry);
+            log.debug("编译提示词模板: {}", key);
+        }
+        return entry.compiled;
+    }
+
+    /**
+     * 使某个来源的已编译模板失效
+     *
+     * @param source 模板来源
+     */
+    public void invalidate(String source) {
+        compiledTemplates.invalidate(source);
+        compiledTemplates.invalidate(source + "#rich");
+    }
+
+    /**
+     * 已编译模板及其版本（模板文本与其哈希）
+     */
+    private static final class Entry {
+        private final String template;
+        private final int versionHash;
+        private final CompiledPromptTemplate compiled;
+
+        private Entry(String template, CompiledPromptTemplate compiled) {
+            this.template = template;
+            this.versionHash = template.hashCode();
+            this.compiled = compiled;
+        }
+
+        private boolean matches(String candidate) {
+            // 模板通常来自缓存，同一实例可直接命中；否则先比较哈希，避免逐字符比较
+            return template == candidate
+                    || (versionHash == candidate.hashCode() && template.equals(candidate));
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.ainovel.server.task;
 
+import java.util.List;
+
 import reactor.core.publisher.Mono;
 
 /**
@@ -51,6 +53,14 @@ public interface TaskContext<P> {
      */
     Mono<Void> updateProgress(Object progressData);
     
+    /**
+     * 写入初始进度，写入数据库后才完成
+     * 有子任务的父任务须在提交子任务前调用，之后由子任务状态聚合器按字段累加，不应再整体更新进度
+     * @param progressData 初始进度数据
+     * @return 写入完成信号
+     */
+    Mono<Void> initializeProgress(Object progressData);
+    
     /**
      * 记录信息日志
      * @param message 日志消息
@@ -73,4 +83,12 @@ public interface TaskContext<P> {
      * @return 子任务ID的Mono
      */
     Mono<String> submitSubTask(String taskType, Object parameters);
+    
+    /**
+     * 批量提交同一类型的子任务
+     * @param taskType 子任务类型
+     * @param parametersList 各子任务参数
+     * @return 子任务ID列表的Mono，顺序与参数列表一致
+     */
+    Mono<List<String>> submitSubTasks(String taskType, List<?> parametersList);
 } 
\ No newline at end of file
@@ -9,6 +9,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.context.ApplicationEventPublisher;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
 import java.util.UUID;
 
 /**
@@ -88,6 +89,17 @@ public class TaskContextImpl<P> implements TaskContext<P> {
         return taskStateService.recordProgress(taskId, progressData);
     }
     
+    @Override
+    public Mono<Void> initializeProgress(Object progressData) {
+        if (progressData == null) {
+            return Mono.empty();
+        }
+        
+        // 先写入数据库再发布事件，子任务提交时初始进度已就绪
+        return taskStateService.initializeProgress(taskId, progressData)
+                .then(Mono.fromRunnable(() -> eventPublisher.publishEvent(new TaskProgressEvent(this, taskId, progressData))));
+    }
+    
     @Override
     public Mono<Void> logInfo(String message) {
         logger.info("[任务:{}] {}", taskId, message);
@@ -109,6 +121,11 @@ public class TaskContextImpl<P> implements TaskContext<P> {
         return taskSubmissionService.submitTask(userId, taskType, parameters, taskId);
     }
     
+    @Override
+    public Mono<List<String>> submitSubTasks(String taskType, List<?> parametersList) {
+        return taskSubmissionService.submitSubTasks(userId, taskType, parametersList, taskId);
+    }
+    
     /**
      * 创建TaskContext的构建器
      * 
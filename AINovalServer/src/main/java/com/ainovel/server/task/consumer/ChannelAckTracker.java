@@ -0,0 +1,116 @@
+package com.ainovel.server.task.consumer;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.rabbitmq.client.Channel;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 单个通道上的消息确认跟踪
+ *
+ * 按投递标签顺序确认：连续完成的消息累计到一批后以 multiple=true 一次确认到最高标签。
+ * 前面有长任务未完成时，后面已完成的消息超过一批会逐条确认，避免占满预取窗口。
+ * 失败的消息立即逐条拒绝(不重新入队，进入死信队列)。
+ */
+@Slf4j
+final class ChannelAckTracker {
+
+    private final Channel channel;
+    private final int batchSize;
+
+    /**
+     * 未确认的投递标签 -> 是否已处理完成
+     */
+    private final TreeMap<Long, Boolean> outstanding = new TreeMap<>();
+
+    /**
+     * 已连续完成、尚未确认的最高标签
+     */
+    private long ackUpTo = -1;
+    private int pendingAcks;
+    private int completedAhead;
+
+    ChannelAckTracker(Channel channel, int batchSize) {
+        this.channel = channel;
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    synchronized void received(long deliveryTag) {
+        outstanding.put(deliveryTag, false);
+    }
+
+    synchronized void completed(long deliveryTag) {
+        if (outstanding.replace(deliveryTag, true) == null) {
+            return;
+        }
+        completedAhead++;
+        advance();
+        if (pendingAcks >= batchSize || completedAhead >= batchSize) {
+            flush();
+        }
+    }
+
+    synchronized void failed(long deliveryTag) {
+        if (outstanding.remove(deliveryTag) == null) {
+            return;
+        }
+        try {
+            channel.basicNack(deliveryTag, false, false);
+            log.debug("拒绝消息: deliveryTag={}, requeue=false", deliveryTag);
+        } catch (IOException | RuntimeException e) {
+            log.error("拒绝消息时发生异常: deliveryTag={}", deliveryTag, e);
+        }
+        advance();
+    }
+
+    /**
+     * 确认所有可确认的消息
+     */
+    synchronized void flush() {
+        if (pendingAcks > 0) {
+            try {
+                channel.basicAck(ackUpTo, true);
+                log.debug("批量确认消息: 至 deliveryTag={}, 共 {} 条", ackUpTo, pendingAcks);
+            } catch (IOException | RuntimeException e) {
+                log.error("批量确认消息时发生异常: deliveryTag={}", ackUpTo, e);
+            }
+            pendingAcks = 0;
+        }
+        if (completedAhead >= batchSize) {
+            // 队首被长任务阻塞，逐条确认其后已完成的消息以释放预取窗口
+            Iterator<Map.Entry<Long, Boolean>> it = outstanding.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<Long, Boolean> entry = it.next();
+                if (entry.getValue()) {
+                    try {
+                        channel.basicAck(entry.getKey(), false);
+                    } catch (IOException | RuntimeException e) {
+                        log.error("确认消息时发生异常: deliveryTag={}", entry.getKey(), e);
+                    }
+                    it.remove();
+                }
+            }
+            completedAhead = 0;
+        }
+    }
+
+    synchronized int outstanding() {
+        return outstanding.size();
+    }
+
+    boolean isOpen() {
+        return channel.isOpen();
+    }
+
+    private void advance() {
+        while (!outstanding.isEmpty() && outstanding.firstEntry().getValue()) {
+            ackUpTo = outstanding.pollFirstEntry().getKey();
+            pendingAcks++;
+            completedAhead--;
+        }
+    }
+}
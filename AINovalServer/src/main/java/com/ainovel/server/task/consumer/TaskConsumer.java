@@ -1,6 +1,7 @@
 package com.ainovel.server.task.consumer;
 
 import com.ainovel.server.config.RabbitMQConfig;
+import com.ainovel.server.config.TaskRetryConfiguration;
 import com.ainovel.server.task.BackgroundTaskExecutable;
 import com.ainovel.server.task.ExecutionResult;
 import com.ainovel.server.task.TaskContext;
@@ -8,10 +9,12 @@ import com.ainovel.server.task.TaskContextImpl;
 import com.ainovel.server.task.event.internal.*;
 import com.ainovel.server.task.model.BackgroundTask;
 import com.ainovel.server.task.model.TaskStatus;
-import com.ainovel.server.task.producer.TaskMessageProducer;
+import com.ainovel.server.task.producer.TaskRetryScheduler;
 import com.ainovel.server.task.service.TaskExecutorService;
 import com.ainovel.server.task.service.TaskStateService;
 import com.ainovel.server.task.service.TaskSubmissionService;
+import com.ainovel.server.task.transport.TaskTransport;
+import com.ainovel.server.service.ai.resilience.UpstreamErrorClassifier;
 import com.ainovel.server.config.TaskConversionConfig;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.JsonNode;
@@ -23,7 +26,6 @@ import org.springframework.amqp.core.MessageProperties;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Component;
 import jakarta.annotation.PostConstruct;
@@ -54,36 +56,37 @@ public class TaskConsumer {
     private final TaskStateService taskStateService;
     private final TaskSubmissionService taskSubmissionService;
     private final ApplicationEventPublisher eventPublisher;
-    private final TaskMessageProducer taskMessageProducer;
+    private final TaskTransport taskTransport;
     private final TaskConversionConfig taskConversionConfig;
     private final ObjectMapper objectMapper;
+    private final TaskLaneDispatcher laneDispatcher;
+    private final TaskRetryScheduler retryScheduler;
+    private final int maxRetryAttempts;
     
     private final String nodeId;
     
-    @Value("${task.retry.max-attempts:3}")
-    private int maxRetryAttempts;
-    
-    @Value("${task.retry.delays:15000,60000,300000}")
-    private String retryDelaysStr;
-    
-    private long[] retryDelays;
-    
     @Autowired
     public TaskConsumer(
             TaskExecutorService taskExecutorService,
             TaskStateService taskStateService,
             TaskSubmissionService taskSubmissionService,
             ApplicationEventPublisher eventPublisher,
-            TaskMessageProducer taskMessageProducer,
+            TaskTransport taskTransport,
             TaskConversionConfig taskConversionConfig,
-            @Qualifier("taskObjectMapper") ObjectMapper objectMapper) {
+            @Qualifier("taskObjectMapper") ObjectMapper objectMapper,
+            TaskLaneDispatcher laneDispatcher,
+            TaskRetryScheduler retryScheduler,
+            TaskRetryConfiguration retryConfiguration) {
         this.taskExecutorService = taskExecutorService;
         this.taskStateService = taskStateService;
         this.taskSubmissionService = taskSubmissionService;
         this.eventPublisher = eventPublisher;
-        this.taskMessageProducer = taskMessageProducer;
+        this.taskTransport = taskTransport;
         this.taskConversionConfig = taskConversionConfig;
         this.objectMapper = objectMapper;
+        this.laneDispatcher = laneDispatcher;
+        this.retryScheduler = retryScheduler;
+        this.maxRetryAttempts = retryConfiguration.getMaxAttempts();
         
         // 生成节点ID
         String hostname;
@@ -93,36 +96,15 @@ public class TaskConsumer {
             hostname = "unknown-host";
         }
         this.nodeId = hostname + "-" + UUID.randomUUID().toString().substring(0, 8);
-        
-        // 不再在此处调用 initRetryDelays()
     }
 
     /**
-     * 在依赖注入完成后初始化重试延迟
+     * 在依赖注入完成后注册进程内投递的处理器
      */
     @PostConstruct
     public void initialize() {
-        initRetryDelays();
-    }
-    
-    /**
-     * 初始化重试延迟时间配置
-     */
-    private void initRetryDelays() {
-        if (retryDelaysStr == null) {
-            log.error("Retry delays string (task.retry.delays) is null. Cannot initialize retry delays.");
-            // 可以选择抛出异常或使用默认值
-            throw new IllegalStateException("Configuration property 'task.retry.delays' is missing or not loaded.");
-            // 或者使用默认值:
-            // retryDelays = new long[]{15000, 60000, 300000};
-            // log.warn("Using default retry delays: {}", Arrays.toString(retryDelays));
-            // return;
-        }
-        String[] delayStrings = retryDelaysStr.split(",");
-        retryDelays = new long[delayStrings.length];
-        for (int i = 0; i < delayStrings.length; i++) {
-            retryDelays[i] = Long.parseLong(delayStrings[i].trim());
-        }
+        // 进程内传输直接调用处理流程，消息队列传输由监听容器投递，忽略此处理器
+        taskTransport.registerHandler(this::processTask);
     }
     
     /**
@@ -175,6 +157,13 @@ public class TaskConsumer {
                 log.warn("无法记录消息体内容: {}", e.getMessage());
             }
             
+            // 分道消费：按任务类型交给有界并发的分道处理，由分道按序批量确认
+            if (laneDispatcher.isEnabled()) {
+                laneDispatcher.dispatch(taskTypeFromHeader, channel, deliveryTag, 
+                        Mono.defer(() -> processMessageReactively(message)));
+                return;
+            }
+            
             // 启动响应式处理链
             processMessageReactively(message)
                 .doOnSuccess(v -> {
@@ -307,10 +296,18 @@ public class TaskConsumer {
             }
         }
         
-        final String finalTaskId = taskId;
-        final String finalTaskType = taskType;
-        final int finalRetryCount = retryCount;
-        
+        return processTask(taskId, taskType, retryCount);
+    }
+    
+    /**
+     * 处理一次任务投递：幂等性检查、执行任务并按结果更新状态
+     * 
+     * @param finalTaskId 任务ID
+     * @param finalTaskType 任务类型
+     * @param finalRetryCount 重试次数
+     * @return 处理结果的Mono<Void>
+     */
+    private Mono<Void> processTask(String finalTaskId, String finalTaskType, int finalRetryCount) {
         // 在执行异步流程前，同步检查一下任务是否存在，并记录当前状态
         try {
             boolean taskExists = taskStateService.getTask(finalTaskId)
@@ -618,24 +615,22 @@ public class TaskConsumer {
         log.info("任务将进行重试: taskId={}, taskType={}, retryCount={}/{}", 
                 task.getId(), task.getTaskType(), retryCount, maxRetryAttempts);
         
-        // 计算下次重试延迟
-        long delayMillis = getRetryDelay(retryCount);
-        Instant nextAttemptTime = Instant.now().plusMillis(delayMillis);
-        
         // 创建错误信息Map
         Map<String, Object> errorInfo = createErrorInfoMap(error);
         
+        // 按指数退避加抖动计算下次重试延迟，不早于上游的Retry-After提示
+        long delayMillis = retryScheduler.nextDelayMillis(retryCount, errorInfo);
+        Instant nextAttemptTime = Instant.now().plusMillis(delayMillis);
+        
         // 发布任务重试事件
         eventPublisher.publishEvent(new TaskRetryingEvent(
                 this, task.getId(), task.getTaskType(), task.getUserId(), 
                 retryCount + 1, maxRetryAttempts, delayMillis, errorInfo));
         
-        // 重新发送带有延迟的消息
-        return taskMessageProducer.sendDelayedRetryTask(
-                task.getId(), task.getUserId(), task.getTaskType(), task.getParameters(), 
-                retryCount + 1, delayMillis)
-            .then(taskStateService.recordRetrying(
-                    task.getId(), retryCount + 1, error, nextAttemptTime));
+        // 先持久化RETRYING状态和计划重试时间，再放入重试时间轮；本节点未能按期投递时由其他节点扫描接管
+        return taskStateService.recordRetrying(
+                    task.getId(), retryCount + 1, error, nextAttemptTime)
+            .then(retryScheduler.schedule(task.getId(), nextAttemptTime));
     }
     
     /**
@@ -725,20 +720,6 @@ public class TaskConsumer {
         log.debug("拒绝消息: deliveryTag={}, requeue={}", deliveryTag, requeue);
     }
     
-    /**
-     * 获取重试延迟时间
-     * 
-     * @param retryCount 当前重试次数
-     * @return 延迟毫秒数
-     */
-    private long getRetryDelay(int retryCount) {
-        if (retryCount < retryDelays.length) {
-            return retryDelays[retryCount];
-        }
-        // 如果重试次数超过配置的延迟数组长度，使用最后一个延迟值
-        return retryDelays[retryDelays.length - 1];
-    }
-    
     /**
      * 创建错误信息Map
      * 
@@ -770,6 +751,10 @@ public class TaskConsumer {
             errorInfo.put("cause", causeInfo);
         }
         
+        // 上游给出的Retry-After提示
+        UpstreamErrorClassifier.retryAfter(error)
+            .ifPresent(retryAfter -> errorInfo.put(TaskRetryScheduler.RETRY_AFTER_MILLIS, retryAfter.toMillis()));
+        
         return errorInfo;
     }
 } 
\ No newline at end of file
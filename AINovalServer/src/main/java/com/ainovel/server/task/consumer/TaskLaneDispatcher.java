@@ -0,0 +1,168 @@
+package com.ainovel.server.task.consumer;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.ainovel.server.config.TaskConsumerConfiguration;
+import com.rabbitmq.client.Channel;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * 任务消息分道调度器
+ *
+ * 消费者以较大的预取窗口拉取消息后交给本调度器，按任务类型分到不同的道，每道以有界并发的 flatMap 处理，
+ * 短任务不会被长任务占满并发。处理完成的消息由各通道的 ChannelAckTracker 按序批量确认。
+ */
+@Slf4j
+@Component
+public class TaskLaneDispatcher {
+
+    static final String DEFAULT_LANE = "default";
+
+    private final TaskConsumerConfiguration configuration;
+    private final Map<String, Lane> lanes = new LinkedHashMap<>();
+    private final Map<String, Lane> lanesByTaskType = new HashMap<>();
+    private final Map<Channel, ChannelAckTracker> trackers = new ConcurrentHashMap<>();
+    private final Disposable ackFlusher;
+
+    @Autowired
+    public TaskLaneDispatcher(TaskConsumerConfiguration configuration, MeterRegistry meterRegistry) {
+        this.configuration = configuration;
+        configuration.getLanes().forEach((name, laneConfig) -> {
+            Lane lane = new Lane(name, laneConfig.getConcurrency(), meterRegistry);
+            lanes.put(name, lane);
+            laneConfig.getTaskTypes().forEach(taskType -> lanesByTaskType.put(taskType, lane));
+        });
+        lanes.computeIfAbsent(DEFAULT_LANE,
+                name -> new Lane(name, configuration.getDefaultLaneConcurrency(), meterRegistry));
+        this.ackFlusher = configuration.isLaneMode()
+                ? Flux.interval(Duration.ofMillis(Math.max(1, configuration.getAckFlushMillis())))
+                        .subscribe(tick -> flushAcks())
+                : null;
+    }
+
+    /**
+     * 是否启用分道消费
+     */
+    public boolean isEnabled() {
+        return configuration.isLaneMode();
+    }
+
+    /**
+     * 将消息交给所属任务类型的道处理，处理结束后确认或拒绝消息
+     *
+     * @param taskType 任务类型，为空时进入默认道
+     * @param channel 接收消息的通道
+     * @param deliveryTag 投递标签
+     * @param processing 消息处理流程，正常完成即确认，出错则拒绝进入死信队列
+     */
+    public void dispatch(String taskType, Channel channel, long deliveryTag, Mono<Void> processing) {
+        ChannelAckTracker tracker = trackers.computeIfAbsent(channel,
+                ch -> new ChannelAckTracker(ch, configuration.getAckBatchSize()));
+        tracker.received(deliveryTag);
+        Lane lane = taskType != null ? lanesByTaskType.getOrDefault(taskType, lanes.get(DEFAULT_LANE)) : lanes.get(DEFAULT_LANE);
+        lane.submit(new Delivery(tracker, deliveryTag, taskType, processing));
+    }
+
+    /**
+     * 确认各通道上已完成的消息，并移除已关闭的通道
+     */
+    void flushAcks() {
+        trackers.entrySet().removeIf(entry -> {
+            if (!entry.getValue().isOpen()) {
+                log.warn("通道已关闭，丢弃其确认状态，未确认的消息将由Broker重新投递: 未确认 {} 条",
+                        entry.getValue().outstanding());
+                return true;
+            }
+            entry.getValue().flush();
+            return false;
+        });
+    }
+
+    int inFlight(String lane) {
+        return lanes.get(lane).inFlight.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (ackFlusher != null) {
+            ackFlusher.dispose();
+        }
+        flushAcks();
+        lanes.values().forEach(Lane::dispose);
+    }
+
+    private record Delivery(ChannelAckTracker tracker, long deliveryTag, String taskType, Mono<Void> processing) {
+    }
+
+    /**
+     * 一条分道：有界并发地处理提交进来的消息
+     */
+    private static final class Lane {
+        private final String name;
+        private final Sinks.Many<Delivery> sink = Sinks.many().unicast().onBackpressureBuffer();
+        private final AtomicInteger queued = new AtomicInteger();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final Disposable subscription;
+
+        Lane(String name, int concurrency, MeterRegistry meterRegistry) {
+            this.name = name;
+            Gauge.builder("tasks.consumer.lane.inflight", inFlight, AtomicInteger::get)
+                    .tag("lane", name)
+                    .description("分道中正在处理的任务消息数")
+                    .register(meterRegistry);
+            Gauge.builder("tasks.consumer.lane.queued", queued, AtomicInteger::get)
+                    .tag("lane", name)
+                    .description("分道中等待处理的任务消息数")
+                    .register(meterRegistry);
+            this.subscription = sink.asFlux()
+                    .flatMap(this::process, Math.max(1, concurrency))
+                    .subscribe();
+        }
+
+        void submit(Delivery delivery) {
+            queued.incrementAndGet();
+            sink.emitNext(delivery, Sinks.EmitFailureHandler.busyLooping(Duration.ofSeconds(1)));
+        }
+
+        private Mono<Void> process(Delivery delivery) {
+            queued.decrementAndGet();
+            inFlight.incrementAndGet();
+            return delivery.processing()
+                    .subscribeOn(Schedulers.boundedElastic())
+                    .then(Mono.fromRunnable(() -> {
+                        log.info("任务处理成功: lane={}, deliveryTag={}, taskType={}",
+                                name, delivery.deliveryTag(), delivery.taskType());
+                        delivery.tracker().completed(delivery.deliveryTag());
+                    }))
+                    .onErrorResume(e -> {
+                        log.error("任务处理失败: lane={}, deliveryTag={}, taskType={}, 错误: {}",
+                                name, delivery.deliveryTag(), delivery.taskType(), e.getMessage(), e);
+                        delivery.tracker().failed(delivery.deliveryTag());
+                        return Mono.empty();
+                    })
+                    .doFinally(signal -> inFlight.decrementAndGet())
+                    .then();
+        }
+
+        void dispose() {
+            subscription.dispose();
+        }
+    }
+}
@@ -5,6 +5,9 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * 批量生成场景摘要任务进度
  */
@@ -43,4 +46,10 @@ public class BatchGenerateSummaryProgress {
      * 因已存在摘要而跳过的场景数
      */
     private int skippedCount;
+    
+    /**
+     * 失败场景ID及其失败原因，由子任务失败时逐条写入
+     */
+    @Builder.Default
+    private Map<String, String> failedSceneDetails = new HashMap<>();
 } 
\ No newline at end of file
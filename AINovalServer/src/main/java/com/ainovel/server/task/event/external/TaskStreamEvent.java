@@ -0,0 +1,59 @@
+package com.ainovel.server.task.event.external;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * 推送给SSE订阅者的任务事件
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TaskStreamEvent {
+
+    /**
+     * 订阅建立时发送的任务当前状态快照的事件类型
+     */
+    public static final String TASK_SNAPSHOT = "TASK_SNAPSHOT";
+
+    /**
+     * 事件类型 (例如 "TASK_PROGRESS", "TASK_COMPLETED", "TASK_SNAPSHOT")
+     */
+    private String eventType;
+
+    /**
+     * 任务ID
+     */
+    private String taskId;
+
+    /**
+     * 任务类型
+     */
+    private String taskType;
+
+    /**
+     * 用户ID
+     */
+    private String userId;
+
+    /**
+     * 任务状态，仅快照事件携带
+     */
+    private String status;
+
+    /**
+     * 事件数据（进度、结果、错误信息等）
+     */
+    private Map<String, Object> data;
+
+    /**
+     * 事件时间
+     */
+    private Instant timestamp;
+}
@@ -8,13 +8,13 @@ import com.ainovel.server.service.SceneService;
 import com.ainovel.server.task.BackgroundTaskExecutable;
 import com.ainovel.server.task.TaskContext;
 import com.ainovel.server.task.dto.batchsummary.BatchGenerateSummaryParameters;
+import com.ainovel.server.task.dto.batchsummary.BatchGenerateSummaryProgress;
 import com.ainovel.server.task.dto.batchsummary.BatchGenerateSummaryResult;
 import com.ainovel.server.task.dto.summarygeneration.GenerateSummaryParameters;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
-import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.util.ArrayList;
@@ -80,54 +80,40 @@ public class BatchGenerateSummaryTaskExecutable implements BackgroundTaskExecuta
                     .collectList()
                     .flatMap(scenes -> {
                         int totalScenes = scenes.size();
-                        double progressStep = totalScenes > 0 ? 100.0 / totalScenes : 0;
-                        double initialProgress = 0;
+                        int skippedScenes = (int) scenes.stream()
+                                .filter(scene -> !overwriteExisting && scene.getSummary() != null && !scene.getSummary().trim().isEmpty())
+                                .count();
+                        // 初始进度必须在提交子任务前写入，子任务状态聚合器在其上原子累加计数
+                        BatchGenerateSummaryProgress initialProgress = BatchGenerateSummaryProgress.builder()
+                                .totalScenes(totalScenes)
+                                .skippedCount(skippedScenes)
+                                .build();
                         
-                        Map<String, String> failedSceneDetails = new HashMap<>();
-                        List<String> processedSceneIds = new ArrayList<>();
+                        // 创建子任务参数，已有摘要且不覆盖的场景直接跳过
+                        List<GenerateSummaryParameters> subTaskParamsList = scenes.stream()
+                                .filter(scene -> overwriteExisting || scene.getSummary() == null || scene.getSummary().trim().isEmpty())
+                                .map(scene -> GenerateSummaryParameters.builder()
+                                        .sceneId(scene.getId())
+                                        .novelId(novelId)
+                                        .useAIEnhancement(true)
+                                        .build())
+                                .toList();
                         
-                        return context.updateProgress(initialProgress)
-                            .then(Mono.fromRunnable(() -> log.info("指定章节范围内找到 {} 个场景", totalScenes)))
-                            .thenMany(Flux.fromIterable(scenes))
-                            .flatMap(scene -> {
-                                String sceneId = scene.getId();
-                                int version = scene.getVersion();
-                                
-                                if (!overwriteExisting && scene.getSummary() != null && !scene.getSummary().trim().isEmpty()) {
-                                    log.info("场景 {} 已有摘要且设置了不覆盖，跳过生成", sceneId);
-                                    return Mono.just("SKIPPED");
-                                }
-                                
-                                // 创建子任务参数
-                                GenerateSummaryParameters subTaskParams = GenerateSummaryParameters.builder()
-                                    .sceneId(sceneId)
-                                    .novelId(novelId)
-                                    .useAIEnhancement(true)
-                                    .build();
-                                
-                                // 提交子任务
-                                return context.submitSubTask("GENERATE_SUMMARY", subTaskParams)
-                                    .doOnNext(subTaskId -> log.info("为场景 {} 提交子任务 {}", sceneId, subTaskId))
-                                    .map(subTaskId -> "SUBMITTED");
-                            })
-                            .onErrorResume(e -> {
-                                String sceneId = "unknown";
-                                log.error("为场景 {} 提交子任务失败: {}", sceneId, e.getMessage());
-                                return Mono.just("FAILED:" + sceneId);
-                            })
-                            .collectList()
-                            .map(results -> {
-                                long skippedCount = results.stream().filter(r -> r.equals("SKIPPED")).count();
-                                long failedCount = results.stream().filter(r -> r.startsWith("FAILED")).count();
+                        return context.initializeProgress(initialProgress)
+                            .then(Mono.fromRunnable(() -> log.info("指定章节范围内找到 {} 个场景，跳过 {} 个", totalScenes, skippedScenes)))
+                            // 一次性批量提交全部子任务
+                            .then(context.submitSubTasks("GENERATE_SUMMARY", subTaskParamsList))
+                            .map(subTaskIds -> {
+                                log.info("已批量提交 {} 个摘要生成子任务", subTaskIds.size());
                                 
                                 // 构建结果
                                 return BatchGenerateSummaryResult.builder()
                                     .totalScenes(totalScenes)
                                     .successCount(0) // 初始为0，后续由状态聚合器更新
-                                    .failedCount((int)failedCount)
+                                    .failedCount(0) // 初始为0，后续由状态聚合器更新
                                     .conflictCount(0) // 初始为0，后续由状态聚合器更新
-                                    .skippedCount((int)skippedCount)
-                                    .failedSceneDetails(failedSceneDetails)
+                                    .skippedCount(skippedScenes)
+                                    .failedSceneDetails(new HashMap<>())
                                     .build();
                             });
                     });
@@ -51,7 +51,8 @@ public class ContinueWritingContentTaskExecutable implements BackgroundTaskExecu
         progress.setFailedChapters(0);
         progress.setCurrentStep("STARTING");
 
-        return context.updateProgress(progress)
+        // 初始进度须在提交子任务前写入，子任务状态聚合器在其上累加计数
+        return context.initializeProgress(progress)
             .then(novelService.findNovelById(novelId))
             .switchIfEmpty(Mono.error(new IllegalArgumentException("找不到小说: " + novelId)))
             .flatMap(novel -> {
@@ -70,13 +71,11 @@ public class ContinueWritingContentTaskExecutable implements BackgroundTaskExecu
                         .persistChanges(parameters.isPersistChanges()) // Pass the new parameter
                         .build();
 
-                return context.submitSubTask("GENERATE_SINGLE_CHAPTER", firstChapterParams)
+                // 子任务提交后进度由状态聚合器按字段更新，当前步骤在提交前写入
+                return context.initializeProgress(updateProgressStep(progress, 1))
+                    .then(context.submitSubTask("GENERATE_SINGLE_CHAPTER", firstChapterParams))
                     .doOnNext(subTaskId ->
-                        log.info("父任务 {} 已提交第一个 GENERATE_SINGLE_CHAPTER 子任务: {}", parentTaskId, subTaskId))
-                    .flatMap(subTaskId ->
-                        context.updateProgress(updateProgressStep(progress, 1))
-                               .thenReturn(subTaskId)
-                    );
+                        log.info("父任务 {} 已提交第一个 GENERATE_SINGLE_CHAPTER 子任务: {}", parentTaskId, subTaskId));
             })
             .thenReturn(buildInitialRunningResult(numberOfChapters));
     }
@@ -43,14 +43,14 @@ public class GenerateNextSummariesOnlyTaskExecutable implements BackgroundTaskEx
         log.info("开始生成后续章节摘要，小说ID: {}，章节数量: {}, 使用AI配置: {}", 
                 novelId, numberOfChapters, aiConfigIdSummary);
         
-        // 初始化进度
+        // 初始化进度，须在提交子任务前写入，子任务状态聚合器在其上累加计数
         GenerateNextSummariesOnlyProgress progress = new GenerateNextSummariesOnlyProgress();
         progress.setTotal(numberOfChapters);
         progress.setCompleted(0);
         progress.setFailed(0);
         progress.setCurrentIndex(0);
         
-        return context.updateProgress(progress)
+        return context.initializeProgress(progress)
             .then(novelService.findNovelById(novelId))
             .switchIfEmpty(Mono.error(new IllegalArgumentException("找不到小说: " + novelId)))
             .flatMap(novel -> {
@@ -4,14 +4,16 @@ import com.ainovel.server.domain.model.Novel;
 import com.ainovel.server.domain.model.Novel.Chapter;
 import com.ainovel.server.repository.BackgroundTaskRepository;
 import com.ainovel.server.service.NovelService;
-import com.ainovel.server.task.dto.continuecontent.ContinueWritingContentParameters;
 import com.ainovel.server.task.dto.continuecontent.ContinueWritingContentProgress;
 import com.ainovel.server.task.dto.continuecontent.ContinueWritingContentResult;
 import com.ainovel.server.task.dto.continuecontent.GenerateSingleChapterResult;
+import com.ainovel.server.task.event.internal.TaskApplicationEvent;
 import com.ainovel.server.task.event.internal.TaskCompletedEvent;
 import com.ainovel.server.task.event.internal.TaskFailedEvent;
 import com.ainovel.server.task.model.BackgroundTask;
+import com.ainovel.server.task.model.ProgressDelta;
 import com.ainovel.server.task.model.TaskStatus;
+import com.ainovel.server.task.service.EventDeduplicationService;
 import com.ainovel.server.task.service.TaskStateService;
 
 import lombok.RequiredArgsConstructor;
@@ -27,7 +29,6 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 继续写作任务 (CONTINUE_WRITING_CONTENT) 状态聚合器
@@ -38,11 +39,13 @@ import java.util.concurrent.ConcurrentHashMap;
 @RequiredArgsConstructor
 public class ContinueWritingStateAggregator {
     
+    private static final String DEDUPE_SCOPE = "continue-writing-aggregator";
+    
     private final TaskStateService taskStateService;
     private final NovelService novelService;
     
-    // 用于确保事件幂等性处理的缓存
-    private final ConcurrentHashMap<String, Boolean> processedEventIds = new ConcurrentHashMap<>();
+    // 用于确保事件幂等性处理
+    private final EventDeduplicationService eventDeduplicationService;
     
     /**
      * 处理 GenerateSingleChapterTask 完成事件
@@ -82,15 +85,22 @@ public class ContinueWritingStateAggregator {
             return; // Should not happen
         }
         
-        // 检查事件幂等性
-        if (!checkAndMarkEventProcessed(eventId)) {
-            log.debug("事件已处理，跳过: {}", eventId);
+        // 只处理单章生成子任务的事件，其余事件不占用去重窗口
+        if (!"GENERATE_SINGLE_CHAPTER".equals(((TaskApplicationEvent) eventObject).getTaskType())) {
             return;
         }
         
         final TaskFailedEvent finalFailedEvent = failedEvent; // Make it final for lambda
 
-        taskStateService.getTask(taskId)
+        // 检查事件幂等性
+        eventDeduplicationService.markProcessed(DEDUPE_SCOPE, eventId)
+            .flatMap(first -> {
+                if (!first) {
+                    log.debug("事件已处理，跳过: {}", eventId);
+                    return Mono.empty();
+                }
+                return taskStateService.getTask(taskId);
+            })
             .flatMap(task -> {
                 if (task == null) {
                     log.warn("找不到任务: {}", taskId);
@@ -109,9 +119,7 @@ public class ContinueWritingStateAggregator {
                     return Mono.empty();
                 }
                 
-                // 获取父任务
-                return taskStateService.getTask(parentTaskId)
-                        .flatMap(parentTask -> updateParentProgress(parentTask, task, eventObject, success, finalFailedEvent));
+                return updateParentProgress(parentTaskId, task, eventObject, success, finalFailedEvent);
             })
             .subscribe(
                 null,
@@ -119,8 +127,10 @@ public class ContinueWritingStateAggregator {
             );
     }
     
-    private Mono<Void> updateParentProgress(BackgroundTask parentTask, BackgroundTask childTask, Object childEventObject, boolean success, TaskFailedEvent failedEvent) {
-        String parentTaskId = parentTask.getId();
+    /**
+     * 以原子增量更新父任务进度；处理计数达到总章节数后通过条件更新认领结算，保证父任务只结束一次
+     */
+    private Mono<Void> updateParentProgress(String parentTaskId, BackgroundTask childTask, Object childEventObject, boolean success, TaskFailedEvent failedEvent) {
         String childTaskId = childTask.getId();
         String errorMessage = null;
         Object childResult = null;
@@ -131,17 +141,15 @@ public class ContinueWritingStateAggregator {
              errorMessage = failedEvent.getErrorInfo() != null ? failedEvent.getErrorInfo().toString() : "未知错误";
         }
         
-        // --- 获取并更新进度 --- 
-        ContinueWritingContentProgress currentProgress = getOrCreateProgress(parentTask);
+        // --- 计算进度增量 --- 
+        ProgressDelta delta = new ProgressDelta().inc(success ? "chaptersCompleted" : "failedChapters", 1);
         int chapterIndex = -1; // Get chapter index from child result or params
         
         if (success && childResult instanceof GenerateSingleChapterResult) {
             GenerateSingleChapterResult singleChapterResult = (GenerateSingleChapterResult) childResult;
             chapterIndex = singleChapterResult.getChapterIndex();
-            if (success && singleChapterResult.isContentGenerated()) { // Only count fully completed chapters towards completed count
-                 currentProgress.getCompletedChapterIds().add(singleChapterResult.getGeneratedChapterId());
-            } else if (!success) {
-                 currentProgress.setLastError("章节 " + chapterIndex + " 失败: " + errorMessage);
+            if (singleChapterResult.isContentGenerated()) { // Only count fully completed chapters towards completed count
+                 delta.push("completedChapterIds", singleChapterResult.getGeneratedChapterId());
             }
         } else if (childTask.getParameters() instanceof Map) {
              // Fallback: Try getting index from parameters if result is Map or null on failure
@@ -154,71 +162,48 @@ public class ContinueWritingStateAggregator {
                   log.warn("无法从子任务参数中获取 chapterIndex: {}", childTaskId, e);
              }
              if (!success) {
-                  currentProgress.setLastError("章节 " + (chapterIndex > 0 ? chapterIndex : "?") + " 失败: " + errorMessage);
+                  delta.set("lastError", "章节 " + (chapterIndex > 0 ? chapterIndex : "?") + " 失败: " + errorMessage);
              }
         } else {
              log.warn("无法确定子任务 {} 的章节索引。", childTaskId);
              if (!success) {
-                   currentProgress.setLastError("未知章节失败: " + errorMessage);
+                   delta.set("lastError", "未知章节失败: " + errorMessage);
              }
         }
-        
-        if (success) {
-            currentProgress.setChaptersCompleted(currentProgress.getChaptersCompleted() + 1);
-        } else {
-            currentProgress.setFailedChapters(currentProgress.getFailedChapters() + 1);
+        // 已处理总数由并发更新共同决定，这里只记录本次完成的章节；结算时统一改为 FINISHED
+        if (chapterIndex > 0) {
+            delta.set("currentStep", determineNextStep(chapterIndex, success));
         }
-        int processedCount = currentProgress.getChaptersCompleted() + currentProgress.getFailedChapters();
-        currentProgress.setCurrentStep(determineNextStep(processedCount, currentProgress.getTotalChapters(), chapterIndex, success));
-        
-        log.info("更新父任务 {} 进度: 完成={}, 失败={}, 总计={}, 下一步={}",
-                parentTaskId, currentProgress.getChaptersCompleted(), currentProgress.getFailedChapters(),
-                currentProgress.getTotalChapters(), currentProgress.getCurrentStep());
         
-        // --- 检查父任务是否完成 --- 
-        boolean isParentTaskComplete = processedCount >= currentProgress.getTotalChapters();
+        log.info("更新父任务 {} 进度: 子任务={}, 成功={}, 章节={}", parentTaskId, childTaskId, success, chapterIndex);
         
-        // --- 更新进度并可能结束父任务 --- 
-        Mono<Void> progressUpdateMono = taskStateService.recordProgress(parentTaskId, currentProgress);
-        
-        if (isParentTaskComplete) {
-            log.info("父任务 {} 所有子任务已处理 ({} / {})。正在结束任务...",
-                    parentTaskId, processedCount, currentProgress.getTotalChapters());
-            return progressUpdateMono.then(completeParentTask(parentTask, currentProgress));
-        } else {
-            return progressUpdateMono;
-        }
+        return taskStateService.applyProgressDelta(parentTaskId, "CONTINUE_WRITING_CONTENT", delta)
+            .switchIfEmpty(Mono.defer(() -> {
+                log.warn("找不到父任务或父任务进度未初始化: {}", parentTaskId);
+                return Mono.empty();
+            }))
+            .filter(parentTask -> isAllProcessed(parentTask.getProgress()))
+            .flatMap(parentTask -> taskStateService.claimSubTasksSettlement(
+                    parentTaskId, "totalChapters", "chaptersCompleted", "failedChapters"))
+            .flatMap(parentTask -> {
+                ContinueWritingContentProgress finalProgress = (ContinueWritingContentProgress) parentTask.getProgress();
+                log.info("父任务 {} 所有子任务已处理 ({} / {})。正在结束任务...",
+                        parentTaskId, finalProgress.getChaptersCompleted() + finalProgress.getFailedChapters(),
+                        finalProgress.getTotalChapters());
+                return taskStateService.applyProgressDelta(parentTaskId, "CONTINUE_WRITING_CONTENT",
+                                new ProgressDelta().set("currentStep", "FINISHED"))
+                        .then(completeParentTask(parentTask, finalProgress));
+            });
     }
     
-    private ContinueWritingContentProgress getOrCreateProgress(BackgroundTask parentTask) {
-        Object progressObj = parentTask.getProgress();
-        if (progressObj instanceof ContinueWritingContentProgress) {
-            return (ContinueWritingContentProgress) progressObj;
-        } else {
-            log.warn("父任务 {} 进度丢失或类型错误，重新创建。参数: {}", parentTask.getId(), parentTask.getParameters());
-            ContinueWritingContentProgress newProgress = new ContinueWritingContentProgress();
-            if (parentTask.getParameters() instanceof ContinueWritingContentParameters) {
-                 newProgress.setTotalChapters(((ContinueWritingContentParameters) parentTask.getParameters()).getNumberOfChapters());
-            } else {
-                 newProgress.setTotalChapters(0); // Or try to infer from somewhere else
-            }
-            newProgress.setChaptersCompleted(0);
-            newProgress.setFailedChapters(0);
-            newProgress.setCurrentStep("RECOVERING");
-            return newProgress;
-        }
+    private boolean isAllProcessed(Object progress) {
+        return progress instanceof ContinueWritingContentProgress p
+                && p.getChaptersCompleted() + p.getFailedChapters() >= p.getTotalChapters();
     }
     
-    private String determineNextStep(int processedCount, int totalChapters, int lastChapterIndex, boolean lastSuccess) {
-         if (processedCount >= totalChapters) {
-              return "FINISHED";
-         } else if (lastChapterIndex > 0) {
-             // Assuming the next step is triggered by the child task itself
-             // This state primarily reflects the *last completed* step
-             return (lastSuccess ? "COMPLETED_CHAPTER_" : "FAILED_CHAPTER_") + lastChapterIndex;
-         } else {
-             return "PROCESSING_CHAPTER_" + (processedCount + 1);
-         }
+    private String determineNextStep(int lastChapterIndex, boolean lastSuccess) {
+         // This state primarily reflects the *last completed* step
+         return (lastSuccess ? "COMPLETED_CHAPTER_" : "FAILED_CHAPTER_") + lastChapterIndex;
     }
     
     private Mono<Void> completeParentTask(BackgroundTask parentTask, ContinueWritingContentProgress finalProgress) {
@@ -252,18 +237,7 @@ public class ContinueWritingStateAggregator {
             Throwable errorToSend = new RuntimeException(errorMsg);
             return taskStateService.recordFailure(taskId, errorToSend, true);
         } else {
-            return taskStateService.recordCompletion(taskId, result);
-        }
-    }
-    
-    /**
-     * 检查并标记事件处理状态，确保幂等性
-     */
-    private boolean checkAndMarkEventProcessed(String eventId) {
-        if (eventId == null) {
-            log.warn("事件 ID 为 null，无法进行幂等性检查。");
-            return false; // Or throw an error? Treat as already processed to be safe?
+            return taskStateService.recordSettlement(taskId, finalStatus, result, null);
         }
-        return processedEventIds.putIfAbsent(eventId, Boolean.TRUE) == null;
     }
 } 
\ No newline at end of file
@@ -2,6 +2,7 @@ package com.ainovel.server.task.listener;
 
 import com.ainovel.server.task.event.internal.*;
 import com.ainovel.server.task.producer.TaskEventPublisher;
+import com.ainovel.server.task.service.EventDeduplicationService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -12,7 +13,6 @@ import reactor.core.scheduler.Schedulers;
 
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 外部事件桥接器，负责监听内部事件并调用外部事件发布器
@@ -21,16 +21,20 @@ import java.util.concurrent.ConcurrentHashMap;
 @Component
 public class ExternalEventBridge {
 
+    private static final String DEDUPE_SCOPE = "external-event-bridge";
+
     private final TaskEventPublisher externalEventPublisher;
     private final ObjectMapper objectMapper;
-    private final ConcurrentHashMap<String, Boolean> processedEventIds = new ConcurrentHashMap<>();
+    private final EventDeduplicationService eventDeduplicationService;
 
     @Autowired
     public ExternalEventBridge(
             TaskEventPublisher externalEventPublisher,
-            ObjectMapper objectMapper) {
+            ObjectMapper objectMapper,
+            EventDeduplicationService eventDeduplicationService) {
         this.externalEventPublisher = externalEventPublisher;
         this.objectMapper = objectMapper;
+        this.eventDeduplicationService = eventDeduplicationService;
     }
 
     /**
@@ -41,8 +45,8 @@ public class ExternalEventBridge {
      */
     @EventListener
     public Mono<Void> handleTaskSubmitted(TaskSubmittedEvent event) {
-        return Mono.defer(() -> {
-            if (!checkAndMarkEventProcessed(event.getEventId())) {
+        return eventDeduplicationService.markProcessed(DEDUPE_SCOPE, event.getEventId()).flatMap(first -> {
+            if (!first) {
                 log.debug("事件已处理，跳过: {} - {}", event.getEventId(), event.getTaskId());
                 return Mono.empty();
             }
@@ -71,8 +75,8 @@ public class ExternalEventBridge {
      */
     @EventListener
     public Mono<Void> handleTaskStarted(TaskStartedEvent event) {
-        return Mono.defer(() -> {
-            if (!checkAndMarkEventProcessed(event.getEventId())) {
+        return eventDeduplicationService.markProcessed(DEDUPE_SCOPE, event.getEventId()).flatMap(first -> {
+            if (!first) {
                 log.debug("事件已处理，跳过: {} - {}", event.getEventId(), event.getTaskId());
                 return Mono.empty();
             }
@@ -102,8 +106,8 @@ public class ExternalEventBridge {
      */
     @EventListener
     public Mono<Void> handleTaskProgress(TaskProgressEvent event) {
-        return Mono.defer(() -> {
-            if (!checkAndMarkEventProcessed(event.getEventId())) {
+        return eventDeduplicationService.markProcessed(DEDUPE_SCOPE, event.getEventId()).flatMap(first -> {
+            if (!first) {
                 log.debug("事件已处理，跳过: {} - {}", event.getEventId(), event.getTaskId());
                 return Mono.empty();
             }
@@ -133,8 +137,8 @@ public class ExternalEventBridge {
      */
     @EventListener
     public Mono<Void> handleTaskCompleted(TaskCompletedEvent event) {
-        return Mono.defer(() -> {
-            if (!checkAndMarkEventProcessed(event.getEventId())) {
+        return eventDeduplicationService.markProcessed(DEDUPE_SCOPE, event.getEventId()).flatMap(first -> {
+            if (!first) {
                 log.debug("事件已处理，跳过: {} - {}", event.getEventId(), event.getTaskId());
                 return Mono.empty();
             }
@@ -164,8 +168,8 @@ public class ExternalEventBridge {
      */
     @EventListener
     public Mono<Void> handleTaskFailed(TaskFailedEvent event) {
-        return Mono.defer(() -> {
-            if (!checkAndMarkEventProcessed(event.getEventId())) {
+        return eventDeduplicationService.markProcessed(DEDUPE_SCOPE, event.getEventId()).flatMap(first -> {
+            if (!first) {
                 log.debug("事件已处理，跳过: {} - {}", event.getEventId(), event.getTaskId());
                 return Mono.empty();
             }
@@ -195,8 +199,8 @@ public class ExternalEventBridge {
      */
     @EventListener
     public Mono<Void> handleTaskCancelled(TaskCancelledEvent event) {
-        return Mono.defer(() -> {
-            if (!checkAndMarkEventProcessed(event.getEventId())) {
+        return eventDeduplicationService.markProcessed(DEDUPE_SCOPE, event.getEventId()).flatMap(first -> {
+            if (!first) {
                 log.debug("事件已处理，跳过: {} - {}", event.getEventId(), event.getTaskId());
                 return Mono.empty();
             }
@@ -217,14 +221,4 @@ public class ExternalEventBridge {
                     });
         });
     }
-
-    /**
-     * 检查事件是否已处理并标记为已处理 (幂等性)
-     * 
-     * @param eventId 事件ID
-     * @return 如果事件未处理过返回true，否则返回false
-     */
-    private boolean checkAndMarkEventProcessed(String eventId) {
-        return processedEventIds.putIfAbsent(eventId, Boolean.TRUE) == null;
-    }
 } 
\ No newline at end of file
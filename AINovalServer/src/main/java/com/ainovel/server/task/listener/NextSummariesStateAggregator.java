@@ -8,7 +8,9 @@ import com.ainovel.server.task.dto.nextsummaries.GenerateSingleSummaryResult;
 import com.ainovel.server.task.event.internal.TaskCompletedEvent;
 import com.ainovel.server.task.event.internal.TaskFailedEvent;
 import com.ainovel.server.task.model.BackgroundTask;
+import com.ainovel.server.task.model.ProgressDelta;
 import com.ainovel.server.task.model.TaskStatus;
+import com.ainovel.server.task.service.EventDeduplicationService;
 import com.ainovel.server.task.service.TaskStateService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -20,7 +22,6 @@ import reactor.core.publisher.Mono;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 自动续写小说章节摘要任务状态聚合器
@@ -31,10 +32,12 @@ import java.util.concurrent.ConcurrentHashMap;
 @RequiredArgsConstructor
 public class NextSummariesStateAggregator {
 
+    private static final String DEDUPE_SCOPE = "next-summaries-aggregator";
+
     private final TaskStateService taskStateService;
     private final BackgroundTaskRepository backgroundTaskRepository;
-    // 缓存处理过的事件ID，避免重复处理
-    private final ConcurrentHashMap<String, Boolean> processedEventIds = new ConcurrentHashMap<>();
+    // 已处理事件去重，避免重复处理
+    private final EventDeduplicationService eventDeduplicationService;
 
     /**
      * 处理单个章节摘要生成任务完成事件
@@ -42,11 +45,6 @@ public class NextSummariesStateAggregator {
     @EventListener
     @Async
     public void onSingleSummaryTaskCompleted(TaskCompletedEvent event) {
-        if (!checkAndMarkEventProcessed(event.getEventId())) {
-            log.debug("事件已处理，跳过: {}", event.getEventId());
-            return;
-        }
-
         if (!"GENERATE_SINGLE_SUMMARY".equals(event.getTaskType())) {
             return; // 只处理单个章节摘要生成任务
         }
@@ -55,7 +53,8 @@ public class NextSummariesStateAggregator {
         log.debug("接收到单个章节摘要生成任务完成事件: {}", taskId);
         
         // 使用响应式方式处理
-        taskStateService.getTask(taskId)
+        eventDeduplicationService.markProcessed(DEDUPE_SCOPE, event.getEventId())
+            .flatMap(first -> first ? taskStateService.getTask(taskId) : skipDuplicate(event.getEventId()))
             .switchIfEmpty(Mono.defer(() -> {
                 log.warn("找不到任务: {}", taskId);
                 return Mono.empty();
@@ -75,12 +74,7 @@ public class NextSummariesStateAggregator {
                 
                 GenerateSingleSummaryResult summaryResult = (GenerateSingleSummaryResult) result;
                 
-                return taskStateService.getTask(parentTaskId)
-                    .switchIfEmpty(Mono.defer(() -> {
-                        log.warn("找不到父任务: {}", parentTaskId);
-                        return Mono.empty();
-                    }))
-                    .flatMap(parentTask -> updateParentTaskProgress(parentTask, summaryResult, true));
+                return updateParentTaskProgress(parentTaskId, summaryResult, true);
             })
             .subscribe(
                 success -> {},
@@ -94,11 +88,6 @@ public class NextSummariesStateAggregator {
     @EventListener
     @Async
     public void onSingleSummaryTaskFailed(TaskFailedEvent event) {
-        if (!checkAndMarkEventProcessed(event.getEventId())) {
-            log.debug("事件已处理，跳过: {}", event.getEventId());
-            return;
-        }
-
         if (!"GENERATE_SINGLE_SUMMARY".equals(event.getTaskType())) {
             return; // 只处理单个章节摘要生成任务
         }
@@ -107,7 +96,8 @@ public class NextSummariesStateAggregator {
         log.debug("接收到单个章节摘要生成任务失败事件: {}", taskId);
         
         // 使用响应式方式处理
-        taskStateService.getTask(taskId)
+        eventDeduplicationService.markProcessed(DEDUPE_SCOPE, event.getEventId())
+            .flatMap(first -> first ? taskStateService.getTask(taskId) : skipDuplicate(event.getEventId()))
             .switchIfEmpty(Mono.defer(() -> {
                 log.warn("找不到任务: {}", taskId);
                 return Mono.empty();
@@ -136,12 +126,7 @@ public class NextSummariesStateAggregator {
                         .chapterTitle(null)
                         .build();
                 
-                return taskStateService.getTask(parentTaskId)
-                    .switchIfEmpty(Mono.defer(() -> {
-                        log.warn("找不到父任务: {}", parentTaskId);
-                        return Mono.empty();
-                    }))
-                    .flatMap(parentTask -> updateParentTaskProgress(parentTask, failedResult, false));
+                return updateParentTaskProgress(parentTaskId, failedResult, false);
             })
             .subscribe(
                 success -> {},
@@ -151,53 +136,38 @@ public class NextSummariesStateAggregator {
 
     /**
      * 更新父任务进度
+     * 计数以原子增量写入，处理计数达到总数后通过条件更新认领最终结算，保证最终状态只写入一次
      * 
-     * @param parentTask 父任务
+     * @param parentTaskId 父任务ID
      * @param summaryResult 子任务结果
      * @param success 是否成功
      * @return 完成信号
      */
-    private Mono<Void> updateParentTaskProgress(BackgroundTask parentTask, GenerateSingleSummaryResult summaryResult, boolean success) {
-        final String parentTaskId = parentTask.getId();
-        
-        // 获取现有的进度信息
-        Object currentProgress = parentTask.getProgress();
-        GenerateNextSummariesOnlyProgress progress;
-        
-        if (currentProgress instanceof GenerateNextSummariesOnlyProgress) {
-            progress = (GenerateNextSummariesOnlyProgress) currentProgress;
-        } else {
-            // 如果进度对象不存在或类型不匹配，创建一个新的
-            progress = new GenerateNextSummariesOnlyProgress();
-            progress.setTotal(0);
-            progress.setCompleted(0);
-            progress.setFailed(0);
-            progress.setCurrentIndex(0);
-        }
-        
-        // 更新进度
-        final GenerateNextSummariesOnlyProgress updatedProgress = new GenerateNextSummariesOnlyProgress();
-        updatedProgress.setTotal(progress.getTotal());
-        updatedProgress.setCompleted(success ? progress.getCompleted() + 1 : progress.getCompleted());
-        updatedProgress.setFailed(success ? progress.getFailed() : progress.getFailed() + 1);
+    private Mono<Void> updateParentTaskProgress(String parentTaskId, GenerateSingleSummaryResult summaryResult, boolean success) {
+        ProgressDelta delta = new ProgressDelta()
+                .inc(success ? "completed" : "failed", 1)
+                .max("currentIndex", summaryResult.getChapterIndex());
         
-        // 获取最新章节索引
-        updatedProgress.setCurrentIndex(summaryResult.getChapterIndex());
-        
-        // 更新父任务进度
-        return taskStateService.recordProgress(parentTaskId, updatedProgress)
-            .then(Mono.defer(() -> {
-                // 判断任务是否已完成
-                boolean completed = (updatedProgress.getCompleted() + updatedProgress.getFailed() >= updatedProgress.getTotal());
-                if (completed) {
-                    log.info("父任务所有子任务已处理完毕，开始更新最终状态，成功: {}，失败: {}，总数: {}", 
-                            updatedProgress.getCompleted(), updatedProgress.getFailed(), updatedProgress.getTotal());
-                    
-                    // 更新任务最终状态
-                    return updateTaskFinalState(parentTask, updatedProgress);
-                }
+        return taskStateService.applyProgressDelta(parentTaskId, "GENERATE_NEXT_SUMMARIES_ONLY", delta)
+            .switchIfEmpty(Mono.defer(() -> {
+                log.warn("找不到父任务或父任务进度未初始化: {}", parentTaskId);
                 return Mono.empty();
-            }));
+            }))
+            .filter(parentTask -> isAllProcessed(parentTask.getProgress()))
+            .flatMap(parentTask -> taskStateService.claimSubTasksSettlement(parentTaskId, "total", "completed", "failed"))
+            .flatMap(parentTask -> {
+                GenerateNextSummariesOnlyProgress progress = (GenerateNextSummariesOnlyProgress) parentTask.getProgress();
+                log.info("父任务所有子任务已处理完毕，开始更新最终状态，成功: {}，失败: {}，总数: {}", 
+                        progress.getCompleted(), progress.getFailed(), progress.getTotal());
+                
+                // 更新任务最终状态
+                return updateTaskFinalState(parentTask, progress);
+            });
+    }
+
+    private boolean isAllProcessed(Object progress) {
+        return progress instanceof GenerateNextSummariesOnlyProgress p
+                && p.getCompleted() + p.getFailed() >= p.getTotal();
     }
 
     /**
@@ -262,29 +232,16 @@ public class NextSummariesStateAggregator {
                     result.setFailedSteps(new ArrayList<>());
                 }
                 
-                // 使用响应式API更新任务状态
-                return taskStateService.recordCompletion(taskId, result)
-                    .then(taskStateService.getTask(taskId))
-                    .flatMap(updatedTask -> {
-                        if (updatedTask == null) {
-                            log.warn("更新父任务 {} 最终状态失败", taskId);
-                            return Mono.empty();
-                        } else {
-                            log.info("父任务 {} 已更新为最终状态: {}", taskId, finalStatus);
-                            
-                            // 手动更新任务状态
-                            updatedTask.setStatus(finalStatus);
-                            return Mono.from(backgroundTaskRepository.save(updatedTask));
-                        }
-                    })
-                    .then();
+                log.info("父任务 {} 已更新为最终状态: {}", taskId, finalStatus);
+                return taskStateService.recordSettlement(taskId, finalStatus, result, null);
             });
     }
 
     /**
-     * 检查并标记事件为已处理
+     * 重复投递的事件直接跳过
      */
-    private boolean checkAndMarkEventProcessed(String eventId) {
-        return processedEventIds.putIfAbsent(eventId, Boolean.TRUE) == null;
+    private <T> Mono<T> skipDuplicate(String eventId) {
+        log.debug("事件已处理，跳过: {}", eventId);
+        return Mono.empty();
     }
 } 
\ No newline at end of file
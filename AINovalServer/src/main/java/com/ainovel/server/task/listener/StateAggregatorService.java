@@ -2,6 +2,7 @@ package com.ainovel.server.task.listener;
 
 import com.ainovel.server.task.event.internal.*;
 import com.ainovel.server.task.model.TaskStatus;
+import com.ainovel.server.task.service.EventDeduplicationService;
 import com.ainovel.server.task.service.TaskStateService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -10,10 +11,6 @@ import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
 
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
 
 /**
  * 状态聚合服务，负责监听内部事件并以响应式方式更新数据库中的任务状态
@@ -22,38 +19,34 @@ import java.util.concurrent.TimeUnit;
 @Service
 public class StateAggregatorService {
 
-    private static final long EVENT_ID_CACHE_TTL_SECONDS = 900; // 15分钟
+    private static final String DEDUPE_SCOPE = "state-aggregator";
     
     private final TaskStateService taskStateService;
-    private final ConcurrentHashMap<String, Boolean> processedEventIds = new ConcurrentHashMap<>();
-    private final ScheduledExecutorService cleanupExecutor;
+    private final EventDeduplicationService eventDeduplicationService;
     
     @Autowired
-    public StateAggregatorService(TaskStateService taskStateService) {
+    public StateAggregatorService(TaskStateService taskStateService,
+                                  EventDeduplicationService eventDeduplicationService) {
         this.taskStateService = taskStateService;
-        
-        // 创建定时清理已处理事件ID的执行器
-        this.cleanupExecutor = new ScheduledThreadPoolExecutor(1);
-        this.cleanupExecutor.scheduleWithFixedDelay(this::cleanupProcessedEventIds, 
-                EVENT_ID_CACHE_TTL_SECONDS, EVENT_ID_CACHE_TTL_SECONDS, TimeUnit.SECONDS);
+        this.eventDeduplicationService = eventDeduplicationService;
     }
     
     /**
      * 处理任务提交事件 (响应式)
-     * 注意：任务消息发送到MQ的逻辑由 TaskSubmissionListener 处理
+     * 注意：任务消息由 TaskOutboxRelay 从发件箱发送到MQ
      */
     @EventListener
     public Mono<Void> onTaskSubmitted(TaskSubmittedEvent event) {
-        return Mono.defer(() -> {
-            if (!checkAndMarkEventProcessed(event.getEventId())) {
+        return eventDeduplicationService.markProcessed(DEDUPE_SCOPE, event.getEventId()).flatMap(first -> {
+            if (!first) {
                 log.debug("事件已处理，跳过: {} - {}", event.getEventId(), event.getTaskId());
                 return Mono.empty();
             }
             
-            log.debug("处理任务提交事件: {} (仅状态聚合，消息发送由TaskSubmissionListener处理)", event.getTaskId());
+            log.debug("处理任务提交事件: {} (仅状态聚合，消息发送由TaskOutboxRelay处理)", event.getTaskId());
             
             // 可以在这里添加额外的状态聚合逻辑，例如更新子任务状态摘要
-            // 但任务消息发送到MQ的职责已转移到 TaskSubmissionListener
+            // 但任务消息发送到MQ的职责属于 TaskOutboxRelay
             return Mono.empty();
         });
     }
@@ -63,8 +56,8 @@ public class StateAggregatorService {
      */
     @EventListener
     public Mono<Void> onTaskStarted(TaskStartedEvent event) {
-        return Mono.defer(() -> {
-            if (!checkAndMarkEventProcessed(event.getEventId())) {
+        return eventDeduplicationService.markProcessed(DEDUPE_SCOPE, event.getEventId()).flatMap(first -> {
+            if (!first) {
                 log.debug("事件已处理，跳过: {} - {}", event.getEventId(), event.getTaskId());
                 return Mono.empty();
             }
@@ -86,8 +79,8 @@ public class StateAggregatorService {
      */
     @EventListener
     public Mono<Void> onTaskProgress(TaskProgressEvent event) {
-        return Mono.defer(() -> {
-            if (!checkAndMarkEventProcessed(event.getEventId())) {
+        return eventDeduplicationService.markProcessed(DEDUPE_SCOPE, event.getEventId()).flatMap(first -> {
+            if (!first) {
                 log.debug("事件已处理，跳过: {} - {}", event.getEventId(), event.getTaskId());
                 return Mono.empty();
             }
@@ -104,8 +97,8 @@ public class StateAggregatorService {
      */
     @EventListener
     public Mono<Void> onTaskCompleted(TaskCompletedEvent event) {
-        return Mono.defer(() -> {
-            if (!checkAndMarkEventProcessed(event.getEventId())) {
+        return eventDeduplicationService.markProcessed(DEDUPE_SCOPE, event.getEventId()).flatMap(first -> {
+            if (!first) {
                 log.debug("事件已处理，跳过: {} - {}", event.getEventId(), event.getTaskId());
                 return Mono.empty();
             }
@@ -134,8 +127,8 @@ public class StateAggregatorService {
      */
     @EventListener
     public Mono<Void> onTaskFailed(TaskFailedEvent event) {
-        return Mono.defer(() -> {
-            if (!checkAndMarkEventProcessed(event.getEventId())) {
+        return eventDeduplicationService.markProcessed(DEDUPE_SCOPE, event.getEventId()).flatMap(first -> {
+            if (!first) {
                 log.debug("事件已处理，跳过: {} - {}", event.getEventId(), event.getTaskId());
                 return Mono.empty();
             }
@@ -166,8 +159,8 @@ public class StateAggregatorService {
      */
     @EventListener
     public Mono<Void> onTaskRetrying(TaskRetryingEvent event) {
-        return Mono.defer(() -> {
-            if (!checkAndMarkEventProcessed(event.getEventId())) {
+        return eventDeduplicationService.markProcessed(DEDUPE_SCOPE, event.getEventId()).flatMap(first -> {
+            if (!first) {
                 log.debug("事件已处理，跳过: {} - {}", event.getEventId(), event.getTaskId());
                 return Mono.empty();
             }
@@ -183,30 +176,4 @@ public class StateAggregatorService {
                 .doOnError(e -> log.warn("无法将任务{}标记为重试中: {}", event.getTaskId(), e.getMessage()));
         });
     }
-    
-    /**
-     * 检查事件是否已处理并标记为已处理 (幂等性)
-     * 
-     * @param eventId 事件ID
-     * @return 如果事件未处理过返回true，否则返回false
-     */
-    private boolean checkAndMarkEventProcessed(String eventId) {
-        return processedEventIds.putIfAbsent(eventId, Boolean.TRUE) == null;
-    }
-    
-    /**
-     * 清理长时间未使用的已处理事件ID
-     */
-    private void cleanupProcessedEventIds() {
-        try {
-            // 简单清理策略：直接清空
-            int size = processedEventIds.size();
-            if (size > 0) {
-                log.debug("清理已处理事件ID缓存，当前大小: {}", size);
-                processedEventIds.clear();
-            }
-        } catch (Exception e) {
-            log.error("清理已处理事件ID时发生错误", e);
-        }
-    }
-} 
\ No newline at end of file
+}
\ No newline at end of file
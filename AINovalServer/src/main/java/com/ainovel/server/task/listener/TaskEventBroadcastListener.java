@@ -0,0 +1,61 @@
+package com.ainovel.server.task.listener;
+
+import com.ainovel.server.task.producer.TaskEventPublisher;
+import com.ainovel.server.task.service.TaskEventStreamService;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rabbitmq.client.Channel;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * 任务事件广播监听器，将其他节点发布的任务事件推送给本节点的SSE订阅者
+ * 本节点发出的事件在发布时已直接推送，这里忽略
+ */
+@Slf4j
+@Component
+public class TaskEventBroadcastListener {
+
+    private final TaskEventPublisher taskEventPublisher;
+    private final TaskEventStreamService eventStreamService;
+    private final ObjectMapper objectMapper;
+
+    @Autowired
+    public TaskEventBroadcastListener(TaskEventPublisher taskEventPublisher,
+                                      TaskEventStreamService eventStreamService,
+                                      ObjectMapper objectMapper) {
+        this.taskEventPublisher = taskEventPublisher;
+        this.eventStreamService = eventStreamService;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * 处理广播的任务事件
+     *
+     * @param message 消息对象
+     * @param channel RabbitMQ通道
+     * @throws IOException 如果确认消息时发生IO异常
+     */
+    @RabbitListener(queues = "#{taskEventsBroadcastQueue.name}")
+    public void handleBroadcastEvent(Message message, Channel channel) throws IOException {
+        long deliveryTag = message.getMessageProperties().getDeliveryTag();
+        Map<String, Object> headers = message.getMessageProperties().getHeaders();
+        Object eventType = headers.get("x-event-type");
+        if (eventType != null && !taskEventPublisher.getNodeId().equals(headers.get(TaskEventPublisher.HEADER_NODE_ID))) {
+            try {
+                Map<String, Object> eventData = objectMapper.readValue(message.getBody(), new TypeReference<Map<String, Object>>() {});
+                eventStreamService.publish(eventType.toString(), eventData);
+            } catch (IOException e) {
+                log.warn("解析广播任务事件失败: eventType={}, error={}", eventType, e.getMessage());
+            }
+        }
+        // 推送是尽力而为的本地操作，订阅者重连时会重新获取快照，无需重试
+        channel.basicAck(deliveryTag, false);
+    }
+}
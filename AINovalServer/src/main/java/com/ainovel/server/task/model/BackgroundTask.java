@@ -6,6 +6,8 @@ import java.util.Map;
 
 import org.springframework.data.annotation.Id;
 import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import lombok.AllArgsConstructor;
@@ -21,6 +23,11 @@ import lombok.NoArgsConstructor;
 @NoArgsConstructor
 @AllArgsConstructor
 @Document(collection = "background_tasks")
+@CompoundIndexes({
+    @CompoundIndex(name = "retry_due_idx", def = "{'status': 1, 'nextAttemptTimestamp': 1}"),
+    // 发件箱中继每轮按用户统计执行中的任务，索引覆盖匹配条件和分组字段
+    @CompoundIndex(name = "user_active_idx", def = "{'userId': 1, 'status': 1, 'taskType': 1, 'nextAttemptTimestamp': 1}")
+})
 public class BackgroundTask {
     
     @Id
@@ -97,7 +104,17 @@ public class BackgroundTask {
      * 子任务状态摘要（针对有子任务的父任务）
      */
     private Map<String, Integer> subTaskStatusSummary;
-    
+
+    /**
+     * 子任务是否已全部处理并完成聚合（针对有子任务的父任务），保证最终状态只被写入一次
+     */
+    private boolean subTasksSettled;
+
+    /**
+     * 进度是否已由子任务按字段原子累加（针对有子任务的父任务），此后整体写入的进度不再覆盖累加结果
+     */
+    private boolean progressAggregated;
+
     /**
      * 版本号，用于乐观锁
      */
@@ -0,0 +1,40 @@
+package com.ainovel.server.task.model;
+
+import java.time.Instant;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 已处理的任务事件记录，用于跨节点的事件去重
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "processed_events")
+public class ProcessedEvent {
+
+    /**
+     * 去重键：监听者范围 + 事件ID
+     */
+    @Id
+    private String id;
+
+    /**
+     * 处理时间
+     */
+    private Instant processedAt;
+
+    /**
+     * 过期时间，由TTL索引清理
+     */
+    @Indexed(expireAfter = "0s")
+    private Instant expireAt;
+}
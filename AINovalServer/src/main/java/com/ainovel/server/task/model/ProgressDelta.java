@@ -0,0 +1,70 @@
+package com.ainovel.server.task.model;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 父任务进度的增量更新
+ * 字段路径相对于任务的 progress 文档，由 TaskStateService 以单条原子更新($inc/$set/$push/$max)写入，
+ * 多个子任务并发上报时不会互相覆盖
+ */
+public final class ProgressDelta {
+
+    private final Map<String, Integer> increments = new LinkedHashMap<>();
+    private final Map<String, Object> fields = new LinkedHashMap<>();
+    private final Map<String, Object> appends = new LinkedHashMap<>();
+    private final Map<String, Integer> maximums = new LinkedHashMap<>();
+
+    /**
+     * 计数字段增加指定值
+     */
+    public ProgressDelta inc(String field, int amount) {
+        increments.merge(field, amount, Integer::sum);
+        return this;
+    }
+
+    /**
+     * 直接设置字段值
+     */
+    public ProgressDelta set(String field, Object value) {
+        fields.put(field, value);
+        return this;
+    }
+
+    /**
+     * 向数组字段追加元素
+     */
+    public ProgressDelta push(String field, Object value) {
+        appends.put(field, value);
+        return this;
+    }
+
+    /**
+     * 仅当新值更大时更新字段
+     */
+    public ProgressDelta max(String field, int value) {
+        maximums.merge(field, value, Math::max);
+        return this;
+    }
+
+    public Map<String, Integer> getIncrements() {
+        return Collections.unmodifiableMap(increments);
+    }
+
+    public Map<String, Object> getFields() {
+        return Collections.unmodifiableMap(fields);
+    }
+
+    public Map<String, Object> getAppends() {
+        return Collections.unmodifiableMap(appends);
+    }
+
+    public Map<String, Integer> getMaximums() {
+        return Collections.unmodifiableMap(maximums);
+    }
+
+    public boolean isEmpty() {
+        return increments.isEmpty() && fields.isEmpty() && appends.isEmpty() && maximums.isEmpty();
+    }
+}
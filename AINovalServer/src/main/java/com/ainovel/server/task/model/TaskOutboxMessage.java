@@ -0,0 +1,101 @@
+package com.ainovel.server.task.model;
+
+import java.time.Instant;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 任务消息发件箱记录
+ * 与任务在同一事务中写入，由中继在事务提交后发送到消息队列
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "task_outbox")
+@CompoundIndex(name = "pending_idx", def = "{'sentAt': 1, 'createdAt': 1}")
+public class TaskOutboxMessage {
+
+    /**
+     * 与任务ID相同，每个任务只有一条提交消息
+     */
+    @Id
+    private String id;
+
+    /**
+     * 任务所属用户ID
+     */
+    private String userId;
+
+    /**
+     * 任务类型标识符
+     */
+    private String taskType;
+
+    /**
+     * 任务参数
+     */
+    private Object parameters;
+
+    /**
+     * 投递时携带的重试次数，新任务为0，重试到期重新入队时为已重试次数
+     */
+    private int retryCount;
+
+    /**
+     * 写入时间
+     */
+    private Instant createdAt;
+
+    /**
+     * 发送并被Broker确认的时间，为空表示待发送
+     */
+    private Instant sentAt;
+
+    /**
+     * 当前认领该记录的中继批次标识
+     */
+    private String claimToken;
+
+    /**
+     * 认领到期时间，到期前其他中继不会重复发送
+     */
+    private Instant claimedUntil;
+
+    /**
+     * 发送失败次数
+     */
+    private int attempts;
+
+    /**
+     * 最近一次发送失败的原因
+     */
+    private String lastError;
+
+    /**
+     * 过期时间，发送成功后设置，由TTL索引清理
+     */
+    @Indexed(expireAfter = "0s")
+    private Instant expireAt;
+
+    /**
+     * 为任务创建发件箱记录
+     */
+    public static TaskOutboxMessage of(BackgroundTask task) {
+        return TaskOutboxMessage.builder()
+                .id(task.getId())
+                .userId(task.getUserId())
+                .taskType(task.getTaskType())
+                .parameters(task.getParameters())
+                .createdAt(task.getTimestamps() != null ? task.getTimestamps().getCreatedAt() : Instant.now())
+                .build();
+    }
+}
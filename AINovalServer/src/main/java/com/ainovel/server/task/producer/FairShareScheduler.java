@@ -0,0 +1,94 @@
+package com.ainovel.server.task.producer;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 公平份额分配：在一批发送额度内决定每个(类别, 用户)队列可发送的任务数
+ *
+ * 按类别优先级从高到低分配，同一优先级内按赤字轮转(DRR)：每轮每个队列获得其权重的额度，
+ * 可发送数受该队列积压数和剩余并发额度限制。队列清空时赤字归零，额度不足时赤字保留到下一批。
+ * 每批从不同的用户开始轮转，避免额度紧张时总是同一用户先得。
+ */
+final class FairShareScheduler {
+
+    private final Map<Flow, Long> deficits = new HashMap<>();
+    private int offset;
+
+    /**
+     * 一个调度队列：某个用户在某个类别中的待发送任务
+     */
+    record Flow(String schedulingClass, String userId) {
+    }
+
+    /**
+     * 队列的调度需求
+     *
+     * @param flow 队列
+     * @param priority 类别优先级
+     * @param quantum 每轮额度(类别权重 * 用户权重)
+     * @param backlog 可发送的积压数
+     * @param allowance 剩余并发额度
+     */
+    record Demand(Flow flow, int priority, int quantum, int backlog, int allowance) {
+    }
+
+    /**
+     * 分配一批发送额度
+     *
+     * @param demands 各队列的需求
+     * @param budget 本批最多发送的任务数
+     * @return 各队列本批可发送的任务数，未分配到的队列不出现
+     */
+    synchronized Map<Flow, Integer> allocate(List<Demand> demands, int budget) {
+        Map<Flow, Integer> granted = new LinkedHashMap<>();
+        TreeMap<Integer, List<Demand>> byPriority = new TreeMap<>(Comparator.reverseOrder());
+        for (Demand demand : demands) {
+            if (Math.min(demand.backlog(), demand.allowance()) > 0) {
+                byPriority.computeIfAbsent(demand.priority(), p -> new ArrayList<>()).add(demand);
+            }
+        }
+        deficits.keySet().retainAll(demands.stream().map(Demand::flow).toList());
+
+        int remaining = budget;
+        int start = offset++;
+        for (List<Demand> level : byPriority.values()) {
+            if (remaining <= 0) {
+                break;
+            }
+            level.sort(Comparator.comparing((Demand d) -> d.flow().userId()));
+            List<Demand> active = new ArrayList<>(level.size());
+            for (int i = 0; i < level.size(); i++) {
+                active.add(level.get(Math.floorMod(start + i, level.size())));
+            }
+            Map<Flow, Integer> room = new HashMap<>();
+            active.forEach(d -> room.put(d.flow(), Math.min(d.backlog(), d.allowance())));
+
+            while (remaining > 0 && !active.isEmpty()) {
+                for (int i = 0; i < active.size() && remaining > 0; ) {
+                    Demand demand = active.get(i);
+                    Flow flow = demand.flow();
+                    long deficit = deficits.getOrDefault(flow, 0L) + Math.max(1, demand.quantum());
+                    int take = (int) Math.min(deficit, Math.min(room.get(flow), remaining));
+                    granted.merge(flow, take, Integer::sum);
+                    remaining -= take;
+                    int left = room.get(flow) - take;
+                    room.put(flow, left);
+                    if (left == 0) {
+                        deficits.remove(flow);
+                        active.remove(i);
+                    } else {
+                        deficits.put(flow, deficit - take);
+                        i++;
+                    }
+                }
+            }
+        }
+        return granted;
+    }
+}
@@ -1,8 +1,10 @@
 package com.ainovel.server.task.producer;
 
 import com.ainovel.server.config.RabbitMQConfig;
+import com.ainovel.server.config.TaskTransportConfiguration;
 import com.ainovel.server.task.event.external.TaskExternalEvent;
 import com.ainovel.server.task.model.TaskStatus;
+import com.ainovel.server.task.service.TaskEventStreamService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.amqp.AmqpException;
@@ -20,18 +22,38 @@ import java.util.HashMap;
 
 /**
  * 响应式任务外部事件发布器，负责将任务状态变更事件发布到外部交换机
+ * 事件同时推送给本节点的SSE订阅者，其他节点通过广播队列收到后推送给各自的订阅者
  */
 @Slf4j
 @Service
 public class TaskEventPublisher {
     
+    /**
+     * 发布事件的节点ID消息头，广播监听器据此忽略本节点发出的事件
+     */
+    public static final String HEADER_NODE_ID = "x-node-id";
+    
     private final RabbitTemplate rabbitTemplate;
     private final ObjectMapper objectMapper;
+    private final TaskEventStreamService eventStreamService;
+    private final boolean localTransport;
+    private final String nodeId = UUID.randomUUID().toString();
     
     @Autowired
-    public TaskEventPublisher(RabbitTemplate rabbitTemplate, ObjectMapper objectMapper) {
+    public TaskEventPublisher(RabbitTemplate rabbitTemplate, ObjectMapper objectMapper,
+                              TaskEventStreamService eventStreamService,
+                              TaskTransportConfiguration transportConfiguration) {
         this.rabbitTemplate = rabbitTemplate;
         this.objectMapper = objectMapper;
+        this.eventStreamService = eventStreamService;
+        this.localTransport = transportConfiguration.isLocalMode();
+    }
+    
+    /**
+     * 本节点ID
+     */
+    public String getNodeId() {
+        return nodeId;
     }
     
     /**
@@ -42,7 +64,14 @@ public class TaskEventPublisher {
      * @return 表示操作完成的Mono<Void>
      */
     public Mono<Void> publishExternalEvent(String eventType, Map<String, Object> eventData) {
-        return Mono.fromCallable(() -> {
+        // 先推送给本节点的订阅者，不等待交换机
+        Mono<Void> local = Mono.fromRunnable(() -> eventStreamService.publish(eventType, eventData));
+        if (localTransport) {
+            // 进程内传输只有单个节点，无需经交换机广播
+            return local;
+        }
+        return local
+        .then(Mono.fromCallable(() -> {
             String taskId = eventData.getOrDefault("taskId", "unknown").toString();
             String correlationId = eventData.containsKey("taskId") ? 
                             eventData.get("taskId").toString() : UUID.randomUUID().toString();
@@ -62,6 +91,7 @@ public class TaskEventPublisher {
                     message.getMessageProperties().setCorrelationId(correlationId);
                     message.getMessageProperties().setMessageId(UUID.randomUUID().toString());
                     message.getMessageProperties().setHeader("x-event-type", eventType);
+                    message.getMessageProperties().setHeader(HEADER_NODE_ID, nodeId);
                     if (eventData.containsKey("taskId")) {
                         message.getMessageProperties().setHeader("x-task-id", eventData.get("taskId"));
                     }
@@ -72,7 +102,7 @@ public class TaskEventPublisher {
             
             return null;
         })
-        .subscribeOn(Schedulers.boundedElastic()) // 发送是阻塞的
+        .subscribeOn(Schedulers.boundedElastic())) // 发送是阻塞的
         .doOnError(e -> log.error("发布任务事件 [{}] 到RabbitMQ失败: {}", 
                             eventType, e.getMessage(), e))
         .then();
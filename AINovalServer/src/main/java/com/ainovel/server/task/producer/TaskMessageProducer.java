@@ -1,11 +1,13 @@
 package com.ainovel.server.task.producer;
 
 import com.ainovel.server.config.RabbitMQConfig;
+import com.ainovel.server.task.model.TaskOutboxMessage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.amqp.AmqpException;
 import org.springframework.amqp.core.Message;
 import org.springframework.amqp.core.MessageBuilder;
+import org.springframework.amqp.core.MessagePostProcessor;
 import org.springframework.amqp.core.MessageProperties;
 import org.springframework.amqp.core.MessagePropertiesBuilder;
 import org.springframework.amqp.rabbit.connection.CorrelationData;
@@ -17,8 +19,15 @@ import lombok.extern.slf4j.Slf4j;
 import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Schedulers;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * 任务消息生产者，负责向RabbitMQ发送任务消息
@@ -55,16 +64,7 @@ public class TaskMessageProducer {
                 RabbitMQConfig.TASKS_EXCHANGE, 
                 routingKey, // 使用包含前缀的路由键
                 parameters, 
-                message -> {
-                    // 直接设置消息属性和头信息
-                    message.getMessageProperties().setHeader("x-task-id", taskId);
-                    message.getMessageProperties().setHeader("x-user-id", userId);
-                    message.getMessageProperties().setHeader("x-task-type", taskType);
-                    message.getMessageProperties().setHeader("x-retry-count", 0);
-                    message.getMessageProperties().setCorrelationId(taskId);
-                    message.getMessageProperties().setMessageId(UUID.randomUUID().toString());
-                    return message;
-                },
+                taskMessage(taskId, userId, taskType, 0),
                 new CorrelationData(taskId)
             );
             
@@ -75,42 +75,61 @@ public class TaskMessageProducer {
     }
     
     /**
-     * 发送任务消息到重试交换机
+     * 批量发送任务消息
+     * 一批消息连续发送后统一等待发布确认，阻塞调用，由调用方安排线程
      * 
-     * @param taskId 任务ID
-     * @param userId 用户ID
-     * @param taskType 任务类型
-     * @param parameters 任务参数
-     * @param retryCount 重试次数
-     * @return 包含操作完成信号的Mono
+     * @param batch 发件箱中待发送的任务消息
+     * @param confirmTimeout 等待发布确认的超时时间
+     * @return 未被确认的任务ID：被拒绝、无法路由或在超时前未收到确认
      */
-    public Mono<Void> sendToRetryExchange(String taskId, String userId, String taskType, Object parameters, int retryCount) {
-        return Mono.fromCallable(() -> {
-            log.info("发送任务消息到重试交换机: {} [类型: {}, 用户: {}, 重试次数: {}]", 
-                      taskId, taskType, userId, retryCount);
-            
-            // 发送消息到重试交换机
+    public List<String> sendTaskBatch(List<TaskOutboxMessage> batch, Duration confirmTimeout) {
+        log.info("批量发送任务消息: {} 条", batch.size());
+        
+        List<CorrelationData> pending = new ArrayList<>(batch.size());
+        for (TaskOutboxMessage outboxMessage : batch) {
+            CorrelationData correlationData = new CorrelationData(outboxMessage.getId());
             rabbitTemplate.convertAndSend(
-                RabbitMQConfig.TASKS_RETRY_EXCHANGE, 
-                taskType, // 对于FanoutExchange，路由键通常被忽略，这里保持一致
-                parameters, 
-                message -> {
-                    // 直接设置消息属性和头信息
-                    message.getMessageProperties().setHeader("x-task-id", taskId);
-                    message.getMessageProperties().setHeader("x-user-id", userId);
-                    message.getMessageProperties().setHeader("x-task-type", taskType);
-                    message.getMessageProperties().setHeader("x-retry-count", retryCount);
-                    message.getMessageProperties().setCorrelationId(taskId);
-                    message.getMessageProperties().setMessageId(UUID.randomUUID().toString());
-                    return message;
-                },
-                new CorrelationData(taskId)
+                RabbitMQConfig.TASKS_EXCHANGE, 
+                RabbitMQConfig.TASK_TYPE_PREFIX + outboxMessage.getTaskType(), 
+                outboxMessage.getParameters(), 
+                taskMessage(outboxMessage.getId(), outboxMessage.getUserId(), outboxMessage.getTaskType(),
+                    outboxMessage.getRetryCount()),
+                correlationData
             );
-            
-            return null;
-        })
-        .subscribeOn(Schedulers.boundedElastic())
-        .then();
+            pending.add(correlationData);
+        }
+        
+        try {
+            CompletableFuture.allOf(pending.stream()
+                    .map(CorrelationData::getFuture)
+                    .toArray(CompletableFuture[]::new))
+                .get(confirmTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.warn("等待任务消息发布确认超时，未确认的消息将重新发送");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AmqpException("等待任务消息发布确认被中断", e);
+        } catch (ExecutionException e) {
+            throw new AmqpException("等待任务消息发布确认失败", e.getCause());
+        }
+        
+        return pending.stream()
+            .filter(cd -> !cd.getFuture().isDone() || !cd.getFuture().join().isAck() || cd.getReturned() != null)
+            .map(CorrelationData::getId)
+            .toList();
+    }
+    
+    private MessagePostProcessor taskMessage(String taskId, String userId, String taskType, int retryCount) {
+        return message -> {
+            // 直接设置消息属性和头信息
+            message.getMessageProperties().setHeader("x-task-id", taskId);
+            message.getMessageProperties().setHeader("x-user-id", userId);
+            message.getMessageProperties().setHeader("x-task-type", taskType);
+            message.getMessageProperties().setHeader("x-retry-count", retryCount);
+            message.getMessageProperties().setCorrelationId(taskId);
+            message.getMessageProperties().setMessageId(UUID.randomUUID().toString());
+            return message;
+        };
     }
     
     /**
@@ -148,47 +167,4 @@ public class TaskMessageProducer {
         })
         .subscribeOn(Schedulers.boundedElastic())
         .then();
-    }
-
-    /**
-     * 发送带有延迟的重试任务消息
-     * 
-     * @param taskId 任务ID
-     * @param userId 用户ID
-     * @param taskType 任务类型
-     * @param parameters 任务参数
-     * @param retryCount 重试次数
-     * @param delayMillis 延迟时间（毫秒）
-     * @return 完成信号
-     */
-    public Mono<Void> sendDelayedRetryTask(String taskId, String userId, String taskType, Object parameters, 
-                                           int retryCount, long delayMillis) {
-        return Mono.fromCallable(() -> {
-            log.info("发送带有延迟的重试任务消息: {} [类型: {}, 用户: {}, 重试次数: {}, 延迟时间: {}毫秒]", 
-                      taskId, taskType, userId, retryCount, delayMillis);
-            
-            // 发送消息到重试交换机
-            rabbitTemplate.convertAndSend(
-                RabbitMQConfig.TASKS_RETRY_EXCHANGE, 
-                taskType, // 对于FanoutExchange，路由键通常被忽略
-                parameters, 
-                message -> {
-                    // 直接设置消息属性和头信息
-                    message.getMessageProperties().setHeader("x-task-id", taskId);
-                    message.getMessageProperties().setHeader("x-user-id", userId);
-                    message.getMessageProperties().setHeader("x-task-type", taskType);
-                    message.getMessageProperties().setHeader("x-retry-count", retryCount);
-                    message.getMessageProperties().setCorrelationId(taskId);
-                    message.getMessageProperties().setMessageId(UUID.randomUUID().toString());
-                    message.getMessageProperties().setHeader("x-delay", delayMillis);
-                    return message;
-                },
-                new CorrelationData(taskId)
-            );
-            
-            return null;
-        })
-        .subscribeOn(Schedulers.boundedElastic())
-        .then();
-    }
-} 
\ No newline at end of file
+    }}
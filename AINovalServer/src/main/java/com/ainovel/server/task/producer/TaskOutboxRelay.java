@@ -0,0 +1,349 @@
+package com.ainovel.server.task.producer;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import com.ainovel.server.config.TaskSchedulingConfiguration;
+import com.ainovel.server.config.TaskSubmissionConfiguration;
+import com.ainovel.server.task.model.BackgroundTask;
+import com.ainovel.server.task.model.TaskOutboxMessage;
+import com.ainovel.server.task.model.TaskStatus;
+import com.ainovel.server.task.transport.TaskTransport;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.MultiGauge;
+import io.micrometer.core.instrument.Tags;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * 任务消息发件箱中继
+ *
+ * 任务与发件箱记录在同一事务中写入，事务提交后由中继按批认领待发送记录，经任务传输发送并等待投递确认，
+ * 确认后标记为已发送。本节点提交任务后立即触发一次发送，定时轮询负责兜底重试和接管其他节点遗留的记录。
+ * 认领带租约，多个节点同时运行时同一条记录在租约内只会被一个中继发送。
+ *
+ * 启用公平调度时，发件箱即各用户的虚拟队列：每批先统计各(类别, 用户)的积压和已发送未结束的任务数，
+ * 由 FairShareScheduler 分配本批额度后再按队列认领，单个用户的大批量任务不会堆满任务队列。
+ */
+@Slf4j
+@Component
+public class TaskOutboxRelay {
+
+    private static final String DEFAULT_CLASS = "default";
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final TaskTransport taskTransport;
+    private final TaskSubmissionConfiguration configuration;
+    private final TaskSchedulingConfiguration schedulingConfiguration;
+    private final FairShareScheduler fairShareScheduler = new FairShareScheduler();
+    private final Map<String, String> classByTaskType = new HashMap<>();
+    private final MultiGauge queueDepth;
+    private final Sinks.Many<Long> wakeups = Sinks.many().multicast().directBestEffort();
+    private final Counter sent;
+    private final Counter unconfirmed;
+    private Disposable relay;
+
+    @Autowired
+    public TaskOutboxRelay(ReactiveMongoTemplate mongoTemplate,
+                           TaskTransport taskTransport,
+                           TaskSubmissionConfiguration configuration,
+                           TaskSchedulingConfiguration schedulingConfiguration,
+                           MeterRegistry meterRegistry) {
+        this.mongoTemplate = mongoTemplate;
+        this.taskTransport = taskTransport;
+        this.configuration = configuration;
+        this.schedulingConfiguration = schedulingConfiguration;
+        schedulingConfiguration.getClasses().forEach((name, classConfig) ->
+                classConfig.getTaskTypes().forEach(taskType -> classByTaskType.put(taskType, name)));
+        this.queueDepth = MultiGauge.builder("tasks.scheduling.queue.depth")
+                .description("各用户在各调度类别中待发送的任务数")
+                .register(meterRegistry);
+        this.sent = Counter.builder("tasks.outbox.sent")
+                .description("发件箱中已发送并被确认的任务消息数")
+                .register(meterRegistry);
+        this.unconfirmed = Counter.builder("tasks.outbox.unconfirmed")
+                .description("发件箱中发送后未被确认、等待重试的任务消息数")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        relay = Flux.merge(Flux.interval(Duration.ofMillis(Math.max(1, configuration.getRelayPollIntervalMillis()))),
+                        wakeups.asFlux())
+                .onBackpressureLatest()
+                .concatMap(tick -> drainAll()
+                        .onErrorResume(e -> {
+                            log.warn("发件箱中继发送失败，等待下次轮询重试: {}", e.getMessage());
+                            return Mono.empty();
+                        }), 1)
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (relay != null) {
+            relay.dispose();
+        }
+    }
+
+    /**
+     * 为任务写入发件箱记录，应在创建任务的同一事务中调用
+     *
+     * @param tasks 新创建的任务
+     * @return 完成信号
+     */
+    public Mono<Void> enqueue(List<BackgroundTask> tasks) {
+        if (tasks.isEmpty()) {
+            return Mono.empty();
+        }
+        return mongoTemplate.insertAll(tasks.stream().map(TaskOutboxMessage::of).toList()).then();
+    }
+
+    /**
+     * 把到期的重试重新写入发件箱，由中继按公平调度再次发送；任务已有的发件箱记录被重置为待发送
+     *
+     * @param task 到期重试的任务
+     * @return 完成信号
+     */
+    public Mono<Void> enqueueRetry(BackgroundTask task) {
+        Update update = new Update()
+                .set("userId", task.getUserId())
+                .set("taskType", task.getTaskType())
+                .set("parameters", task.getParameters())
+                .set("retryCount", task.getRetryCount())
+                .set("createdAt", Instant.now())
+                .set("attempts", 0)
+                .unset("sentAt")
+                .unset("expireAt")
+                .unset("claimToken")
+                .unset("claimedUntil")
+                .unset("lastError");
+        return mongoTemplate.upsert(new Query(Criteria.where("_id").is(task.getId())), update, TaskOutboxMessage.class)
+                .then();
+    }
+
+    /**
+     * 通知中继有新记录，事务提交后调用
+     */
+    public void wakeUp() {
+        wakeups.tryEmitNext(System.currentTimeMillis());
+    }
+
+    /**
+     * 持续发送直到没有可认领的记录
+     */
+    Mono<Void> drainAll() {
+        int batchSize = Math.max(1, configuration.getPublishBatchSize());
+        return drainBatch()
+                .expand(count -> count >= batchSize ? drainBatch() : Mono.empty())
+                .then();
+    }
+
+    /**
+     * 认领并发送一批记录
+     *
+     * @return 本批认领的记录数
+     */
+    Mono<Integer> drainBatch() {
+        Instant now = Instant.now();
+        String claimToken = UUID.randomUUID().toString();
+        Criteria claimable = new Criteria().andOperator(
+                Criteria.where("sentAt").is(null),
+                new Criteria().orOperator(
+                        Criteria.where("claimedUntil").is(null),
+                        Criteria.where("claimedUntil").lt(now)));
+
+        Mono<List<String>> candidates = schedulingConfiguration.isEnabled()
+                ? selectFairCandidates(claimable)
+                : selectCandidates(claimable, null, null, configuration.getPublishBatchSize());
+
+        return candidates
+                .flatMap(ids -> {
+                    if (ids.isEmpty()) {
+                        return Mono.just(0);
+                    }
+                    // 条件更新认领，与其他节点并发时只有一方能认领到同一条记录
+                    Query claim = new Query(new Criteria().andOperator(Criteria.where("_id").in(ids), claimable));
+                    Update update = new Update()
+                            .set("claimToken", claimToken)
+                            .set("claimedUntil", now.plusSeconds(configuration.getRelayClaimLeaseSeconds()));
+                    return mongoTemplate.updateMulti(claim, update, TaskOutboxMessage.class)
+                            .thenMany(mongoTemplate.find(new Query(Criteria.where("claimToken").is(claimToken))
+                                    .with(Sort.by(Sort.Direction.ASC, "createdAt")), TaskOutboxMessage.class))
+                            .collectList()
+                            .flatMap(claimed -> publish(claimed).thenReturn(ids.size()));
+                });
+    }
+
+    private Mono<List<String>> selectCandidates(Criteria claimable, String userId, Set<String> taskTypes, int limit) {
+        Criteria criteria = userId == null ? claimable : new Criteria().andOperator(claimable,
+                Criteria.where("userId").is(userId), Criteria.where("taskType").in(taskTypes));
+        Query query = new Query(criteria)
+                .with(Sort.by(Sort.Direction.ASC, "createdAt"))
+                .limit(Math.max(1, limit));
+        query.fields().include("_id");
+        return mongoTemplate.find(query, TaskOutboxMessage.class)
+                .map(TaskOutboxMessage::getId)
+                .collectList();
+    }
+
+    /**
+     * 按公平调度选出本批要发送的记录
+     */
+    private Mono<List<String>> selectFairCandidates(Criteria claimable) {
+        return countByUserAndType(Criteria.where("sentAt").is(null), TaskOutboxMessage.class)
+                .flatMap(unsent -> {
+                    updateQueueDepth(unsent);
+                    if (unsent.isEmpty()) {
+                        return Mono.just(List.<String>of());
+                    }
+                    Set<String> userIds = new HashSet<>();
+                    unsent.keySet().forEach(key -> userIds.add(key.userId()));
+                    // 等待到期的重试不在执行也不在队列中，不占并发额度；到期出队后清除计划时间，重新计入
+                    Criteria active = new Criteria().andOperator(
+                            Criteria.where("userId").in(userIds),
+                            new Criteria().orOperator(
+                                    Criteria.where("status").in(TaskStatus.QUEUED, TaskStatus.RUNNING),
+                                    Criteria.where("status").is(TaskStatus.RETRYING).and("nextAttemptTimestamp").is(null)));
+                    return Mono.zip(countByUserAndType(claimable, TaskOutboxMessage.class),
+                                    countByUserAndType(active, BackgroundTask.class))
+                            .flatMap(counts -> allocateAndSelect(claimable, unsent, counts.getT1(), counts.getT2()));
+                });
+    }
+
+    private Mono<List<String>> allocateAndSelect(Criteria claimable,
+                                                 Map<TypeKey, Integer> unsent,
+                                                 Map<TypeKey, Integer> backlog,
+                                                 Map<TypeKey, Integer> active) {
+        Map<FairShareScheduler.Flow, Integer> backlogByFlow = new HashMap<>();
+        Map<FairShareScheduler.Flow, Set<String>> typesByFlow = new HashMap<>();
+        backlog.forEach((key, count) -> {
+            FairShareScheduler.Flow flow = flowOf(key);
+            backlogByFlow.merge(flow, count, Integer::sum);
+            typesByFlow.computeIfAbsent(flow, f -> new HashSet<>()).add(key.taskType());
+        });
+        // 活跃任务中尚在发件箱里的还没有发送，不占并发额度
+        Map<FairShareScheduler.Flow, Integer> inFlightByFlow = new HashMap<>();
+        active.forEach((key, count) -> inFlightByFlow.merge(flowOf(key),
+                Math.max(0, count - unsent.getOrDefault(key, 0)), Integer::sum));
+
+        List<FairShareScheduler.Demand> demands = new ArrayList<>();
+        backlogByFlow.forEach((flow, count) -> {
+            TaskSchedulingConfiguration.ClassConfig classConfig = schedulingConfiguration.getClasses().get(flow.schedulingClass());
+            int priority = classConfig != null ? classConfig.getPriority() : 0;
+            int weight = classConfig != null ? classConfig.getWeight() : 1;
+            int cap = classConfig != null ? classConfig.getPerUserConcurrency() : schedulingConfiguration.getDefaultPerUserConcurrency();
+            int userWeight = schedulingConfiguration.getUserWeights().getOrDefault(flow.userId(), 1);
+            demands.add(new FairShareScheduler.Demand(flow, priority, weight * userWeight, count,
+                    cap - inFlightByFlow.getOrDefault(flow, 0)));
+        });
+
+        Map<FairShareScheduler.Flow, Integer> granted = fairShareScheduler.allocate(demands,
+                Math.max(1, configuration.getPublishBatchSize()));
+        return Flux.fromIterable(granted.entrySet())
+                .concatMap(entry -> selectCandidates(claimable, entry.getKey().userId(),
+                        typesByFlow.get(entry.getKey()), entry.getValue()))
+                .collectList()
+                .map(lists -> lists.stream().flatMap(List::stream).toList());
+    }
+
+    private Mono<Map<TypeKey, Integer>> countByUserAndType(Criteria criteria, Class<?> entityClass) {
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(criteria),
+                Aggregation.group("userId", "taskType").count().as("count"));
+        return mongoTemplate.aggregate(aggregation, entityClass, Document.class)
+                .collectMap(document -> {
+                    Document id = (Document) document.get("_id");
+                    return new TypeKey(id.getString("userId"), id.getString("taskType"));
+                }, document -> ((Number) document.get("count")).intValue());
+    }
+
+    private void updateQueueDepth(Map<TypeKey, Integer> unsent) {
+        Map<FairShareScheduler.Flow, Integer> depth = new HashMap<>();
+        unsent.forEach((key, count) -> depth.merge(flowOf(key), count, Integer::sum));
+        queueDepth.register(depth.entrySet().stream()
+                .map(entry -> MultiGauge.Row.of(Tags.of("userId", String.valueOf(entry.getKey().userId()),
+                        "schedulingClass", entry.getKey().schedulingClass()), entry.getValue()))
+                .toList(), true);
+    }
+
+    private FairShareScheduler.Flow flowOf(TypeKey key) {
+        return new FairShareScheduler.Flow(classByTaskType.getOrDefault(key.taskType(), DEFAULT_CLASS), key.userId());
+    }
+
+    private Mono<Void> publish(List<TaskOutboxMessage> claimed) {
+        if (claimed.isEmpty()) {
+            return Mono.empty();
+        }
+        return Mono.fromCallable(() -> taskTransport.send(claimed,
+                        Duration.ofMillis(configuration.getConfirmTimeoutMillis())))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(failedIds -> {
+                    Set<String> failed = new HashSet<>(failedIds);
+                    List<String> confirmedIds = claimed.stream()
+                            .map(TaskOutboxMessage::getId)
+                            .filter(id -> !failed.contains(id))
+                            .toList();
+                    sent.increment(confirmedIds.size());
+                    unconfirmed.increment(failed.size());
+                    if (!failed.isEmpty()) {
+                        log.warn("{} 条任务消息未被确认，租约到期后重试: {}", failed.size(), failedIds);
+                    }
+                    return markSent(confirmedIds).then(markUnconfirmed(failedIds));
+                });
+    }
+
+    private Mono<Void> markSent(List<String> ids) {
+        if (ids.isEmpty()) {
+            return Mono.empty();
+        }
+        Instant now = Instant.now();
+        Update update = new Update()
+                .set("sentAt", now)
+                .set("expireAt", now.plus(Duration.ofHours(configuration.getSentRetentionHours())))
+                .unset("claimToken")
+                .unset("claimedUntil");
+        return mongoTemplate.updateMulti(new Query(Criteria.where("_id").in(ids)), update, TaskOutboxMessage.class)
+                .then();
+    }
+
+    private Mono<Void> markUnconfirmed(List<String> ids) {
+        if (ids.isEmpty()) {
+            return Mono.empty();
+        }
+        // 保留认领租约作为重试退避
+        Update update = new Update()
+                .inc("attempts", 1)
+                .set("lastError", "发布未被确认");
+        return mongoTemplate.updateMulti(new Query(Criteria.where("_id").in(ids)), update, TaskOutboxMessage.class)
+                .then();
+    }
+
+    private record TypeKey(String userId, String taskType) {
+    }
+}
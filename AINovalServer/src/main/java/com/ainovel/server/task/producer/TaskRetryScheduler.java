@@ -0,0 +1,225 @@
+package com.ainovel.server.task.producer;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.DoubleSupplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.reactive.TransactionalOperator;
+
+import com.ainovel.server.config.TaskRetryConfiguration;
+import com.ainovel.server.task.model.BackgroundTask;
+import com.ainovel.server.task.model.TaskStatus;
+import com.ainovel.server.task.transport.TaskTimerWheel;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * 任务重试调度
+ *
+ * 重试延迟按指数退避加完全抖动计算：第n次重试在0到 min(上限, 基数 * 倍数^n) 之间均匀取值，
+ * 同时失败的一批任务因此分散重试，不会在同一时刻一起涌向上游；错误信息中带有上游的Retry-After提示时，延迟不早于该提示。
+ *
+ * 待重试任务以RETRYING状态和nextAttemptTimestamp持久化在background_tasks中。本节点安排的重试直接放入分层时间轮，
+ * 定时扫描把即将到期的遗留重试（其他节点安排的或重启前安排的）也装入时间轮。到期时以条件更新认领重试，
+ * 并在同一事务中把任务重新写入发件箱，由发件箱中继按公平调度经任务传输投递；多个节点装入同一重试时只有一方能认领。
+ */
+@Slf4j
+@Component
+public class TaskRetryScheduler {
+
+    /**
+     * 错误信息中上游Retry-After提示的键(毫秒)
+     */
+    public static final String RETRY_AFTER_MILLIS = "retryAfterMillis";
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final TransactionalOperator transactionalOperator;
+    private final TaskOutboxRelay outboxRelay;
+    private final TaskRetryConfiguration configuration;
+    private final TaskTimerWheel timerWheel;
+    private final DoubleSupplier random;
+    private final Set<String> armed = ConcurrentHashMap.newKeySet();
+    private final Counter scheduled;
+    private final Counter dispatched;
+    private Disposable sweeper;
+
+    @Autowired
+    public TaskRetryScheduler(ReactiveMongoTemplate mongoTemplate,
+                              TransactionalOperator transactionalOperator,
+                              TaskOutboxRelay outboxRelay,
+                              TaskRetryConfiguration configuration,
+                              MeterRegistry meterRegistry) {
+        this(mongoTemplate, transactionalOperator, outboxRelay, configuration, meterRegistry,
+                new TaskTimerWheel(configuration.getTimerTickMillis(), configuration.getTimerWheelSize(),
+                        configuration.getTimerLevels()),
+                () -> ThreadLocalRandom.current().nextDouble());
+    }
+
+    TaskRetryScheduler(ReactiveMongoTemplate mongoTemplate,
+                       TransactionalOperator transactionalOperator,
+                       TaskOutboxRelay outboxRelay,
+                       TaskRetryConfiguration configuration,
+                       MeterRegistry meterRegistry,
+                       TaskTimerWheel timerWheel,
+                       DoubleSupplier random) {
+        this.mongoTemplate = mongoTemplate;
+        this.transactionalOperator = transactionalOperator;
+        this.outboxRelay = outboxRelay;
+        this.configuration = configuration;
+        this.timerWheel = timerWheel;
+        this.random = random;
+        Gauge.builder("tasks.retry.armed", armed, Set::size)
+                .description("时间轮上等待到期的重试数")
+                .register(meterRegistry);
+        this.scheduled = Counter.builder("tasks.retry.scheduled")
+                .description("装入时间轮的重试数")
+                .register(meterRegistry);
+        this.dispatched = Counter.builder("tasks.retry.dispatched")
+                .description("到期后被本节点认领并重新写入发件箱的重试数")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        timerWheel.start();
+        sweeper = Flux.interval(Duration.ZERO, Duration.ofMillis(Math.max(1, configuration.getSweepIntervalMillis())))
+                .onBackpressureDrop()
+                .concatMap(tick -> sweep()
+                        .onErrorResume(e -> {
+                            log.warn("扫描待重试任务失败，等待下次扫描: {}", e.getMessage());
+                            return Mono.empty();
+                        }), 1)
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (sweeper != null) {
+            sweeper.dispose();
+        }
+        timerWheel.stop();
+    }
+
+    /**
+     * 计算下一次重试的延迟
+     *
+     * @param retryCount 已重试次数
+     * @param errorInfo 本次失败的错误信息，可带有上游的Retry-After提示
+     * @return 延迟毫秒数
+     */
+    public long nextDelayMillis(int retryCount, Map<String, Object> errorInfo) {
+        double exponential = configuration.getInitialDelayMillis()
+                * Math.pow(Math.max(1.0, configuration.getBackoffFactor()), Math.max(0, retryCount));
+        long ceiling = (long) Math.min(configuration.getMaxDelayMillis(), exponential);
+        double jitter = Math.min(1.0, Math.max(0.0, configuration.getJitterFactor()));
+        long delay = ceiling - (long) (ceiling * jitter * random.getAsDouble());
+        long retryAfter = Math.min(retryAfterMillis(errorInfo), configuration.getMaxRetryAfterMillis());
+        return Math.max(delay, retryAfter);
+    }
+
+    /**
+     * 安排已记录为RETRYING的任务在指定时间重新投递
+     *
+     * @param taskId 任务ID
+     * @param nextAttemptAt 计划重试时间，应与任务记录中的nextAttemptTimestamp一致
+     * @return 完成信号
+     */
+    public Mono<Void> schedule(String taskId, Instant nextAttemptAt) {
+        return Mono.fromRunnable(() -> arm(taskId, nextAttemptAt));
+    }
+
+    /**
+     * 把即将到期的待重试任务装入时间轮
+     *
+     * @return 本次扫描到的任务数
+     */
+    Mono<Long> sweep() {
+        Instant horizon = Instant.now().plusMillis(2 * Math.max(1, configuration.getSweepIntervalMillis()));
+        Query query = new Query(Criteria.where("status").is(TaskStatus.RETRYING)
+                .and("nextAttemptTimestamp").lte(horizon));
+        query.fields().include("_id", "nextAttemptTimestamp");
+        return mongoTemplate.find(query, BackgroundTask.class)
+                .doOnNext(task -> arm(task.getId(), task.getNextAttemptTimestamp()))
+                .count();
+    }
+
+    /**
+     * 认领到期的重试并重新写入发件箱
+     *
+     * @param taskId 任务ID
+     * @return 是否由本节点认领
+     */
+    Mono<Boolean> dispatch(String taskId) {
+        Instant now = Instant.now();
+        Query query = new Query(Criteria.where("_id").is(taskId)
+                .and("status").is(TaskStatus.RETRYING)
+                .and("nextAttemptTimestamp").lte(now));
+        Update update = new Update()
+                .unset("nextAttemptTimestamp")
+                .set("timestamps.updatedAt", now);
+        return transactionalOperator.transactional(
+                        mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().returnNew(true),
+                                        BackgroundTask.class)
+                                .flatMap(task -> outboxRelay.enqueueRetry(task).thenReturn(true)))
+                .defaultIfEmpty(false)
+                .doOnNext(claimed -> {
+                    if (claimed) {
+                        dispatched.increment();
+                        outboxRelay.wakeUp();
+                    }
+                });
+    }
+
+    private void arm(String taskId, Instant nextAttemptAt) {
+        if (!armed.add(taskId)) {
+            return;
+        }
+        scheduled.increment();
+        timerWheel.schedule(millisUntil(nextAttemptAt), () -> fire(taskId, nextAttemptAt));
+    }
+
+    /**
+     * 时间轮到期动作：时间轮按格取整可能略早于计划时间，未到时间时按剩余时长重新放入
+     */
+    private void fire(String taskId, Instant nextAttemptAt) {
+        long remaining = millisUntil(nextAttemptAt);
+        if (remaining > 0) {
+            timerWheel.schedule(remaining, () -> fire(taskId, nextAttemptAt));
+            return;
+        }
+        dispatch(taskId)
+                .subscribeOn(Schedulers.boundedElastic())
+                .doFinally(signal -> armed.remove(taskId))
+                .subscribe(claimed -> log.debug("到期重试{}: {}", claimed ? "已重新入队" : "已被其他节点认领或不再等待", taskId),
+                        e -> log.warn("到期重试重新入队失败，等待下次扫描: taskId={}, 错误: {}", taskId, e.getMessage()));
+    }
+
+    private long millisUntil(Instant instant) {
+        return Math.max(0, Duration.between(Instant.now(), instant).toMillis());
+    }
+
+    private long retryAfterMillis(Map<String, Object> errorInfo) {
+        Object value = errorInfo != null ? errorInfo.get(RETRY_AFTER_MILLIS) : null;
+        return value instanceof Number number ? Math.max(0, number.longValue()) : 0;
+    }
+}
@@ -0,0 +1,25 @@
+package com.ainovel.server.task.service;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * 任务事件去重服务，为各事件监听器提供有界、按时间窗口保留的幂等性检查
+ */
+public interface EventDeduplicationService {
+
+    /**
+     * 将事件标记为已处理
+     * @param scope 监听者范围，同一事件可被不同监听者各处理一次
+     * @param eventId 事件ID
+     * @return 首次处理返回true，保留期内的重复事件返回false
+     */
+    Mono<Boolean> markProcessed(String scope, String eventId);
+
+    /**
+     * 撤销事件的已处理标记，使后续重新投递的同一事件可以再次处理
+     * @param scope 监听者范围
+     * @param eventId 事件ID
+     * @return 完成信号
+     */
+    Mono<Void> forget(String scope, String eventId);
+}
@@ -0,0 +1,34 @@
+package com.ainovel.server.task.service;
+
+import com.ainovel.server.task.event.external.TaskStreamEvent;
+import reactor.core.publisher.Flux;
+
+import java.util.Map;
+
+/**
+ * 任务事件推送服务，通过进程内事件总线向订阅者推送任务生命周期事件
+ */
+public interface TaskEventStreamService {
+
+    /**
+     * 向本节点的订阅者发布事件
+     * @param eventType 事件类型
+     * @param eventData 事件数据，需包含taskId和userId
+     */
+    void publish(String eventType, Map<String, Object> eventData);
+
+    /**
+     * 订阅单个任务的事件：先发送任务当前状态快照，任务结束时流结束
+     * @param taskId 任务ID
+     * @param userId 用户ID，只能订阅自己的任务
+     * @return 任务事件流，任务不存在时发出ResourceNotFoundException
+     */
+    Flux<TaskStreamEvent> streamTask(String taskId, String userId);
+
+    /**
+     * 订阅用户所有任务的事件：先发送进行中任务的快照，之后持续推送直到取消订阅
+     * @param userId 用户ID
+     * @return 任务事件流
+     */
+    Flux<TaskStreamEvent> streamUserTasks(String userId);
+}
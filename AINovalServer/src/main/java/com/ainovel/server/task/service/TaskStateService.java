@@ -1,9 +1,11 @@
 package com.ainovel.server.task.service;
 
+import java.util.List;
 import java.util.Map;
 import java.time.Instant;
 
 import com.ainovel.server.task.model.BackgroundTask;
+import com.ainovel.server.task.model.ProgressDelta;
 import com.ainovel.server.task.model.TaskStatus;
 
 import reactor.core.publisher.Flux;
@@ -34,6 +36,16 @@ public interface TaskStateService {
      */
     Mono<BackgroundTask> createSubTask(String userId, String taskType, Object parameters, String parentTaskId);
     
+    /**
+     * 批量创建同一类型的子任务，子任务以一次批量插入写入，并在父任务的子任务状态摘要中累加排队数
+     * @param userId 用户ID
+     * @param taskType 任务类型
+     * @param parametersList 各子任务的参数
+     * @param parentTaskId 父任务ID
+     * @return 创建的子任务列表的Mono，顺序与参数列表一致
+     */
+    Mono<List<BackgroundTask>> createSubTasks(String userId, String taskType, List<?> parametersList, String parentTaskId);
+    
     /**
      * 尝试将任务状态设置为运行中（原子操作）
      * @param taskId 任务ID
@@ -57,6 +69,44 @@ public interface TaskStateService {
      */
     Mono<Void> recordProgress(String taskId, Object progressData);
     
+    /**
+     * 直接写入任务的初始进度，不经过写缓冲
+     * 有子任务的父任务须在提交子任务前调用，子任务状态聚合器在其上按字段累加计数
+     * @param taskId 任务ID
+     * @param progressData 初始进度数据
+     * @return 写入完成信号
+     */
+    Mono<Void> initializeProgress(String taskId, Object progressData);
+
+    /**
+     * 以单条原子更新累加父任务进度（不依赖任务当前状态），用于子任务并发上报
+     * @param taskId 父任务ID
+     * @param taskType 期望的父任务类型，类型不符时不更新
+     * @param delta 进度增量，字段路径相对于 progress
+     * @return 更新后的任务，任务不存在、类型不符或进度不是文档时为空
+     */
+    Mono<BackgroundTask> applyProgressDelta(String taskId, String taskType, ProgressDelta delta);
+    
+    /**
+     * 当 progress 中已处理计数之和达到总数时，原子地认领父任务的最终结算权
+     * 并发调用中只有一个会返回任务，已取消或已结算的任务不会被认领
+     * @param taskId 父任务ID
+     * @param totalField 总数字段（相对于 progress）
+     * @param settledFields 累加后与总数比较的计数字段（相对于 progress）
+     * @return 认领成功时返回任务，否则为空
+     */
+    Mono<BackgroundTask> claimSubTasksSettlement(String taskId, String totalField, String... settledFields);
+    
+    /**
+     * 写入父任务聚合后的最终状态，与任务当前状态无关（父任务在提交完子任务后即已结束执行）
+     * @param taskId 父任务ID
+     * @param status 最终状态
+     * @param result 聚合结果，可为null
+     * @param errorInfo 错误信息，可为null
+     * @return 完成信号
+     */
+    Mono<Void> recordSettlement(String taskId, TaskStatus status, Object result, Map<String, Object> errorInfo);
+    
     /**
      * 记录任务完成
      * @param taskId 任务ID
@@ -1,5 +1,6 @@
 package com.ainovel.server.task.service;
 
+import java.util.List;
 import java.util.UUID;
 import reactor.core.publisher.Mono;
 
@@ -31,6 +32,18 @@ public interface TaskSubmissionService {
         return submitTask(userId, taskType, parameters, null);
     }
     
+    /**
+     * 批量提交同一类型的子任务
+     * 子任务以一次批量插入创建并初始化父任务的子任务状态摘要，任务消息按批发送并等待发布确认
+     * 
+     * @param userId 用户ID
+     * @param taskType 任务类型
+     * @param parametersList 各子任务的参数
+     * @param parentTaskId 父任务ID
+     * @return 创建的子任务ID列表的Mono，顺序与参数列表一致
+     */
+    Mono<List<String>> submitSubTasks(String userId, String taskType, List<?> parametersList, String parentTaskId);
+    
     /**
      * 获取任务状态
      * 
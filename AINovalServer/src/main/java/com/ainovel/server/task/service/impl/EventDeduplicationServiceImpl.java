@@ -0,0 +1,116 @@
+package com.ainovel.server.task.service.impl;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import com.ainovel.server.config.EventDedupeConfiguration;
+import com.ainovel.server.task.model.ProcessedEvent;
+import com.ainovel.server.task.service.EventDeduplicationService;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+/**
+ * EventDeduplicationService的实现
+ * 本地使用分段轮换的时间窗口过滤重复事件；开启持久化时，本地首次出现的事件再以主键插入MongoDB，
+ * 由唯一主键在节点间判重，记录由TTL索引在保留期后清理
+ */
+@Slf4j
+@Service
+public class EventDeduplicationServiceImpl implements EventDeduplicationService {
+
+    private final EventDedupeConfiguration configuration;
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final RotatingEventIdWindow window;
+    private final Counter duplicates;
+
+    @Autowired
+    public EventDeduplicationServiceImpl(EventDedupeConfiguration configuration,
+                                         ReactiveMongoTemplate mongoTemplate,
+                                         MeterRegistry meterRegistry) {
+        this(configuration, mongoTemplate, meterRegistry, Clock.systemUTC());
+    }
+
+    EventDeduplicationServiceImpl(EventDedupeConfiguration configuration,
+                                  ReactiveMongoTemplate mongoTemplate,
+                                  MeterRegistry meterRegistry,
+                                  Clock clock) {
+        this.configuration = configuration;
+        this.mongoTemplate = mongoTemplate;
+        this.window = new RotatingEventIdWindow(Duration.ofSeconds(configuration.getRetentionSeconds()).toMillis(),
+                configuration.getSegments(), configuration.getMaxEntriesPerSegment(), clock);
+        this.duplicates = Counter.builder("tasks.events.duplicates")
+                .description("被去重丢弃的重复任务事件数")
+                .register(meterRegistry);
+        Gauge.builder("tasks.events.dedupe.entries", window, RotatingEventIdWindow::size)
+                .description("本地去重窗口中的事件ID数")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Mono<Boolean> markProcessed(String scope, String eventId) {
+        if (eventId == null) {
+            log.warn("事件 ID 为 null，无法进行幂等性检查: scope={}", scope);
+            return Mono.just(false);
+        }
+        String key = scope + ":" + eventId;
+        if (!window.markIfAbsent(key)) {
+            duplicates.increment();
+            return Mono.just(false);
+        }
+        if (!configuration.isPersistentEnabled()) {
+            return Mono.just(true);
+        }
+
+        Instant now = Instant.now();
+        ProcessedEvent record = ProcessedEvent.builder()
+                .id(key)
+                .processedAt(now)
+                .expireAt(now.plusSeconds(configuration.getRetentionSeconds()))
+                .build();
+        return mongoTemplate.insert(record)
+                .thenReturn(true)
+                .onErrorResume(DuplicateKeyException.class, e -> {
+                    duplicates.increment();
+                    return Mono.just(false);
+                })
+                .onErrorResume(e -> {
+                    // 持久化去重不可用时退化为本地去重，宁可重复处理也不丢事件
+                    log.warn("记录已处理事件失败，仅按本地窗口去重: key={}, error={}", key, e.getMessage());
+                    return Mono.just(true);
+                });
+    }
+
+    @Override
+    public Mono<Void> forget(String scope, String eventId) {
+        if (eventId == null) {
+            return Mono.empty();
+        }
+        String key = scope + ":" + eventId;
+        window.remove(key);
+        if (!configuration.isPersistentEnabled()) {
+            return Mono.empty();
+        }
+        return mongoTemplate.remove(new Query(Criteria.where("_id").is(key)), ProcessedEvent.class)
+                .onErrorResume(e -> {
+                    log.warn("撤销已处理事件记录失败: key={}, error={}", key, e.getMessage());
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    int localSize() {
+        return window.size();
+    }
+}
@@ -2,116 +2,173 @@ package com.ainovel.server.task.service.impl;
 
 import com.ainovel.server.config.RateLimiterConfiguration;
 import com.ainovel.server.task.service.RateLimiterService;
+import com.google.common.util.concurrent.RateLimiter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
-// import org.springframework.data.redis.core.ReactiveRedisTemplate;
-// import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.context.annotation.Primary;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
 
 import jakarta.annotation.PostConstruct;
 import java.time.Duration;
-import java.time.Instant;
-import java.util.Arrays;
 import java.util.List;
-import java.util.concurrent.TimeoutException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 基于Redis的分布式限流服务实现
- * 
- * 此实现使用Redis实现分布式限流，适用于多实例部署，
- * 可以精确控制所有实例的总体调用速率。
- * 
- * 注意：当前实现被注释以解决编译问题，需先添加spring-boot-starter-data-redis依赖
+ *
+ * 此实现使用Redis实现分布式令牌桶，适用于多实例部署，
+ * 可以精确控制所有实例对同一资源的总体调用速率。
+ *
+ * - 令牌桶状态只在Lua脚本中原子地读写，时间取自Redis服务器，避免节点时钟漂移
+ * - 每次从Redis批量预取令牌（租约），热路径优先消费本地租约，减少网络往返
+ * - Redis不可用或超时时回退到本地令牌桶（按 rate/expectedNodes 计算），冷却后再尝试Redis
  */
 @Service
+@Primary
 @ConditionalOnProperty(name = "task.ratelimiter.type", havingValue = "redis")
 public class RedisRateLimiterServiceImpl implements RateLimiterService {
 
     private static final Logger logger = LoggerFactory.getLogger(RedisRateLimiterServiceImpl.class);
-    
-    @Autowired
-    private RateLimiterConfiguration configuration;
-    
-    /* 
-    @Autowired
-    private ReactiveRedisTemplate<String, String> redisTemplate;
-    
-    private RedisScript<List<Long>> redisRateLimiterScript;
-    */
-    
-    // Redis脚本，实现令牌桶算法
-    private static final String RATE_LIMITER_SCRIPT = 
+
+    /**
+     * 未获取到令牌且无法估算等待时间时的默认重试间隔(毫秒)
+     */
+    private static final long DEFAULT_RETRY_INTERVAL_MILLIS = 50;
+
+    // Redis脚本，实现令牌桶算法，一次请求可预取多个令牌，返回 { 实际授予数, 下一个令牌的等待毫秒数 }
+    private static final String RATE_LIMITER_SCRIPT =
             "local tokens_key = KEYS[1]\n" +
             "local timestamp_key = KEYS[2]\n" +
             "local rate = tonumber(ARGV[1])\n" +
             "local capacity = tonumber(ARGV[2])\n" +
-            "local now = tonumber(ARGV[3])\n" +
-            "local requested = tonumber(ARGV[4])\n" +
-            "-- 初始化令牌桶\n" +
-            "local fill_time = capacity/rate\n" +
+            "local requested = tonumber(ARGV[3])\n" +
+            "-- 使用Redis服务器时间，保证所有节点看到同一时钟\n" +
+            "local time = redis.call('time')\n" +
+            "local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)\n" +
+            "local fill_time = capacity / rate\n" +
+            "local ttl = math.max(1, math.ceil(fill_time * 2))\n" +
             "local last_tokens = tonumber(redis.call('get', tokens_key)) or capacity\n" +
-            "local last_refreshed = tonumber(redis.call('get', timestamp_key)) or 0\n" +
-            "local delta = math.max(0, now-last_refreshed)\n" +
-            "local filled_tokens = math.min(capacity, last_tokens+(delta*rate))\n" +
-            "local allowed = filled_tokens >= requested\n" +
-            "local new_tokens = filled_tokens\n" +
-            "if allowed then\n" +
-            "  new_tokens = filled_tokens - requested\n" +
+            "local last_refreshed = tonumber(redis.call('get', timestamp_key)) or now\n" +
+            "local delta = math.max(0, now - last_refreshed) / 1000\n" +
+            "local filled_tokens = math.min(capacity, last_tokens + (delta * rate))\n" +
+            "local granted = math.min(requested, math.floor(filled_tokens))\n" +
+            "local new_tokens = filled_tokens - granted\n" +
+            "local wait_millis = 0\n" +
+            "if granted < 1 then\n" +
+            "  wait_millis = math.ceil((1 - new_tokens) / rate * 1000)\n" +
             "end\n" +
-            "redis.call('set', tokens_key, new_tokens)\n" +
-            "redis.call('set', timestamp_key, now)\n" +
             "-- 设置令牌桶和时间戳的过期时间，避免Redis内存泄漏\n" +
-            "redis.call('expire', tokens_key, math.ceil(fill_time*2))\n" +
-            "redis.call('expire', timestamp_key, math.ceil(fill_time*2))\n" +
-            "return { new_tokens, allowed }";
-            
+            "redis.call('set', tokens_key, new_tokens, 'EX', ttl)\n" +
+            "redis.call('set', timestamp_key, now, 'EX', ttl)\n" +
+            "return { granted, wait_millis }";
+
+    // 只读脚本：按与上面相同的方式计算补充后的可用令牌数，不修改令牌桶
+    private static final String AVAILABLE_TOKENS_SCRIPT =
+            "local rate = tonumber(ARGV[1])\n" +
+            "local capacity = tonumber(ARGV[2])\n" +
+            "local time = redis.call('time')\n" +
+            "local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)\n" +
+            "local last_tokens = tonumber(redis.call('get', KEYS[1])) or capacity\n" +
+            "local last_refreshed = tonumber(redis.call('get', KEYS[2])) or now\n" +
+            "local delta = math.max(0, now - last_refreshed) / 1000\n" +
+            "return math.floor(math.min(capacity, last_tokens + (delta * rate)))";
+
+    private final RateLimiterConfiguration configuration;
+
+    private final ReactiveStringRedisTemplate redisTemplate;
+
+    private final RedisScript<List<Long>> redisRateLimiterScript = listScript(RATE_LIMITER_SCRIPT);
+
+    private final RedisScript<Long> availableTokensScript = RedisScript.of(AVAILABLE_TOKENS_SCRIPT, Long.class);
+
+    /**
+     * 本地持有的令牌租约
+     */
+    private final Map<String, LocalLease> leases = new ConcurrentHashMap<>();
+
+    /**
+     * Redis不可用时的本地回退限流器
+     */
+    private final Map<String, RateLimiter> fallbackLimiters = new ConcurrentHashMap<>();
+
+    /**
+     * 在此时间之前不再访问Redis，直接使用本地回退
+     */
+    private volatile long storeRetryAtMillis = 0;
+
+    @Autowired
+    public RedisRateLimiterServiceImpl(RateLimiterConfiguration configuration,
+                                       ReactiveStringRedisTemplate redisTemplate) {
+        this.configuration = configuration;
+        this.redisTemplate = redisTemplate;
+    }
+
     @PostConstruct
     public void init() {
-        // 创建Redis脚本
-        // redisRateLimiterScript = RedisScript.of(RATE_LIMITER_SCRIPT, List.class);
-        
-        logger.info("Redis分布式限流服务初始化完成，但功能被暂时禁用，默认限流：{}每秒", 
-                configuration.getDefault_().getRate());
-        
-        logger.warn("Redis限流服务被禁用！请添加spring-boot-starter-data-redis依赖并解注释相关代码。");
-    }
-    
+        logger.info("Redis分布式限流服务初始化完成，默认限流：{}每秒，预取批量：{}，预期节点数：{}",
+                configuration.getDefault_().getRate(),
+                configuration.getDefault_().getLeaseBatchSize(),
+                configuration.getExpectedNodes());
+    }
+
     @Override
     public Mono<Boolean> acquirePermit(String userId, String resource) {
-        logger.warn("Redis限流服务被禁用，默认返回允许请求。请添加Redis相关依赖并解注释相关代码。");
-        return Mono.just(true);
+        return tryAcquire(resource).map(waitMillis -> waitMillis == 0);
     }
 
     @Override
     public Mono<Void> waitForPermit(String userId, String resource, Duration timeout) {
-        logger.warn("Redis限流服务被禁用，默认立即返回。请添加Redis相关依赖并解注释相关代码。");
-        return Mono.empty();
+        return Mono.defer(() -> waitUntil(resource, System.currentTimeMillis() + timeout.toMillis()));
     }
 
     @Override
     public Mono<Void> releasePermit(String userId, String resource) {
-        logger.warn("Redis限流服务被禁用，无需释放。请添加Redis相关依赖并解注释相关代码。");
+        // 令牌桶按速率补充，令牌消费后无需归还
         return Mono.empty();
     }
 
     @Override
     public Mono<Integer> getAvailablePermits(String resource) {
-        logger.warn("Redis限流服务被禁用，返回配置的突发容量作为估计值");
-        return Mono.just(configuration.getConfigFor(resource).getBurstCapacity());
+        int local = localTokens(resource);
+        if (isStoreSuspended()) {
+            return Mono.just(local);
+        }
+        RateLimiterConfiguration.RateConfig config = configuration.getConfigFor(resource);
+        return redisTemplate.execute(availableTokensScript, List.of(tokensKey(resource), timestampKey(resource)),
+                        List.of(String.valueOf(config.getRate()), String.valueOf(config.getBurstCapacity())))
+                .next()
+                .map(remote -> remote.intValue() + local)
+                .timeout(Duration.ofMillis(configuration.getStoreTimeoutMillis()))
+                .onErrorResume(e -> {
+                    markStoreUnavailable(e);
+                    return Mono.just(local);
+                });
     }
 
     @Override
     public Mono<Void> resetLimiter(String resource) {
-        logger.warn("Redis限流服务被禁用，无法重置限流器。请添加Redis相关依赖并解注释相关代码。");
-        return Mono.empty();
+        leases.remove(resource);
+        fallbackLimiters.remove(resource);
+        return redisTemplate.delete(tokensKey(resource), timestampKey(resource))
+                .doOnNext(count -> logger.info("已重置分布式限流器: {}", resource))
+                .onErrorResume(e -> {
+                    logger.warn("重置分布式限流器失败: {}, 错误: {}", resource, e.getMessage());
+                    return Mono.empty();
+                })
+                .then();
     }
 
     // 以下是旧接口方法，保留以兼容现有代码
     // 这些方法在将来会被移除
-    
+
     /**
      * @deprecated 使用 {@link #acquirePermit(String, String)} 替代
      */
@@ -122,26 +179,164 @@ public class RedisRateLimiterServiceImpl implements RateLimiterService {
     }
 
     /**
-     * @deprecated 使用 {@link #acquirePermit(String, String)} 替代
+     * @deprecated 使用 {@link #waitForPermit(String, String, Duration)} 替代
      */
     @Deprecated
     public boolean acquirePermit(String providerOrModelKey, long timeoutMillis) {
-        logger.warn("Redis限流服务被禁用，默认返回允许请求。请添加Redis相关依赖并解注释相关代码。");
-        return true;
+        return Boolean.TRUE.equals(waitForPermit(null, providerOrModelKey, Duration.ofMillis(timeoutMillis))
+                .thenReturn(true)
+                .onErrorReturn(false)
+                .block());
     }
 
     /**
-     * @deprecated 使用 {@link #getAvailablePermits(String)} 替代 
+     * @deprecated 使用 {@link #getAvailablePermits(String)} 替代
      * 注意：该方法返回的是double类型，新方法返回Mono<Integer>
      */
     @Deprecated
     public double getAvailablePermitsDeprecated(String providerOrModelKey) {
-        logger.warn("Redis限流服务被禁用，返回配置的突发容量作为估计值");
-        return configuration.getConfigFor(providerOrModelKey).getBurstCapacity();
+        Integer permits = getAvailablePermits(providerOrModelKey).block();
+        return permits != null ? permits : 0;
     }
 
     @Override
     public double getConfiguredRate(String providerOrModelKey) {
         return configuration.getConfigFor(providerOrModelKey).getRate();
     }
-} 
\ No newline at end of file
+
+    /**
+     * 尝试获取一个令牌
+     *
+     * @param resource 资源标识
+     * @return 0 表示获取成功，否则为建议的等待毫秒数
+     */
+    private Mono<Long> tryAcquire(String resource) {
+        if (takeLocalToken(resource)) {
+            return Mono.just(0L);
+        }
+        if (isStoreSuspended()) {
+            return Mono.fromSupplier(() -> tryAcquireFallback(resource));
+        }
+
+        RateLimiterConfiguration.RateConfig config = configuration.getConfigFor(resource);
+        int batchSize = Math.max(1, Math.min(config.getLeaseBatchSize(), config.getBurstCapacity()));
+        List<String> keys = List.of(tokensKey(resource), timestampKey(resource));
+
+        return redisTemplate.execute(redisRateLimiterScript, keys,
+                        List.of(String.valueOf(config.getRate()),
+                                String.valueOf(config.getBurstCapacity()),
+                                String.valueOf(batchSize)))
+                .next()
+                .timeout(Duration.ofMillis(configuration.getStoreTimeoutMillis()))
+                .map(result -> {
+                    long granted = result.get(0);
+                    long waitMillis = result.get(1);
+                    if (granted < 1) {
+                        return Math.max(1L, waitMillis);
+                    }
+                    // 第一个令牌给当前请求，其余放入本地租约
+                    if (granted > 1) {
+                        addLocalTokens(resource, (int) granted - 1, config.getLeaseTtlMillis());
+                    }
+                    return 0L;
+                })
+                .onErrorResume(e -> {
+                    markStoreUnavailable(e);
+                    return Mono.fromSupplier(() -> tryAcquireFallback(resource));
+                });
+    }
+
+    private Mono<Void> waitUntil(String resource, long deadlineMillis) {
+        return tryAcquire(resource).flatMap(waitMillis -> {
+            if (waitMillis == 0) {
+                return Mono.<Void>empty();
+            }
+            long remaining = deadlineMillis - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return Mono.<Void>error(new RuntimeException("获取许可超时: " + resource));
+            }
+            return Mono.delay(Duration.ofMillis(Math.min(waitMillis, remaining)))
+                    .then(Mono.defer(() -> waitUntil(resource, deadlineMillis)));
+        });
+    }
+
+    private boolean takeLocalToken(String resource) {
+        LocalLease lease = leases.get(resource);
+        return lease != null && lease.take();
+    }
+
+    private int localTokens(String resource) {
+        LocalLease lease = leases.get(resource);
+        return lease != null ? lease.available() : 0;
+    }
+
+    private void addLocalTokens(String resource, int count, long ttlMillis) {
+        leases.computeIfAbsent(resource, k -> new LocalLease()).add(count, ttlMillis);
+    }
+
+    private long tryAcquireFallback(String resource) {
+        RateLimiter limiter = fallbackLimiters.computeIfAbsent(resource, k -> {
+            double rate = configuration.getConfigFor(k).getRate() / Math.max(1, configuration.getExpectedNodes());
+            logger.info("创建本地回退限流器: {} -> {}/秒", k, rate);
+            return RateLimiter.create(rate);
+        });
+        if (limiter.tryAcquire()) {
+            return 0L;
+        }
+        return Math.max(DEFAULT_RETRY_INTERVAL_MILLIS, (long) (1000 / limiter.getRate()));
+    }
+
+    private boolean isStoreSuspended() {
+        return System.currentTimeMillis() < storeRetryAtMillis;
+    }
+
+    private void markStoreUnavailable(Throwable e) {
+        storeRetryAtMillis = System.currentTimeMillis() + configuration.getStoreRetryIntervalMillis();
+        logger.warn("Redis限流存储不可用，{}ms内回退到本地限流: {}",
+                configuration.getStoreRetryIntervalMillis(), e.getMessage());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static RedisScript<List<Long>> listScript(String script) {
+        DefaultRedisScript<List<Long>> redisScript = new DefaultRedisScript<>();
+        redisScript.setScriptText(script);
+        redisScript.setResultType((Class<List<Long>>) (Class<?>) List.class);
+        return redisScript;
+    }
+
+    private String tokensKey(String resource) {
+        return configuration.getRedisKeyPrefix() + "{" + resource + "}:tokens";
+    }
+
+    private String timestampKey(String resource) {
+        return configuration.getRedisKeyPrefix() + "{" + resource + "}:timestamp";
+    }
+
+    /**
+     * 本地令牌租约，过期后剩余令牌作废
+     */
+    private static final class LocalLease {
+        private final AtomicInteger tokens = new AtomicInteger();
+        private volatile long expiresAtMillis;
+
+        boolean take() {
+            if (System.currentTimeMillis() >= expiresAtMillis) {
+                tokens.set(0);
+                return false;
+            }
+            return tokens.getAndUpdate(n -> n > 0 ? n - 1 : 0) > 0;
+        }
+
+        int available() {
+            return System.currentTimeMillis() >= expiresAtMillis ? 0 : tokens.get();
+        }
+
+        void add(int count, long ttlMillis) {
+            if (System.currentTimeMillis() >= expiresAtMillis) {
+                tokens.set(0);
+            }
+            expiresAtMillis = System.currentTimeMillis() + ttlMillis;
+            tokens.addAndGet(count);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.ainovel.server.task.service.impl;
+
+import java.time.Clock;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 按时间分段轮换的事件ID集合
+ *
+ * 每段覆盖 retention/(segments-1) 的时间，当前段写满或到期后轮换并清空最旧的一段，
+ * 因此事件ID至少保留 retention，且总条目数不超过 segments * maxEntriesPerSegment。
+ * 当前段提前写满时会更早淘汰旧ID，以保留时间换取内存上限。
+ */
+final class RotatingEventIdWindow {
+
+    private final Set<String>[] segments;
+    private final long segmentMillis;
+    private final int maxEntriesPerSegment;
+    private final Clock clock;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private volatile int current;
+    private volatile long currentStartedAt;
+
+    @SuppressWarnings("unchecked")
+    RotatingEventIdWindow(long retentionMillis, int segmentCount, int maxEntriesPerSegment, Clock clock) {
+        int count = Math.max(2, segmentCount);
+        this.segments = new Set[count];
+        for (int i = 0; i < count; i++) {
+            segments[i] = ConcurrentHashMap.newKeySet();
+        }
+        this.segmentMillis = Math.max(1, (retentionMillis + count - 2) / (count - 1));
+        this.maxEntriesPerSegment = Math.max(1, maxEntriesPerSegment);
+        this.clock = clock;
+        this.currentStartedAt = clock.millis();
+    }
+
+    /**
+     * 记录事件ID
+     *
+     * @return 窗口内首次出现返回true，否则返回false
+     */
+    boolean markIfAbsent(String key) {
+        rotateIfNeeded();
+        lock.readLock().lock();
+        try {
+            int head = current;
+            for (int i = 1; i < segments.length; i++) {
+                if (segments[(head - i + segments.length) % segments.length].contains(key)) {
+                    return false;
+                }
+            }
+            return segments[head].add(key);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    void remove(String key) {
+        lock.readLock().lock();
+        try {
+            for (Set<String> segment : segments) {
+                segment.remove(key);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    int size() {
+        int size = 0;
+        for (Set<String> segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    private void rotateIfNeeded() {
+        long now = clock.millis();
+        if (now - currentStartedAt < segmentMillis && segments[current].size() < maxEntriesPerSegment) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            long elapsed = now - currentStartedAt;
+            boolean full = segments[current].size() >= maxEntriesPerSegment;
+            if (elapsed < segmentMillis && !full) {
+                return;
+            }
+            // 长时间无事件时一次跨过多段，最多清空全部
+            long steps = Math.max(1, Math.min(segments.length, elapsed / segmentMillis));
+            int head = current;
+            for (long i = 0; i < steps; i++) {
+                head = (head + 1) % segments.length;
+                segments[head].clear();
+            }
+            current = head;
+            currentStartedAt = now;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.ainovel.server.task.service.impl;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+
+import com.ainovel.server.common.exception.ResourceNotFoundException;
+import com.ainovel.server.config.TaskEventStreamConfiguration;
+import com.ainovel.server.repository.BackgroundTaskRepository;
+import com.ainovel.server.task.event.external.TaskStreamEvent;
+import com.ainovel.server.task.model.BackgroundTask;
+import com.ainovel.server.task.model.TaskStatus;
+import com.ainovel.server.task.service.TaskEventStreamService;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+/**
+ * TaskEventStreamService的实现
+ * 所有订阅者共用一个进程内多播总线，每个订阅者在订阅时先接入总线再读取快照，快照之后的事件不会丢失；
+ * 每个订阅者的缓冲有上限，消费过慢时丢弃最旧的非终止事件，不会阻塞发布方和其他订阅者；
+ * 终止事件（完成、失败、取消）总会送达，单任务推送据此结束
+ */
+@Slf4j
+@Service
+public class TaskEventStreamServiceImpl implements TaskEventStreamService {
+
+    private static final Set<String> TERMINAL_EVENTS = Set.of("TASK_COMPLETED", "TASK_FAILED", "TASK_CANCELLED");
+    private static final List<TaskStatus> ACTIVE_STATUSES = List.of(TaskStatus.QUEUED, TaskStatus.RUNNING, TaskStatus.RETRYING);
+
+    private final BackgroundTaskRepository taskRepository;
+    private final TaskEventStreamConfiguration configuration;
+    private final Sinks.Many<TaskStreamEvent> bus = Sinks.many().multicast().directBestEffort();
+    private final AtomicInteger subscribers = new AtomicInteger();
+    private final Counter dropped;
+
+    @Autowired
+    public TaskEventStreamServiceImpl(BackgroundTaskRepository taskRepository,
+                                      TaskEventStreamConfiguration configuration,
+                                      MeterRegistry meterRegistry) {
+        this.taskRepository = taskRepository;
+        this.configuration = configuration;
+        Gauge.builder("tasks.events.stream.subscribers", subscribers, AtomicInteger::get)
+                .description("任务事件推送的订阅者数")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("tasks.events.stream.dropped")
+                .description("订阅者缓冲已满而丢弃的任务事件数")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void publish(String eventType, Map<String, Object> eventData) {
+        Object taskId = eventData.get("taskId");
+        Object userId = eventData.get("userId");
+        if (taskId == null || userId == null) {
+            log.debug("事件缺少taskId或userId，不推送: {}", eventType);
+            return;
+        }
+        Map<String, Object> data = new HashMap<>(eventData);
+        data.remove("taskId");
+        data.remove("userId");
+        Object taskType = data.remove("taskType");
+        TaskStreamEvent event = TaskStreamEvent.builder()
+                .eventType(eventType)
+                .taskId(taskId.toString())
+                .taskType(taskType != null ? taskType.toString() : null)
+                .userId(userId.toString())
+                .data(data)
+                .timestamp(Instant.now())
+                .build();
+        // 多播总线要求串行发布；没有订阅者时事件直接丢弃
+        synchronized (bus) {
+            bus.tryEmitNext(event);
+        }
+    }
+
+    @Override
+    public Flux<TaskStreamEvent> streamTask(String taskId, String userId) {
+        return subscribe(event -> taskId.equals(event.getTaskId()), pending ->
+                taskRepository.findByIdAndUserId(taskId, userId)
+                        .switchIfEmpty(Mono.error(new ResourceNotFoundException("任务", taskId)))
+                        .flatMapMany(task -> {
+                            TaskStreamEvent snapshot = snapshotOf(task);
+                            if (task.getStatus() != null && task.getStatus().isTerminal()) {
+                                return Flux.just(snapshot);
+                            }
+                            return Flux.just(snapshot).concatWith(
+                                    pending.takeUntil(event -> TERMINAL_EVENTS.contains(event.getEventType())));
+                        }));
+    }
+
+    @Override
+    public Flux<TaskStreamEvent> streamUserTasks(String userId) {
+        return subscribe(event -> userId.equals(event.getUserId()), pending ->
+                taskRepository.findByUserIdAndStatusIn(userId, ACTIVE_STATUSES,
+                                PageRequest.of(0, configuration.getSnapshotLimit(), Sort.by(Sort.Direction.DESC, "timestamps.createdAt")))
+                        .map(this::snapshotOf)
+                        .concatWith(pending));
+    }
+
+    /**
+     * 先接入总线缓冲匹配的事件，再由body读取快照并拼接缓冲的事件流，订阅结束时断开总线
+     */
+    private Flux<TaskStreamEvent> subscribe(Predicate<TaskStreamEvent> filter,
+                                            Function<Flux<TaskStreamEvent>, Flux<TaskStreamEvent>> body) {
+        return Flux.defer(() -> {
+            SubscriberBuffer pending = new SubscriberBuffer(Math.max(1, configuration.getSubscriberBufferSize()));
+            Disposable live = bus.asFlux()
+                    .filter(filter)
+                    .subscribe(pending::offer);
+            subscribers.incrementAndGet();
+            return body.apply(pending.asFlux())
+                    .doFinally(signal -> {
+                        live.dispose();
+                        subscribers.decrementAndGet();
+                    });
+        });
+    }
+
+    /**
+     * 单个订阅者的有界缓冲：按下游请求量投递，已满时逐出最旧的非终止事件
+     */
+    private final class SubscriberBuffer {
+        private final int capacity;
+        private final Deque<TaskStreamEvent> queue = new ArrayDeque<>();
+        private FluxSink<TaskStreamEvent> sink;
+
+        private SubscriberBuffer(int capacity) {
+            this.capacity = capacity;
+        }
+
+        synchronized void offer(TaskStreamEvent event) {
+            if (queue.size() >= capacity) {
+                evictOldest();
+                dropped.increment();
+            }
+            queue.addLast(event);
+            drain();
+        }
+
+        Flux<TaskStreamEvent> asFlux() {
+            return Flux.create(emitter -> {
+                synchronized (this) {
+                    sink = emitter;
+                }
+                emitter.onRequest(n -> drain());
+            });
+        }
+
+        private synchronized void drain() {
+            while (sink != null && !queue.isEmpty() && sink.requestedFromDownstream() > 0) {
+                sink.next(queue.pollFirst());
+            }
+        }
+
+        private void evictOldest() {
+            Iterator<TaskStreamEvent> iterator = queue.iterator();
+            while (iterator.hasNext()) {
+                if (!TERMINAL_EVENTS.contains(iterator.next().getEventType())) {
+                    iterator.remove();
+                    return;
+                }
+            }
+            queue.pollFirst();
+        }
+    }
+
+    private TaskStreamEvent snapshotOf(BackgroundTask task) {
+        Map<String, Object> data = new HashMap<>();
+        if (task.getProgress() != null) {
+            data.put("progress", task.getProgress());
+        }
+        if (task.getResult() != null) {
+            data.put("result", task.getResult());
+        }
+        if (task.getErrorInfo() != null) {
+            data.put("errorInfo", task.getErrorInfo());
+        }
+        if (task.getParentTaskId() != null) {
+            data.put("parentTaskId", task.getParentTaskId());
+        }
+        if (task.getSubTaskStatusSummary() != null) {
+            data.put("subTaskStatusSummary", task.getSubTaskStatusSummary());
+        }
+        return TaskStreamEvent.builder()
+                .eventType(TaskStreamEvent.TASK_SNAPSHOT)
+                .taskId(task.getId())
+                .taskType(task.getTaskType())
+                .userId(task.getUserId())
+                .status(task.getStatus() != null ? task.getStatus().name() : null)
+                .data(data)
+                .timestamp(Instant.now())
+                .build();
+    }
+}
@@ -0,0 +1,198 @@
+package com.ainovel.server.task.service.impl;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import com.ainovel.server.config.TaskProgressConfiguration;
+import com.ainovel.server.task.model.BackgroundTask;
+import com.ainovel.server.task.model.TaskStatus;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * 任务进度写缓冲
+ *
+ * 每个任务只保留最新一次上报的进度，定时将所有任务的待写进度合并为一次批量更新；
+ * 任务离开RUNNING状态前由TaskStateService单独写入该任务的待写进度，停机时由优雅停机配置写入全部待写进度。
+ * 批量写入失败时，未被更新进度覆盖的条目放回缓冲，下一个间隔重试。
+ *
+ * 父任务的进度由子任务按字段原子累加后（progressAggregated），整体写入的进度不再覆盖它，避免抹掉已累加的计数；
+ * 父任务须在提交子任务前用 initialize 直接写入初始进度。
+ */
+@Slf4j
+@Component
+public class TaskProgressWriteBuffer {
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final long flushIntervalMillis;
+    private final Map<String, Object> pending = new ConcurrentHashMap<>();
+    private final Counter coalesced;
+    private final Counter written;
+    private Disposable flusher;
+
+    @Autowired
+    public TaskProgressWriteBuffer(ReactiveMongoTemplate mongoTemplate,
+                                   TaskProgressConfiguration configuration,
+                                   MeterRegistry meterRegistry) {
+        this.mongoTemplate = mongoTemplate;
+        this.flushIntervalMillis = configuration.getFlushIntervalMillis();
+        Gauge.builder("tasks.progress.pending", pending, Map::size)
+                .description("等待写入数据库的任务进度数")
+                .register(meterRegistry);
+        this.coalesced = Counter.builder("tasks.progress.coalesced")
+                .description("被同一任务更新的进度覆盖而未写入的进度上报数")
+                .register(meterRegistry);
+        this.written = Counter.builder("tasks.progress.written")
+                .description("写入数据库的任务进度数")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (flushIntervalMillis <= 0) {
+            return;
+        }
+        flusher = Flux.interval(Duration.ofMillis(flushIntervalMillis))
+                .onBackpressureDrop()
+                .concatMap(tick -> flushAll(), 1)
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (flusher != null) {
+            flusher.dispose();
+        }
+    }
+
+    /**
+     * 记录任务进度，覆盖该任务尚未写入的进度
+     *
+     * @param taskId 任务ID
+     * @param progress 进度数据
+     * @return 写入缓冲后完成；未启用缓冲时写入数据库后完成
+     */
+    public Mono<Void> record(String taskId, Object progress) {
+        if (flushIntervalMillis <= 0) {
+            return write(taskId, progress);
+        }
+        return Mono.fromRunnable(() -> {
+            if (pending.put(taskId, progress) != null) {
+                coalesced.increment();
+            }
+        });
+    }
+
+    /**
+     * 直接写入任务的初始进度，丢弃该任务尚未写入的进度
+     * 用于提交子任务前写入父任务的初始进度，子任务状态聚合器在其上按字段累加
+     *
+     * @param taskId 任务ID
+     * @param progress 初始进度
+     * @return 写入完成信号
+     */
+    public Mono<Void> initialize(String taskId, Object progress) {
+        return Mono.defer(() -> {
+            pending.remove(taskId);
+            Update update = new Update()
+                    .set("progress", progress)
+                    .unset("progressAggregated")
+                    .set("timestamps.updatedAt", Instant.now());
+            Query query = new Query(Criteria.where("_id").is(taskId)
+                                             .and("status").is(TaskStatus.RUNNING));
+            return mongoTemplate.updateFirst(query, update, BackgroundTask.class)
+                    .doOnSuccess(result -> written.increment())
+                    .then();
+        });
+    }
+
+    /**
+     * 立即写入单个任务的待写进度
+     *
+     * @param taskId 任务ID
+     * @return 写入完成信号，没有待写进度时直接完成
+     */
+    public Mono<Void> flush(String taskId) {
+        return Mono.defer(() -> {
+            Object progress = pending.remove(taskId);
+            return progress == null ? Mono.empty() : write(taskId, progress);
+        });
+    }
+
+    /**
+     * 将所有待写进度合并为一次批量更新
+     *
+     * @return 写入完成信号，失败时也正常结束
+     */
+    public Mono<Void> flushAll() {
+        return Mono.defer(() -> {
+            Map<String, Object> batch = new HashMap<>();
+            for (String taskId : pending.keySet()) {
+                Object progress = pending.remove(taskId);
+                if (progress != null) {
+                    batch.put(taskId, progress);
+                }
+            }
+            if (batch.isEmpty()) {
+                return Mono.empty();
+            }
+
+            Instant now = Instant.now();
+            ReactiveBulkOperations operations = mongoTemplate.bulkOps(BulkMode.UNORDERED, BackgroundTask.class);
+            batch.forEach((taskId, progress) -> operations.updateOne(runningTask(taskId), progressUpdate(progress, now)));
+            return operations.execute()
+                    .doOnSuccess(result -> written.increment(batch.size()))
+                    .then()
+                    .onErrorResume(e -> {
+                        log.warn("批量写入 {} 个任务进度失败，下个间隔重试: {}", batch.size(), e.getMessage());
+                        batch.forEach(pending::putIfAbsent);
+                        return Mono.empty();
+                    });
+        });
+    }
+
+    /**
+     * 等待写入的任务进度数
+     */
+    public int pendingCount() {
+        return pending.size();
+    }
+
+    private Mono<Void> write(String taskId, Object progress) {
+        return mongoTemplate.updateFirst(runningTask(taskId), progressUpdate(progress, Instant.now()), BackgroundTask.class)
+                .doOnSuccess(result -> written.increment())
+                .then();
+    }
+
+    private Query runningTask(String taskId) {
+        return new Query(Criteria.where("_id").is(taskId)
+                                 .and("status").is(TaskStatus.RUNNING)
+                                 .and("progressAggregated").ne(true));
+    }
+
+    private Update progressUpdate(Object progress, Instant now) {
+        return new Update()
+                .set("progress", progress)
+                .set("timestamps.updatedAt", now);
+    }
+}
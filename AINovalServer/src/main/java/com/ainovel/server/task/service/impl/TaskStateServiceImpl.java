@@ -10,14 +10,19 @@ import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
 import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.ArithmeticOperators;
+import org.springframework.data.mongodb.core.aggregation.ComparisonOperators;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 
 import com.ainovel.server.repository.BackgroundTaskRepository;
+import com.ainovel.server.service.ai.resilience.UpstreamErrorClassifier;
 import com.ainovel.server.task.model.BackgroundTask;
+import com.ainovel.server.task.model.ProgressDelta;
 import com.ainovel.server.task.model.TaskStatus;
 import com.ainovel.server.task.service.TaskStateService;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -36,14 +41,17 @@ public class TaskStateServiceImpl implements TaskStateService {
     private final BackgroundTaskRepository taskRepository;
     private final ReactiveMongoTemplate mongoTemplate;
     private final ObjectMapper objectMapper;
+    private final TaskProgressWriteBuffer progressWriteBuffer;
     
     @Autowired
     public TaskStateServiceImpl(BackgroundTaskRepository taskRepository, 
                              ReactiveMongoTemplate mongoTemplate,
-                             ObjectMapper objectMapper) {
+                             ObjectMapper objectMapper,
+                             TaskProgressWriteBuffer progressWriteBuffer) {
         this.taskRepository = taskRepository;
         this.mongoTemplate = mongoTemplate;
         this.objectMapper = objectMapper;
+        this.progressWriteBuffer = progressWriteBuffer;
     }
 
     @Override
@@ -86,6 +94,37 @@ public class TaskStateServiceImpl implements TaskStateService {
         return taskRepository.save(task);
     }
     
+    @Override
+    public Mono<List<BackgroundTask>> createSubTasks(String userId, String taskType, List<?> parametersList, String parentTaskId) {
+        Instant now = Instant.now();
+        List<BackgroundTask> tasks = parametersList.stream().map(parameters -> {
+            BackgroundTask task = new BackgroundTask();
+            task.setId(UUID.randomUUID().toString());
+            task.setUserId(userId);
+            task.setTaskType(taskType);
+            task.setStatus(TaskStatus.QUEUED);
+            task.setParameters(parameters);
+            task.setParentTaskId(parentTaskId);
+            task.setRetryCount(0);
+            
+            BackgroundTask.TaskTimestamps timestamps = new BackgroundTask.TaskTimestamps();
+            timestamps.setCreatedAt(now);
+            timestamps.setUpdatedAt(now);
+            task.setTimestamps(timestamps);
+            return task;
+        }).collect(Collectors.toList());
+        
+        Query parentQuery = new Query(Criteria.where("_id").is(parentTaskId));
+        Update parentUpdate = new Update()
+                .inc("subTaskStatusSummary." + TaskStatus.QUEUED.name(), tasks.size())
+                .set("timestamps.updatedAt", now);
+        
+        return mongoTemplate.insertAll(tasks)
+                .collectList()
+                .flatMap(inserted -> mongoTemplate.updateFirst(parentQuery, parentUpdate, BackgroundTask.class)
+                        .thenReturn(inserted));
+    }
+    
     /**
      * 通过ID查找任务
      * 
@@ -127,14 +166,83 @@ public class TaskStateServiceImpl implements TaskStateService {
     
     @Override
     public Mono<Void> recordProgress(String taskId, Object progressData) {
+        // 进度只保留最新一次，由写缓冲按间隔批量写入
+        return progressWriteBuffer.record(taskId, progressData);
+    }
+    
+    @Override
+    public Mono<Void> initializeProgress(String taskId, Object progressData) {
+        return progressWriteBuffer.initialize(taskId, progressData);
+    }
+    
+    @Override
+    public Mono<BackgroundTask> applyProgressDelta(String taskId, String taskType, ProgressDelta delta) {
         Query query = new Query(Criteria.where("_id").is(taskId)
-                                   .and("status").is(TaskStatus.RUNNING));
+                                   .and("taskType").is(taskType));
+        if (delta == null || delta.isEmpty()) {
+            return mongoTemplate.findOne(query, BackgroundTask.class);
+        }
         
+        // 标记进度已按字段累加，之后整体写入的进度不会覆盖累加结果
         Update update = new Update()
-                .set("progress", progressData)
+                .set("progressAggregated", true)
                 .set("timestamps.updatedAt", Instant.now());
+        delta.getIncrements().forEach((field, amount) -> update.inc("progress." + field, amount));
+        delta.getFields().forEach((field, value) -> update.set("progress." + field, value));
+        delta.getAppends().forEach((field, value) -> update.push("progress." + field, value));
+        delta.getMaximums().forEach((field, value) -> update.max("progress." + field, value));
         
-        return mongoTemplate.updateFirst(query, update, BackgroundTask.class)
+        return mongoTemplate.findAndModify(query, update,
+                        FindAndModifyOptions.options().returnNew(true), BackgroundTask.class)
+                .onErrorResume(e -> {
+                    // progress 尚未初始化为文档（例如父任务只写入了数值进度）时无法按字段更新
+                    log.error("累加任务 {} 进度失败: {}", taskId, e.getMessage());
+                    return Mono.empty();
+                });
+    }
+    
+    @Override
+    public Mono<BackgroundTask> claimSubTasksSettlement(String taskId, String totalField, String... settledFields) {
+        ArithmeticOperators.Add settled = ArithmeticOperators.Add.valueOf("progress." + settledFields[0]);
+        for (int i = 1; i < settledFields.length; i++) {
+            settled = settled.add("progress." + settledFields[i]);
+        }
+        
+        // 条件认领：计数已达总数且尚未结算，并发调用中只有一个能匹配成功
+        Query query = new Query(new Criteria().andOperator(
+                Criteria.where("_id").is(taskId),
+                Criteria.where("subTasksSettled").ne(true),
+                Criteria.where("status").ne(TaskStatus.CANCELLED),
+                Criteria.expr(ComparisonOperators.Gte.valueOf(settled).greaterThanEqualTo("progress." + totalField))));
+        
+        Update update = new Update()
+                .set("subTasksSettled", true)
+                .set("timestamps.updatedAt", Instant.now());
+        
+        return mongoTemplate.findAndModify(query, update,
+                FindAndModifyOptions.options().returnNew(true), BackgroundTask.class);
+    }
+    
+    @Override
+    public Mono<Void> recordSettlement(String taskId, TaskStatus status, Object result, Map<String, Object> errorInfo) {
+        Instant now = Instant.now();
+        
+        Query query = new Query(Criteria.where("_id").is(taskId)
+                                   .and("status").ne(TaskStatus.CANCELLED));
+        
+        Update update = new Update()
+                .set("status", status)
+                .set("timestamps.completedAt", now)
+                .set("timestamps.updatedAt", now);
+        if (result != null) {
+            update.set("result", result);
+        }
+        if (errorInfo != null) {
+            update.set("errorInfo", errorInfo);
+        }
+        
+        return progressWriteBuffer.flush(taskId)
+                .then(mongoTemplate.updateFirst(query, update, BackgroundTask.class))
                 .then();
     }
     
@@ -151,7 +259,8 @@ public class TaskStateServiceImpl implements TaskStateService {
                 .set("timestamps.completedAt", now)
                 .set("timestamps.updatedAt", now);
         
-        return mongoTemplate.updateFirst(query, update, BackgroundTask.class)
+        return progressWriteBuffer.flush(taskId)
+                .then(mongoTemplate.updateFirst(query, update, BackgroundTask.class))
                 .then();
     }
     
@@ -171,7 +280,8 @@ public class TaskStateServiceImpl implements TaskStateService {
             update.set("timestamps.completedAt", now); // 死信也视为一种"完成"
         }
         
-        return mongoTemplate.updateFirst(query, update, BackgroundTask.class)
+        return progressWriteBuffer.flush(taskId)
+                .then(mongoTemplate.updateFirst(query, update, BackgroundTask.class))
                 .then();
     }
     
@@ -209,6 +319,9 @@ public class TaskStateServiceImpl implements TaskStateService {
                     .collect(Collectors.toList());
             errorInfo.put("stackTrace", stackTraceList);
         }
+        // 上游给出的Retry-After提示，重试调度不会早于该时间
+        UpstreamErrorClassifier.retryAfter(error)
+                .ifPresent(retryAfter -> errorInfo.put("retryAfterMillis", retryAfter.toMillis()));
         
         Instant now = Instant.now();
         
@@ -221,7 +334,8 @@ public class TaskStateServiceImpl implements TaskStateService {
                 .set("nextAttemptTimestamp", nextAttemptTime)
                 .set("timestamps.updatedAt", now);
         
-        return mongoTemplate.updateFirst(query, update, BackgroundTask.class)
+        return progressWriteBuffer.flush(taskId)
+                .then(mongoTemplate.updateFirst(query, update, BackgroundTask.class))
                 .then();
     }
     
@@ -238,7 +352,8 @@ public class TaskStateServiceImpl implements TaskStateService {
                 .inc("retryCount", 1)
                 .set("timestamps.updatedAt", now);
         
-        return mongoTemplate.updateFirst(query, update, BackgroundTask.class)
+        return progressWriteBuffer.flush(taskId)
+                .then(mongoTemplate.updateFirst(query, update, BackgroundTask.class))
                 .then();
     }
     
@@ -253,7 +368,8 @@ public class TaskStateServiceImpl implements TaskStateService {
                 .set("timestamps.completedAt", now)
                 .set("timestamps.updatedAt", now);
         
-        return mongoTemplate.updateFirst(query, update, BackgroundTask.class)
+        return progressWriteBuffer.flush(taskId)
+                .then(mongoTemplate.updateFirst(query, update, BackgroundTask.class))
                 .then();
     }
     
@@ -326,7 +442,8 @@ public class TaskStateServiceImpl implements TaskStateService {
                 .set("timestamps.completedAt", now)
                 .set("timestamps.updatedAt", now);
         
-        return mongoTemplate.findAndModify(query, update, BackgroundTask.class)
+        return progressWriteBuffer.flush(taskId)
+                .then(mongoTemplate.findAndModify(query, update, BackgroundTask.class))
                 .map(task -> true)
                 .defaultIfEmpty(false);
     }
@@ -5,7 +5,8 @@ import com.ainovel.server.task.model.BackgroundTask;
 import com.ainovel.server.task.model.TaskStatus;
 import com.ainovel.server.task.event.internal.TaskApplicationEvent;
 import com.ainovel.server.task.event.internal.TaskSubmittedEvent;
-import com.ainovel.server.task.producer.TaskMessageProducer;
+import com.ainovel.server.task.producer.TaskEventPublisher;
+import com.ainovel.server.task.producer.TaskOutboxRelay;
 import com.ainovel.server.task.service.TaskStateService;
 import com.ainovel.server.task.service.TaskSubmissionService;
 import com.fasterxml.jackson.databind.JsonNode;
@@ -21,6 +22,7 @@ import org.springframework.transaction.reactive.TransactionalOperator;
 
 import java.time.Instant;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.UUID;
@@ -34,25 +36,28 @@ public class TaskSubmissionServiceImpl implements TaskSubmissionService {
 
     private final BackgroundTaskRepository taskRepository;
     private final TaskStateService taskStateService;
-    private final TaskMessageProducer taskMessageProducer;
+    private final TaskEventPublisher taskEventPublisher;
     private final ApplicationEventPublisher eventPublisher;
     private final ObjectMapper objectMapper;
     private final TransactionalOperator transactionalOperator;
+    private final TaskOutboxRelay taskOutboxRelay;
 
     @Autowired
     public TaskSubmissionServiceImpl(
             BackgroundTaskRepository taskRepository,
             TaskStateService taskStateService,
-            TaskMessageProducer taskMessageProducer,
+            TaskEventPublisher taskEventPublisher,
             ApplicationEventPublisher eventPublisher,
             ObjectMapper objectMapper,
-            TransactionalOperator transactionalOperator) {
+            TransactionalOperator transactionalOperator,
+            TaskOutboxRelay taskOutboxRelay) {
         this.taskRepository = taskRepository;
         this.taskStateService = taskStateService;
-        this.taskMessageProducer = taskMessageProducer;
+        this.taskEventPublisher = taskEventPublisher;
         this.eventPublisher = eventPublisher;
         this.objectMapper = objectMapper;
         this.transactionalOperator = transactionalOperator;
+        this.taskOutboxRelay = taskOutboxRelay;
     }
 
     @Override
@@ -72,48 +77,75 @@ public class TaskSubmissionServiceImpl implements TaskSubmissionService {
         
         log.info("准备提交任务，用户ID: {}, 任务类型: {}, 父任务ID: {}", userId, taskType, parentTaskId);
         
-        // 使用响应式事务来确保数据库操作和事件发布的一致性
-        return transactionalOperator.execute(status -> {
-            Mono<String> taskIdMono;
-            
-            // 根据是否有父任务ID选择创建普通任务或子任务
-            if (parentTaskId != null && !parentTaskId.trim().isEmpty()) {
-                log.debug("创建子任务，父任务ID: {}", parentTaskId);
-                taskIdMono = taskStateService.createSubTask(userId, taskType, parameters, parentTaskId)
-                    .map(task -> task.getId());
-            } else {
-                log.debug("创建普通任务");
-                taskIdMono = taskStateService.createTask(userId, taskType, parameters, null);
-            }
-            
-            return taskIdMono.flatMap(taskId -> {
+        String parent = (parentTaskId != null && !parentTaskId.trim().isEmpty()) ? parentTaskId : null;
+        
+        // 任务与发件箱记录在同一事务中写入，事务提交后再由发件箱中继发送任务消息
+        return transactionalOperator.transactional(
+                    taskStateService.createSubTask(userId, taskType, parameters, parent)
+                        .flatMap(task -> taskOutboxRelay.enqueue(List.of(task)).thenReturn(task.getId())))
+            .map(taskId -> {
+                taskOutboxRelay.wakeUp();
+                
                 // 发布任务提交事件
+                String eventId = UUID.randomUUID().toString();
+                TaskSubmittedEvent event = new TaskSubmittedEvent(
+                        this, 
+                        taskId, 
+                        taskType, 
+                        userId, 
+                        parameters);
+                
+                // 设置事件ID以支持幂等性检查
+                event.setEventId(eventId);
+                
+                log.info("发布任务提交事件: taskId={}, eventId={}, taskType={}", 
+                        taskId, eventId, taskType);
+                
                 try {
-                    String eventId = UUID.randomUUID().toString();
-                    TaskSubmittedEvent event = new TaskSubmittedEvent(
-                            this, 
-                            taskId, 
-                            taskType, 
-                            userId, 
-                            parameters);
-                    
-                    // 设置事件ID以支持幂等性检查
-                    event.setEventId(eventId);
-                    
-                    log.info("发布任务提交事件: taskId={}, eventId={}, taskType={}", 
-                            taskId, eventId, taskType);
-                    
                     eventPublisher.publishEvent(event);
-                    
-                    log.debug("任务提交事件已发布，将由TaskSubmissionListener处理后续消息发送到MQ");
                 } catch (Exception e) {
+                    // 任务已提交，事件仅用于状态聚合和外部通知，失败不影响任务执行
                     log.error("发布任务提交事件失败: {} [类型: {}, 用户: {}]", taskId, taskType, userId, e);
-                    return Mono.error(e);
                 }
                 
-                return Mono.just(taskId);
+                return taskId;
+            });
+    }
+    
+    @Override
+    public Mono<List<String>> submitSubTasks(String userId, String taskType, List<?> parametersList, String parentTaskId) {
+        if (userId == null || userId.trim().isEmpty()) {
+            return Mono.error(new IllegalArgumentException("用户ID不能为空"));
+        }
+        
+        if (taskType == null || taskType.trim().isEmpty()) {
+            return Mono.error(new IllegalArgumentException("任务类型不能为空"));
+        }
+        
+        if (parentTaskId == null || parentTaskId.trim().isEmpty()) {
+            return Mono.error(new IllegalArgumentException("父任务ID不能为空"));
+        }
+        
+        if (parametersList == null || parametersList.stream().anyMatch(Objects::isNull)) {
+            return Mono.error(new IllegalArgumentException("任务参数不能为空"));
+        }
+        
+        if (parametersList.isEmpty()) {
+            return Mono.just(List.of());
+        }
+        
+        log.info("准备批量提交子任务，用户ID: {}, 任务类型: {}, 父任务ID: {}, 数量: {}", 
+                userId, taskType, parentTaskId, parametersList.size());
+        
+        // 子任务、父任务状态摘要与发件箱记录在同一事务中写入，事务提交后由发件箱中继按批发送
+        return transactionalOperator.transactional(
+                    taskStateService.createSubTasks(userId, taskType, parametersList, parentTaskId)
+                        .flatMap(tasks -> taskOutboxRelay.enqueue(tasks).thenReturn(tasks)))
+            .map(tasks -> {
+                taskOutboxRelay.wakeUp();
+                log.info("子任务批量提交完成，父任务ID: {}, 数量: {}", parentTaskId, tasks.size());
+                return tasks.stream().map(BackgroundTask::getId).toList();
             });
-        }).single();
     }
     
     @Override
@@ -201,7 +233,8 @@ public class TaskSubmissionServiceImpl implements TaskSubmissionService {
                             eventData.put("status", TaskStatus.CANCELLED.name());
                             eventData.put("timestamp", Instant.now().toString());
                             
-                            return taskMessageProducer.sendTaskEvent("TASK_CANCELLED", eventData)
+                            return taskEventPublisher.publishExternalEvent("TASK_CANCELLED", eventData)
+                                .onErrorResume(e -> Mono.empty()) // 即使事件发送失败，任务取消成功
                                 .thenReturn(true);
                         } catch (Exception e) {
                             log.error("发送任务取消事件消息失败: taskId={}, error={}", 
@@ -0,0 +1,184 @@
+package com.ainovel.server.task.transport;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import com.ainovel.server.config.TaskTransportConfiguration;
+import com.ainovel.server.task.model.BackgroundTask;
+import com.ainovel.server.task.model.TaskOutboxMessage;
+import com.ainovel.server.task.model.TaskStatus;
+import com.ainovel.server.task.service.TaskStateService;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * 进程内任务传输
+ *
+ * 投递进入内存队列，由有界并发直接调用消费者处理，没有序列化和网络往返；到期的重试由重试调度经发件箱重新投递。
+ * 持久性由任务表保证：任务状态在处理过程中写入background_tasks，启动时把QUEUED任务和已到期出队的RETRYING任务
+ * 重新投递，内存中丢失的投递因此不会丢失任务；尚未到期的RETRYING任务由重试调度负责。
+ * 处理出错的投递（相当于消息队列中被拒绝进入死信队列的消息）将任务标记为DEAD_LETTER。
+ * 同一任务在本进程内同时只会有一个投递排队或执行。仅适用于单节点部署。
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "task.transport", name = "mode", havingValue = "local")
+public class LocalTaskTransport implements TaskTransport {
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final TaskStateService taskStateService;
+    private final TaskTransportConfiguration configuration;
+    private final Sinks.Many<Delivery> queue = Sinks.many().unicast().onBackpressureBuffer();
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Counter delivered;
+    private final Counter deadLettered;
+    private Disposable worker;
+
+    @Autowired
+    public LocalTaskTransport(ReactiveMongoTemplate mongoTemplate,
+                              TaskStateService taskStateService,
+                              TaskTransportConfiguration configuration,
+                              MeterRegistry meterRegistry) {
+        this.mongoTemplate = mongoTemplate;
+        this.taskStateService = taskStateService;
+        this.configuration = configuration;
+        Gauge.builder("tasks.transport.local.pending", pending, Set::size)
+                .description("本地传输中排队或执行中的任务数")
+                .register(meterRegistry);
+        this.delivered = Counter.builder("tasks.transport.local.delivered")
+                .description("本地传输投递的任务数")
+                .register(meterRegistry);
+        this.deadLettered = Counter.builder("tasks.transport.local.deadlettered")
+                .description("本地传输中处理出错而进入死信的任务数")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public synchronized void registerHandler(TaskDeliveryHandler handler) {
+        if (worker != null) {
+            throw new IllegalStateException("本地任务传输已注册处理器");
+        }
+        worker = queue.asFlux()
+                .flatMap(delivery -> process(handler, delivery), Math.max(1, configuration.getLocalConcurrency()))
+                .subscribe();
+        log.info("本地任务传输已启动，并发上限: {}", configuration.getLocalConcurrency());
+    }
+
+    @Override
+    public List<String> send(List<TaskOutboxMessage> batch, Duration confirmTimeout) {
+        List<String> rejected = new ArrayList<>();
+        for (TaskOutboxMessage message : batch) {
+            if (!dispatch(message.getId(), message.getTaskType(), message.getRetryCount())) {
+                rejected.add(message.getId());
+            }
+        }
+        // 进入内存队列即视为投递成功，进程退出前未执行的任务由启动恢复重新投递；
+        // 同一任务的上一次投递尚未结束（如刚安排重试）时不确认，由发件箱在租约到期后重发
+        return rejected;
+    }
+
+    /**
+     * 启动恢复：重新投递未执行完的任务
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recover() {
+        Query query = new Query(new Criteria().orOperator(
+                Criteria.where("status").is(TaskStatus.QUEUED),
+                Criteria.where("status").is(TaskStatus.RETRYING).and("nextAttemptTimestamp").is(null)));
+        query.fields().include("_id", "taskType", "retryCount");
+        mongoTemplate.find(query, BackgroundTask.class)
+                .doOnNext(task -> dispatch(task.getId(), task.getTaskType(), task.getRetryCount()))
+                .count()
+                .subscribe(count -> log.info("本地任务传输恢复了 {} 个未完成的任务", count),
+                        e -> log.error("本地任务传输恢复未完成任务失败: {}", e.getMessage(), e));
+    }
+
+    /**
+     * 投递到内存队列，同一任务已在排队或执行时忽略
+     *
+     * @return 是否进入队列
+     */
+    boolean dispatch(String taskId, String taskType, int retryCount) {
+        if (!pending.add(taskId)) {
+            log.debug("任务已在本地排队或执行，忽略重复投递: {}", taskId);
+            return false;
+        }
+        synchronized (queue) {
+            queue.tryEmitNext(new Delivery(taskId, taskType, retryCount));
+        }
+        return true;
+    }
+
+    private Mono<Void> process(TaskDeliveryHandler handler, Delivery delivery) {
+        return Mono.defer(() -> {
+                    inFlight.incrementAndGet();
+                    delivered.increment();
+                    return handler.handle(delivery.taskId(), delivery.taskType(), delivery.retryCount());
+                })
+                .subscribeOn(Schedulers.boundedElastic()) // 处理流程中包含阻塞的预检查
+                .onErrorResume(e -> deadLetter(delivery, e))
+                .doFinally(signal -> {
+                    inFlight.decrementAndGet();
+                    pending.remove(delivery.taskId());
+                });
+    }
+
+    private Mono<Void> deadLetter(Delivery delivery, Throwable error) {
+        log.error("本地任务处理出错，任务进入死信: taskId={}, taskType={}, 错误: {}",
+                delivery.taskId(), delivery.taskType(), error.getMessage(), error);
+        deadLettered.increment();
+        Map<String, Object> errorInfo = new HashMap<>();
+        errorInfo.put("message", error.getMessage());
+        errorInfo.put("exceptionClass", error.getClass().getName());
+        errorInfo.put("deadLetterReason", "本地传输处理出错");
+        return taskStateService.recordFailure(delivery.taskId(), errorInfo, true)
+                .onErrorResume(e -> {
+                    log.error("记录任务死信失败: taskId={}, 错误: {}", delivery.taskId(), e.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    /**
+     * 执行中的任务数
+     */
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (worker != null) {
+            worker.dispose();
+        }
+    }
+
+    /**
+     * 一次任务投递
+     */
+    private record Delivery(String taskId, String taskType, int retryCount) {
+    }
+}
@@ -0,0 +1,30 @@
+package com.ainovel.server.task.transport;
+
+import com.ainovel.server.task.model.TaskOutboxMessage;
+import com.ainovel.server.task.producer.TaskMessageProducer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * 经RabbitMQ投递任务，消费者由监听容器驱动
+ */
+@Component
+@ConditionalOnProperty(prefix = "task.transport", name = "mode", havingValue = "rabbit", matchIfMissing = true)
+public class RabbitTaskTransport implements TaskTransport {
+
+    private final TaskMessageProducer taskMessageProducer;
+
+    @Autowired
+    public RabbitTaskTransport(TaskMessageProducer taskMessageProducer) {
+        this.taskMessageProducer = taskMessageProducer;
+    }
+
+    @Override
+    public List<String> send(List<TaskOutboxMessage> batch, Duration confirmTimeout) {
+        return taskMessageProducer.sendTaskBatch(batch, confirmTimeout);
+    }
+}
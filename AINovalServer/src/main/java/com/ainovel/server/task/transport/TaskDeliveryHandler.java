@@ -0,0 +1,20 @@
+package com.ainovel.server.task.transport;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * 进程内投递的任务处理器
+ */
+@FunctionalInterface
+public interface TaskDeliveryHandler {
+
+    /**
+     * 处理一次任务投递
+     *
+     * @param taskId 任务ID
+     * @param taskType 任务类型
+     * @param retryCount 重试次数
+     * @return 处理完成信号，出错表示该投递无法处理
+     */
+    Mono<Void> handle(String taskId, String taskType, int retryCount);
+}
@@ -0,0 +1,165 @@
+package com.ainovel.server.task.transport;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * 分层任务延迟时间轮
+ *
+ * 共 levels 层，每层 wheelSize 格；第0层每格 tickMillis，上一层每格等于下一层转一圈。
+ * 条目记录到期的绝对格数，按剩余时间放入能容纳它的最低一层；上层的格被指针经过时，
+ * 其中的条目按剩余时间降级到下层，在第0层到期执行。超出最高层范围的条目留在最高层，每经过一次重新放置。
+ * 整个时间轮只有一个定时器，到期动作在定时器线程上执行，应只做轻量的投递。
+ */
+@Slf4j
+public final class TaskTimerWheel {
+
+    private final long tickMillis;
+    private final int wheelSize;
+    private final List<List<List<Entry>>> levels;
+    private long currentTick;
+    private int size;
+    private Disposable ticker;
+
+    public TaskTimerWheel(long tickMillis, int wheelSize, int levels) {
+        this.tickMillis = Math.max(1, tickMillis);
+        this.wheelSize = Math.max(2, wheelSize);
+        int levelCount = Math.max(1, levels);
+        this.levels = new ArrayList<>(levelCount);
+        for (int level = 0; level < levelCount; level++) {
+            List<List<Entry>> buckets = new ArrayList<>(this.wheelSize);
+            for (int i = 0; i < this.wheelSize; i++) {
+                buckets.add(new ArrayList<>());
+            }
+            this.levels.add(buckets);
+        }
+    }
+
+    /**
+     * 启动定时器
+     */
+    public synchronized void start() {
+        if (ticker == null) {
+            ticker = Flux.interval(Duration.ofMillis(tickMillis), Schedulers.parallel())
+                    .subscribe(tick -> advance());
+        }
+    }
+
+    /**
+     * 停止定时器，未到期的条目不再执行
+     */
+    public synchronized void stop() {
+        if (ticker != null) {
+            ticker.dispose();
+            ticker = null;
+        }
+    }
+
+    /**
+     * 安排延迟动作，延迟向上取整到整格
+     *
+     * @param delayMillis 延迟时间（毫秒）
+     * @param action 到期动作
+     */
+    public void schedule(long delayMillis, Runnable action) {
+        long ticks = Math.max(1, (delayMillis + tickMillis - 1) / tickMillis);
+        synchronized (this) {
+            place(new Entry(currentTick + ticks, action));
+            size++;
+        }
+    }
+
+    /**
+     * 尚未到期的条目数
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * 指针前进一格：上层经过的格降级到下层，再执行第0层到期的动作
+     */
+    void advance() {
+        List<Runnable> due = new ArrayList<>();
+        synchronized (this) {
+            currentTick++;
+            for (int level = levels.size() - 1; level > 0; level--) {
+                long span = span(level);
+                if (currentTick % span == 0) {
+                    for (Entry entry : drain(level, currentTick / span)) {
+                        place(entry);
+                    }
+                }
+            }
+            for (Entry entry : drain(0, currentTick)) {
+                if (entry.deadlineTick <= currentTick) {
+                    size--;
+                    due.add(entry.action);
+                } else {
+                    place(entry);
+                }
+            }
+        }
+        for (Runnable action : due) {
+            try {
+                action.run();
+            } catch (RuntimeException e) {
+                log.warn("执行延迟动作失败: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 按剩余格数放入能容纳它的最低一层，已到期的条目放入当前格
+     */
+    private void place(Entry entry) {
+        long remaining = Math.max(0, entry.deadlineTick - currentTick);
+        int top = levels.size() - 1;
+        for (int level = 0; level <= top; level++) {
+            long span = span(level);
+            if (level == top || remaining < span * wheelSize) {
+                long position = level == 0 ? Math.max(entry.deadlineTick, currentTick) : entry.deadlineTick / span;
+                levels.get(level).get((int) (position % wheelSize)).add(entry);
+                return;
+            }
+        }
+    }
+
+    private List<Entry> drain(int level, long position) {
+        List<List<Entry>> buckets = levels.get(level);
+        int index = (int) (position % wheelSize);
+        List<Entry> bucket = buckets.get(index);
+        buckets.set(index, new ArrayList<>());
+        return bucket;
+    }
+
+    /**
+     * 某一层每格对应的第0层格数
+     */
+    private long span(int level) {
+        long span = 1;
+        for (int i = 0; i < level; i++) {
+            span *= wheelSize;
+        }
+        return span;
+    }
+
+    /**
+     * 时间轮上的一个条目
+     */
+    private static final class Entry {
+        private final long deadlineTick;
+        private final Runnable action;
+
+        private Entry(long deadlineTick, Runnable action) {
+            this.deadlineTick = deadlineTick;
+            this.action = action;
+        }
+    }
+}
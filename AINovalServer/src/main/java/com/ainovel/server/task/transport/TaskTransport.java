@@ -0,0 +1,31 @@
+package com.ainovel.server.task.transport;
+
+import com.ainovel.server.task.model.TaskOutboxMessage;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * 任务传输，负责把任务投递给执行方
+ * 发件箱中继通过它发送新提交的任务和到期的重试
+ */
+public interface TaskTransport {
+
+    /**
+     * 批量投递任务，阻塞调用，由调用方安排线程
+     *
+     * @param batch 发件箱中待发送的任务消息
+     * @param confirmTimeout 等待投递确认的超时时间
+     * @return 未被确认的任务ID，由发件箱稍后重新发送
+     */
+    List<String> send(List<TaskOutboxMessage> batch, Duration confirmTimeout);
+
+    /**
+     * 注册进程内投递的处理器
+     * 由消息队列投递的传输方式通过监听容器把任务交给消费者，忽略此处理器
+     *
+     * @param handler 任务处理器
+     */
+    default void registerHandler(TaskDeliveryHandler handler) {
+    }
+}
@@ -2,15 +2,20 @@ package com.ainovel.server.web.controller;
 
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.ainovel.server.domain.model.AIChatMessage;
 import com.ainovel.server.domain.model.AIChatSession;
+import com.ainovel.server.security.CurrentUser;
 import com.ainovel.server.service.AIChatService;
+import com.ainovel.server.service.ai.stream.GenerationStreamRegistry;
 import com.ainovel.server.web.base.ReactiveBaseController;
 import com.ainovel.server.web.dto.IdDto;
 import com.ainovel.server.web.dto.SessionCreateDto;
@@ -30,6 +35,7 @@ import reactor.core.publisher.Mono;
 public class AIChatController extends ReactiveBaseController {
 
     private final AIChatService aiChatService;
+    private final GenerationStreamRegistry generationStreamRegistry;
 
     /**
      * 创建聊天会话
@@ -116,17 +122,30 @@ public class AIChatController extends ReactiveBaseController {
     /**
      * 流式发送消息并获取响应
      *
-     * @param sessionMessageDto 包含用户ID、会话ID、消息内容和元数据的DTO
+     * 断线后携带 Last-Event-ID 重新请求时，只补发缺失的部分，不会再次调用模型；
+     * 续传范围按当前登录用户隔离，不采用请求体中的用户ID
+     *
+     * @param currentUser 当前用户
+     * @param sessionMessageDto 包含会话ID、消息内容和元数据的DTO
+     * @param lastEventId 客户端已收到的最后一个事件ID（断线重连时）
      * @return 流式AI响应消息 (SSE)
      */
     @PostMapping(value = "/messages/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-    public Flux<AIChatMessage> streamMessage(@RequestBody SessionMessageDto sessionMessageDto) {
-        return aiChatService.streamMessage(
-                sessionMessageDto.getUserId(),
-                sessionMessageDto.getSessionId(),
-                sessionMessageDto.getContent(),
-                sessionMessageDto.getMetadata()
-        );
+    public Flux<ServerSentEvent<AIChatMessage>> streamMessage(@AuthenticationPrincipal CurrentUser currentUser,
+            @RequestBody SessionMessageDto sessionMessageDto,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        String userId = currentUser.getId();
+        String scope = "chat:" + userId + ":" + sessionMessageDto.getSessionId();
+        return generationStreamRegistry.startOrResume(lastEventId, scope, AIChatMessage.class,
+                        () -> aiChatService.streamMessage(
+                                userId,
+                                sessionMessageDto.getSessionId(),
+                                sessionMessageDto.getContent(),
+                                sessionMessageDto.getMetadata()))
+                .map(event -> ServerSentEvent.<AIChatMessage>builder()
+                        .id(event.eventId())
+                        .data(event.data())
+                        .build());
     }
 
     /**
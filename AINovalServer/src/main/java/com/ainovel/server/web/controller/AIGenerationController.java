@@ -16,6 +16,7 @@ import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -24,6 +25,8 @@ import com.ainovel.server.security.CurrentUser;
 import com.ainovel.server.service.NovelAIService;
 import com.ainovel.server.service.SceneService;
 import com.ainovel.server.service.NovelService;
+import com.ainovel.server.service.ai.stream.GenerationStreamRegistry;
+import com.ainovel.server.service.ai.stream.StreamOutputStage;
 import com.ainovel.server.web.base.ReactiveBaseController;
 import com.ainovel.server.web.dto.GenerateSceneFromSummaryRequest;
 import com.ainovel.server.web.dto.GenerateSceneFromSummaryResponse;
@@ -49,17 +52,23 @@ public class AIGenerationController extends ReactiveBaseController {
     private final ObjectMapper objectMapper;
     private final SceneService sceneService;
     private final NovelService novelService;
+    private final GenerationStreamRegistry generationStreamRegistry;
+    private final StreamOutputStage streamOutputStage;
     
     // 用于存储摘要生成任务结果的缓存
     private final Map<String, SummarizeSceneResponse> summarizeTasks = new ConcurrentHashMap<>();
 
     @Autowired
     public AIGenerationController(NovelAIService novelAIService, ObjectMapper objectMapper,
-                                 SceneService sceneService, NovelService novelService) {
+                                 SceneService sceneService, NovelService novelService,
+                                 GenerationStreamRegistry generationStreamRegistry,
+                                 StreamOutputStage streamOutputStage) {
         this.novelAIService = novelAIService;
         this.objectMapper = objectMapper;
         this.sceneService = sceneService;
         this.novelService = novelService;
+        this.generationStreamRegistry = generationStreamRegistry;
+        this.streamOutputStage = streamOutputStage;
     }
 
     /**
@@ -234,18 +243,9 @@ public class AIGenerationController extends ReactiveBaseController {
                                             }
                                         });
 
-                                // 创建keepalive流
-                                Flux<ServerSentEvent<String>> keepaliveStream = Flux.interval(Duration.ofSeconds(15))
-                                        .map(i -> {
-                                            log.debug("发送SSE keepalive 注释 #{}", i);
-                                            return ServerSentEvent.<String>builder()
-                                                    .comment("keepalive")
-                                                    .build();
-                                        })
-                                        .takeWhile(event -> !isStreamCompleted.get());
-
-                                // 合并内容流和keepalive流
-                                return Flux.merge(eventFlux, keepaliveStream)
+                                // 空闲时由共享心跳时间轮插入keepalive注释，内容流结束时随之结束
+                                return streamOutputStage.withHeartbeat(eventFlux,
+                                                () -> ServerSentEvent.<String>builder().comment("keepalive").build())
                                         .timeout(Duration.ofMinutes(5))
                                         .onErrorResume(e -> {
                                             log.error("处理SSE流时出错: {}", e.getMessage(), e);
@@ -286,10 +286,12 @@ public class AIGenerationController extends ReactiveBaseController {
 
     /**
      * 根据摘要生成场景内容（流式）
+     * 断线后携带 Last-Event-ID 重新请求时，只补发缺失的部分，不会再次调用模型
      *
      * @param currentUser 当前用户
      * @param novelId 小说ID
      * @param requestMono 生成场景请求
+     * @param lastEventId 客户端已收到的最后一个事件ID（断线重连时）
      * @return 流式生成内容
      */
     @PostMapping(
@@ -299,7 +301,8 @@ public class AIGenerationController extends ReactiveBaseController {
     public Flux<ServerSentEvent<String>> generateSceneFromSummaryStream(
             @AuthenticationPrincipal CurrentUser currentUser,
             @PathVariable String novelId,
-            @Valid @RequestBody Mono<GenerateSceneFromSummaryRequest> requestMono) {
+            @Valid @RequestBody Mono<GenerateSceneFromSummaryRequest> requestMono,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
 
         log.info("摘要生成场景内容请求(流式), userId: {}, novelId: {}", currentUser.getId(), novelId);
 
@@ -320,12 +323,14 @@ public class AIGenerationController extends ReactiveBaseController {
                     final AtomicLong firstContentTime = new AtomicLong(0);
 
                     // 主内容流
-                    Flux<ServerSentEvent<String>> contentStream = novelAIService.generateSceneFromSummaryStream(currentUser.getId(), novelId, request)
-                            .filter(contentChunk -> {
-                                // 过滤heartbeat消息 - NovelAIServiceImpl 现在应该已经过滤了，但双重保险
-                                return !"heartbeat".equals(contentChunk);
-                            })
-                            .map(contentChunk -> {
+                    String scope = "scene:" + currentUser.getId() + ":" + novelId;
+                    Flux<ServerSentEvent<String>> contentStream = generationStreamRegistry.startOrResume(lastEventId, scope, String.class,
+                                    () -> streamOutputStage.frame("scene",
+                                            novelAIService.generateSceneFromSummaryStream(currentUser.getId(), novelId, request)
+                                                    // 过滤heartbeat消息 - NovelAIServiceImpl 现在应该已经过滤了，但双重保险
+                                                    .filter(contentChunk -> !"heartbeat".equals(contentChunk))))
+                            .map(event -> {
+                                String contentChunk = event.data();
                                 try {
                                     if (!hasReceivedContent.get() && !"[DONE]".equals(contentChunk)) {
                                         hasReceivedContent.set(true);
@@ -337,6 +342,7 @@ public class AIGenerationController extends ReactiveBaseController {
                                         log.info("生成完成，发送完成事件，总耗时: {}ms", System.currentTimeMillis() - startTime);
                                         isStreamCompleted.set(true);
                                         return ServerSentEvent.<String>builder()
+                                                .id(event.eventId())
                                                 .event("complete")
                                                 .data("{\"data\":\"[DONE]\"}")
                                                 .build();
@@ -347,6 +353,7 @@ public class AIGenerationController extends ReactiveBaseController {
                                     String jsonData = objectMapper.writeValueAsString(dataMap);
 
                                     return ServerSentEvent.<String>builder()
+                                            .id(event.eventId())
                                             .event("message")
                                             .data(jsonData)
                                             .build();
@@ -367,20 +374,9 @@ public class AIGenerationController extends ReactiveBaseController {
                         }
                     });
 
-                    // **移除 gracePeriodStream **
-                    // 创建简化的控制器级别心跳事件流 (仅用于保持连接)
-                    Flux<ServerSentEvent<String>> keepaliveStream = Flux.interval(Duration.ofSeconds(15)) // 每15秒发送一次
-                            .map(i -> {
-                                log.debug("发送SSE keepalive 注释 #{}", i);
-                                return ServerSentEvent.<String>builder()
-                                        .comment("keepalive") // 使用 SSE 注释进行 keepalive
-                                        .build();
-                            })
-                            // 只要主内容流没有完成，就继续发送 keepalive
-                            .takeWhile(event -> !isStreamCompleted.get());
-
-                    // **只合并内容流和控制器 keepalive 流**
-                    return Flux.merge(contentStream, keepaliveStream)
+                    // 空闲时由共享心跳时间轮插入keepalive注释 (仅用于保持连接)，内容流结束时随之结束
+                    return streamOutputStage.withHeartbeat(contentStream,
+                                    () -> ServerSentEvent.<String>builder().comment("keepalive").build())
                             .onErrorResume(e -> { // 保留现有的错误处理
                                 log.error("生成场景内容流时出错: {}", e.getMessage(), e);
                                 try {
@@ -1,6 +1,8 @@
 package com.ainovel.server.web.controller;
 
+import com.ainovel.server.security.CurrentUser;
 import com.ainovel.server.service.NextOutlineService;
+import com.ainovel.server.service.ai.stream.GenerationStreamRegistry;
 import com.ainovel.server.web.dto.NextOutlineDTO;
 import com.ainovel.server.web.dto.OutlineGenerationChunk;
 import lombok.RequiredArgsConstructor;
@@ -8,6 +10,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -27,6 +30,7 @@ import java.util.UUID;
 public class NextOutlineController {
 
     private final NextOutlineService nextOutlineService;
+    private final GenerationStreamRegistry generationStreamRegistry;
     private static final String SSE_EVENT_NAME = "outline-chunk";
 
     /**
@@ -56,24 +60,30 @@ public class NextOutlineController {
 
     /**
      * 流式生成剧情大纲
+     * 断线后携带 Last-Event-ID 重新请求时，只补发缺失的部分，不会再次调用模型；续传范围按用户隔离
      *
+     * @param currentUser 当前用户
      * @param novelId 小说ID
      * @param request 生成请求
+     * @param lastEventId 客户端已收到的最后一个事件ID（断线重连时）
      * @return 流式生成的剧情大纲块 (OutlineGenerationChunk)
      */
     @PostMapping(value = "/generate-stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
     public Flux<ServerSentEvent<OutlineGenerationChunk>> generateNextOutlinesStream(
+            @AuthenticationPrincipal CurrentUser currentUser,
             @PathVariable String novelId,
-            @Valid @RequestBody NextOutlineDTO.GenerateRequest request) {
+            @Valid @RequestBody NextOutlineDTO.GenerateRequest request,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
 
         log.info("请求流式生成剧情大纲: novelId={}, startChapter={}, endChapter={}, numOptions={}",
                 novelId, request.getStartChapterId(), request.getEndChapterId(), request.getNumOptions());
 
-        return nextOutlineService.generateNextOutlinesStream(novelId, request)
-                .map(chunk -> ServerSentEvent.<OutlineGenerationChunk>builder()
-                        .id(chunk.getOptionId() + "-" + UUID.randomUUID().toString())
+        return generationStreamRegistry.startOrResume(lastEventId, "outline:" + currentUser.getId() + ":" + novelId, OutlineGenerationChunk.class,
+                        () -> nextOutlineService.generateNextOutlinesStream(novelId, request))
+                .map(event -> ServerSentEvent.<OutlineGenerationChunk>builder()
+                        .id(event.eventId())
                         .event(SSE_EVENT_NAME)
-                        .data(chunk)
+                        .data(event.data())
                         .retry(Duration.ofSeconds(10))
                         .build())
                 .doOnSubscribe(subscription -> log.info("SSE 连接建立 for generate-stream, novelId: {}", novelId))
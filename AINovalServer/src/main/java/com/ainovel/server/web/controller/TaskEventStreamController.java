@@ -0,0 +1,67 @@
+package com.ainovel.server.web.controller;
+
+import com.ainovel.server.security.CurrentUser;
+import com.ainovel.server.service.ai.stream.StreamHeartbeatScheduler;
+import com.ainovel.server.task.event.external.TaskStreamEvent;
+import com.ainovel.server.task.service.TaskEventStreamService;
+import com.ainovel.server.web.base.ReactiveBaseController;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+
+/**
+ * 任务事件推送控制器，以SSE推送任务进度和状态变化，替代轮询任务状态
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/tasks")
+@RequiredArgsConstructor
+public class TaskEventStreamController extends ReactiveBaseController {
+
+    private final TaskEventStreamService taskEventStreamService;
+    private final StreamHeartbeatScheduler heartbeatScheduler;
+
+    /**
+     * 订阅单个任务的事件，首个事件为任务当前状态快照，任务结束后流结束
+     *
+     * @param currentUser 当前用户
+     * @param taskId 任务ID
+     * @return 任务事件流
+     */
+    @GetMapping(value = "/{taskId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<TaskStreamEvent>> streamTaskEvents(
+            @AuthenticationPrincipal CurrentUser currentUser,
+            @PathVariable String taskId) {
+        log.debug("用户 {} 订阅任务 {} 的事件", currentUser.getId(), taskId);
+        return toServerSentEvents(taskEventStreamService.streamTask(taskId, currentUser.getId()));
+    }
+
+    /**
+     * 订阅当前用户所有任务的事件，首先发送进行中任务的快照
+     *
+     * @param currentUser 当前用户
+     * @return 任务事件流
+     */
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<TaskStreamEvent>> streamUserTaskEvents(@AuthenticationPrincipal CurrentUser currentUser) {
+        log.debug("用户 {} 订阅任务事件", currentUser.getId());
+        return toServerSentEvents(taskEventStreamService.streamUserTasks(currentUser.getId()));
+    }
+
+    private Flux<ServerSentEvent<TaskStreamEvent>> toServerSentEvents(Flux<TaskStreamEvent> events) {
+        Flux<ServerSentEvent<TaskStreamEvent>> sse = events.map(event -> ServerSentEvent.<TaskStreamEvent>builder()
+                .event(event.getEventType())
+                .data(event)
+                .build());
+        // 空闲时由共享心跳时间轮插入keepalive注释，避免代理断开长时间无进度的连接
+        return heartbeatScheduler.withHeartbeat(sse,
+                () -> ServerSentEvent.<TaskStreamEvent>builder().comment("keepalive").build());
+    }
+}
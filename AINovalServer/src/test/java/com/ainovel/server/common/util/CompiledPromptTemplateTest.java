@@ -0,0 +1,74 @@
+package com.ainovel.server.common.util;
+
+import com.ainovel.server.service.prompt.PromptTemplateEngine;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * 预编译提示词模板测试
+ */
+public class CompiledPromptTemplateTest {
+
+    @Test
+    public void testRendersBothPlaceholderStylesAndKeepsUnknown() {
+        CompiledPromptTemplate template = CompiledPromptTemplate.compile(
+                "场景:{input}\n参考:{{context}}\n{missing} {{ {}{x}}");
+
+        Map<String, Object> variables = new LinkedHashMap<>();
+        variables.put("input", "林砚推门而入");
+        variables.put("context", "藏经阁");
+        variables.put("x", 3);
+
+        assertEquals("场景:林砚推门而入\n参考:藏经阁\n{missing} {{ {}3}", template.render(variables));
+    }
+
+    @Test
+    public void testSubstitutedValuesAreNotRescanned() {
+        CompiledPromptTemplate template = CompiledPromptTemplate.compile("{{context}}|{{authorGuidance}}");
+
+        Map<String, Object> variables = new LinkedHashMap<>();
+        variables.put("context", "{{authorGuidance}}");
+        variables.put("authorGuidance", "引导");
+
+        assertEquals("{{authorGuidance}}|引导", template.render(variables));
+    }
+
+    @Test
+    public void testAppendsVariablesWhenTemplateHasNoPlaceholder() {
+        Map<String, String> variables = new LinkedHashMap<>();
+        variables.put("input", "内容");
+        variables.put("context", "");
+
+        assertEquals("请总结\n\ninput: 内容\n", PromptUtil.formatPromptTemplate("请总结", variables));
+    }
+
+    @Test
+    public void testEngineRecompilesWhenTemplateVersionChanges() {
+        PromptTemplateEngine engine = new PromptTemplateEngine();
+        String source = PromptTemplateEngine.userSource("user-1", "SCENE_TO_SUMMARY");
+
+        CompiledPromptTemplate first = engine.compile(source, "A {input}", false);
+        assertSame(first, engine.compile(source, new String("A {input}"), false));
+
+        CompiledPromptTemplate updated = engine.compile(source, "B {input}", false);
+        assertNotSame(first, updated);
+        assertEquals("B x", updated.render(Map.of("input", "x")));
+
+        engine.invalidate(source);
+        assertNotSame(updated, engine.compile(source, "B {input}", false));
+    }
+
+    @Test
+    public void testRichTextTemplateIsConvertedBeforeCompiling() {
+        PromptTemplateEngine engine = new PromptTemplateEngine();
+        String quill = PromptUtil.convertPlainTextToQuillDelta("摘要:{input}");
+
+        assertEquals("摘要:正文", engine.renderRichText("user:u:SCENE_TO_SUMMARY", quill, Map.of("input", "正文")));
+    }
+}
@@ -0,0 +1,78 @@
+package com.ainovel.server.performance;
+
+import java.util.concurrent.TimeUnit;
+
+import org.jasypt.encryption.pbe.StandardPBEStringEncryptor;
+import org.jasypt.iv.RandomIvGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.ainovel.server.config.CredentialCacheConfiguration;
+import com.ainovel.server.service.ai.credential.DecryptedCredentialCache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * API密钥解密开销基准测试：对比每次请求直接执行PBE解密与按(配置ID, 密文哈希)缓存的解密结果
+ * 加密器参数与 application.yml 中的 jasypt 配置一致（PBEWITHHMACSHA512ANDAES_256，1000轮密钥派生）
+ *
+ * 运行方式：mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.ainovel.server.performance.CredentialDecryptBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CredentialDecryptBenchmark {
+
+    private StandardPBEStringEncryptor encryptor;
+    private DecryptedCredentialCache cache;
+    private String ciphertext;
+
+    @Setup
+    public void setUp() {
+        encryptor = new StandardPBEStringEncryptor();
+        encryptor.setPassword("benchmark-password");
+        encryptor.setAlgorithm("PBEWITHHMACSHA512ANDAES_256");
+        encryptor.setKeyObtentionIterations(1000);
+        encryptor.setIvGenerator(new RandomIvGenerator());
+        encryptor.setStringOutputType("base64");
+        ciphertext = encryptor.encrypt("sk-benchmark-0123456789abcdefghijklmnopqrstuvwxyz");
+        cache = new DecryptedCredentialCache(encryptor, new CredentialCacheConfiguration(), new SimpleMeterRegistry());
+    }
+
+    /**
+     * 每次请求直接解密（原写法）
+     */
+    @Benchmark
+    public String decryptPerRequest() {
+        return encryptor.decrypt(ciphertext);
+    }
+
+    /**
+     * 命中缓存的解密
+     */
+    @Benchmark
+    public String cachedDecrypt() {
+        return cache.decrypt("config-1", ciphertext);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CredentialDecryptBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+}
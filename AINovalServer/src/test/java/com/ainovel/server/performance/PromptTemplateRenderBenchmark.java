@@ -0,0 +1,108 @@
+package com.ainovel.server.performance;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.ainovel.server.common.util.PromptUtil;
+import com.ainovel.server.service.prompt.PromptTemplateEngine;
+
+/**
+ * 提示词模板渲染吞吐基准测试：对比每次请求重新解析（PromptUtil）、链式 String.replace 与按来源缓存的已编译模板
+ *
+ * 运行方式：mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.ainovel.server.performance.PromptTemplateRenderBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PromptTemplateRenderBenchmark {
+
+    private static final String SOURCE = PromptTemplateEngine.systemSource("next_outlines_generation");
+
+    private PromptTemplateEngine engine;
+    private String template;
+    private String richTextTemplate;
+    private Map<String, String> variables;
+    private String context;
+
+    @Setup
+    public void setUp() {
+        engine = new PromptTemplateEngine();
+        template = "你是一位专业的小说创作顾问。请根据以下信息，为作者生成 {{numberOfOptions}} 个不同的剧情大纲选项。\n\n"
+                + "小说当前进展：{{context}}\n\n{{authorGuidance}}\n\n"
+                + "请为每个选项提供以下内容：\n1. 一个简短但吸引人的标题\n2. 剧情概要（200-300字）\n3. 主要事件（3-5个关键点）\n"
+                + "4. 涉及的角色\n5. 冲突或悬念\n\n格式要求：\n选项1：[标题]\n[剧情概要]\n主要事件：\n- [事件1]\n- [事件2]\n";
+        richTextTemplate = PromptUtil.convertPlainTextToQuillDelta(template);
+
+        StringBuilder contextBuilder = new StringBuilder();
+        for (int i = 0; i < 40; i++) {
+            contextBuilder.append("夜色沉沉，山门外的石阶被雨水打得发亮。林砚握紧了手中的油纸伞，抬头望向藏经阁。");
+        }
+        context = contextBuilder.toString();
+
+        variables = new LinkedHashMap<>();
+        variables.put("numberOfOptions", "3");
+        variables.put("context", context);
+        variables.put("authorGuidance", "作者引导：节奏放慢，突出悬疑");
+    }
+
+    /**
+     * 链式 String.replace（原 NovelAIServiceImpl 写法）
+     */
+    @Benchmark
+    public String chainedReplace() {
+        return template
+                .replace("{{context}}", context)
+                .replace("{{numberOfOptions}}", "3")
+                .replace("{{authorGuidance}}", "作者引导：节奏放慢，突出悬疑");
+    }
+
+    /**
+     * 每次请求解析富文本模板并重新编译（PromptUtil.formatPromptTemplate）
+     */
+    @Benchmark
+    public String parsePerRequest() {
+        return PromptUtil.formatPromptTemplate(richTextTemplate, new HashMap<>(variables));
+    }
+
+    /**
+     * 按来源缓存的已编译模板
+     */
+    @Benchmark
+    public String compiledTemplate() {
+        return engine.render(SOURCE, template, variables);
+    }
+
+    /**
+     * 按来源缓存的已编译富文本模板
+     */
+    @Benchmark
+    public String compiledRichTextTemplate() {
+        return engine.renderRichText(SOURCE, richTextTemplate, variables);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(PromptTemplateRenderBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+}
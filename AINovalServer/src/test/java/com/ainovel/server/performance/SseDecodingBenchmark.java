@@ -0,0 +1,146 @@
+package com.ainovel.server.performance;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.ainovel.server.service.ai.stream.SseDeltaDecoder;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * SSE 流式解码基准测试：对比逐块 String + ObjectMapper 反序列化与基于字节的复用解析器
+ *
+ * 使用录制的上游流（src/test/resources/sse），按约一个事件一个网络分块的方式切分。
+ * 运行方式：mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.ainovel.server.performance.SseDecodingBenchmark
+ * 建议同时加 -prof gc 观察每次操作的分配量。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SseDecodingBenchmark {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    @Param({"openai-chat-stream.txt", "anthropic-messages-stream.txt"})
+    private String recording;
+
+    private List<byte[]> chunks;
+    private List<String> lines;
+    private SseDeltaDecoder decoder;
+
+    @Setup
+    public void setUp() throws IOException {
+        byte[] stream;
+        try (InputStream in = SseDecodingBenchmark.class.getResourceAsStream("/sse/" + recording)) {
+            stream = in.readAllBytes();
+        }
+        decoder = recording.startsWith("anthropic") ? SseDeltaDecoder.ANTHROPIC_MESSAGES : SseDeltaDecoder.OPENAI_CHAT;
+
+        chunks = new ArrayList<>();
+        int start = 0;
+        for (int i = 1; i < stream.length; i++) {
+            if (stream[i] == '\n' && stream[i - 1] == '\n') {
+                byte[] chunk = new byte[i + 1 - start];
+                System.arraycopy(stream, start, chunk, 0, chunk.length);
+                chunks.add(chunk);
+                start = i + 1;
+            }
+        }
+
+        // bodyToFlux(String.class) 按行解码后的形态
+        lines = new ArrayList<>();
+        for (String line : new String(stream, StandardCharsets.UTF_8).split("\n")) {
+            if (!line.isEmpty()) {
+                lines.add(line);
+            }
+        }
+    }
+
+    /**
+     * 原实现：每行一个 String，再由 ObjectMapper 构建完整对象
+     */
+    @Benchmark
+    public void stringAndObjectMapper(Blackhole blackhole) throws IOException {
+        for (String chunk : lines) {
+            if (chunk.startsWith("data: ")) {
+                chunk = chunk.substring(6);
+            }
+            if (!chunk.startsWith("{")) {
+                continue;
+            }
+            StreamChunk parsed = OBJECT_MAPPER.readValue(chunk, StreamChunk.class);
+            if (parsed.choices != null && !parsed.choices.isEmpty() && parsed.choices.get(0).delta != null) {
+                blackhole.consume(parsed.choices.get(0).delta.content);
+            } else if (parsed.delta != null) {
+                blackhole.consume(parsed.delta.text);
+            }
+        }
+    }
+
+    /**
+     * 新实现：直接在字节上切分事件，复用非阻塞解析器沿路径提取
+     */
+    @Benchmark
+    public void byteLevelDecoder(Blackhole blackhole) {
+        try (SseDeltaDecoder.Session session = decoder.newSession()) {
+            for (byte[] chunk : chunks) {
+                session.decode(chunk, 0, chunk.length, blackhole::consume);
+            }
+            session.finish(blackhole::consume);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(SseDecodingBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class StreamChunk {
+        public String id;
+        public String object;
+        public long created;
+        public String model;
+        public List<Choice> choices;
+        public Delta delta;
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Choice {
+        public int index;
+        public Delta delta;
+        public String finish_reason;
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Delta {
+        public String role;
+        public String content;
+        public String text;
+    }
+}
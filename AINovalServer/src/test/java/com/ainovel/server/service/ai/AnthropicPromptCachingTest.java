@@ -0,0 +1,132 @@
+package com.ainovel.server.service.ai;
+
+import com.ainovel.server.domain.model.AIRequest;
+import com.ainovel.server.domain.model.AIResponse;
+import com.ainovel.server.service.ai.metrics.PromptCacheMetrics;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Anthropic提示前缀缓存测试，使用本地模拟上游校验缓存断点位置与缓存令牌统计
+ */
+public class AnthropicPromptCachingTest {
+
+    private static final String RESPONSE = "{\"content\":[{\"type\":\"text\",\"text\":\"好的\"}],"
+            + "\"stop_reason\":\"end_turn\","
+            + "\"usage\":{\"input_tokens\":20,\"output_tokens\":5,"
+            + "\"cache_read_input_tokens\":1800,\"cache_creation_input_tokens\":0}}";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicReference<JsonNode> lastRequest = new AtomicReference<>();
+    private DisposableServer upstream;
+    private SimpleMeterRegistry meterRegistry;
+    private AnthropicModelProvider provider;
+
+    @BeforeEach
+    public void setUp() {
+        upstream = HttpServer.create()
+                .host("localhost")
+                .port(0)
+                .route(routes -> routes.post("/v1/messages", (req, res) -> req.receive().aggregate().asString()
+                        .flatMap(body -> {
+                            try {
+                                lastRequest.set(objectMapper.readTree(body));
+                            } catch (Exception e) {
+                                return Mono.error(e);
+                            }
+                            return res.header("Content-Type", "application/json")
+                                    .sendString(Mono.just(RESPONSE))
+                                    .then();
+                        })))
+                .bindNow();
+        meterRegistry = new SimpleMeterRegistry();
+        provider = new AnthropicModelProvider("claude-3-haiku", "test-key",
+                "http://localhost:" + upstream.port() + "/v1");
+        provider.setPromptCacheMetrics(new PromptCacheMetrics(meterRegistry));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        upstream.disposeNow();
+    }
+
+    @Test
+    public void testStablePrefixIsMarkedAndVolatileSystemMessageMovesToSuffix() {
+        List<AIRequest.Message> messages = new ArrayList<>();
+        messages.add(new AIRequest.Message("system", "检索到的上下文"));
+        messages.add(AIRequest.Message.cacheable("system", "你是一位小说创作顾问"));
+        messages.add(AIRequest.Message.cacheable("system", "当前上下文：第一章……"));
+        messages.add(new AIRequest.Message("user", "请生成下一章大纲"));
+        AIRequest request = AIRequest.builder().model("claude-3-haiku").messages(messages).build();
+
+        AIResponse response = provider.generateContent(request).block(Duration.ofSeconds(10));
+
+        JsonNode body = lastRequest.get();
+        JsonNode system = body.get("system");
+        assertEquals(1, system.size());
+        assertEquals("你是一位小说创作顾问\n\n当前上下文：第一章……", system.get(0).get("text").asText());
+        assertEquals("ephemeral", system.get(0).get("cache_control").get("type").asText());
+
+        JsonNode sent = body.get("messages");
+        assertEquals(2, sent.size());
+        assertEquals("user", sent.get(0).get("role").asText());
+        assertEquals("检索到的上下文", sent.get(0).get("content").asText());
+        assertEquals("请生成下一章大纲", sent.get(1).get("content").asText());
+
+        assertEquals(1820, response.getTokenUsage().getPromptTokens());
+        assertEquals(1800, response.getTokenUsage().getCachedPromptTokens());
+        assertEquals(1800.0, meterRegistry.get("ai.prompt.tokens.cache_read")
+                .tag("provider", "anthropic").counter().count());
+        assertEquals(1820.0, meterRegistry.get("ai.prompt.tokens.input").counter().count());
+    }
+
+    @Test
+    public void testLastCacheableTurnCarriesBreakpoint() {
+        List<AIRequest.Message> messages = new ArrayList<>();
+        messages.add(AIRequest.Message.cacheable("user", "第一轮问题"));
+        messages.add(AIRequest.Message.cacheable("assistant", "第一轮回答"));
+        messages.add(new AIRequest.Message("user", "第二轮问题"));
+        AIRequest request = AIRequest.builder().model("claude-3-haiku").messages(messages).build();
+
+        provider.generateContent(request).block(Duration.ofSeconds(10));
+
+        JsonNode body = lastRequest.get();
+        assertFalse(body.has("system"));
+        JsonNode sent = body.get("messages");
+        assertEquals(3, sent.size());
+        assertTrue(sent.get(0).get("content").isTextual());
+        JsonNode breakpoint = sent.get(1).get("content").get(0);
+        assertEquals("第一轮回答", breakpoint.get("text").asText());
+        assertEquals("ephemeral", breakpoint.get("cache_control").get("type").asText());
+        assertTrue(sent.get(2).get("content").isTextual());
+    }
+
+    @Test
+    public void testRequestWithoutPrefixIsUnchanged() {
+        List<AIRequest.Message> messages = new ArrayList<>();
+        messages.add(new AIRequest.Message("user", "你好"));
+        AIRequest request = AIRequest.builder().model("claude-3-haiku").prompt("系统提示").messages(messages).build();
+
+        provider.generateContent(request).block(Duration.ofSeconds(10));
+
+        JsonNode body = lastRequest.get();
+        assertEquals("系统提示", body.get("system").asText());
+        assertEquals("你好", body.get("messages").get(0).get("content").asText());
+    }
+}
@@ -0,0 +1,165 @@
+package com.ainovel.server.service.ai.catalog;
+
+import com.ainovel.server.config.ModelCatalogConfiguration;
+import com.ainovel.server.domain.model.ModelCatalogSnapshot;
+import com.ainovel.server.domain.model.ModelInfo;
+import com.ainovel.server.repository.ModelCatalogSnapshotRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 模型目录缓存测试
+ */
+public class ModelCatalogCacheTest {
+
+    private ModelCatalogConfiguration configuration;
+    private ModelCatalogSnapshotRepository repository;
+    private MutableClock clock;
+    private ModelCatalogCache cache;
+
+    @BeforeEach
+    public void setUp() {
+        configuration = new ModelCatalogConfiguration();
+        configuration.setFreshSeconds(60);
+        configuration.setMaxStaleSeconds(3600);
+        configuration.setColdStartTimeoutMillis(200);
+        repository = mock(ModelCatalogSnapshotRepository.class);
+        when(repository.findById(anyString())).thenReturn(Mono.empty());
+        when(repository.save(any(ModelCatalogSnapshot.class)))
+                .thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        clock = new MutableClock(Instant.parse("2025-01-01T00:00:00Z"));
+        cache = new ModelCatalogCache(configuration, repository, new SimpleMeterRegistry(), clock);
+    }
+
+    @Test
+    public void testConcurrentRequestsShareOneUpstreamCall() {
+        AtomicInteger calls = new AtomicInteger();
+        Sinks.One<String> release = Sinks.one();
+        Supplier<Flux<ModelInfo>> loader = () -> {
+            calls.incrementAndGet();
+            return release.asMono().flatMapMany(v -> Flux.just(model("m1")));
+        };
+
+        Mono<List<ModelInfo>> first = cache.get("openai", null, "sk-1", loader, null).collectList().cache();
+        Mono<List<ModelInfo>> second = cache.get("openai", null, "sk-1", loader, null).collectList().cache();
+        first.subscribe();
+        second.subscribe();
+        release.tryEmitValue("go");
+
+        assertEquals("m1", first.block(Duration.ofSeconds(5)).get(0).getId());
+        assertEquals("m1", second.block(Duration.ofSeconds(5)).get(0).getId());
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void testStaleCatalogIsServedWhileRefreshingInBackground() {
+        AtomicInteger calls = new AtomicInteger();
+        Supplier<Flux<ModelInfo>> loader = () -> Flux.just(model("v" + calls.incrementAndGet()));
+
+        assertEquals("v1", first(cache.get("openai", null, "sk-1", loader, null)));
+        assertEquals("v1", first(cache.get("openai", null, "sk-1", loader, null)));
+        assertEquals(1, calls.get());
+
+        clock.advance(Duration.ofSeconds(120));
+        assertEquals("v1", first(cache.get("openai", null, "sk-1", loader, null)));
+        assertEquals(2, calls.get());
+        assertEquals("v2", first(cache.get("openai", null, "sk-1", loader, null)));
+    }
+
+    @Test
+    public void testSnapshotIsServedAfterRestartWithoutUpstreamCall() {
+        String id = "openai|default|" + ModelCatalogCache.fingerprint("sk-1");
+        when(repository.findById(id)).thenReturn(Mono.just(ModelCatalogSnapshot.builder()
+                .id(id)
+                .models(List.of(model("persisted")))
+                .fetchedAt(LocalDateTime.ofInstant(clock.instant(), ZoneId.systemDefault()))
+                .build()));
+        AtomicInteger calls = new AtomicInteger();
+
+        assertEquals("persisted", first(cache.get("openai", null, "sk-1",
+                () -> Flux.just(model("upstream" + calls.incrementAndGet())), null)));
+        assertEquals(0, calls.get());
+    }
+
+    @Test
+    public void testColdStartTimeoutReturnsDefaultsAndKeepsLoading() {
+        Sinks.One<String> release = Sinks.one();
+        Supplier<Flux<ModelInfo>> loader = () -> release.asMono().flatMapMany(v -> Flux.just(model("upstream")));
+
+        assertEquals("default", first(cache.get("openai", null, "sk-1", loader, () -> Flux.just(model("default")))));
+        release.tryEmitValue("go");
+        assertEquals("upstream", first(cache.get("openai", null, "sk-1", loader, () -> Flux.just(model("default")))));
+    }
+
+    @Test
+    public void testKeysAreSeparatedAndOnlyFingerprintIsPersisted() {
+        assertEquals("a", first(cache.get("openai", null, "sk-a", () -> Flux.just(model("a")), null)));
+        assertEquals("b", first(cache.get("openai", null, "sk-b", () -> Flux.just(model("b")), null)));
+
+        ArgumentCaptor<ModelCatalogSnapshot> saved = ArgumentCaptor.forClass(ModelCatalogSnapshot.class);
+        verify(repository, timeout(1000).times(2)).save(saved.capture());
+        for (ModelCatalogSnapshot snapshot : saved.getAllValues()) {
+            assertFalse(snapshot.getId().contains("sk-"));
+            assertEquals(16, snapshot.getKeyFingerprint().length());
+        }
+    }
+
+    private static String first(Flux<ModelInfo> models) {
+        return models.blockFirst(Duration.ofSeconds(5)).getId();
+    }
+
+    private static ModelInfo model(String id) {
+        return ModelInfo.basic(id, id, "openai");
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
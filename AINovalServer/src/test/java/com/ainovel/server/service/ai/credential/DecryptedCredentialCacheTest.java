@@ -0,0 +1,87 @@
+package com.ainovel.server.service.ai.credential;
+
+import com.ainovel.server.config.CredentialCacheConfiguration;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.jasypt.encryption.StringEncryptor;
+import org.jasypt.exceptions.EncryptionOperationNotPossibleException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 解密凭证缓存测试
+ */
+public class DecryptedCredentialCacheTest {
+
+    private StringEncryptor encryptor;
+    private CredentialCacheConfiguration configuration;
+    private DecryptedCredentialCache cache;
+
+    @BeforeEach
+    public void setUp() {
+        encryptor = mock(StringEncryptor.class);
+        when(encryptor.decrypt("enc-1")).thenReturn("sk-1");
+        when(encryptor.decrypt("enc-2")).thenReturn("sk-2");
+        configuration = new CredentialCacheConfiguration();
+        cache = new DecryptedCredentialCache(encryptor, configuration, new SimpleMeterRegistry());
+    }
+
+    @Test
+    public void testRepeatedDecryptionIsServedFromCache() {
+        assertEquals("sk-1", cache.decrypt("c1", "enc-1"));
+        assertEquals("sk-1", cache.decrypt("c1", "enc-1"));
+        verify(encryptor, times(1)).decrypt("enc-1");
+    }
+
+    @Test
+    public void testChangedCiphertextIsDecryptedAgain() {
+        assertEquals("sk-1", cache.decrypt("c1", "enc-1"));
+        assertEquals("sk-2", cache.decrypt("c1", "enc-2"));
+        verify(encryptor, times(1)).decrypt("enc-2");
+    }
+
+    @Test
+    public void testInvalidateRemovesAllEntriesOfConfig() {
+        cache.decrypt("c1", "enc-1");
+        cache.decrypt("c1", "enc-2");
+        cache.decrypt("c2", "enc-1");
+
+        cache.invalidate("c1");
+
+        assertEquals(1, cache.size());
+        cache.decrypt("c2", "enc-1");
+        verify(encryptor, times(2)).decrypt("enc-1");
+        cache.decrypt("c1", "enc-1");
+        verify(encryptor, times(3)).decrypt("enc-1");
+    }
+
+    @Test
+    public void testFailuresAreNotCached() {
+        when(encryptor.decrypt("bad")).thenThrow(new EncryptionOperationNotPossibleException());
+
+        assertThrows(EncryptionOperationNotPossibleException.class, () -> cache.decrypt("c1", "bad"));
+        assertThrows(EncryptionOperationNotPossibleException.class, () -> cache.decrypt("c1", "bad"));
+        verify(encryptor, times(2)).decrypt("bad");
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testEmptyCiphertextAndDisabledCache() {
+        assertNull(cache.decrypt("c1", null));
+        verify(encryptor, never()).decrypt(null);
+
+        configuration.setEnabled(false);
+        DecryptedCredentialCache disabled = new DecryptedCredentialCache(encryptor, configuration, new SimpleMeterRegistry());
+        disabled.decrypt("c1", "enc-1");
+        disabled.decrypt("c1", "enc-1");
+        verify(encryptor, times(2)).decrypt("enc-1");
+    }
+}
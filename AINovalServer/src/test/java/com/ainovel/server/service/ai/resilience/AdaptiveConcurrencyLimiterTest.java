@@ -0,0 +1,142 @@
+package com.ainovel.server.service.ai.resilience;
+
+import com.ainovel.server.config.ProviderConcurrencyConfiguration.LimitConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.Disposable;
+import reactor.test.StepVerifier;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * 自适应并发限制器测试：AIMD调整、Retry-After暂停放行、等待队列的交付与取消
+ */
+public class AdaptiveConcurrencyLimiterTest {
+
+    private LimitConfig config;
+
+    @BeforeEach
+    public void setUp() {
+        config = new LimitConfig();
+        config.setInitialLimit(1);
+        config.setMinLimit(1);
+        config.setMaxLimit(8);
+        config.setAdditiveIncrease(1.0);
+        config.setBackoffRatio(0.5);
+    }
+
+    @Test
+    public void testHealthySamplesAtLimitIncreaseAdditively() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("p", config);
+
+        AdaptiveConcurrencyLimiter.Permit permit = limiter.acquire().block();
+        permit.recordSuccess();
+        permit.release();
+
+        assertEquals(2, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void testIdleSamplesDoNotIncreaseLimit() {
+        config.setInitialLimit(4);
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("p", config);
+
+        AdaptiveConcurrencyLimiter.Permit permit = limiter.acquire().block();
+        permit.recordSuccess();
+        permit.release();
+
+        assertEquals(4, limiter.getLimit());
+    }
+
+    @Test
+    public void testOverloadBacksOffMultiplicativelyAndOtherErrorsDoNot() {
+        config.setInitialLimit(8);
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("p", config);
+
+        AdaptiveConcurrencyLimiter.Permit rejected = limiter.acquire().block();
+        rejected.recordFailure(new IllegalArgumentException("invalid prompt"));
+        rejected.release();
+        assertEquals(8, limiter.getLimit());
+
+        AdaptiveConcurrencyLimiter.Permit overloaded = limiter.acquire().block();
+        overloaded.recordFailure(status(503, null));
+        overloaded.release();
+        assertEquals(4, limiter.getLimit());
+
+        // 同一许可只上报一次样本
+        overloaded.recordFailure(status(503, null));
+        assertEquals(4, limiter.getLimit());
+    }
+
+    @Test
+    public void testRetryAfterPausesAdmissionUntilItExpires() {
+        config.setInitialLimit(2);
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("p", config);
+
+        AdaptiveConcurrencyLimiter.Permit permit = limiter.acquire().block();
+        permit.recordFailure(status(429, "0.3"));
+        permit.release();
+        assertEquals(1, limiter.getLimit());
+
+        StepVerifier.create(limiter.acquire())
+                .expectSubscription()
+                .expectNoEvent(Duration.ofMillis(150))
+                .assertNext(next -> {
+                    assertEquals(0, limiter.getQueued());
+                    next.release();
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    public void testQueuedWaiterReceivesReleasedPermit() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("p", config);
+        AdaptiveConcurrencyLimiter.Permit first = limiter.acquire().block();
+
+        AtomicReference<AdaptiveConcurrencyLimiter.Permit> second = new AtomicReference<>();
+        limiter.acquire().subscribe(second::set);
+        assertEquals(1, limiter.getQueued());
+        assertNull(second.get());
+
+        first.release();
+        assertNotNull(second.get());
+        assertEquals(0, limiter.getQueued());
+        assertEquals(1, limiter.getInFlight());
+    }
+
+    @Test
+    public void testCancelledAndTimedOutWaitersLeaveTheQueue() {
+        config.setAcquireTimeoutMillis(50);
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("p", config);
+        AdaptiveConcurrencyLimiter.Permit held = limiter.acquire().block();
+
+        Disposable cancelled = limiter.acquire().subscribe();
+        assertEquals(1, limiter.getQueued());
+        cancelled.dispose();
+        assertEquals(0, limiter.getQueued());
+
+        StepVerifier.create(limiter.acquire())
+                .verifyError(ConcurrencyLimitExceededException.class);
+        assertEquals(0, limiter.getQueued());
+
+        held.release();
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    private static WebClientResponseException status(int code, String retryAfter) {
+        HttpHeaders headers = new HttpHeaders();
+        if (retryAfter != null) {
+            headers.add("Retry-After", retryAfter);
+        }
+        return WebClientResponseException.create(code, "upstream", headers, new byte[0], StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,153 @@
+package com.ainovel.server.service.ai.resilience;
+
+import com.ainovel.server.config.ModelHedgingConfiguration;
+import com.ainovel.server.domain.model.AIResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 对冲生成执行器测试
+ */
+public class HedgedGenerationExecutorTest {
+
+    private ModelHedgingConfiguration configuration;
+
+    @BeforeEach
+    public void setUp() {
+        configuration = new ModelHedgingConfiguration();
+        configuration.setEnabled(true);
+        configuration.setDefaultDelayMillis(50);
+        configuration.setMinDelayMillis(10);
+        // 预算从空开始，每个主请求存入一整份，保证首个请求即可对冲
+        configuration.setBudgetRatio(1.0);
+        configuration.setBudgetBurst(1);
+    }
+
+    @Test
+    public void testSlowPrimaryIsHedgedAndCancelled() {
+        HedgedGenerationExecutor executor = new HedgedGenerationExecutor(configuration, new SimpleMeterRegistry());
+        AtomicBoolean primaryCancelled = new AtomicBoolean(false);
+        Mono<String> primary = Mono.delay(Duration.ofSeconds(5)).thenReturn("primary")
+                .doOnCancel(() -> primaryCancelled.set(true));
+
+        StepVerifier.create(executor.hedge("slow", primary, "fast", Mono.just("secondary")))
+                .expectNext("secondary")
+                .verifyComplete();
+        assertTrue(primaryCancelled.get());
+    }
+
+    @Test
+    public void testFastPrimaryDoesNotFireSecondary() {
+        HedgedGenerationExecutor executor = new HedgedGenerationExecutor(configuration, new SimpleMeterRegistry());
+        AtomicInteger secondaryCalls = new AtomicInteger();
+        Mono<String> secondary = Mono.fromSupplier(() -> {
+            secondaryCalls.incrementAndGet();
+            return "secondary";
+        });
+
+        StepVerifier.create(executor.hedge("fast", Mono.just("primary"), "other", secondary))
+                .expectNext("primary")
+                .verifyComplete();
+        assertEquals(0, secondaryCalls.get());
+    }
+
+    @Test
+    public void testBudgetStartsEmptyAndCapsExtraRequests() {
+        configuration.setBudgetRatio(0.5);
+        HedgedGenerationExecutor executor = new HedgedGenerationExecutor(configuration, new SimpleMeterRegistry());
+        AtomicInteger secondaryCalls = new AtomicInteger();
+        Mono<String> secondary = Mono.fromSupplier(() -> {
+            secondaryCalls.incrementAndGet();
+            return "secondary";
+        });
+        Mono<String> slowPrimary = Mono.delay(Duration.ofMillis(300)).thenReturn("primary");
+
+        // 每个主请求存入半份：第一次预算不足只能等待主请求，第二次凑满一份才能对冲，第三次又不足
+        StepVerifier.create(executor.hedge("slow", slowPrimary, "other", secondary))
+                .expectNext("primary")
+                .verifyComplete();
+        StepVerifier.create(executor.hedge("slow", slowPrimary, "other", secondary))
+                .expectNext("secondary")
+                .verifyComplete();
+        StepVerifier.create(executor.hedge("slow", slowPrimary, "other", secondary))
+                .expectNext("primary")
+                .verifyComplete();
+        assertEquals(1, secondaryCalls.get());
+    }
+
+    @Test
+    public void testFailedPrimaryFailsOverAndKeepsPrimaryErrorWhenBothFail() {
+        configuration.setDefaultDelayMillis(10000);
+        configuration.setMaxDelayMillis(10000);
+        configuration.setBudgetBurst(2);
+        HedgedGenerationExecutor executor = new HedgedGenerationExecutor(configuration, new SimpleMeterRegistry());
+
+        // 主请求提前失败时立即切换到备用模型，无需等待对冲延迟
+        StepVerifier.create(executor.hedge("broken", Mono.error(new IllegalStateException("primary")),
+                        "other", Mono.just("secondary")))
+                .expectNext("secondary")
+                .expectComplete()
+                .verify(Duration.ofSeconds(2));
+
+        StepVerifier.create(executor.hedge("broken", Mono.<String>error(new IllegalStateException("primary")),
+                        "other", Mono.error(new IllegalArgumentException("secondary"))))
+                .expectErrorMatches(e -> e instanceof IllegalStateException && "primary".equals(e.getMessage()))
+                .verify(Duration.ofSeconds(2));
+    }
+
+    @Test
+    public void testDelayFollowsObservedPercentile() {
+        configuration.setMinSamples(5);
+        HedgedGenerationExecutor executor = new HedgedGenerationExecutor(configuration, new SimpleMeterRegistry());
+        for (int i = 0; i < 5; i++) {
+            executor.hedge("model", Mono.delay(Duration.ofMillis(100)).thenReturn("ok"), null, null).block();
+        }
+        long delay = executor.hedgeDelay("model").toMillis();
+        assertTrue(delay >= 100 && delay < 1000, "delay=" + delay);
+    }
+
+    @Test
+    public void testErrorResponseFromProviderFailsOverAndIsNotSampled() {
+        configuration.setDefaultDelayMillis(10000);
+        configuration.setMaxDelayMillis(10000);
+        configuration.setMinSamples(1);
+        configuration.setBudgetBurst(2);
+        HedgedGenerationExecutor executor = new HedgedGenerationExecutor(configuration, new SimpleMeterRegistry());
+
+        // LangChain4j 提供商不抛出错误，而是返回 finishReason=error 的响应
+        StepVerifier.create(executor.hedge("broken", Mono.just(response("生成内容时出错", "error")),
+                        "other", Mono.just(response("ok", "stop")), HedgedGenerationExecutorTest::isError))
+                .expectNextMatches(r -> "ok".equals(r.getContent()))
+                .expectComplete()
+                .verify(Duration.ofSeconds(2));
+        assertEquals(10000, executor.hedgeDelay("broken").toMillis());
+
+        // 两个请求都返回错误响应时，按提供商的约定返回主请求的错误响应
+        StepVerifier.create(executor.hedge("broken", Mono.just(response("primary", "error")),
+                        "other", Mono.just(response("secondary", "error")), HedgedGenerationExecutorTest::isError))
+                .expectNextMatches(r -> "primary".equals(r.getContent()))
+                .expectComplete()
+                .verify(Duration.ofSeconds(2));
+    }
+
+    private static boolean isError(AIResponse response) {
+        return "error".equals(response.getFinishReason());
+    }
+
+    private static AIResponse response(String content, String finishReason) {
+        AIResponse response = new AIResponse();
+        response.setContent(content);
+        response.setFinishReason(finishReason);
+        return response;
+    }
+}
@@ -0,0 +1,116 @@
+package com.ainovel.server.service.ai.resilience;
+
+import com.ainovel.server.config.ProviderCircuitBreakerConfiguration;
+import com.ainovel.server.domain.model.UserAIModelConfig;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 提供商熔断测试：按 (提供商, 端点, 模型) 隔离、只统计上游故障、熔断时快速失败并切换到备用模型
+ */
+public class ProviderCircuitBreakerRegistryTest {
+
+    private ProviderCircuitBreakerRegistry registry;
+
+    @BeforeEach
+    public void setUp() {
+        ProviderCircuitBreakerConfiguration configuration = new ProviderCircuitBreakerConfiguration();
+        configuration.setSlidingWindowSize(4);
+        configuration.setMinimumNumberOfCalls(2);
+        configuration.setFallbackModels(Map.of("gpt-4o", "gpt-4o-mini"));
+        registry = new ProviderCircuitBreakerRegistry(configuration, new SimpleMeterRegistry());
+    }
+
+    @Test
+    public void testUpstreamFailuresOpenOnlyTheirOwnKey() {
+        open("openai", null, "gpt-4o");
+
+        assertFalse(registry.isCallPermitted("openai", null, "gpt-4o"));
+        assertFalse(registry.isCallPermitted("OpenAI", " ", "gpt-4o"));
+        assertTrue(registry.isCallPermitted("openai", "https://proxy.example.com/v1", "gpt-4o"));
+        assertTrue(registry.isCallPermitted("openai", null, "gpt-4o-mini"));
+        assertTrue(registry.isCallPermitted("azure", null, "gpt-4o"));
+    }
+
+    @Test
+    public void testCallerErrorsDoNotOpenTheBreaker() {
+        UpstreamCallGuard guard = new UpstreamCallGuard(null, registry.getCircuitBreaker("openai", null, "gpt-4o"));
+        for (int i = 0; i < 4; i++) {
+            StepVerifier.create(guard.guard(Mono.error(new IllegalArgumentException("invalid api key"))))
+                    .verifyError(IllegalArgumentException.class);
+        }
+
+        assertTrue(registry.isCallPermitted("openai", null, "gpt-4o"));
+    }
+
+    @Test
+    public void testGuardFailsFastWithoutCallingUpstreamWhenOpen() {
+        UpstreamCallGuard guard = new UpstreamCallGuard(null, registry.getCircuitBreaker("openai", null, "gpt-4o"));
+        for (int i = 0; i < 2; i++) {
+            StepVerifier.create(guard.guard(Mono.error(new TimeoutException())))
+                    .verifyError(TimeoutException.class);
+        }
+
+        AtomicBoolean called = new AtomicBoolean(false);
+        StepVerifier.create(guard.guard(Mono.fromCallable(() -> called.getAndSet(true))))
+                .verifyError(CallNotPermittedException.class);
+        assertFalse(called.get());
+
+        UpstreamCallGuard other = new UpstreamCallGuard(null, registry.getCircuitBreaker("openai", null, "gpt-4o-mini"));
+        StepVerifier.create(other.guard(Mono.just("ok")))
+                .expectNext("ok")
+                .verifyComplete();
+    }
+
+    @Test
+    public void testOpenCircuitRoutesToConfiguredFallbackModel() {
+        open("openai", null, "gpt-4o");
+        UserAIModelConfig primary = config("c1", "gpt-4o");
+        UserAIModelConfig fallback = config("c2", "gpt-4o-mini");
+
+        StepVerifier.create(registry.routeAroundOpenCircuit(primary, Flux.just(primary, config("c3", "gpt-3.5"), fallback)))
+                .expectNext(fallback)
+                .verifyComplete();
+    }
+
+    @Test
+    public void testClosedCircuitOrOpenFallbackKeepsOriginalModel() {
+        UserAIModelConfig primary = config("c1", "gpt-4o");
+        UserAIModelConfig fallback = config("c2", "gpt-4o-mini");
+
+        StepVerifier.create(registry.routeAroundOpenCircuit(primary, Flux.error(new IllegalStateException("不应读取候选配置"))))
+                .expectNext(primary)
+                .verifyComplete();
+
+        open("openai", null, "gpt-4o");
+        open("openai", null, "gpt-4o-mini");
+        StepVerifier.create(registry.routeAroundOpenCircuit(primary, Flux.just(primary, fallback)))
+                .expectNext(primary)
+                .verifyComplete();
+    }
+
+    private void open(String provider, String endpoint, String model) {
+        CircuitBreaker circuitBreaker = registry.getCircuitBreaker(provider, endpoint, model);
+        for (int i = 0; i < 2; i++) {
+            circuitBreaker.onError(0, TimeUnit.MILLISECONDS, new TimeoutException());
+        }
+    }
+
+    private static UserAIModelConfig config(String id, String model) {
+        return UserAIModelConfig.builder().id(id).userId("u1").provider("openai").modelName(model).isValidated(true).build();
+    }
+}
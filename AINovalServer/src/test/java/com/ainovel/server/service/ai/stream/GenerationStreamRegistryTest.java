@@ -0,0 +1,201 @@
+package com.ainovel.server.service.ai.stream;
+
+import com.ainovel.server.config.StreamResumeConfiguration;
+import com.ainovel.server.domain.model.GenerationCheckpoint;
+import com.ainovel.server.repository.GenerationCheckpointRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 可续传流式生成测试：断线重连只补发缺失部分，且不重复调用上游
+ */
+public class GenerationStreamRegistryTest {
+
+    private StreamResumeConfiguration configuration;
+    private GenerationCheckpointRepository checkpointRepository;
+    private final List<String> storedChunks = new ArrayList<>();
+    private final AtomicReference<String> storedStatus = new AtomicReference<>();
+    private final AtomicInteger upstreamCalls = new AtomicInteger();
+    private Sinks.Many<String> upstream;
+
+    @BeforeEach
+    public void setUp() {
+        configuration = new StreamResumeConfiguration();
+        configuration.setCheckpointIntervalMillis(0);
+        checkpointRepository = mock(GenerationCheckpointRepository.class);
+        when(checkpointRepository.appendChunks(anyString(), anyString(), anyLong(), anyList(), anyString(), any(), any()))
+                .thenAnswer(invocation -> {
+                    synchronized (storedChunks) {
+                        if (invocation.<Long>getArgument(2) != storedChunks.size()) {
+                            return Mono.just(false);
+                        }
+                        storedChunks.addAll(invocation.getArgument(3));
+                        storedStatus.set(invocation.getArgument(4));
+                        return Mono.just(true);
+                    }
+                });
+        when(checkpointRepository.findById(anyString())).thenAnswer(invocation -> {
+            synchronized (storedChunks) {
+                return Mono.just(GenerationCheckpoint.builder()
+                        .id(invocation.getArgument(0))
+                        .scope("chat:u1:s1")
+                        .status(storedStatus.get())
+                        .lastSeq(storedChunks.size())
+                        .chunks(new ArrayList<>(storedChunks))
+                        .build());
+            }
+        });
+        upstream = Sinks.many().unicast().onBackpressureBuffer();
+    }
+
+    @Test
+    public void testReconnectReceivesOnlyMissingSuffix() {
+        GenerationStreamRegistry registry = newRegistry();
+        List<StreamEvent<String>> received = new ArrayList<>();
+
+        StepVerifier.create(registry.startOrResume(null, "chat:u1:s1", String.class, this::source))
+                .then(() -> emit("一", "二"))
+                .recordWith(() -> received)
+                .expectNextCount(2)
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+
+        // 客户端断开期间生成继续
+        emit("三", "四");
+        upstream.tryEmitComplete();
+
+        String lastEventId = received.get(1).eventId();
+        StepVerifier.create(registry.startOrResume(lastEventId, "chat:u1:s1", String.class, this::source))
+                .assertNext(event -> assertEquals("三", event.data()))
+                .assertNext(event -> {
+                    assertEquals("四", event.data());
+                    assertEquals(4, event.seq());
+                })
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+        assertEquals(1, upstreamCalls.get());
+    }
+
+    @Test
+    public void testEvictedEventsAreReplayedFromCheckpoint() {
+        configuration.setRingCapacity(2);
+        GenerationStreamRegistry registry = newRegistry();
+        AtomicReference<String> firstId = new AtomicReference<>();
+
+        StepVerifier.create(registry.startOrResume(null, "chat:u1:s1", String.class, this::source))
+                .then(() -> emit("一"))
+                .consumeNextWith(event -> firstId.set(event.eventId()))
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+
+        emit("二", "三", "四", "五");
+
+        StepVerifier.create(registry.startOrResume(firstId.get(), "chat:u1:s1", String.class, this::source))
+                .expectNextMatches(event -> "二".equals(event.data()) && event.seq() == 2)
+                .expectNextMatches(event -> "三".equals(event.data()))
+                .expectNextMatches(event -> "四".equals(event.data()))
+                .expectNextMatches(event -> "五".equals(event.data()))
+                .then(() -> {
+                    emit("六");
+                    upstream.tryEmitComplete();
+                })
+                .expectNextMatches(event -> "六".equals(event.data()) && event.seq() == 6)
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+        assertEquals(1, upstreamCalls.get());
+    }
+
+    @Test
+    public void testCompletedGenerationIsReplayedFromCheckpointOnAnotherNode() {
+        GenerationStreamRegistry registry = newRegistry();
+        List<StreamEvent<String>> received = new ArrayList<>();
+
+        StepVerifier.create(registry.startOrResume(null, "chat:u1:s1", String.class, this::source))
+                .then(() -> {
+                    emit("一", "二", "三");
+                    upstream.tryEmitComplete();
+                })
+                .recordWith(() -> received)
+                .expectNextCount(3)
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+        assertEquals(GenerationCheckpoint.STATUS_COMPLETED, storedStatus.get());
+
+        GenerationStreamRegistry otherNode = newRegistry();
+        StepVerifier.create(otherNode.startOrResume(received.get(0).eventId(), "chat:u1:s1", String.class, this::source))
+                .expectNextMatches(event -> "二".equals(event.data()))
+                .expectNextMatches(event -> "三".equals(event.data()))
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+        assertEquals(1, upstreamCalls.get());
+    }
+
+    @Test
+    public void testResumeWithForeignScopeStartsNewGeneration() {
+        GenerationStreamRegistry registry = newRegistry();
+        AtomicReference<String> firstId = new AtomicReference<>();
+
+        StepVerifier.create(registry.startOrResume(null, "chat:u1:s1", String.class, this::source))
+                .then(() -> emit("一"))
+                .consumeNextWith(event -> firstId.set(event.eventId()))
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+
+        upstream = Sinks.many().unicast().onBackpressureBuffer();
+        StepVerifier.create(registry.startOrResume(firstId.get(), "chat:u2:s9", String.class, this::source))
+                .then(() -> emit("新"))
+                .assertNext(event -> {
+                    assertEquals("新", event.data());
+                    assertEquals(1, event.seq());
+                    assertNotEquals(StreamEvent.parse(firstId.get()).generationId(), event.generationId());
+                })
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+        assertEquals(2, upstreamCalls.get());
+    }
+
+    @Test
+    public void testParseLastEventId() {
+        StreamEvent.Position position = StreamEvent.parse("abc-123:42");
+        assertEquals("abc-123", position.generationId());
+        assertEquals(42, position.seq());
+        assertEquals(null, StreamEvent.parse("abc-123"));
+        assertEquals(null, StreamEvent.parse("abc:x"));
+        assertEquals(null, StreamEvent.parse(null));
+    }
+
+    private GenerationStreamRegistry newRegistry() {
+        return new GenerationStreamRegistry(configuration, checkpointRepository, new ObjectMapper());
+    }
+
+    private Flux<String> source() {
+        upstreamCalls.incrementAndGet();
+        return upstream.asFlux();
+    }
+
+    private void emit(String... chunks) {
+        for (String chunk : chunks) {
+            upstream.tryEmitNext(chunk);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.ainovel.server.service.ai.stream;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * SSE 流式增量解码器测试（基于录制的上游流）
+ */
+public class SseDeltaDecoderTest {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    @Test
+    public void testOpenAiStreamSplitAtArbitraryBoundaries() throws IOException {
+        byte[] stream = load("/sse/openai-chat-stream.txt");
+        String expected = expectedText(stream, "/choices/0/delta/content");
+
+        // 覆盖在多字节字符、data: 前缀与 JSON 中间切分的情况，分别使用堆内与直接内存缓冲区
+        for (int chunkSize : new int[]{1, 7, 64, 1500, stream.length}) {
+            assertEquals(expected, decode(SseDeltaDecoder.OPENAI_CHAT, stream, chunkSize, false));
+            assertEquals(expected, decode(SseDeltaDecoder.OPENAI_CHAT, stream, chunkSize, true));
+        }
+    }
+
+    @Test
+    public void testAnthropicStreamIgnoresNonDeltaEvents() throws IOException {
+        byte[] stream = load("/sse/anthropic-messages-stream.txt");
+        String expected = expectedText(stream, "/delta/text");
+
+        assertEquals(expected, decode(SseDeltaDecoder.ANTHROPIC_MESSAGES, stream, 333, false));
+    }
+
+    @Test
+    public void testMalformedEventIsSkippedWithoutBreakingStream() {
+        String stream = "data: {\"choices\":[{\"delta\":{\"content\":\"甲\"}}]}\r\n\r\n"
+                + "data: {\"choices\":[{\"delta\":{\"content\":\n\n"
+                + ": keep-alive\n\n"
+                + "data: {\"choices\":[{\"delta\":{\"content\":\"乙\"}},{\"delta\":{\"content\":\"x\"}}]}\n\n"
+                + "data: [DONE]";
+
+        assertEquals("甲乙", decode(SseDeltaDecoder.OPENAI_CHAT, stream.getBytes(StandardCharsets.UTF_8), 5, false));
+    }
+
+    @Test
+    public void testFluxDecodingReleasesBuffers() throws IOException {
+        byte[] stream = load("/sse/openai-chat-stream.txt");
+        DefaultDataBufferFactory factory = new DefaultDataBufferFactory();
+        List<DataBuffer> buffers = split(factory, stream, 512);
+
+        String decoded = String.join("", SseDeltaDecoder.OPENAI_CHAT.decode(Flux.fromIterable(buffers))
+                .collectList()
+                .block());
+
+        assertEquals(expectedText(stream, "/choices/0/delta/content"), decoded);
+    }
+
+    private static String decode(SseDeltaDecoder decoder, byte[] stream, int chunkSize, boolean direct) {
+        StringBuilder text = new StringBuilder();
+        try (SseDeltaDecoder.Session session = decoder.newSession()) {
+            for (DataBuffer buffer : split(new DefaultDataBufferFactory(direct), stream, chunkSize)) {
+                session.decode(buffer, text::append);
+            }
+            session.finish(text::append);
+        }
+        return text.toString();
+    }
+
+    private static List<DataBuffer> split(DefaultDataBufferFactory factory, byte[] stream, int chunkSize) {
+        List<DataBuffer> buffers = new ArrayList<>();
+        for (int offset = 0; offset < stream.length; offset += chunkSize) {
+            int length = Math.min(chunkSize, stream.length - offset);
+            DataBuffer buffer = factory.allocateBuffer(length);
+            buffer.write(stream, offset, length);
+            buffers.add(buffer);
+        }
+        return buffers;
+    }
+
+    private static String expectedText(byte[] stream, String pointer) throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (String line : new String(stream, StandardCharsets.UTF_8).split("\n")) {
+            if (line.startsWith("data: ") && !line.equals("data: [DONE]")) {
+                JsonNode value = OBJECT_MAPPER.readTree(line.substring(6)).at(pointer);
+                if (value.isTextual()) {
+                    text.append(value.asText());
+                }
+            }
+        }
+        return text.toString();
+    }
+
+    private static byte[] load(String resource) throws IOException {
+        try (InputStream in = SseDeltaDecoderTest.class.getResourceAsStream(resource)) {
+            return in.readAllBytes();
+        }
+    }
+}
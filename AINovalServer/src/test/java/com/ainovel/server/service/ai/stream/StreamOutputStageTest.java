@@ -0,0 +1,111 @@
+package com.ainovel.server.service.ai.stream;
+
+import com.ainovel.server.config.StreamOutputConfiguration;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+import reactor.test.scheduler.VirtualTimeScheduler;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 流式输出合帧与共享心跳测试
+ */
+public class StreamOutputStageTest {
+
+    private StreamOutputConfiguration configuration;
+    private SimpleMeterRegistry meterRegistry;
+    private StreamHeartbeatScheduler heartbeatScheduler;
+
+    @BeforeEach
+    public void setUp() {
+        configuration = new StreamOutputConfiguration();
+        configuration.setHeartbeatIntervalSeconds(1);
+        configuration.setHeartbeatTickMillis(100);
+        meterRegistry = new SimpleMeterRegistry();
+        heartbeatScheduler = new StreamHeartbeatScheduler(configuration, meterRegistry);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        heartbeatScheduler.shutdown();
+    }
+
+    @Test
+    public void testChunksWithinWindowAreMergedIntoOneFrame() {
+        VirtualTimeScheduler timer = VirtualTimeScheduler.create();
+        Sinks.Many<String> upstream = Sinks.many().unicast().onBackpressureBuffer();
+
+        StepVerifier.create(StreamOutputStage.coalesce(upstream.asFlux(), Duration.ofMillis(20), 256,
+                        StreamOutputStage.CONTROL_CHUNK, timer))
+                .then(() -> {
+                    upstream.tryEmitNext("从前");
+                    upstream.tryEmitNext("有座");
+                    upstream.tryEmitNext("山");
+                })
+                .expectNoEvent(Duration.ofMillis(1))
+                .then(() -> timer.advanceTimeBy(Duration.ofMillis(20)))
+                .expectNext("从前有座山")
+                .then(() -> {
+                    upstream.tryEmitNext("山里");
+                    upstream.tryEmitComplete();
+                })
+                .expectNext("山里")
+                .verifyComplete();
+    }
+
+    @Test
+    public void testFrameIsFlushedWhenByteLimitIsReached() {
+        VirtualTimeScheduler timer = VirtualTimeScheduler.create();
+        // 每个汉字3个UTF-8字节，9字节上限在第3个字时写出
+        StepVerifier.create(StreamOutputStage.coalesce(Flux.just("一", "二", "三", "四"), Duration.ofSeconds(10), 9,
+                        StreamOutputStage.CONTROL_CHUNK, timer))
+                .expectNext("一二三")
+                .expectNext("四")
+                .verifyComplete();
+    }
+
+    @Test
+    public void testControlChunksFlushBufferAndPassThrough() {
+        VirtualTimeScheduler timer = VirtualTimeScheduler.create();
+        StepVerifier.create(StreamOutputStage.coalesce(Flux.just("a", "b", "heartbeat", "c", "[DONE]"),
+                        Duration.ofSeconds(10), 256, StreamOutputStage.CONTROL_CHUNK, timer))
+                .expectNext("ab", "heartbeat", "c", "[DONE]")
+                .verifyComplete();
+    }
+
+    @Test
+    public void testFrameMetricsAreRecordedPerEndpoint() {
+        StreamOutputStage stage = new StreamOutputStage(configuration, heartbeatScheduler, meterRegistry);
+
+        StepVerifier.create(stage.frame("chat", Flux.just("a", "b", "c")))
+                .expectNext("abc")
+                .verifyComplete();
+
+        assertEquals(3.0, meterRegistry.get("ai.stream.chunks").tag("endpoint", "chat").counter().count());
+        assertEquals(1.0, meterRegistry.get("ai.stream.frames").tag("endpoint", "chat").counter().count());
+        assertEquals(0.0, meterRegistry.get("ai.stream.active").tag("endpoint", "chat").gauge().value());
+    }
+
+    @Test
+    public void testIdleStreamReceivesHeartbeatsFromSharedWheel() {
+        Sinks.Many<String> upstream = Sinks.many().unicast().onBackpressureBuffer();
+
+        StepVerifier.create(heartbeatScheduler.withHeartbeat(upstream.asFlux(), () -> "heartbeat")
+                        .subscribeOn(Schedulers.parallel()))
+                .then(() -> upstream.tryEmitNext("内容"))
+                .expectNext("内容")
+                .expectNext("heartbeat")
+                .then(() -> assertEquals(1, heartbeatScheduler.activeCount()))
+                .then(upstream::tryEmitComplete)
+                .verifyComplete();
+        assertEquals(0, heartbeatScheduler.activeCount());
+    }
+}
@@ -0,0 +1,159 @@
+package com.ainovel.server.service.impl;
+
+import com.ainovel.server.config.ChatMemoryConfiguration;
+import com.ainovel.server.config.CredentialCacheConfiguration;
+import com.ainovel.server.config.StreamOutputConfiguration;
+import com.ainovel.server.domain.model.AIChatMessage;
+import com.ainovel.server.domain.model.AIChatSession;
+import com.ainovel.server.domain.model.AIRequest;
+import com.ainovel.server.domain.model.AIResponse;
+import com.ainovel.server.domain.model.UserAIModelConfig;
+import com.ainovel.server.repository.AIChatMessageRepository;
+import com.ainovel.server.repository.AIChatSessionRepository;
+import com.ainovel.server.service.AIService;
+import com.ainovel.server.service.UserAIModelConfigService;
+import com.ainovel.server.service.ai.credential.DecryptedCredentialCache;
+import com.ainovel.server.service.ai.stream.StreamHeartbeatScheduler;
+import com.ainovel.server.service.ai.stream.StreamOutputStage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.jasypt.encryption.StringEncryptor;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import reactor.blockhound.BlockHound;
+import reactor.blockhound.BlockingOperationError;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 聊天发送/流式链路的非阻塞测试
+ * 所有依赖都在非阻塞线程（parallel调度器）上发出信号，BlockHound 会将其中的任何阻塞调用报告为错误
+ */
+public class AIChatServiceImplBlockingTest {
+
+    private AIChatSessionRepository sessionRepository;
+    private AIChatMessageRepository messageRepository;
+    private UserAIModelConfigService configService;
+    private AIService aiService;
+    private AIChatServiceImpl chatService;
+
+    @BeforeAll
+    public static void installBlockHound() {
+        BlockHound.install();
+    }
+
+    @BeforeEach
+    public void setUp() {
+        sessionRepository = mock(AIChatSessionRepository.class);
+        messageRepository = mock(AIChatMessageRepository.class);
+        configService = mock(UserAIModelConfigService.class);
+        aiService = mock(AIService.class);
+        StringEncryptor encryptor = mock(StringEncryptor.class);
+
+        AIChatSession session = AIChatSession.builder()
+                .sessionId("s1").userId("u1").selectedModelConfigId("c1").messageCount(2).build();
+        UserAIModelConfig config = UserAIModelConfig.builder()
+                .id("c1").userId("u1").provider("openai").modelName("gpt-4o").apiKey("enc").isValidated(true).build();
+        AIChatMessage previous = AIChatMessage.builder()
+                .sessionId("s1").role("assistant").content("上一轮回答").createdAt(LocalDateTime.now().minusMinutes(1)).build();
+
+        when(sessionRepository.findByUserIdAndSessionId("u1", "s1")).thenReturn(onParallel(Mono.just(session)));
+        when(sessionRepository.recordMessages(eq("s1"), anyInt(), any())).thenReturn(onParallel(Mono.just(true)));
+        when(configService.getConfigurationById("u1", "c1")).thenReturn(onParallel(Mono.just(config)));
+        when(messageRepository.findBySessionIdOrderByCreatedAtDesc(eq("s1"), anyInt()))
+                .thenReturn(Flux.just(previous).publishOn(Schedulers.parallel()));
+        when(messageRepository.save(any(AIChatMessage.class)))
+                .thenAnswer(invocation -> onParallel(Mono.just(invocation.<AIChatMessage>getArgument(0))));
+        when(encryptor.decrypt("enc")).thenReturn("sk-test");
+        when(aiService.generateContent(any(AIRequest.class), eq("sk-test"), any()))
+                .thenReturn(onParallel(Mono.just(AIResponse.builder().content("回答").build())));
+        when(aiService.generateContentStream(any(AIRequest.class), eq("sk-test"), any()))
+                .thenReturn(Flux.just("你", "好").publishOn(Schedulers.parallel()));
+
+        chatService = new AIChatServiceImpl(sessionRepository, messageRepository, configService, aiService,
+                new DecryptedCredentialCache(encryptor, new CredentialCacheConfiguration(), new SimpleMeterRegistry()),
+                new ChatMemoryServiceImpl(new ChatMemoryConfiguration(), aiService, sessionRepository, messageRepository),
+                new StreamOutputStage(new StreamOutputConfiguration(), StreamHeartbeatScheduler.NONE, new SimpleMeterRegistry()));
+    }
+
+    @Test
+    public void testSendMessageDoesNotBlock() {
+        StepVerifier.create(chatService.sendMessage("u1", "s1", "新问题", Map.of())
+                        .subscribeOn(Schedulers.parallel()))
+                .assertNext(message -> assertEquals("回答", message.getContent()))
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+
+        ArgumentCaptor<AIRequest> request = ArgumentCaptor.forClass(AIRequest.class);
+        verify(aiService).generateContent(request.capture(), eq("sk-test"), any());
+        List<AIRequest.Message> messages = request.getValue().getMessages();
+        assertEquals(2, messages.size());
+        assertTrue(messages.get(0).isCacheable());
+        assertEquals("新问题", messages.get(1).getContent());
+        verify(sessionRepository).recordMessages(eq("s1"), eq(2), any());
+        verify(sessionRepository, never()).save(any());
+    }
+
+    @Test
+    public void testStreamMessageDoesNotBlock() {
+        StringBuilder streamed = new StringBuilder();
+        // 令牌块可能被合并为一帧，只校验拼接后的内容
+        StepVerifier.create(chatService.streamMessage("u1", "s1", "新问题", Map.of())
+                        .subscribeOn(Schedulers.parallel()))
+                .thenConsumeWhile(chunk -> "STREAM_CHUNK".equals(chunk.getMessageType()),
+                        chunk -> streamed.append(chunk.getContent()))
+                .assertNext(full -> assertEquals("你好", full.getContent()))
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+        assertEquals("你好", streamed.toString());
+
+        verify(sessionRepository).recordMessages(eq("s1"), eq(2), any());
+        verify(sessionRepository, never()).save(any());
+    }
+
+    @Test
+    public void testBlockingCallOnNonBlockingThreadIsDetected() {
+        StepVerifier.create(Mono.fromCallable(() -> {
+                            Thread.sleep(1);
+                            return "x";
+                        })
+                        .subscribeOn(Schedulers.parallel()))
+                .expectError(BlockingOperationError.class)
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    public void testMissingSessionFailsWithoutCallingModel() {
+        when(sessionRepository.findByUserIdAndSessionId(anyString(), eq("missing"))).thenReturn(onParallel(Mono.empty()));
+        when(messageRepository.findBySessionIdOrderByCreatedAtDesc(eq("missing"), anyInt())).thenReturn(Flux.empty());
+
+        StepVerifier.create(chatService.sendMessage("u1", "missing", "新问题", Map.of())
+                        .subscribeOn(Schedulers.parallel()))
+                .expectErrorMatches(e -> e.getMessage().contains("会话不存在"))
+                .verify(Duration.ofSeconds(5));
+        verify(aiService, never()).generateContent(any(), anyString(), any());
+    }
+
+    private static <T> Mono<T> onParallel(Mono<T> mono) {
+        return mono.publishOn(Schedulers.parallel());
+    }
+}
@@ -0,0 +1,198 @@
+package com.ainovel.server.service.impl;
+
+import com.ainovel.server.config.ChatMemoryConfiguration;
+import com.ainovel.server.domain.model.AIChatMessage;
+import com.ainovel.server.domain.model.AIChatSession;
+import com.ainovel.server.domain.model.AIRequest;
+import com.ainovel.server.domain.model.AIResponse;
+import com.ainovel.server.domain.model.UserAIModelConfig;
+import com.ainovel.server.repository.AIChatMessageRepository;
+import com.ainovel.server.repository.AIChatSessionRepository;
+import com.ainovel.server.service.AIService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 聊天会话滚动摘要记忆测试
+ */
+public class ChatMemoryServiceImplTest {
+
+    private static final LocalDateTime BASE = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+    private ChatMemoryConfiguration configuration;
+    private AIService aiService;
+    private AIChatSessionRepository sessionRepository;
+    private AIChatMessageRepository messageRepository;
+    private ChatMemoryServiceImpl memoryService;
+    private UserAIModelConfig config;
+
+    @BeforeEach
+    public void setUp() {
+        configuration = new ChatMemoryConfiguration();
+        configuration.setRecentTokenBudget(100);
+        configuration.setSummarizeThresholdTokens(150);
+        configuration.setKeepRecentMessages(2);
+        aiService = mock(AIService.class);
+        sessionRepository = mock(AIChatSessionRepository.class);
+        messageRepository = mock(AIChatMessageRepository.class);
+        memoryService = new ChatMemoryServiceImpl(configuration, aiService, sessionRepository, messageRepository);
+        config = UserAIModelConfig.builder().id("c1").userId("u1").provider("openai").modelName("gpt-4o").build();
+    }
+
+    @Test
+    public void testContextKeepsNewestMessagesWithinBudget() {
+        // 每条消息40个汉字，预算100只能容纳最近两条
+        List<AIChatMessage> history = messages(5, 40);
+        AIChatSession session = AIChatSession.builder().sessionId("s1").userId("u1").build();
+
+        List<AIRequest.Message> context = memoryService.buildContext(session, history);
+
+        assertEquals(2, context.size());
+        assertEquals(history.get(3).getContent(), context.get(0).getContent());
+        assertEquals(history.get(4).getContent(), context.get(1).getContent());
+        assertTrue(context.get(1).isCacheable());
+    }
+
+    @Test
+    public void testContextStartsWithSummaryAndSkipsSummarizedMessages() {
+        List<AIChatMessage> history = messages(4, 10);
+        AIChatSession session = AIChatSession.builder().sessionId("s1").userId("u1")
+                .memorySummary("主角决定离开王都")
+                .memorySummarizedUntil(history.get(1).getCreatedAt())
+                .build();
+
+        List<AIRequest.Message> context = memoryService.buildContext(session, history);
+
+        assertEquals(3, context.size());
+        assertEquals("system", context.get(0).getRole());
+        assertTrue(context.get(0).getContent().endsWith("主角决定离开王都"));
+        assertTrue(context.get(0).isCacheable());
+        assertEquals(history.get(2).getContent(), context.get(1).getContent());
+    }
+
+    @Test
+    public void testLatestMessageIsKeptEvenWhenOverBudget() {
+        List<AIChatMessage> history = messages(2, 300);
+        AIChatSession session = AIChatSession.builder().sessionId("s1").userId("u1").build();
+
+        List<AIRequest.Message> context = memoryService.buildContext(session, history);
+
+        assertEquals(1, context.size());
+        assertEquals(history.get(1).getContent(), context.get(0).getContent());
+    }
+
+    @Test
+    public void testNoSummaryBelowThreshold() {
+        AIChatSession session = AIChatSession.builder().sessionId("s1").userId("u1").build();
+
+        StepVerifier.create(memoryService.updateSummaryIfNeeded(session, messages(3, 40), config, "sk"))
+                .expectNext(false)
+                .verifyComplete();
+        verify(aiService, never()).generateContent(any(), anyString(), any());
+    }
+
+    @Test
+    public void testSummaryFoldsOlderMessagesAndAdvancesWatermark() {
+        List<AIChatMessage> history = messages(6, 40);
+        LocalDateTime previousUntil = BASE.minusMinutes(1);
+        AIChatSession session = AIChatSession.builder().sessionId("s1").userId("u1")
+                .memorySummary("旧摘要").memorySummarizedUntil(previousUntil).build();
+        when(messageRepository.findBySessionIdAndCreatedAtBetweenOrderByCreatedAtAsc("s1", previousUntil, history.get(4).getCreatedAt()))
+                .thenReturn(Flux.fromIterable(history.subList(0, 4)));
+        when(aiService.generateContent(any(AIRequest.class), eq("sk"), any()))
+                .thenReturn(Mono.just(AIResponse.builder().content(" 新摘要 ").build()));
+        when(sessionRepository.updateMemorySummary(any(), any(), any(), any())).thenReturn(Mono.just(true));
+
+        StepVerifier.create(memoryService.updateSummaryIfNeeded(session, history, config, "sk"))
+                .expectNext(true)
+                .verifyComplete();
+
+        ArgumentCaptor<AIRequest> request = ArgumentCaptor.forClass(AIRequest.class);
+        verify(aiService).generateContent(request.capture(), eq("sk"), any());
+        String prompt = request.getValue().getMessages().get(1).getContent();
+        assertTrue(prompt.contains("旧摘要"));
+        assertTrue(prompt.contains(history.get(3).getContent()));
+        assertTrue(!prompt.contains(history.get(4).getContent()));
+        assertEquals(configuration.getSummaryMaxTokens(), request.getValue().getMaxTokens());
+        verify(sessionRepository).updateMemorySummary("s1", previousUntil, "新摘要", history.get(3).getCreatedAt());
+    }
+
+    @Test
+    public void testFailedGenerationDoesNotUpdateSummary() {
+        List<AIChatMessage> history = messages(6, 40);
+        AIChatSession session = AIChatSession.builder().sessionId("s1").userId("u1").build();
+        when(messageRepository.findBySessionIdAndCreatedAtBeforeOrderByCreatedAtAsc("s1", history.get(4).getCreatedAt()))
+                .thenReturn(Flux.fromIterable(history.subList(0, 4)));
+        AIResponse error = AIResponse.builder().content("调用失败").build();
+        error.setFinishReason("error");
+        when(aiService.generateContent(any(AIRequest.class), eq("sk"), any())).thenReturn(Mono.just(error));
+
+        StepVerifier.create(memoryService.updateSummaryIfNeeded(session, history, config, "sk"))
+                .expectNext(false)
+                .verifyComplete();
+        verify(sessionRepository, never()).updateMemorySummary(any(), any(), any(), any());
+    }
+
+    @Test
+    public void testFullWindowOfShortMessagesFoldsEverythingAfterWatermark() {
+        // 消息很短，令牌数远低于阈值，但读取的最近消息已全部未摘要，更早的消息不在读取范围内
+        configuration.setMaxHistoryMessages(4);
+        List<AIChatMessage> all = messages(8, 2);
+        List<AIChatMessage> window = all.subList(4, 8);
+        AIChatSession session = AIChatSession.builder().sessionId("s1").userId("u1").build();
+        LocalDateTime keepFrom = all.get(6).getCreatedAt();
+        when(messageRepository.findBySessionIdAndCreatedAtBeforeOrderByCreatedAtAsc("s1", keepFrom))
+                .thenReturn(Flux.fromIterable(all.subList(0, 6)));
+        when(messageRepository.findBySessionIdAndCreatedAtBetweenOrderByCreatedAtAsc("s1", all.get(3).getCreatedAt(), keepFrom))
+                .thenReturn(Flux.fromIterable(all.subList(4, 6)));
+        when(aiService.generateContent(any(AIRequest.class), eq("sk"), any()))
+                .thenReturn(Mono.just(AIResponse.builder().content("摘要一").build()))
+                .thenReturn(Mono.just(AIResponse.builder().content("摘要二").build()));
+        when(sessionRepository.updateMemorySummary(any(), any(), any(), any())).thenReturn(Mono.just(true));
+
+        StepVerifier.create(memoryService.updateSummaryIfNeeded(session, window, config, "sk"))
+                .expectNext(true)
+                .verifyComplete();
+
+        // 水位连续前移：先并入读取范围之外最早的一批，再并入其余，最近两条保留为原始消息
+        verify(sessionRepository).updateMemorySummary("s1", null, "摘要一", all.get(3).getCreatedAt());
+        verify(sessionRepository).updateMemorySummary("s1", all.get(3).getCreatedAt(), "摘要二", all.get(5).getCreatedAt());
+        ArgumentCaptor<AIRequest> requests = ArgumentCaptor.forClass(AIRequest.class);
+        verify(aiService, times(2)).generateContent(requests.capture(), eq("sk"), any());
+        String secondPrompt = requests.getAllValues().get(1).getMessages().get(1).getContent();
+        assertTrue(secondPrompt.contains("摘要一"));
+        assertTrue(!secondPrompt.contains(all.get(6).getContent()));
+    }
+
+    private static List<AIChatMessage> messages(int count, int length) {
+        List<AIChatMessage> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(AIChatMessage.builder()
+                    .sessionId("s1")
+                    .role(i % 2 == 0 ? "user" : "assistant")
+                    .content(String.valueOf((char) ('甲' + i)).repeat(length))
+                    .createdAt(BASE.plusMinutes(i))
+                    .build());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,104 @@
+package com.ainovel.server.service.modelconfig;
+
+import com.ainovel.server.config.ModelConfigCacheConfiguration;
+import com.ainovel.server.domain.model.UserAIModelConfig;
+import com.ainovel.server.repository.UserAIModelConfigRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 用户模型配置缓存测试
+ */
+public class UserModelConfigCacheTest {
+
+    private UserAIModelConfigRepository repository;
+    private UserModelConfigCache cache;
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @BeforeEach
+    public void setUp() {
+        repository = mock(UserAIModelConfigRepository.class);
+        cache = new UserModelConfigCache(repository, new ModelConfigCacheConfiguration());
+    }
+
+    @Test
+    public void testSnapshotIndexesAndReturnsCopies() {
+        stubConfigs(config("c1", "gpt-4o", true, false), config("c2", "claude-3-haiku", true, true),
+                config("c3", "gemini-pro", false, false));
+
+        UserModelConfigSnapshot snapshot = cache.snapshot("u1").block(Duration.ofSeconds(5));
+
+        assertEquals("c2", snapshot.validatedDefault().orElseThrow().getId());
+        assertEquals("c3", snapshot.findByModelName("gemini-pro").orElseThrow().getId());
+        assertEquals(2, snapshot.validated().size());
+        assertEquals("c1", snapshot.findValidated("openai", "gpt-4o").orElseThrow().getId());
+        assertTrue(snapshot.findValidated("openai", "gemini-pro").isEmpty());
+
+        snapshot.findById("c1").orElseThrow().setModelName("changed");
+        assertEquals("gpt-4o", snapshot.findById("c1").orElseThrow().getModelName());
+    }
+
+    @Test
+    public void testHitsDoNotReloadAndConcurrentMissesShareOneLoad() {
+        Sinks.One<UserAIModelConfig> release = Sinks.one();
+        when(repository.findByUserId("u1")).thenAnswer(invocation -> {
+            loads.incrementAndGet();
+            return release.asMono().flux();
+        });
+
+        cache.snapshot("u1").subscribe();
+        cache.snapshot("u1").subscribe();
+        release.tryEmitValue(config("c1", "gpt-4o", true, true));
+
+        assertEquals(1, cache.snapshot("u1").block(Duration.ofSeconds(5)).all().size());
+        assertEquals(1, cache.snapshot("u1").block(Duration.ofSeconds(5)).all().size());
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void testInvalidateDuringLoadDiscardsStaleResult() {
+        Sinks.One<UserAIModelConfig> stale = Sinks.one();
+        when(repository.findByUserId("u1"))
+                .thenAnswer(invocation -> stale.asMono().flux())
+                .thenAnswer(invocation -> Flux.just(config("c1", "gpt-4o", true, true)));
+
+        cache.snapshot("u1").subscribe();
+        cache.invalidate("u1");
+        stale.tryEmitValue(config("c1", "gpt-4o", false, false));
+
+        assertTrue(cache.snapshot("u1").block(Duration.ofSeconds(5)).findById("c1").orElseThrow().getIsValidated());
+    }
+
+    @Test
+    public void testRefreshReloadsAfterWrite() {
+        when(repository.findByUserId("u1"))
+                .thenReturn(Flux.just(config("c1", "gpt-4o", false, false)))
+                .thenReturn(Flux.just(config("c1", "gpt-4o", true, true)));
+
+        assertFalse(cache.snapshot("u1").block(Duration.ofSeconds(5)).validatedDefault().isPresent());
+        cache.refresh("u1").block(Duration.ofSeconds(5));
+        assertTrue(cache.snapshot("u1").block(Duration.ofSeconds(5)).validatedDefault().isPresent());
+    }
+
+    private void stubConfigs(UserAIModelConfig... configs) {
+        when(repository.findByUserId("u1")).thenReturn(Flux.fromIterable(List.of(configs)));
+    }
+
+    private static UserAIModelConfig config(String id, String modelName, boolean validated, boolean isDefault) {
+        return UserAIModelConfig.builder()
+                .id(id).userId("u1").provider(modelName.startsWith("gpt") ? "openai" : "other")
+                .modelName(modelName).isValidated(validated).isDefault(isDefault).build();
+    }
+}
@@ -0,0 +1,115 @@
+package com.ainovel.server.service.outline;
+
+import com.ainovel.server.config.OutlineGenerationConfiguration;
+import com.ainovel.server.web.dto.OutlineGenerationChunk;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 剧情大纲生成引擎测试
+ */
+public class OutlineGenerationEngineTest {
+
+    private OutlineGenerationConfiguration configuration;
+    private OutlineGenerationEngine engine;
+
+    @BeforeEach
+    public void setUp() {
+        configuration = new OutlineGenerationConfiguration();
+        configuration.setMaxConcurrentOptionsPerUser(2);
+        configuration.setOptionBufferSize(2);
+        engine = new OutlineGenerationEngine(configuration);
+    }
+
+    @Test
+    public void testOptionsAreInterleavedRoundRobin() {
+        Flux<String> fast = Flux.just("a1", "a2", "a3", "a4");
+        Flux<String> slow = Flux.just("b1", "b2");
+
+        // 下游先不请求，确保各源都已预取后再按轮询顺序输出
+        StepVerifier.create(FairInterleaver.interleave(List.of(fast, slow), 2), 0)
+                .thenRequest(6)
+                .expectNext("a1", "b1", "a2", "b2", "a3", "a4")
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    public void testInterleaveFailsWithSourceError() {
+        StepVerifier.create(FairInterleaver.interleave(
+                        List.of(Flux.just("a1"), Flux.<String>error(new IllegalStateException("上游失败"))), 2))
+                .expectNext("a1")
+                .expectErrorMessage("上游失败")
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    public void testPerUserConcurrencyIsCapped() {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        Flux<OutlineGenerationChunk> all = engine.runOptions("u1", 5, index -> Flux.defer(() -> {
+                    peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    return Flux.just(chunk("o" + index, "x", true)).delayElements(Duration.ofMillis(30));
+                })
+                .doOnTerminate(running::decrementAndGet));
+
+        StepVerifier.create(all)
+                .expectNextCount(5)
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+        assertEquals(2, peak.get());
+    }
+
+    @Test
+    public void testCollectPersistsEachOptionOnceWithFullContent() {
+        List<OutlineOptionResult> persisted = new CopyOnWriteArrayList<>();
+        Flux<OutlineGenerationChunk> chunks = Flux.just(
+                chunk("a", "第一", false),
+                chunk("b", "乙", false),
+                chunk("a", "段", true),
+                chunk("b", "未完", false));
+
+        StepVerifier.create(engine.collect(chunks, result -> Mono.fromRunnable(() -> persisted.add(result))))
+                .expectNextCount(4)
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+
+        assertEquals(2, persisted.size());
+        OutlineOptionResult a = persisted.get(0);
+        assertEquals("a", a.optionId());
+        assertEquals("第一段", a.content());
+        assertTrue(a.succeeded());
+        OutlineOptionResult b = persisted.get(1);
+        assertEquals("乙未完", b.content());
+        assertFalse(b.completed());
+    }
+
+    @Test
+    public void testContextCacheIsBounded() {
+        configuration.setContextCacheMaxSize(0);
+        OutlineGenerationEngine bounded = new OutlineGenerationEngine(configuration);
+        bounded.rememberContext("o1", new OutlineOptionContext("n", "u", null, null, "g"));
+        bounded.rememberContext("o2", new OutlineOptionContext("n", "u", null, null, "g"));
+        assertNull(bounded.findContext("o1"));
+
+        engine.rememberContext("o1", new OutlineOptionContext("n", "u", "c1", "c2", "g"));
+        assertEquals("c1", engine.findContext("o1").startChapterId());
+    }
+
+    private static OutlineGenerationChunk chunk(String optionId, String text, boolean last) {
+        return new OutlineGenerationChunk(optionId, "标题", text, last, null);
+    }
+}
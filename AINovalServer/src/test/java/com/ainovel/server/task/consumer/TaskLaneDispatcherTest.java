@@ -0,0 +1,135 @@
+package com.ainovel.server.task.consumer;
+
+import com.ainovel.server.config.TaskConsumerConfiguration;
+import com.rabbitmq.client.Channel;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 分道消费测试：每道并发上限、道间隔离及按序批量确认
+ */
+public class TaskLaneDispatcherTest {
+
+    private Channel channel;
+    private TaskLaneDispatcher dispatcher;
+
+    @BeforeEach
+    public void setUp() {
+        channel = mock(Channel.class);
+        when(channel.isOpen()).thenReturn(true);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (dispatcher != null) {
+            dispatcher.shutdown();
+        }
+    }
+
+    @Test
+    public void testLaneConcurrencyIsBoundedAndIsolated() throws Exception {
+        TaskConsumerConfiguration configuration = new TaskConsumerConfiguration();
+        configuration.setAckBatchSize(100);
+        TaskConsumerConfiguration.LaneConfig chapter = new TaskConsumerConfiguration.LaneConfig();
+        chapter.setConcurrency(2);
+        chapter.setTaskTypes(List.of("GENERATE_CHAPTER_CONTENT"));
+        configuration.getLanes().put("chapter", chapter);
+        dispatcher = new TaskLaneDispatcher(configuration, new SimpleMeterRegistry());
+
+        List<Sinks.Empty<Void>> chapterTasks = new ArrayList<>();
+        for (int i = 1; i <= 6; i++) {
+            Sinks.Empty<Void> done = Sinks.empty();
+            chapterTasks.add(done);
+            dispatcher.dispatch("GENERATE_CHAPTER_CONTENT", channel, i, done.asMono());
+        }
+        Sinks.Empty<Void> summary = Sinks.empty();
+        dispatcher.dispatch("GENERATE_SUMMARY", channel, 7, summary.asMono());
+
+        awaitTrue(() -> dispatcher.inFlight("chapter") == 2 && dispatcher.inFlight(TaskLaneDispatcher.DEFAULT_LANE) == 1);
+
+        chapterTasks.get(0).tryEmitEmpty();
+        awaitTrue(() -> dispatcher.inFlight("chapter") == 2);
+        chapterTasks.forEach(Sinks.Empty::tryEmitEmpty);
+        summary.tryEmitEmpty();
+        awaitTrue(() -> dispatcher.inFlight("chapter") == 0 && dispatcher.inFlight(TaskLaneDispatcher.DEFAULT_LANE) == 0);
+
+        dispatcher.flushAcks();
+        verify(channel).basicAck(7, true);
+    }
+
+    @Test
+    public void testFailedProcessingIsRejectedToDeadLetter() throws Exception {
+        dispatcher = new TaskLaneDispatcher(new TaskConsumerConfiguration(), new SimpleMeterRegistry());
+
+        dispatcher.dispatch("GENERATE_SUMMARY", channel, 1, Mono.error(new IllegalStateException("boom")));
+
+        awaitTrue(() -> dispatcher.inFlight(TaskLaneDispatcher.DEFAULT_LANE) == 0);
+        verify(channel).basicNack(1, false, false);
+    }
+
+    @Test
+    public void testAcksAreBatchedAndInOrder() throws Exception {
+        ChannelAckTracker tracker = new ChannelAckTracker(channel, 3);
+        for (long tag = 1; tag <= 4; tag++) {
+            tracker.received(tag);
+        }
+
+        tracker.completed(2);
+        tracker.completed(1);
+        verify(channel, never()).basicAck(anyLong(), anyBoolean());
+
+        tracker.completed(3);
+        verify(channel).basicAck(3, true);
+
+        tracker.failed(4);
+        verify(channel).basicNack(4, false, false);
+        assertEquals(0, tracker.outstanding());
+    }
+
+    @Test
+    public void testCompletedMessagesBehindBlockedHeadAreReleased() throws Exception {
+        ChannelAckTracker tracker = new ChannelAckTracker(channel, 2);
+        for (long tag = 1; tag <= 4; tag++) {
+            tracker.received(tag);
+        }
+
+        tracker.completed(2);
+        tracker.completed(3);
+        InOrder order = inOrder(channel);
+        order.verify(channel).basicAck(2, false);
+        order.verify(channel).basicAck(3, false);
+
+        tracker.completed(1);
+        tracker.flush();
+        order.verify(channel).basicAck(1, true);
+        assertEquals(1, tracker.outstanding());
+    }
+
+    private void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "condition not met in time");
+            Thread.sleep(10);
+        }
+    }
+}
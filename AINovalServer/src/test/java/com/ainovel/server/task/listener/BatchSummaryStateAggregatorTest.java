@@ -0,0 +1,165 @@
+package com.ainovel.server.task.listener;
+
+import com.ainovel.server.task.dto.batchsummary.BatchGenerateSummaryProgress;
+import com.ainovel.server.task.dto.batchsummary.BatchGenerateSummaryResult;
+import com.ainovel.server.task.dto.summarygeneration.GenerateSummaryResult;
+import com.ainovel.server.task.event.internal.TaskCompletedEvent;
+import com.ainovel.server.task.event.internal.TaskFailedEvent;
+import com.ainovel.server.task.model.BackgroundTask;
+import com.ainovel.server.task.model.ProgressDelta;
+import com.ainovel.server.task.model.TaskStatus;
+import com.ainovel.server.task.service.EventDeduplicationService;
+import com.ainovel.server.task.service.TaskStateService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 批量摘要父任务聚合测试
+ * 以内存实现模拟数据库的原子增量与条件认领，校验并发子任务事件下计数不丢失且父任务只结算一次
+ */
+public class BatchSummaryStateAggregatorTest {
+
+    private static final String PARENT_ID = "parent";
+    private static final int TOTAL = 40;
+    private static final int SKIPPED = 4;
+
+    private TaskStateService taskStateService;
+    private BatchSummaryStateAggregator aggregator;
+    private BatchGenerateSummaryProgress stored;
+    private final AtomicBoolean settled = new AtomicBoolean();
+
+    @BeforeEach
+    public void setUp() {
+        taskStateService = mock(TaskStateService.class);
+        stored = BatchGenerateSummaryProgress.builder().totalScenes(TOTAL).skippedCount(SKIPPED).build();
+
+        when(taskStateService.getTask(anyString())).thenAnswer(invocation -> {
+            String id = invocation.getArgument(0);
+            Map<String, Object> parameters = new HashMap<>();
+            parameters.put("sceneId", "scene-" + id);
+            return Mono.just(BackgroundTask.builder().id(id).taskType("GENERATE_SUMMARY")
+                    .parentTaskId(PARENT_ID).parameters(parameters).build());
+        });
+        when(taskStateService.applyProgressDelta(eq(PARENT_ID), eq("BATCH_GENERATE_SUMMARY"), any()))
+                .thenAnswer(invocation -> Mono.just(apply(invocation.getArgument(2))));
+        when(taskStateService.claimSubTasksSettlement(eq(PARENT_ID), anyString(), any(String[].class)))
+                .thenAnswer(invocation -> {
+                    BackgroundTask current = snapshot();
+                    BatchGenerateSummaryProgress progress = (BatchGenerateSummaryProgress) current.getProgress();
+                    boolean allProcessed = progress.getProcessedCount() + progress.getSkippedCount() >= progress.getTotalScenes();
+                    return allProcessed && settled.compareAndSet(false, true) ? Mono.just(current) : Mono.empty();
+                });
+        when(taskStateService.recordSettlement(anyString(), any(), any(), any())).thenReturn(Mono.empty());
+
+        EventDeduplicationService deduplicationService = mock(EventDeduplicationService.class);
+        when(deduplicationService.markProcessed(anyString(), anyString())).thenReturn(Mono.just(true));
+        aggregator = new BatchSummaryStateAggregator(taskStateService, deduplicationService);
+    }
+
+    @Test
+    public void testConcurrentSubTaskEventsAreAllCountedAndParentSettlesOnce() throws Exception {
+        int subTasks = TOTAL - SKIPPED;
+        List<Runnable> events = new ArrayList<>();
+        for (int i = 0; i < subTasks; i++) {
+            String childId = "child-" + i;
+            if (i % 6 == 0) {
+                events.add(() -> aggregator.onSummaryTaskFailed(new TaskFailedEvent(this, childId, "GENERATE_SUMMARY",
+                        "u1", Map.of("message", "模型超时"), false)));
+            } else {
+                events.add(() -> aggregator.onSummaryTaskCompleted(new TaskCompletedEvent(this, childId, "GENERATE_SUMMARY",
+                        "u1", GenerateSummaryResult.builder().modelName("gpt-4o").build())));
+            }
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(events.size());
+        for (Runnable event : events) {
+            executor.execute(() -> {
+                try {
+                    start.await();
+                    event.run();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        start.countDown();
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        executor.shutdown();
+
+        BatchGenerateSummaryProgress progress = (BatchGenerateSummaryProgress) snapshot().getProgress();
+        assertEquals(subTasks, progress.getProcessedCount());
+        assertEquals(6, progress.getFailedCount());
+        assertEquals(subTasks - 6, progress.getSuccessCount());
+        assertEquals("模型超时", progress.getFailedSceneDetails().get("scene-child-0"));
+
+        ArgumentCaptor<Object> result = ArgumentCaptor.forClass(Object.class);
+        verify(taskStateService, times(1)).recordSettlement(eq(PARENT_ID), eq(TaskStatus.COMPLETED_WITH_ERRORS),
+                result.capture(), isNull());
+        BatchGenerateSummaryResult summary = (BatchGenerateSummaryResult) result.getValue();
+        assertEquals(subTasks - 6, summary.getSuccessCount());
+        assertEquals(6, summary.getFailedSceneDetails().size());
+    }
+
+    @Test
+    public void testParentIsNotSettledBeforeAllSubTasksReport() {
+        aggregator.onSummaryTaskCompleted(new TaskCompletedEvent(this, "child-0", "GENERATE_SUMMARY",
+                "u1", GenerateSummaryResult.builder().modelName("gpt-4o").build()));
+
+        verify(taskStateService, never()).claimSubTasksSettlement(anyString(), anyString(), any(String[].class));
+        verify(taskStateService, never()).recordSettlement(anyString(), any(), any(), any());
+        assertEquals(1, ((BatchGenerateSummaryProgress) snapshot().getProgress()).getSuccessCount());
+    }
+
+    /**
+     * 模拟数据库的 findAndModify($inc/$set, returnNew)
+     */
+    private synchronized BackgroundTask apply(ProgressDelta delta) {
+        delta.getIncrements().forEach((field, amount) -> {
+            switch (field) {
+                case "processedCount" -> stored.setProcessedCount(stored.getProcessedCount() + amount);
+                case "successCount" -> stored.setSuccessCount(stored.getSuccessCount() + amount);
+                case "failedCount" -> stored.setFailedCount(stored.getFailedCount() + amount);
+                case "conflictCount" -> stored.setConflictCount(stored.getConflictCount() + amount);
+                default -> throw new IllegalArgumentException(field);
+            }
+        });
+        delta.getFields().forEach((field, value) -> stored.getFailedSceneDetails()
+                .put(field.substring("failedSceneDetails.".length()), (String) value));
+        return snapshot();
+    }
+
+    private synchronized BackgroundTask snapshot() {
+        BatchGenerateSummaryProgress copy = new BatchGenerateSummaryProgress(stored.getTotalScenes(),
+                stored.getProcessedCount(), stored.getSuccessCount(), stored.getFailedCount(),
+                stored.getConflictCount(), stored.getSkippedCount(), new HashMap<>(stored.getFailedSceneDetails()));
+        return BackgroundTask.builder().id(PARENT_ID).taskType("BATCH_GENERATE_SUMMARY").progress(copy).build();
+    }
+}
@@ -0,0 +1,87 @@
+package com.ainovel.server.task.producer;
+
+import com.ainovel.server.task.producer.FairShareScheduler.Demand;
+import com.ainovel.server.task.producer.FairShareScheduler.Flow;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * 公平份额分配测试：类别优先级、用户间轮转、权重与并发上限
+ */
+public class FairShareSchedulerTest {
+
+    private static final Flow BULK_A = new Flow("bulk", "a");
+    private static final Flow BULK_B = new Flow("bulk", "b");
+    private static final Flow BULK_C = new Flow("bulk", "c");
+    private static final Flow INTERACTIVE_B = new Flow("interactive", "b");
+
+    @Test
+    public void testHigherPriorityClassIsServedFirst() {
+        FairShareScheduler scheduler = new FairShareScheduler();
+
+        Map<Flow, Integer> granted = scheduler.allocate(List.of(
+                new Demand(BULK_A, 0, 1, 3000, 8),
+                new Demand(INTERACTIVE_B, 10, 4, 1, 4)), 5);
+
+        assertEquals(1, granted.get(INTERACTIVE_B));
+        assertEquals(4, granted.get(BULK_A));
+    }
+
+    @Test
+    public void testUsersShareBudgetRoundRobin() {
+        FairShareScheduler scheduler = new FairShareScheduler();
+
+        Map<Flow, Integer> granted = scheduler.allocate(List.of(
+                new Demand(BULK_A, 0, 1, 100, 100),
+                new Demand(BULK_B, 0, 1, 100, 100),
+                new Demand(BULK_C, 0, 1, 1, 100)), 9);
+
+        assertEquals(4, granted.get(BULK_A));
+        assertEquals(4, granted.get(BULK_B));
+        assertEquals(1, granted.get(BULK_C));
+    }
+
+    @Test
+    public void testWeightsScaleShare() {
+        FairShareScheduler scheduler = new FairShareScheduler();
+
+        Map<Flow, Integer> granted = scheduler.allocate(List.of(
+                new Demand(BULK_A, 0, 3, 100, 100),
+                new Demand(BULK_B, 0, 1, 100, 100)), 8);
+
+        assertEquals(6, granted.get(BULK_A));
+        assertEquals(2, granted.get(BULK_B));
+    }
+
+    @Test
+    public void testPerUserConcurrencyCapsGrant() {
+        FairShareScheduler scheduler = new FairShareScheduler();
+
+        Map<Flow, Integer> granted = scheduler.allocate(List.of(
+                new Demand(BULK_A, 0, 1, 3000, 2),
+                new Demand(BULK_B, 0, 1, 50, 0)), 200);
+
+        assertEquals(2, granted.get(BULK_A));
+        assertFalse(granted.containsKey(BULK_B));
+    }
+
+    @Test
+    public void testTightBudgetRotatesAcrossBatches() {
+        FairShareScheduler scheduler = new FairShareScheduler();
+        List<Demand> demands = List.of(
+                new Demand(BULK_A, 0, 1, 100, 100),
+                new Demand(BULK_B, 0, 1, 100, 100));
+
+        Map<Flow, Integer> first = scheduler.allocate(demands, 1);
+        Map<Flow, Integer> second = scheduler.allocate(demands, 1);
+
+        assertEquals(1, first.size());
+        assertEquals(1, second.size());
+        assertFalse(first.keySet().equals(second.keySet()));
+    }
+}
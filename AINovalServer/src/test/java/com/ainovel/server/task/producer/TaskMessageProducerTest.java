@@ -0,0 +1,95 @@
+package com.ainovel.server.task.producer;
+
+import com.ainovel.server.config.RabbitMQConfig;
+import com.ainovel.server.task.model.TaskOutboxMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.MessagePostProcessor;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * 任务消息批量发送测试：等待发布确认及拒绝/超时处理
+ */
+public class TaskMessageProducerTest {
+
+    private RabbitTemplate rabbitTemplate;
+    private TaskMessageProducer producer;
+    private List<CorrelationData> sent;
+
+    @BeforeEach
+    public void setUp() {
+        rabbitTemplate = mock(RabbitTemplate.class);
+        producer = new TaskMessageProducer(rabbitTemplate);
+        sent = new ArrayList<>();
+    }
+
+    @Test
+    public void testSendsBatchAndReturnsNothingWhenAllConfirmed() {
+        confirmWith(Set.of(), false);
+
+        List<String> unconfirmed = producer.sendTaskBatch(messages(200), Duration.ofSeconds(1));
+
+        assertEquals(List.of(), unconfirmed);
+        assertEquals(200, sent.size());
+        assertEquals("task-0", sent.get(0).getId());
+        verify(rabbitTemplate, times(200)).convertAndSend(eq(RabbitMQConfig.TASKS_EXCHANGE),
+                eq(RabbitMQConfig.TASK_TYPE_PREFIX + "GENERATE_SUMMARY"), any(Object.class),
+                any(MessagePostProcessor.class), any(CorrelationData.class));
+    }
+
+    @Test
+    public void testNackedMessagesAreReportedAsUnconfirmed() {
+        confirmWith(Set.of("task-3", "task-7"), false);
+
+        List<String> unconfirmed = producer.sendTaskBatch(messages(10), Duration.ofSeconds(1));
+
+        assertEquals(List.of("task-3", "task-7"), unconfirmed);
+    }
+
+    @Test
+    public void testMissingConfirmsAreReportedAfterTimeout() {
+        confirmWith(Set.of(), true);
+
+        List<String> unconfirmed = producer.sendTaskBatch(messages(3), Duration.ofMillis(50));
+
+        assertEquals(List.of("task-0", "task-1", "task-2"), unconfirmed);
+    }
+
+    private void confirmWith(Set<String> nacked, boolean neverConfirm) {
+        doAnswer(invocation -> {
+            CorrelationData correlationData = invocation.getArgument(4);
+            sent.add(correlationData);
+            if (!neverConfirm) {
+                boolean ack = !nacked.contains(correlationData.getId());
+                correlationData.getFuture().complete(new CorrelationData.Confirm(ack, ack ? null : "nack"));
+            }
+            return null;
+        }).when(rabbitTemplate).convertAndSend(anyString(), anyString(), any(Object.class),
+                any(MessagePostProcessor.class), any(CorrelationData.class));
+    }
+
+    private List<TaskOutboxMessage> messages(int count) {
+        return IntStream.range(0, count).mapToObj(i -> TaskOutboxMessage.builder()
+                .id("task-" + i)
+                .userId("user-1")
+                .taskType("GENERATE_SUMMARY")
+                .parameters("scene-" + i)
+                .build()).toList();
+    }
+}
@@ -0,0 +1,149 @@
+package com.ainovel.server.task.producer;
+
+import com.ainovel.server.config.TaskSchedulingConfiguration;
+import com.ainovel.server.config.TaskSubmissionConfiguration;
+import com.ainovel.server.task.model.BackgroundTask;
+import com.ainovel.server.task.model.TaskOutboxMessage;
+import com.ainovel.server.task.transport.TaskTransport;
+import com.mongodb.client.result.UpdateResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 发件箱中继测试：认领、发送确认后标记、未确认消息保留重试、连续分批发送及公平调度
+ */
+public class TaskOutboxRelayTest {
+
+    private ReactiveMongoTemplate mongoTemplate;
+    private TaskTransport transport;
+    private TaskSubmissionConfiguration configuration;
+    private TaskOutboxRelay relay;
+
+    @BeforeEach
+    public void setUp() {
+        mongoTemplate = mock(ReactiveMongoTemplate.class);
+        transport = mock(TaskTransport.class);
+        configuration = new TaskSubmissionConfiguration();
+        configuration.setPublishBatchSize(3);
+        TaskSchedulingConfiguration schedulingConfiguration = new TaskSchedulingConfiguration();
+        schedulingConfiguration.setEnabled(false);
+        relay = new TaskOutboxRelay(mongoTemplate, transport, configuration, schedulingConfiguration, new SimpleMeterRegistry());
+        when(mongoTemplate.updateMulti(any(Query.class), any(Update.class), eq(TaskOutboxMessage.class)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+    }
+
+    @Test
+    public void testConfirmedMessagesAreMarkedSentAndUnconfirmedKeptForRetry() {
+        when(mongoTemplate.find(any(Query.class), eq(TaskOutboxMessage.class)))
+                .thenReturn(Flux.fromIterable(messages("t1", "t2")), Flux.fromIterable(messages("t1", "t2")));
+        when(transport.send(anyList(), any(Duration.class))).thenReturn(List.of("t2"));
+
+        StepVerifier.create(relay.drainBatch()).expectNext(2).verifyComplete();
+
+        ArgumentCaptor<Query> queries = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> updates = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate, times(3)).updateMulti(queries.capture(), updates.capture(), eq(TaskOutboxMessage.class));
+
+        Document sent = updates.getAllValues().get(1).getUpdateObject();
+        assertTrue(((Document) sent.get("$set")).containsKey("sentAt"));
+        assertEquals(List.of("t1"), idsOf(queries.getAllValues().get(1)));
+
+        Document retry = updates.getAllValues().get(2).getUpdateObject();
+        assertEquals(1, ((Document) retry.get("$inc")).get("attempts"));
+        assertEquals(List.of("t2"), idsOf(queries.getAllValues().get(2)));
+    }
+
+    @Test
+    public void testNothingIsSentWhenAnotherRelayClaimedTheBatch() {
+        when(mongoTemplate.find(any(Query.class), eq(TaskOutboxMessage.class)))
+                .thenReturn(Flux.fromIterable(messages("t1")), Flux.empty());
+
+        StepVerifier.create(relay.drainBatch()).expectNext(1).verifyComplete();
+
+        verify(transport, never()).send(anyList(), any(Duration.class));
+    }
+
+    @Test
+    public void testDrainAllContinuesWhileBatchesAreFull() {
+        when(mongoTemplate.find(any(Query.class), eq(TaskOutboxMessage.class)))
+                .thenReturn(Flux.fromIterable(messages("t1", "t2", "t3")), Flux.fromIterable(messages("t1", "t2", "t3")),
+                        Flux.fromIterable(messages("t4")), Flux.fromIterable(messages("t4")));
+        when(transport.send(anyList(), any(Duration.class))).thenReturn(List.of());
+
+        StepVerifier.create(relay.drainAll()).verifyComplete();
+
+        verify(transport, times(2)).send(anyList(), any(Duration.class));
+    }
+
+    @Test
+    public void testFairSchedulingHoldsBackUserAtConcurrencyCap() {
+        TaskSchedulingConfiguration schedulingConfiguration = new TaskSchedulingConfiguration();
+        TaskSchedulingConfiguration.ClassConfig bulk = new TaskSchedulingConfiguration.ClassConfig();
+        bulk.setPerUserConcurrency(8);
+        bulk.setTaskTypes(List.of("GENERATE_SUMMARY"));
+        TaskSchedulingConfiguration.ClassConfig interactive = new TaskSchedulingConfiguration.ClassConfig();
+        interactive.setPriority(10);
+        interactive.setPerUserConcurrency(4);
+        interactive.setTaskTypes(List.of("GENERATE_SINGLE_CHAPTER"));
+        schedulingConfiguration.getClasses().put("bulk", bulk);
+        schedulingConfiguration.getClasses().put("interactive", interactive);
+        relay = new TaskOutboxRelay(mongoTemplate, transport, configuration, schedulingConfiguration, new SimpleMeterRegistry());
+
+        // 用户a有100个待发送的批量任务且已有8个在执行，用户b提交了1个交互任务
+        List<Document> pending = List.of(count("a", "GENERATE_SUMMARY", 100), count("b", "GENERATE_SINGLE_CHAPTER", 1));
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq(TaskOutboxMessage.class), eq(Document.class)))
+                .thenReturn(Flux.fromIterable(pending), Flux.fromIterable(pending));
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq(BackgroundTask.class), eq(Document.class)))
+                .thenReturn(Flux.just(count("a", "GENERATE_SUMMARY", 108), count("b", "GENERATE_SINGLE_CHAPTER", 1)));
+        TaskOutboxMessage chapter = TaskOutboxMessage.builder().id("b1").userId("b").taskType("GENERATE_SINGLE_CHAPTER").build();
+        when(mongoTemplate.find(any(Query.class), eq(TaskOutboxMessage.class)))
+                .thenReturn(Flux.just(chapter), Flux.just(chapter));
+        when(transport.send(anyList(), any(Duration.class))).thenReturn(List.of());
+
+        StepVerifier.create(relay.drainBatch()).expectNext(1).verifyComplete();
+
+        ArgumentCaptor<Query> queries = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate, times(2)).find(queries.capture(), eq(TaskOutboxMessage.class));
+        assertTrue(queries.getAllValues().get(0).getQueryObject().toString().contains("userId=b"));
+        verify(transport).send(eq(List.of(chapter)), any(Duration.class));
+    }
+
+    private Document count(String userId, String taskType, int count) {
+        return new Document("_id", new Document("userId", userId).append("taskType", taskType)).append("count", count);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<String> idsOf(Query query) {
+        return (List<String>) ((Document) query.getQueryObject().get("_id")).get("$in");
+    }
+
+    private List<TaskOutboxMessage> messages(String... ids) {
+        return java.util.Arrays.stream(ids)
+                .map(id -> TaskOutboxMessage.builder().id(id).userId("user-1").taskType("GENERATE_SUMMARY").build())
+                .toList();
+    }
+}
@@ -0,0 +1,96 @@
+package com.ainovel.server.task.producer;
+
+import com.ainovel.server.config.TaskRetryConfiguration;
+import com.ainovel.server.task.model.BackgroundTask;
+import com.ainovel.server.task.transport.TaskTimerWheel;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 重试调度测试：指数退避的完全抖动、退避上限、Retry-After提示，到期认领后重新写入发件箱
+ */
+public class TaskRetrySchedulerTest {
+
+    private ReactiveMongoTemplate mongoTemplate;
+    private TaskOutboxRelay outboxRelay;
+    private TaskRetryConfiguration configuration;
+    private final AtomicReference<Double> random = new AtomicReference<>(0.0);
+    private TaskRetryScheduler scheduler;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        mongoTemplate = mock(ReactiveMongoTemplate.class);
+        outboxRelay = mock(TaskOutboxRelay.class);
+        TransactionalOperator transactionalOperator = mock(TransactionalOperator.class);
+        when(transactionalOperator.transactional(any(Mono.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        configuration = new TaskRetryConfiguration();
+        configuration.setInitialDelayMillis(1000);
+        configuration.setBackoffFactor(2.0);
+        configuration.setMaxDelayMillis(10000);
+        scheduler = new TaskRetryScheduler(mongoTemplate, transactionalOperator, outboxRelay, configuration,
+                new SimpleMeterRegistry(), new TaskTimerWheel(100, 8, 3), random::get);
+    }
+
+    @Test
+    public void testFullJitterSpreadsDelayBelowExponentialCeiling() {
+        random.set(0.0);
+        assertEquals(4000, scheduler.nextDelayMillis(2, Map.of()));
+        random.set(0.75);
+        assertEquals(1000, scheduler.nextDelayMillis(2, Map.of()));
+        random.set(0.0);
+        assertEquals(10000, scheduler.nextDelayMillis(10, Map.of()));
+    }
+
+    @Test
+    public void testRetryAfterHintIsAFloorCappedByConfiguration() {
+        random.set(0.9);
+        assertEquals(30000, scheduler.nextDelayMillis(0, Map.of(TaskRetryScheduler.RETRY_AFTER_MILLIS, 30000L)));
+
+        configuration.setMaxRetryAfterMillis(5000);
+        assertEquals(5000, scheduler.nextDelayMillis(0, Map.of(TaskRetryScheduler.RETRY_AFTER_MILLIS, 30000L)));
+    }
+
+    @Test
+    public void testDueRetryIsClaimedAndReenqueued() {
+        BackgroundTask task = BackgroundTask.builder().id("t1").userId("u1").taskType("GENERATE_SUMMARY").retryCount(2).build();
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(BackgroundTask.class)))
+                .thenReturn(Mono.just(task));
+        when(outboxRelay.enqueueRetry(task)).thenReturn(Mono.empty());
+
+        StepVerifier.create(scheduler.dispatch("t1")).expectNext(true).verifyComplete();
+
+        verify(outboxRelay).enqueueRetry(task);
+        verify(outboxRelay).wakeUp();
+    }
+
+    @Test
+    public void testRetryClaimedElsewhereIsNotReenqueued() {
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(BackgroundTask.class)))
+                .thenReturn(Mono.empty());
+
+        StepVerifier.create(scheduler.dispatch("t1")).expectNext(false).verifyComplete();
+
+        verify(outboxRelay, never()).enqueueRetry(any());
+        verify(outboxRelay, never()).wakeUp();
+    }
+}
@@ -0,0 +1,145 @@
+package com.ainovel.server.task.service.impl;
+
+import com.ainovel.server.config.EventDedupeConfiguration;
+import com.ainovel.server.task.model.ProcessedEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 任务事件去重测试：保留期内判重、按时间轮换淘汰、容量上限与跨节点判重
+ */
+public class EventDeduplicationServiceImplTest {
+
+    private EventDedupeConfiguration configuration;
+    private ReactiveMongoTemplate mongoTemplate;
+    private SimpleMeterRegistry meterRegistry;
+    private MutableClock clock;
+
+    @BeforeEach
+    public void setUp() {
+        configuration = new EventDedupeConfiguration();
+        configuration.setRetentionSeconds(90);
+        configuration.setSegments(4);
+        configuration.setMaxEntriesPerSegment(1000);
+        mongoTemplate = mock(ReactiveMongoTemplate.class);
+        meterRegistry = new SimpleMeterRegistry();
+        clock = new MutableClock(Instant.parse("2025-01-01T00:00:00Z"));
+    }
+
+    @Test
+    public void testDuplicateWithinRetentionIsRejectedPerScope() {
+        EventDeduplicationServiceImpl service = newService();
+
+        assertEquals(Boolean.TRUE, service.markProcessed("a", "e1").block());
+        clock.advance(Duration.ofSeconds(85));
+        assertEquals(Boolean.FALSE, service.markProcessed("a", "e1").block());
+        assertEquals(Boolean.TRUE, service.markProcessed("b", "e1").block());
+        assertEquals(1.0, meterRegistry.get("tasks.events.duplicates").counter().count());
+        verify(mongoTemplate, never()).insert(any(ProcessedEvent.class));
+    }
+
+    @Test
+    public void testEventIdsExpireAfterRetention() {
+        EventDeduplicationServiceImpl service = newService();
+
+        service.markProcessed("a", "e1").block();
+        // 每段30秒，持续有事件到达时逐段轮换
+        for (int i = 0; i < 4; i++) {
+            clock.advance(Duration.ofSeconds(30));
+            service.markProcessed("a", "tick-" + i).block();
+        }
+        assertEquals(Boolean.TRUE, service.markProcessed("a", "e1").block());
+    }
+
+    @Test
+    public void testMemoryStaysBoundedUnderSustainedLoad() {
+        configuration.setMaxEntriesPerSegment(100);
+        EventDeduplicationServiceImpl service = newService();
+
+        for (int i = 0; i < 100_000; i++) {
+            assertEquals(Boolean.TRUE, service.markProcessed("a", "e" + i).block());
+        }
+        assertTrue(service.localSize() <= 400, "size=" + service.localSize());
+    }
+
+    @Test
+    public void testForgetAllowsRedelivery() {
+        EventDeduplicationServiceImpl service = newService();
+
+        service.markProcessed("a", "e1").block();
+        StepVerifier.create(service.forget("a", "e1")).verifyComplete();
+        assertEquals(Boolean.TRUE, service.markProcessed("a", "e1").block());
+    }
+
+    @Test
+    public void testPersistentStoreRejectsEventsSeenByOtherNodes() {
+        configuration.setPersistentEnabled(true);
+        when(mongoTemplate.insert(any(ProcessedEvent.class)))
+                .thenReturn(Mono.error(new DuplicateKeyException("dup")))
+                .thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        EventDeduplicationServiceImpl service = newService();
+
+        assertEquals(Boolean.FALSE, service.markProcessed("a", "seen-elsewhere").block());
+        assertEquals(Boolean.TRUE, service.markProcessed("a", "fresh").block());
+    }
+
+    @Test
+    public void testPersistentStoreFailureFallsBackToLocalWindow() {
+        configuration.setPersistentEnabled(true);
+        when(mongoTemplate.insert(any(ProcessedEvent.class))).thenReturn(Mono.error(new IllegalStateException("down")));
+        EventDeduplicationServiceImpl service = newService();
+
+        assertEquals(Boolean.TRUE, service.markProcessed("a", "e1").block());
+        assertEquals(Boolean.FALSE, service.markProcessed("a", "e1").block());
+    }
+
+    private EventDeduplicationServiceImpl newService() {
+        return new EventDeduplicationServiceImpl(configuration, mongoTemplate, meterRegistry, clock);
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.ainovel.server.task.service.impl;
+
+import com.ainovel.server.config.RateLimiterConfiguration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Redis分布式限流测试（基于嵌入式Redis）
+ */
+public class RedisRateLimiterServiceImplTest {
+
+    private static final String RESOURCE = "openai";
+
+    private RedisServer redisServer;
+    private LettuceConnectionFactory connectionFactory;
+    private RateLimiterConfiguration configuration;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        redisServer = new RedisServer(port);
+        redisServer.start();
+
+        connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration("localhost", port));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+
+        // 极低的补充速率，使测试期间可用令牌数基本等于突发容量
+        RateLimiterConfiguration.RateConfig rateConfig = new RateLimiterConfiguration.RateConfig();
+        rateConfig.setRate(0.01);
+        rateConfig.setBurstCapacity(10);
+        rateConfig.setLeaseBatchSize(3);
+        rateConfig.setLeaseTtlMillis(60000);
+
+        configuration = new RateLimiterConfiguration();
+        configuration.getProviders().put(RESOURCE, rateConfig);
+        configuration.setExpectedNodes(2);
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        connectionFactory.destroy();
+        if (redisServer.isActive()) {
+            redisServer.stop();
+        }
+    }
+
+    @Test
+    public void testGlobalLimitSharedAcrossNodes() {
+        RedisRateLimiterServiceImpl nodeA = newNode();
+        RedisRateLimiterServiceImpl nodeB = newNode();
+
+        // 两个节点交替请求，总授予数不得超过全局突发容量
+        Long granted = Flux.range(0, 30)
+                .concatMap(i -> (i % 2 == 0 ? nodeA : nodeB).acquirePermit("user-" + i, RESOURCE))
+                .filter(Boolean::booleanValue)
+                .count()
+                .block(Duration.ofSeconds(10));
+
+        assertEquals(10L, granted);
+    }
+
+    @Test
+    public void testLeasedTokensServedLocally() throws IOException {
+        RedisRateLimiterServiceImpl node = newNode();
+
+        // 第一次请求从Redis预取一批（3个），随后两次由本地租约满足
+        StepVerifier.create(node.acquirePermit("user", RESOURCE)).expectNext(true).verifyComplete();
+        redisServer.stop();
+        StepVerifier.create(node.acquirePermit("user", RESOURCE)).expectNext(true).verifyComplete();
+        StepVerifier.create(node.acquirePermit("user", RESOURCE)).expectNext(true).verifyComplete();
+    }
+
+    @Test
+    public void testFallsBackToLocalLimiterWhenStoreUnavailable() throws IOException {
+        RedisRateLimiterServiceImpl node = newNode();
+        redisServer.stop();
+
+        // 本地回退限流器按 rate/expectedNodes 放行，首个请求总能获得许可
+        StepVerifier.create(node.acquirePermit("user", RESOURCE))
+                .expectNext(true)
+                .verifyComplete();
+
+        // 回退速率极低，紧接着的请求应被拒绝而不是无限放行
+        Boolean second = node.acquirePermit("user", RESOURCE).block(Duration.ofSeconds(5));
+        assertTrue(Boolean.FALSE.equals(second));
+    }
+
+    @Test
+    public void testAvailablePermitsIncludeRefillSinceLastUpdate() throws InterruptedException {
+        RateLimiterConfiguration.RateConfig fast = new RateLimiterConfiguration.RateConfig();
+        fast.setRate(20);
+        fast.setBurstCapacity(10);
+        fast.setLeaseBatchSize(10);
+        fast.setLeaseTtlMillis(60000);
+        configuration.getProviders().put("fast", fast);
+        RedisRateLimiterServiceImpl node = newNode();
+
+        // 一次预取取空Redis中的令牌桶：1个给当前请求，9个留在本地租约
+        StepVerifier.create(node.acquirePermit("user", "fast")).expectNext(true).verifyComplete();
+        Integer drained = node.getAvailablePermits("fast").block(Duration.ofSeconds(5));
+        assertTrue(drained != null && drained < 11, "取空后可用数: " + drained);
+
+        // 空闲期间按速率补充，可用数应包含补充的令牌，而不只是上次写入的剩余数
+        Thread.sleep(300);
+        Integer refilled = node.getAvailablePermits("fast").block(Duration.ofSeconds(5));
+        assertTrue(refilled != null && refilled >= 9 + 4, "补充后可用数: " + refilled);
+    }
+
+    private RedisRateLimiterServiceImpl newNode() {
+        return new RedisRateLimiterServiceImpl(configuration, new ReactiveStringRedisTemplate(connectionFactory));
+    }
+}
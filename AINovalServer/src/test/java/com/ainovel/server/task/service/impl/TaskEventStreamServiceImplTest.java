@@ -0,0 +1,129 @@
+package com.ainovel.server.task.service.impl;
+
+import com.ainovel.server.common.exception.ResourceNotFoundException;
+import com.ainovel.server.config.TaskEventStreamConfiguration;
+import com.ainovel.server.repository.BackgroundTaskRepository;
+import com.ainovel.server.task.event.external.TaskStreamEvent;
+import com.ainovel.server.task.model.BackgroundTask;
+import com.ainovel.server.task.model.TaskStatus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.util.Map;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 任务事件推送测试：快照先于实时事件、订阅期间的事件不丢失、任务结束时流结束、按用户过滤、
+ * 缓冲已满时逐出最旧的事件且终止事件总会送达
+ */
+public class TaskEventStreamServiceImplTest {
+
+    private BackgroundTaskRepository taskRepository;
+    private TaskEventStreamConfiguration configuration;
+    private TaskEventStreamServiceImpl service;
+
+    @BeforeEach
+    public void setUp() {
+        taskRepository = mock(BackgroundTaskRepository.class);
+        configuration = new TaskEventStreamConfiguration();
+        service = new TaskEventStreamServiceImpl(taskRepository, configuration, new SimpleMeterRegistry());
+    }
+
+    @Test
+    public void testEventsDuringSnapshotAreDeliveredAfterItAndTerminalEventEndsStream() {
+        Sinks.One<BackgroundTask> snapshot = Sinks.one();
+        when(taskRepository.findByIdAndUserId("t1", "u1")).thenReturn(snapshot.asMono());
+
+        StepVerifier.create(service.streamTask("t1", "u1"))
+                .then(() -> {
+                    service.publish("TASK_PROGRESS", event("t1", "u1"));
+                    service.publish("TASK_PROGRESS", event("t2", "u1"));
+                    snapshot.tryEmitValue(task("t1", "u1", TaskStatus.RUNNING));
+                })
+                .expectNextMatches(e -> TaskStreamEvent.TASK_SNAPSHOT.equals(e.getEventType()) && "RUNNING".equals(e.getStatus()))
+                .expectNextMatches(e -> "TASK_PROGRESS".equals(e.getEventType()) && "t1".equals(e.getTaskId()))
+                .then(() -> service.publish("TASK_COMPLETED", event("t1", "u1")))
+                .expectNextMatches(e -> "TASK_COMPLETED".equals(e.getEventType()))
+                .verifyComplete();
+    }
+
+    @Test
+    public void testSlowSubscriberLosesOldestEventsButStillReceivesTerminalEvent() {
+        configuration.setSubscriberBufferSize(2);
+        when(taskRepository.findByIdAndUserId("t1", "u1")).thenReturn(Mono.just(task("t1", "u1", TaskStatus.RUNNING)));
+
+        StepVerifier.create(service.streamTask("t1", "u1"), 1)
+                .expectNextMatches(e -> TaskStreamEvent.TASK_SNAPSHOT.equals(e.getEventType()))
+                .then(() -> {
+                    service.publish("TASK_PROGRESS", progress("t1", 1));
+                    service.publish("TASK_PROGRESS", progress("t1", 2));
+                    service.publish("TASK_PROGRESS", progress("t1", 3));
+                    service.publish("TASK_COMPLETED", event("t1", "u1"));
+                })
+                .thenRequest(10)
+                .expectNextMatches(e -> "TASK_PROGRESS".equals(e.getEventType()) && Integer.valueOf(3).equals(e.getData().get("step")))
+                .expectNextMatches(e -> "TASK_COMPLETED".equals(e.getEventType()))
+                .verifyComplete();
+    }
+
+    @Test
+    public void testFinishedTaskReturnsOnlySnapshot() {
+        when(taskRepository.findByIdAndUserId("t1", "u1")).thenReturn(Mono.just(task("t1", "u1", TaskStatus.COMPLETED)));
+
+        StepVerifier.create(service.streamTask("t1", "u1"))
+                .expectNextMatches(e -> "COMPLETED".equals(e.getStatus()))
+                .verifyComplete();
+    }
+
+    @Test
+    public void testUnknownTaskFails() {
+        when(taskRepository.findByIdAndUserId("t1", "u2")).thenReturn(Mono.empty());
+
+        StepVerifier.create(service.streamTask("t1", "u2"))
+                .verifyError(ResourceNotFoundException.class);
+    }
+
+    @Test
+    public void testUserFeedSendsActiveTasksThenOnlyOwnEvents() {
+        when(taskRepository.findByUserIdAndStatusIn(eq("u1"), anyCollection(), any(Pageable.class)))
+                .thenReturn(Flux.just(task("t1", "u1", TaskStatus.RUNNING)));
+
+        StepVerifier.create(service.streamUserTasks("u1"))
+                .expectNextMatches(e -> TaskStreamEvent.TASK_SNAPSHOT.equals(e.getEventType()) && "t1".equals(e.getTaskId()))
+                .then(() -> {
+                    service.publish("TASK_STARTED", event("t9", "u2"));
+                    service.publish("TASK_STARTED", event("t2", "u1"));
+                })
+                .expectNextMatches(e -> "t2".equals(e.getTaskId()) && "u1".equals(e.getUserId()))
+                .thenCancel()
+                .verify();
+    }
+
+    private Map<String, Object> event(String taskId, String userId) {
+        return Map.of("taskId", taskId, "userId", userId, "taskType", "GENERATE_SUMMARY");
+    }
+
+    private Map<String, Object> progress(String taskId, int step) {
+        return Map.of("taskId", taskId, "userId", "u1", "taskType", "GENERATE_SUMMARY", "step", step);
+    }
+
+    private BackgroundTask task(String id, String userId, TaskStatus status) {
+        BackgroundTask task = new BackgroundTask();
+        task.setId(id);
+        task.setUserId(userId);
+        task.setTaskType("GENERATE_SUMMARY");
+        task.setStatus(status);
+        return task;
+    }
+}
@@ -0,0 +1,124 @@
+package com.ainovel.server.task.service.impl;
+
+import com.ainovel.server.config.TaskProgressConfiguration;
+import com.ainovel.server.task.model.BackgroundTask;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.result.UpdateResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 任务进度写缓冲测试：同一任务只写最新进度、多个任务合并为一次批量写入、单任务立即写入、失败后保留重试、
+ * 初始进度直接写入且缓冲写入不覆盖已累加的进度
+ */
+public class TaskProgressWriteBufferTest {
+
+    private ReactiveMongoTemplate mongoTemplate;
+    private ReactiveBulkOperations bulkOperations;
+    private TaskProgressWriteBuffer buffer;
+
+    @BeforeEach
+    public void setUp() {
+        mongoTemplate = mock(ReactiveMongoTemplate.class);
+        bulkOperations = mock(ReactiveBulkOperations.class);
+        when(mongoTemplate.bulkOps(BulkMode.UNORDERED, BackgroundTask.class)).thenReturn(bulkOperations);
+        when(bulkOperations.updateOne(any(Query.class), any(UpdateDefinition.class))).thenReturn(bulkOperations);
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(BackgroundTask.class)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+        buffer = new TaskProgressWriteBuffer(mongoTemplate, new TaskProgressConfiguration(), new SimpleMeterRegistry());
+    }
+
+    @Test
+    public void testLatestProgressPerTaskIsWrittenInOneBulk() {
+        when(bulkOperations.execute()).thenReturn(Mono.just(mock(BulkWriteResult.class)));
+
+        StepVerifier.create(buffer.record("t1", Map.of("step", 1))
+                        .then(buffer.record("t1", Map.of("step", 2)))
+                        .then(buffer.record("t2", Map.of("step", 7)))
+                        .then(buffer.flushAll()))
+                .verifyComplete();
+
+        ArgumentCaptor<Query> queries = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<UpdateDefinition> updates = ArgumentCaptor.forClass(UpdateDefinition.class);
+        verify(bulkOperations, times(2)).updateOne(queries.capture(), updates.capture());
+        verify(bulkOperations, times(1)).execute();
+        Map<Object, Object> written = new HashMap<>();
+        for (int i = 0; i < 2; i++) {
+            Document set = (Document) updates.getAllValues().get(i).getUpdateObject().get("$set");
+            written.put(queries.getAllValues().get(i).getQueryObject().get("_id"), set.get("progress"));
+        }
+        assertEquals(Map.of("t1", Map.of("step", 2), "t2", Map.of("step", 7)), written);
+        assertEquals(0, buffer.pendingCount());
+    }
+
+    @Test
+    public void testFlushSingleTaskWritesImmediately() {
+        StepVerifier.create(buffer.record("t1", Map.of("step", 3)).then(buffer.flush("t1")))
+                .verifyComplete();
+
+        verify(mongoTemplate).updateFirst(any(Query.class), any(Update.class), eq(BackgroundTask.class));
+        verify(mongoTemplate, never()).bulkOps(any(BulkMode.class), eq(BackgroundTask.class));
+        assertEquals(0, buffer.pendingCount());
+    }
+
+    @Test
+    public void testFailedBulkKeepsProgressForRetryUnlessSuperseded() {
+        when(bulkOperations.execute()).thenReturn(Mono.error(new RuntimeException("timeout")));
+
+        StepVerifier.create(buffer.record("t1", Map.of("step", 1)).then(buffer.flushAll()))
+                .verifyComplete();
+
+        assertEquals(1, buffer.pendingCount());
+        when(bulkOperations.execute()).thenReturn(Mono.just(mock(BulkWriteResult.class)));
+        StepVerifier.create(buffer.flushAll()).verifyComplete();
+        assertEquals(0, buffer.pendingCount());
+        verify(bulkOperations, times(2)).execute();
+    }
+
+    @Test
+    public void testInitializeWritesThroughAndBufferedWritesSkipAggregatedProgress() {
+        StepVerifier.create(buffer.record("t1", Map.of("step", 0))
+                        .then(buffer.initialize("t1", Map.of("total", 5)))
+                        .then(buffer.record("t1", Map.of("total", 5, "step", 1)))
+                        .then(buffer.flush("t1")))
+                .verifyComplete();
+
+        ArgumentCaptor<Query> queries = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> updates = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate, times(2)).updateFirst(queries.capture(), updates.capture(), eq(BackgroundTask.class));
+
+        Document init = updates.getAllValues().get(0).getUpdateObject();
+        assertEquals(Map.of("total", 5), ((Document) init.get("$set")).get("progress"));
+        assertTrue(((Document) init.get("$unset")).containsKey("progressAggregated"));
+        assertFalse(queries.getAllValues().get(0).getQueryObject().containsKey("progressAggregated"));
+
+        // 子任务已开始累加后，缓冲中的整体进度只写入尚未累加的任务
+        assertEquals(new Document("$ne", true), queries.getAllValues().get(1).getQueryObject().get("progressAggregated"));
+        assertEquals(0, buffer.pendingCount());
+    }
+}
@@ -0,0 +1,113 @@
+package com.ainovel.server.task.transport;
+
+import com.ainovel.server.config.TaskTransportConfiguration;
+import com.ainovel.server.task.model.TaskOutboxMessage;
+import com.ainovel.server.task.service.TaskStateService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 进程内任务传输测试：投递直接交给处理器并携带重试次数、重复投递去重且不确认、处理出错进入死信
+ */
+public class LocalTaskTransportTest {
+
+    private TaskStateService taskStateService;
+    private LocalTaskTransport transport;
+    private final List<String> handled = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    public void setUp() {
+        taskStateService = mock(TaskStateService.class);
+        transport = new LocalTaskTransport(mock(ReactiveMongoTemplate.class), taskStateService,
+                new TaskTransportConfiguration(), new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        transport.shutdown();
+    }
+
+    @Test
+    public void testSentTasksAreHandedToHandler() {
+        transport.registerHandler(record());
+
+        List<String> unconfirmed = transport.send(List.of(message("t1"), message("t2")), Duration.ofSeconds(1));
+
+        assertEquals(List.of(), unconfirmed);
+        awaitHandled(2);
+        assertTrue(handled.containsAll(List.of("t1:0", "t2:0")));
+    }
+
+    @Test
+    public void testDuplicateDeliveryIsIgnoredAndUnconfirmedWhileTaskIsPending() {
+        Sinks.Empty<Void> release = Sinks.empty();
+        transport.registerHandler((taskId, taskType, retryCount) -> {
+            handled.add(taskId);
+            return release.asMono();
+        });
+
+        transport.send(List.of(message("t1")), Duration.ofSeconds(1));
+        awaitHandled(1);
+        List<String> unconfirmed = transport.send(List.of(message("t1")), Duration.ofSeconds(1));
+        release.tryEmitEmpty();
+
+        assertEquals(List.of("t1"), unconfirmed);
+        assertEquals(List.of("t1"), handled);
+    }
+
+    @Test
+    public void testHandlerErrorDeadLettersTask() {
+        when(taskStateService.recordFailure(eq("t1"), anyMap(), eq(true))).thenReturn(Mono.empty());
+        transport.registerHandler((taskId, taskType, retryCount) -> Mono.error(new IllegalArgumentException("找不到执行器")));
+
+        transport.send(List.of(message("t1")), Duration.ofSeconds(1));
+
+        verify(taskStateService, timeout(2000)).recordFailure(eq("t1"), anyMap(), eq(true));
+    }
+
+    @Test
+    public void testRetryDeliveryCarriesRetryCount() {
+        transport.registerHandler(record());
+
+        TaskOutboxMessage retry = message("t1");
+        retry.setRetryCount(2);
+        transport.send(List.of(retry), Duration.ofSeconds(1));
+
+        awaitHandled(1);
+        assertEquals(List.of("t1:2"), handled);
+    }
+
+    private TaskDeliveryHandler record() {
+        return (taskId, taskType, retryCount) -> Mono.fromRunnable(() -> handled.add(taskId + ":" + retryCount));
+    }
+
+    private void awaitHandled(int count) {
+        long deadline = System.currentTimeMillis() + 2000;
+        while (handled.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertEquals(count, handled.size());
+    }
+
+    private TaskOutboxMessage message(String id) {
+        return TaskOutboxMessage.builder().id(id).userId("u1").taskType("GENERATE_SUMMARY").build();
+    }
+}
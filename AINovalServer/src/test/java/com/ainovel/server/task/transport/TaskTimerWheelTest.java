@@ -0,0 +1,66 @@
+package com.ainovel.server.task.transport;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 分层延迟时间轮测试：按格到期、超过底层一圈的延迟逐层降级后到期、超出最高层范围的延迟按圈等待
+ */
+public class TaskTimerWheelTest {
+
+    @Test
+    public void testEntriesFireAfterTheirDelay() {
+        TaskTimerWheel wheel = new TaskTimerWheel(100, 8, 3);
+        List<String> fired = new ArrayList<>();
+        wheel.schedule(250, () -> fired.add("a"));
+        wheel.schedule(100, () -> fired.add("b"));
+
+        wheel.advance();
+        assertEquals(List.of("b"), fired);
+        wheel.advance();
+        assertEquals(List.of("b"), fired);
+        wheel.advance();
+        assertEquals(List.of("b", "a"), fired);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testDelayLongerThanOneRevolutionCascadesToLowerLevel() {
+        TaskTimerWheel wheel = new TaskTimerWheel(100, 4, 2);
+        List<String> fired = new ArrayList<>();
+        wheel.schedule(1000, () -> fired.add("late"));
+
+        for (int i = 0; i < 9; i++) {
+            wheel.advance();
+        }
+        assertEquals(List.of(), fired);
+        wheel.advance();
+        assertEquals(List.of("late"), fired);
+    }
+
+    @Test
+    public void testLongDelaysCascadeThroughAllLevels() {
+        TaskTimerWheel wheel = new TaskTimerWheel(100, 4, 3);
+        List<Integer> fired = new ArrayList<>();
+        for (int ticks : new int[]{3, 17, 63, 64, 150}) {
+            wheel.schedule(ticks * 100L, () -> fired.add(ticks));
+        }
+
+        List<Integer> firedAt = new ArrayList<>();
+        for (int tick = 1; tick <= 150; tick++) {
+            int before = fired.size();
+            wheel.advance();
+            if (fired.size() > before) {
+                firedAt.add(tick);
+            }
+        }
+
+        assertEquals(List.of(3, 17, 63, 64, 150), fired);
+        assertEquals(List.of(3, 17, 63, 64, 150), firedAt);
+        assertEquals(0, wheel.size());
+    }
+}
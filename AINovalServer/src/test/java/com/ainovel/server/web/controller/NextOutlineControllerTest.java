@@ -0,0 +1,68 @@
+package com.ainovel.server.web.controller;
+
+import com.ainovel.server.config.StreamResumeConfiguration;
+import com.ainovel.server.repository.GenerationCheckpointRepository;
+import com.ainovel.server.security.CurrentUser;
+import com.ainovel.server.service.NextOutlineService;
+import com.ainovel.server.service.ai.stream.GenerationStreamRegistry;
+import com.ainovel.server.web.dto.NextOutlineDTO;
+import com.ainovel.server.web.dto.OutlineGenerationChunk;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 剧情推演流式接口测试：经续传注册表后，慢客户端仍能限制向大纲生成拉取的速度
+ */
+public class NextOutlineControllerTest {
+
+    private static final int OBSERVER_BUFFER = 8;
+
+    private final AtomicLong emitted = new AtomicLong();
+    private NextOutlineController controller;
+
+    @BeforeEach
+    public void setUp() {
+        StreamResumeConfiguration configuration = new StreamResumeConfiguration();
+        configuration.setObserverBufferSize(OBSERVER_BUFFER);
+        GenerationCheckpointRepository checkpointRepository = mock(GenerationCheckpointRepository.class);
+        when(checkpointRepository.appendChunks(anyString(), anyString(), anyLong(), anyList(), anyString(), any(), any()))
+                .thenReturn(Mono.just(true));
+
+        NextOutlineService nextOutlineService = mock(NextOutlineService.class);
+        when(nextOutlineService.generateNextOutlinesStream(eq("n1"), any()))
+                .thenReturn(Flux.range(1, 10_000)
+                        .map(i -> new OutlineGenerationChunk("option-" + (i % 3), "选项", "片段" + i, false, null))
+                        .doOnNext(chunk -> emitted.incrementAndGet()));
+
+        controller = new NextOutlineController(nextOutlineService,
+                new GenerationStreamRegistry(configuration, checkpointRepository, new ObjectMapper()));
+    }
+
+    @Test
+    public void testSlowClientLimitsUpstreamDemand() {
+        StepVerifier.create(controller.generateNextOutlinesStream(new CurrentUser("u1", "user"), "n1",
+                        new NextOutlineDTO.GenerateRequest(), null), 2)
+                .expectNextCount(2)
+                .then(() -> assertTrue(emitted.get() <= 2 + OBSERVER_BUFFER, "上游已生成: " + emitted.get()))
+                .thenRequest(20)
+                .expectNextCount(20)
+                .then(() -> assertTrue(emitted.get() <= 22 + OBSERVER_BUFFER, "上游已生成: " + emitted.get()))
+                .thenCancel()
+                .verify();
+    }
+}